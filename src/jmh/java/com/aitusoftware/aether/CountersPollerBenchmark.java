@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether;
+
+import java.util.concurrent.TimeUnit;
+
+import com.aitusoftware.aether.event.CounterValueListener;
+
+import org.agrona.concurrent.CachedEpochClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CountersPollerBenchmark
+{
+    private static final String CHANNEL = "aeron:udp?endpoint=localhost:14567|term-length=65536";
+
+    @Param({"100", "1000"})
+    private int sessionCount;
+
+    private final CachedEpochClock epochClock = new CachedEpochClock();
+    private CountersPoller countersPoller;
+
+    @Setup
+    public void setUp(final Blackhole blackhole)
+    {
+        final SyntheticCounters counters = new SyntheticCounters(sessionCount * 8 + 1);
+        for (int i = 0; i < sessionCount; i++)
+        {
+            counters.addPublication(i, 10 + (i % 8), CHANNEL);
+            counters.addImage(i, 10 + (i % 8), CHANNEL);
+        }
+        countersPoller = new CountersPoller(
+            new BlackholeCounterValueListener(blackhole), "benchmark", counters.countersReader(), epochClock);
+    }
+
+    @Benchmark
+    public int poll()
+    {
+        epochClock.advance(1_001L);
+        return countersPoller.doWork();
+    }
+
+    private static final class BlackholeCounterValueListener implements CounterValueListener
+    {
+        private final Blackhole blackhole;
+
+        BlackholeCounterValueListener(final Blackhole blackhole)
+        {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void onCounterEvent(
+            final int counterId, final int counterTypeId, final CharSequence channel,
+            final int sessionId, final int streamId, final long registrationId, final long value)
+        {
+            blackhole.consume(channel.length());
+            blackhole.consume(registrationId);
+            blackhole.consume(value);
+        }
+
+        @Override
+        public void onEndOfBatch(final String label)
+        {
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.aggregation;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamRateBenchmark
+{
+    @Param({"100", "1000"})
+    private long updateIntervalMs;
+
+    private final StreamRate streamRate = new StreamRate(Arrays.asList(
+        new RateBucket(1, TimeUnit.SECONDS),
+        new RateBucket(10, TimeUnit.SECONDS),
+        new RateBucket(1, TimeUnit.MINUTES),
+        new RateBucket(1, TimeUnit.HOURS)));
+    private long epochMillis;
+    private long position;
+
+    @Setup
+    public void setUp()
+    {
+        epochMillis = System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public StreamRate streamPosition()
+    {
+        epochMillis += updateIntervalMs;
+        position += 4096;
+        streamRate.streamPosition(epochMillis, position);
+        return streamRate;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import org.agrona.concurrent.CachedEpochClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.aeron.driver.status.PublisherLimit;
+import io.aeron.driver.status.PublisherPos;
+import io.aeron.driver.status.ReceiverHwm;
+import io.aeron.driver.status.ReceiverPos;
+import io.aeron.driver.status.SenderBpe;
+import io.aeron.driver.status.SenderLimit;
+import io.aeron.driver.status.SenderPos;
+import io.aeron.driver.status.SubscriberPos;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CounterEventHandlerBenchmark
+{
+    private static final String CHANNEL = "aeron:udp?endpoint=localhost:14567|term-length=65536";
+    private static final int[] PUBLICATION_TYPE_IDS = {
+        PublisherPos.PUBLISHER_POS_TYPE_ID, PublisherLimit.PUBLISHER_LIMIT_TYPE_ID, SenderPos.SENDER_POSITION_TYPE_ID,
+        SenderLimit.SENDER_LIMIT_TYPE_ID, SenderBpe.SENDER_BPE_TYPE_ID};
+    private static final int[] IMAGE_TYPE_IDS = {
+        ReceiverHwm.RECEIVER_HWM_TYPE_ID, ReceiverPos.RECEIVER_POS_TYPE_ID, SubscriberPos.SUBSCRIBER_POSITION_TYPE_ID};
+
+    @Param({"100", "1000"})
+    private int sessionCount;
+
+    private final CachedEpochClock epochClock = new CachedEpochClock();
+    private final StringBuilder channel = new StringBuilder(CHANNEL);
+    private CounterEventHandler counterEventHandler;
+    private int[] typeIds;
+    private int[] sessionIds;
+    private int[] streamIds;
+    private long[] registrationIds;
+    private long value;
+
+    @Setup
+    public void setUp(final Blackhole blackhole)
+    {
+        final int countersPerSession = PUBLICATION_TYPE_IDS.length + IMAGE_TYPE_IDS.length;
+        typeIds = new int[sessionCount * countersPerSession];
+        sessionIds = new int[typeIds.length];
+        streamIds = new int[typeIds.length];
+        registrationIds = new long[typeIds.length];
+        int counterId = 0;
+        for (int i = 0; i < sessionCount; i++)
+        {
+            for (final int typeId : PUBLICATION_TYPE_IDS)
+            {
+                addCounter(counterId++, typeId, i, 2L * i);
+            }
+            for (final int typeId : IMAGE_TYPE_IDS)
+            {
+                addCounter(counterId++, typeId, i, 2L * i + 1);
+            }
+        }
+
+        counterEventHandler = new CounterEventHandler(
+            new CounterRepository<>(PublisherCounterSet::new),
+            new CounterRepository<>(SubscriberCounterSet::new),
+            new BlackholeCounterSnapshotListener(blackhole), epochClock);
+    }
+
+    @Benchmark
+    public void onCounterEvents()
+    {
+        final long value = ++this.value;
+        for (int counterId = 0; counterId < typeIds.length; counterId++)
+        {
+            counterEventHandler.onCounterEvent(counterId, typeIds[counterId], channel,
+                sessionIds[counterId], streamIds[counterId], registrationIds[counterId], value);
+        }
+    }
+
+    @Benchmark
+    public void onCounterEventsAndEndOfBatch()
+    {
+        onCounterEvents();
+        epochClock.advance(1_000L);
+        counterEventHandler.onEndOfBatch("benchmark");
+    }
+
+    private void addCounter(final int counterId, final int typeId, final int sessionId, final long registrationId)
+    {
+        typeIds[counterId] = typeId;
+        sessionIds[counterId] = sessionId;
+        streamIds[counterId] = 10 + (sessionId % 8);
+        registrationIds[counterId] = registrationId;
+    }
+
+    private static final class BlackholeCounterSnapshotListener implements CounterSnapshotListener
+    {
+        private final Blackhole blackhole;
+
+        BlackholeCounterSnapshotListener(final Blackhole blackhole)
+        {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void onSnapshot(
+            final String label,
+            final long timestamp,
+            final List<PublisherCounterSet> publisherCounters,
+            final List<SubscriberCounterSet> subscriberCounters,
+            final SystemCounters systemCounters)
+        {
+            blackhole.consume(publisherCounters.size());
+            blackhole.consume(subscriberCounters.size());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+import java.util.concurrent.TimeUnit;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CounterRepositoryBenchmark
+{
+    private static final int CHANNEL_COUNT = 16;
+    private static final int STREAM_COUNT = 10;
+
+    @Param({"10000", "100000"})
+    private int sessionCount;
+
+    private final StringBuilder[] channels = new StringBuilder[CHANNEL_COUNT];
+    private final int[] channelIds = new int[CHANNEL_COUNT];
+    private final HashMapCounterRepository<PublisherCounterSet> hashMapRepository =
+        new HashMapCounterRepository<>(PublisherCounterSet::new);
+    private final CounterRepository<PublisherCounterSet> repository =
+        new CounterRepository<>(PublisherCounterSet::new);
+    private int index;
+
+    @Setup
+    public void setUp()
+    {
+        for (int i = 0; i < CHANNEL_COUNT; i++)
+        {
+            channels[i] = new StringBuilder("aeron:udp?endpoint=host-").append(i).append(".example.com:20123");
+            channelIds[i] = repository.channelId(channels[i]);
+        }
+        for (int i = 0; i < sessionCount; i++)
+        {
+            hashMapRepository.getOrCreate(channels[i % CHANNEL_COUNT], i, i % STREAM_COUNT);
+            repository.getOrCreate(channels[i % CHANNEL_COUNT], i, i % STREAM_COUNT);
+        }
+    }
+
+    @Benchmark
+    public PublisherCounterSet hashMapRepository()
+    {
+        final int session = nextSession();
+        return hashMapRepository.getOrCreate(channels[session % CHANNEL_COUNT], session, session % STREAM_COUNT);
+    }
+
+    @Benchmark
+    public PublisherCounterSet repositoryByChannel()
+    {
+        final int session = nextSession();
+        return repository.getOrCreate(channels[session % CHANNEL_COUNT], session, session % STREAM_COUNT);
+    }
+
+    @Benchmark
+    public PublisherCounterSet repositoryByChannelId()
+    {
+        final int session = nextSession();
+        return repository.getOrCreate(channelIds[session % CHANNEL_COUNT], session, session % STREAM_COUNT);
+    }
+
+    private int nextSession()
+    {
+        final int session = index;
+        index = session + 1 == sessionCount ? 0 : session + 1;
+        return session;
+    }
+}
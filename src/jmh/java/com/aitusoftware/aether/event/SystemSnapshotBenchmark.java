@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SystemSnapshotBenchmark
+{
+    private static final int HOST_COUNT = 4;
+
+    @Param({"100", "1000"})
+    private int sessionCount;
+
+    private final SystemSnapshot systemSnapshot = new SystemSnapshot();
+    private final SystemCounters systemCounters = new SystemCounters();
+    private final String[] labels = new String[HOST_COUNT];
+    private final List<List<PublisherCounterSet>> publishersByHost = new ArrayList<>();
+    private final List<List<SubscriberCounterSet>> subscribersByHost = new ArrayList<>();
+    private long timestamp;
+
+    @Setup
+    public void setUp()
+    {
+        for (int host = 0; host < HOST_COUNT; host++)
+        {
+            labels[host] = "host-" + host;
+            publishersByHost.add(new ArrayList<>());
+            subscribersByHost.add(new ArrayList<>());
+        }
+        for (int i = 0; i < sessionCount; i++)
+        {
+            final String channel = "aeron:udp?endpoint=host-" + (i % HOST_COUNT) + ":20123";
+            final PublisherCounterSet publisher = new PublisherCounterSet();
+            publisher.reset(channel, i, 10 + (i % 8));
+            publishersByHost.get(i % HOST_COUNT).add(publisher);
+
+            final SubscriberCounterSet subscriber = new SubscriberCounterSet();
+            subscriber.reset(channel, i, 10 + (i % 8));
+            subscriber.subscriberPosition(i, 0L);
+            subscribersByHost.get((i + 1) % HOST_COUNT).add(subscriber);
+        }
+    }
+
+    /**
+     * Applies one snapshot from each host, as an aggregator would receive them each poll interval.
+     */
+    @Benchmark
+    public SystemSnapshot onSnapshot()
+    {
+        final long timestamp = ++this.timestamp;
+        for (int host = 0; host < HOST_COUNT; host++)
+        {
+            systemSnapshot.onSnapshot(labels[host], timestamp,
+                publishersByHost.get(host), subscribersByHost.get(host), systemCounters);
+        }
+        return systemSnapshot;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.transport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import org.agrona.ExpandableArrayBuffer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares encoding and decoding of raw and compressed snapshot pages. The {@code bytes} counter reports the total
+ * number of bytes that would have been published during each iteration, so dividing it by the number of operations
+ * gives the size of a snapshot.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotCompressionBenchmark
+{
+    private static final String LABEL = "benchmark";
+    private static final int MAX_PAGE_LENGTH = 1376;
+
+    @Param({"100", "1000"})
+    private int sessionCount;
+
+    private final List<PublisherCounterSet> publishers = new ArrayList<>();
+    private final List<SubscriberCounterSet> subscribers = new ArrayList<>();
+    private final SystemCounters systemCounters = new SystemCounters();
+    private final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+    private final ExpandableArrayBuffer compressedPages = new ExpandableArrayBuffer();
+    private final SnapshotSerialiser serialiser =
+        new SnapshotSerialiser(1, ChannelEncoding.ASCII, MAX_PAGE_LENGTH);
+    private final SnapshotDeserialiser deserialiser = new SnapshotDeserialiser();
+    private final PageCompressor compressor = new PageCompressor();
+    private final PageCompressor decompressor = new PageCompressor();
+    private int[] compressedPageLimits;
+    private CounterSnapshotListener listener;
+    private long timestamp;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PublishedBytes
+    {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp(final Blackhole blackhole)
+    {
+        for (int i = 0; i < sessionCount; i++)
+        {
+            final String channel = "aeron:udp?endpoint=host-" + (i % 16) + ".example.com:20123";
+            final PublisherCounterSet publisher = new PublisherCounterSet();
+            publisher.reset(channel, i, 10 + (i % 8));
+            publisher.publisherPosition(i * 65536L);
+            publisher.senderPosition(i * 65536L);
+            publisher.senderLimit(i * 65536L + 131072L);
+            publisher.publisherLimit(i * 65536L + 131072L);
+            publishers.add(publisher);
+
+            final SubscriberCounterSet subscriber = new SubscriberCounterSet();
+            subscriber.reset(channel, i, 10 + (i % 8));
+            subscriber.receiverPosition(i * 65536L);
+            subscriber.receiverHighWaterMark(i * 65536L);
+            subscriber.subscriberPosition(i, i * 65536L);
+            subscribers.add(subscriber);
+        }
+        listener = (label, timestamp, publisherCounters, subscriberCounters, systemCounters) ->
+            blackhole.consume(publisherCounters.size());
+
+        serialiser.serialiseSnapshot(LABEL, 1L, publishers, subscribers, systemCounters, buffer);
+        compressedPageLimits = new int[serialiser.pageCount()];
+        int pageOffset = 0;
+        int compressedOffset = 0;
+        for (int page = 0; page < serialiser.pageCount(); page++)
+        {
+            final int length = compressor.compress(buffer, pageOffset, serialiser.pageLimit(page) - pageOffset);
+            compressedPages.putBytes(compressedOffset, compressor.buffer(), 0, length);
+            compressedOffset += length;
+            compressedPageLimits[page] = compressedOffset;
+            pageOffset = serialiser.pageLimit(page);
+        }
+    }
+
+    @Benchmark
+    public int serialiseRaw(final PublishedBytes publishedBytes)
+    {
+        final int length = serialiser.serialiseSnapshot(
+            LABEL, ++timestamp, publishers, subscribers, systemCounters, buffer);
+        publishedBytes.bytes += length;
+        return length;
+    }
+
+    @Benchmark
+    public int serialiseCompressed(final PublishedBytes publishedBytes)
+    {
+        serialiser.serialiseSnapshot(LABEL, ++timestamp, publishers, subscribers, systemCounters, buffer);
+        int pageOffset = 0;
+        int length = 0;
+        for (int page = 0, pageCount = serialiser.pageCount(); page < pageCount; page++)
+        {
+            final int pageLimit = serialiser.pageLimit(page);
+            length += compressor.compress(buffer, pageOffset, pageLimit - pageOffset);
+            pageOffset = pageLimit;
+        }
+        publishedBytes.bytes += length;
+        return length;
+    }
+
+    @Benchmark
+    public boolean deserialiseRaw()
+    {
+        boolean delivered = false;
+        int pageOffset = 0;
+        for (int page = 0, pageCount = compressedPageLimits.length; page < pageCount; page++)
+        {
+            delivered = deserialiser.deserialiseSnapshot(buffer, pageOffset, listener);
+            pageOffset = serialiser.pageLimit(page);
+        }
+        return delivered;
+    }
+
+    @Benchmark
+    public boolean deserialiseCompressed()
+    {
+        boolean delivered = false;
+        int pageOffset = 0;
+        for (final int pageLimit : compressedPageLimits)
+        {
+            decompressor.decompress(compressedPages, pageOffset, pageLimit - pageOffset);
+            delivered = deserialiser.deserialiseSnapshot(decompressor.buffer(), 0, listener);
+            pageOffset = pageLimit;
+        }
+        return delivered;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.transport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import org.agrona.ExpandableArrayBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotSerialiserBenchmark
+{
+    private static final String LABEL = "benchmark";
+
+    @Param({"100", "1000"})
+    private int sessionCount;
+
+    @Param({"ASCII", "UTF_16"})
+    private ChannelEncoding channelEncoding;
+
+    private final List<PublisherCounterSet> publishers = new ArrayList<>();
+    private final List<SubscriberCounterSet> subscribers = new ArrayList<>();
+    private final SystemCounters systemCounters = new SystemCounters();
+    private final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+    private final ExpandableArrayBuffer keyFrame = new ExpandableArrayBuffer();
+    private final ExpandableArrayBuffer deltaFrame = new ExpandableArrayBuffer();
+    private final SnapshotDeserialiser deserialiser = new SnapshotDeserialiser();
+    private SnapshotSerialiser keyFrameSerialiser;
+    private SnapshotSerialiser deltaFrameSerialiser;
+    private CounterSnapshotListener listener;
+    private long timestamp;
+
+    @Setup
+    public void setUp(final Blackhole blackhole)
+    {
+        keyFrameSerialiser = new SnapshotSerialiser(1, channelEncoding);
+        deltaFrameSerialiser = new SnapshotSerialiser(Integer.MAX_VALUE, channelEncoding);
+        for (int i = 0; i < sessionCount; i++)
+        {
+            final String channel = "aeron:udp?endpoint=host-" + (i % 16) + ".example.com:20123";
+            final PublisherCounterSet publisher = new PublisherCounterSet();
+            publisher.reset(channel, i, 10 + (i % 8));
+            publishers.add(publisher);
+
+            final SubscriberCounterSet subscriber = new SubscriberCounterSet();
+            subscriber.reset(channel, i, 10 + (i % 8));
+            subscribers.add(subscriber);
+        }
+        advancePositions();
+        listener = (label, timestamp, publisherCounters, subscriberCounters, systemCounters) ->
+            blackhole.consume(publisherCounters.size());
+
+        new SnapshotSerialiser(1, channelEncoding).serialiseSnapshot(
+            LABEL, 1L, publishers, subscribers, systemCounters, keyFrame);
+        deserialiser.deserialiseSnapshot(keyFrame, 0, listener);
+        deltaFrameSerialiser.serialiseSnapshot(LABEL, 1L, publishers, subscribers, systemCounters, buffer);
+        advancePositions();
+        deltaFrameSerialiser.serialiseSnapshot(LABEL, 2L, publishers, subscribers, systemCounters, deltaFrame);
+    }
+
+    @Benchmark
+    public int serialiseKeyFrame()
+    {
+        return keyFrameSerialiser.serialiseSnapshot(
+            LABEL, ++timestamp, publishers, subscribers, systemCounters, buffer);
+    }
+
+    @Benchmark
+    public int serialiseDeltaFrame()
+    {
+        advancePositions();
+        return deltaFrameSerialiser.serialiseSnapshot(
+            LABEL, ++timestamp, publishers, subscribers, systemCounters, buffer);
+    }
+
+    @Benchmark
+    public boolean deserialiseKeyFrame()
+    {
+        return deserialiser.deserialiseSnapshot(keyFrame, 0, listener);
+    }
+
+    @Benchmark
+    public boolean deserialiseDeltaFrame()
+    {
+        return deserialiser.deserialiseSnapshot(deltaFrame, 0, listener);
+    }
+
+    private void advancePositions()
+    {
+        for (int i = 0; i < sessionCount; i++)
+        {
+            final PublisherCounterSet publisher = publishers.get(i);
+            final long position = publisher.publisherPosition() + 1024 + (i % 4) * 512;
+            publisher.publisherPosition(position);
+            publisher.senderPosition(position);
+            publisher.senderLimit(position + 65536);
+            publisher.publisherLimit(position + 65536);
+
+            final SubscriberCounterSet subscriber = subscribers.get(i);
+            subscriber.receiverHighWaterMark(position);
+            subscriber.receiverPosition(position);
+            subscriber.subscriberPosition(i, position);
+        }
+        systemCounters.bytesSent(systemCounters.bytesSent() + 1024L * sessionCount);
+        systemCounters.bytesReceived(systemCounters.bytesReceived() + 1024L * sessionCount);
+    }
+}
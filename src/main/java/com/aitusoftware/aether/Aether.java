@@ -17,27 +17,45 @@
  */
 package com.aitusoftware.aether;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 import com.aitusoftware.aether.event.ConsolePrinter;
+import com.aitusoftware.aether.event.CounterBatchListener;
 import com.aitusoftware.aether.event.CounterEventHandler;
 import com.aitusoftware.aether.event.CounterRepository;
 import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.event.PositionSampleListener;
+import com.aitusoftware.aether.event.SessionEvictionListener;
+import com.aitusoftware.aether.event.ShardingSnapshotListener;
+import com.aitusoftware.aether.event.SnapshotSequenceListener;
 import com.aitusoftware.aether.model.PublisherCounterSet;
 import com.aitusoftware.aether.model.SubscriberCounterSet;
 import com.aitusoftware.aether.transport.CounterSnapshotPublisher;
 import com.aitusoftware.aether.transport.CounterSnapshotSubscriber;
+import com.aitusoftware.aether.transport.RingBufferSnapshotPublisher;
+import com.aitusoftware.aether.transport.RingBufferSnapshotSubscriber;
+import com.aitusoftware.aether.transport.SnapshotFanOut;
 
+import org.agrona.BitUtil;
 import org.agrona.CloseHelper;
 import org.agrona.SystemUtil;
 import org.agrona.concurrent.Agent;
 import org.agrona.concurrent.AgentRunner;
+import org.agrona.concurrent.CachedEpochClock;
+import org.agrona.concurrent.CompositeAgent;
 import org.agrona.concurrent.EpochClock;
 import org.agrona.concurrent.ShutdownSignalBarrier;
 import org.agrona.concurrent.SleepingMillisIdleStrategy;
 import org.agrona.concurrent.SystemEpochClock;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.ManyToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBufferDescriptor;
+import org.agrona.concurrent.status.AtomicCounter;
 
 import io.aeron.Aeron;
 import io.aeron.CommonContext;
@@ -48,12 +66,23 @@ import io.aeron.driver.MediaDriver;
  */
 public final class Aether implements Agent, AutoCloseable
 {
+    public static final int ERRORS_COUNTER_TYPE_ID = 10000;
+
+    private final List<PollerCounters> pollerCounters = new ArrayList<>();
+    private final List<AtomicCounter> handOffDroppedCounters = new ArrayList<>();
     private final CountersPoller[] countersPoller;
     private final AgentRunner agentRunner;
+    private final AgentRunner[] pollerAgentRunners;
+    private final RingBufferSnapshotSubscriber ringBufferSnapshotSubscriber;
+    private final SnapshotFanOut snapshotFanOut;
+    private final Agent[] fanOutAgents;
+    private final AgentRunner[] fanOutAgentRunners;
+    private final EpochClock systemEpochClock = new SystemEpochClock();
+    private final CachedEpochClock epochClock = new CachedEpochClock();
     private final Aeron aeronClient;
     private final MediaDriver mediaDriver;
     private final CounterSnapshotSubscriber counterSnapshotSubscriber;
-    private CounterSnapshotPublisher counterSnapshotPublisher;
+    private final CounterSnapshotPublisher[] counterSnapshotPublishers;
 
     /**
      * Construct a new instance with the given context.
@@ -75,59 +104,104 @@ public final class Aether implements Agent, AutoCloseable
             aeronClient = Aeron.connect(new Aeron.Context().useConductorAgentInvoker(true)
                 .aeronDirectoryName(context.aeronDirectoryName()));
         }
-        if (context.threadingMode() == ThreadingMode.THREADED)
+        final AtomicCounter errorCounter = aeronClient.addCounter(ERRORS_COUNTER_TYPE_ID, "aether-errors");
+        epochClock.update(systemEpochClock.time());
+        if (context.fanOutContext().listenerCount() != 0)
         {
-            agentRunner = new AgentRunner(new SleepingMillisIdleStrategy(1L), e ->
-            {
-            },
-                aeronClient.addCounter(10000, "aether-errors"), this);
-            AgentRunner.startOnThread(agentRunner);
+            snapshotFanOut = new SnapshotFanOut(context.fanOutContext().aeronClient(aeronClient));
+            fanOutAgents = snapshotFanOut.listenerAgents().toArray(new Agent[0]);
         }
         else
         {
-            agentRunner = null;
+            snapshotFanOut = null;
+            fanOutAgents = new Agent[0];
         }
-        final EpochClock epochClock = new SystemEpochClock();
         if (context.transport() == Transport.AERON)
         {
             if (context.mode() == Mode.SUBSCRIBER)
             {
+                final CounterSnapshotSubscriber.Context subscriberContext = new CounterSnapshotSubscriber.Context()
+                    .counterSnapshotListener(withFanOut(context.counterSnapshotListener()))
+                    .snapshotSequenceListener(context.snapshotSequenceListener())
+                    .aeronClient(aeronClient);
                 counterSnapshotSubscriber = new CounterSnapshotSubscriber(
-                    new CounterSnapshotSubscriber.Context()
-                        .counterSnapshotListener(context.counterSnapshotListener())
-                        .aeronClient(aeronClient));
+                    subscriberContext.aetherStreamId(subscriberContext.aetherStreamId() + context.shard()));
+                counterSnapshotPublishers = new CounterSnapshotPublisher[0];
             }
             else
             {
-                counterSnapshotPublisher = new CounterSnapshotPublisher(
-                    new CounterSnapshotPublisher.Context().aeronClient(aeronClient));
-                context.counterSnapshotListener(counterSnapshotPublisher);
+                counterSnapshotPublishers = new CounterSnapshotPublisher[context.shardCount()];
+                for (int shard = 0; shard < counterSnapshotPublishers.length; shard++)
+                {
+                    final CounterSnapshotPublisher.Context publisherContext =
+                        new CounterSnapshotPublisher.Context().aeronClient(aeronClient);
+                    counterSnapshotPublishers[shard] = new CounterSnapshotPublisher(
+                        publisherContext.aetherStreamId(publisherContext.aetherStreamId() + shard));
+                }
+                context.counterSnapshotListener(counterSnapshotPublishers.length == 1 ? counterSnapshotPublishers[0] :
+                    new ShardingSnapshotListener(Arrays.asList(counterSnapshotPublishers)));
                 counterSnapshotSubscriber = null;
             }
         }
         else
         {
             counterSnapshotSubscriber = null;
+            counterSnapshotPublishers = new CounterSnapshotPublisher[0];
+        }
+        final boolean pollCounters = context.transport() == Transport.LOCAL || context.mode() == Mode.PUBLISHER;
+        final CounterSnapshotListener snapshotListener = withFanOut(context.counterSnapshotListener());
+        if (pollCounters && context.pollerThreadCount() > 1)
+        {
+            final RingBuffer handOffBuffer = new ManyToOneRingBuffer(new UnsafeBuffer(ByteBuffer.allocateDirect(
+                context.handOffBufferLength() + RingBufferDescriptor.TRAILER_LENGTH)));
+            ringBufferSnapshotSubscriber = new RingBufferSnapshotSubscriber(handOffBuffer, snapshotListener);
+            countersPoller = new CountersPoller[0];
+            pollerAgentRunners = createPollerAgentRunners(context, handOffBuffer, errorCounter);
         }
-        if (context.transport() == Transport.LOCAL || context.mode() == Mode.PUBLISHER)
+        else
         {
-            countersPoller = new CountersPoller[context.monitoringLocations().size()];
-            final List<MonitoringLocation> monitoringLocations = context.monitoringLocations();
-            for (int i = 0; i < monitoringLocations.size(); i++)
+            ringBufferSnapshotSubscriber = null;
+            pollerAgentRunners = new AgentRunner[0];
+            if (pollCounters)
             {
-                final MonitoringLocation monitoringLocation = monitoringLocations.get(i);
-                final CounterEventHandler counterEventHandler = new CounterEventHandler(
-                    new CounterRepository<>(PublisherCounterSet::new),
-                    new CounterRepository<>(SubscriberCounterSet::new),
-                    context.counterSnapshotListener(), epochClock);
-                countersPoller[i] = new CountersPoller(
-                    counterEventHandler, monitoringLocation.label,
-                    monitoringLocation.aeronDirectoryName, epochClock);
+                final List<MonitoringLocation> monitoringLocations = context.monitoringLocations();
+                countersPoller = new CountersPoller[monitoringLocations.size()];
+                for (int i = 0; i < monitoringLocations.size(); i++)
+                {
+                    countersPoller[i] = createCountersPoller(context, monitoringLocations.get(i),
+                        snapshotListener, context.counterBatchListener());
+                }
+            }
+            else
+            {
+                countersPoller = new CountersPoller[0];
             }
         }
+        for (final AgentRunner pollerAgentRunner : pollerAgentRunners)
+        {
+            AgentRunner.startOnThread(pollerAgentRunner);
+        }
+        if (context.threadingMode() == ThreadingMode.THREADED)
+        {
+            fanOutAgentRunners = new AgentRunner[fanOutAgents.length];
+            for (int i = 0; i < fanOutAgents.length; i++)
+            {
+                fanOutAgentRunners[i] = new AgentRunner(new SleepingMillisIdleStrategy(1L), e ->
+                {
+                },
+                    errorCounter, fanOutAgents[i]);
+                AgentRunner.startOnThread(fanOutAgentRunners[i]);
+            }
+            agentRunner = new AgentRunner(new SleepingMillisIdleStrategy(1L), e ->
+            {
+            },
+                errorCounter, this);
+            AgentRunner.startOnThread(agentRunner);
+        }
         else
         {
-            countersPoller = new CountersPoller[0];
+            fanOutAgentRunners = new AgentRunner[0];
+            agentRunner = null;
         }
     }
 
@@ -162,6 +236,7 @@ public final class Aether implements Agent, AutoCloseable
     @Override
     public int doWork()
     {
+        epochClock.update(systemEpochClock.time());
         int work = 0;
         for (final CountersPoller poller : countersPoller)
         {
@@ -171,9 +246,96 @@ public final class Aether implements Agent, AutoCloseable
         {
             work += counterSnapshotSubscriber.doWork();
         }
+        for (final CounterSnapshotPublisher counterSnapshotPublisher : counterSnapshotPublishers)
+        {
+            work += counterSnapshotPublisher.doWork();
+        }
+        if (ringBufferSnapshotSubscriber != null)
+        {
+            work += ringBufferSnapshotSubscriber.doWork();
+        }
+        if (snapshotFanOut != null)
+        {
+            work += snapshotFanOut.doWork();
+            if (fanOutAgentRunners.length == 0)
+            {
+                work += snapshotFanOut.invokeListeners();
+            }
+        }
         return aeronClient.conductorAgentInvoker().invoke() + work;
     }
 
+    private AgentRunner[] createPollerAgentRunners(
+        final Context context, final RingBuffer handOffBuffer, final AtomicCounter errorCounter)
+    {
+        final List<MonitoringLocation> monitoringLocations = context.monitoringLocations();
+        final int threadCount = Math.min(context.pollerThreadCount(), monitoringLocations.size());
+        final List<List<CountersPoller>> pollersByThread = new ArrayList<>(threadCount);
+        final RingBufferSnapshotPublisher[] publishers = new RingBufferSnapshotPublisher[threadCount];
+        for (int i = 0; i < threadCount; i++)
+        {
+            pollersByThread.add(new ArrayList<>());
+            final AtomicCounter droppedSnapshotsCounter = aeronClient.addCounter(
+                RingBufferSnapshotPublisher.DROPPED_SNAPSHOTS_COUNTER_TYPE_ID, "aether-hand-off-dropped: " + i);
+            handOffDroppedCounters.add(droppedSnapshotsCounter);
+            publishers[i] = new RingBufferSnapshotPublisher(handOffBuffer, droppedSnapshotsCounter);
+        }
+        for (int i = 0; i < monitoringLocations.size(); i++)
+        {
+            final int thread = i % threadCount;
+            pollersByThread.get(thread).add(createCountersPoller(
+                context, monitoringLocations.get(i), publishers[thread], null));
+        }
+        final AgentRunner[] agentRunners = new AgentRunner[threadCount];
+        for (int i = 0; i < threadCount; i++)
+        {
+            agentRunners[i] = new AgentRunner(new SleepingMillisIdleStrategy(1L), e ->
+            {
+            },
+                errorCounter, new CompositeAgent(pollersByThread.get(i)));
+        }
+        return agentRunners;
+    }
+
+    private CounterSnapshotListener withFanOut(final CounterSnapshotListener counterSnapshotListener)
+    {
+        if (snapshotFanOut == null)
+        {
+            return counterSnapshotListener;
+        }
+        if (counterSnapshotListener == null)
+        {
+            return snapshotFanOut;
+        }
+        return (label, timestamp, publisherCounters, subscriberCounters, systemCounters) ->
+        {
+            counterSnapshotListener.onSnapshot(
+                label, timestamp, publisherCounters, subscriberCounters, systemCounters);
+            snapshotFanOut.onSnapshot(label, timestamp, publisherCounters, subscriberCounters, systemCounters);
+        };
+    }
+
+    private CountersPoller createCountersPoller(
+        final Context context,
+        final MonitoringLocation monitoringLocation,
+        final CounterSnapshotListener counterSnapshotListener,
+        final CounterBatchListener counterBatchListener)
+    {
+        final CounterEventHandler counterEventHandler = new CounterEventHandler(
+            new CounterRepository<>(PublisherCounterSet::new),
+            new CounterRepository<>(SubscriberCounterSet::new),
+            counterSnapshotListener, counterBatchListener, epochClock,
+            context.sessionTimeoutMs(), context.sessionEvictionListener());
+        final PollerCounters counters = new PollerCounters(
+            aeronClient, monitoringLocation.label, counterEventHandler::trackedSessionCount);
+        pollerCounters.add(counters);
+        return new CountersPoller(
+            counterEventHandler, monitoringLocation.label,
+            monitoringLocation.aeronDirectoryName, epochClock,
+            monitoringLocation.pollIntervalMs, monitoringLocation.positionSampleIntervalMs,
+            context.positionSampleListener(), counters);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -189,9 +351,15 @@ public final class Aether implements Agent, AutoCloseable
     @Override
     public void close()
     {
-        CloseHelper.quietClose(counterSnapshotSubscriber);
-        CloseHelper.quietClose(counterSnapshotPublisher);
+        // stop every agent before closing the components, and freeing the counters, that they use
+        CloseHelper.closeAll(pollerAgentRunners);
         CloseHelper.quietClose(agentRunner);
+        CloseHelper.closeAll(fanOutAgentRunners);
+        CloseHelper.quietClose(snapshotFanOut);
+        CloseHelper.quietClose(counterSnapshotSubscriber);
+        CloseHelper.quietCloseAll(counterSnapshotPublishers);
+        CloseHelper.quietCloseAll(pollerCounters);
+        CloseHelper.quietCloseAll(handOffDroppedCounters);
         CloseHelper.quietClose(aeronClient);
         CloseHelper.quietClose(mediaDriver);
     }
@@ -202,12 +370,22 @@ public final class Aether implements Agent, AutoCloseable
     public static final class Context
     {
         private CounterSnapshotListener counterSnapshotListener = new ConsolePrinter();
+        private CounterBatchListener counterBatchListener = null;
+        private final SnapshotFanOut.Context fanOutContext = new SnapshotFanOut.Context();
+        private PositionSampleListener positionSampleListener = null;
+        private SessionEvictionListener sessionEvictionListener = null;
+        private SnapshotSequenceListener snapshotSequenceListener = null;
+        private long sessionTimeoutMs = Configuration.sessionTimeoutMs();
         private List<MonitoringLocation> monitoringLocations = null;
         private ThreadingMode threadingMode = ThreadingMode.THREADED;
         private Transport transport = Configuration.transport();
         private boolean launchEmbeddedMediaDriver = true;
         private String aeronDirectoryName = CommonContext.getAeronDirectoryName();
         private Mode mode = Configuration.mode();
+        private int pollerThreadCount = Configuration.pollerThreadCount();
+        private int handOffBufferLength = Configuration.handOffBufferLength();
+        private int shardCount = Configuration.shardCount();
+        private int shard = Configuration.shard();
 
         void validate()
         {
@@ -223,6 +401,42 @@ public final class Aether implements Agent, AutoCloseable
             {
                 throw new IllegalStateException("Mode must be LOCAL if transport is LOCAL");
             }
+            if (sessionTimeoutMs < 0)
+            {
+                throw new IllegalStateException("Session timeout must not be negative: " + sessionTimeoutMs);
+            }
+            if (shardCount < 1)
+            {
+                throw new IllegalStateException("Shard count must be at least 1: " + shardCount);
+            }
+            if (shard < 0 || shard >= shardCount)
+            {
+                throw new IllegalStateException("Shard must be between 0 and " + (shardCount - 1) + ": " + shard);
+            }
+            if (shardCount > 1 && transport != Transport.AERON)
+            {
+                throw new IllegalStateException("Shard count must be 1 if transport is LOCAL");
+            }
+            if (pollerThreadCount < 1)
+            {
+                throw new IllegalStateException("Poller thread count must be at least 1: " + pollerThreadCount);
+            }
+            if (pollerThreadCount > 1)
+            {
+                if (threadingMode != ThreadingMode.THREADED)
+                {
+                    throw new IllegalStateException("Poller thread count must be 1 when using INVOKER threading mode");
+                }
+                if (!BitUtil.isPowerOfTwo(handOffBufferLength))
+                {
+                    throw new IllegalStateException(
+                        "Hand-off buffer length must be a power of two: " + handOffBufferLength);
+                }
+                if (counterBatchListener != null)
+                {
+                    throw new IllegalStateException("Poller thread count must be 1 when using a batch listener");
+                }
+            }
         }
 
         public Context mode(final Mode mode)
@@ -258,6 +472,210 @@ public final class Aether implements Agent, AutoCloseable
             return counterSnapshotListener;
         }
 
+        /**
+         * Sets an optional listener that receives each snapshot as columnar batches, in addition to the
+         * counter snapshot listener. Batches are only built by counter pollers, so this listener is not used
+         * in SUBSCRIBER mode, and requires a single poller thread.
+         *
+         * @param counterBatchListener listener for snapshot batches
+         * @return this for a fluent API
+         */
+        public Context counterBatchListener(final CounterBatchListener counterBatchListener)
+        {
+            this.counterBatchListener = counterBatchListener;
+            return this;
+        }
+
+        public CounterBatchListener counterBatchListener()
+        {
+            return counterBatchListener;
+        }
+
+        /**
+         * Adds a listener that receives snapshots from its own bounded queue on its own agent, so that it cannot
+         * stall counter polling. Listeners added here receive the same snapshots as the counter snapshot listener.
+         *
+         * @param counterSnapshotListener listener for snapshots
+         * @param overflowPolicy          policy applied when the listener's queue is full
+         * @return this for a fluent API
+         */
+        public Context fanOutListener(
+            final CounterSnapshotListener counterSnapshotListener,
+            final SnapshotFanOut.OverflowPolicy overflowPolicy)
+        {
+            fanOutContext.listener(counterSnapshotListener, overflowPolicy);
+            return this;
+        }
+
+        /**
+         * Sets the length of the queue of each fan-out listener.
+         *
+         * @param fanOutQueueLength queue length in bytes, must be a power of two
+         * @return this for a fluent API
+         */
+        public Context fanOutQueueLength(final int fanOutQueueLength)
+        {
+            fanOutContext.queueLength(fanOutQueueLength);
+            return this;
+        }
+
+        public int fanOutQueueLength()
+        {
+            return fanOutContext.queueLength();
+        }
+
+        SnapshotFanOut.Context fanOutContext()
+        {
+            return fanOutContext;
+        }
+
+        /**
+         * Sets the listener for high-frequency position samples. Position counters are only sampled between
+         * full snapshots for monitoring locations with a positive position sample interval.
+         *
+         * @param positionSampleListener listener for position samples
+         * @return this for a fluent API
+         */
+        public Context positionSampleListener(final PositionSampleListener positionSampleListener)
+        {
+            this.positionSampleListener = positionSampleListener;
+            return this;
+        }
+
+        public PositionSampleListener positionSampleListener()
+        {
+            return positionSampleListener;
+        }
+
+        /**
+         * Sets the listener notified when a session is no longer reported by a MediaDriver and its counters
+         * are removed.
+         *
+         * @param sessionEvictionListener listener for removed sessions
+         * @return this for a fluent API
+         */
+        public Context sessionEvictionListener(final SessionEvictionListener sessionEvictionListener)
+        {
+            this.sessionEvictionListener = sessionEvictionListener;
+            return this;
+        }
+
+        public SessionEvictionListener sessionEvictionListener()
+        {
+            return sessionEvictionListener;
+        }
+
+        /**
+         * Sets the listener notified when snapshots received in {@code SUBSCRIBER} mode were not delivered, or
+         * when a collector has been restarted, so that state derived from consecutive snapshots can be reset.
+         *
+         * @param snapshotSequenceListener listener for gaps in received snapshots
+         * @return this for a fluent API
+         */
+        public Context snapshotSequenceListener(final SnapshotSequenceListener snapshotSequenceListener)
+        {
+            this.snapshotSequenceListener = snapshotSequenceListener;
+            return this;
+        }
+
+        public SnapshotSequenceListener snapshotSequenceListener()
+        {
+            return snapshotSequenceListener;
+        }
+
+        /**
+         * Sets the time for which a session can be missing from counter snapshots before it is removed.
+         * A value of zero removes a session from the first snapshot that does not contain it.
+         *
+         * @param sessionTimeoutMs session timeout in milliseconds
+         * @return this for a fluent API
+         */
+        public Context sessionTimeoutMs(final long sessionTimeoutMs)
+        {
+            this.sessionTimeoutMs = sessionTimeoutMs;
+            return this;
+        }
+
+        public long sessionTimeoutMs()
+        {
+            return sessionTimeoutMs;
+        }
+
+        /**
+         * Sets the number of threads used to poll monitoring locations. When greater than one, monitoring
+         * locations are spread across the poller threads, and snapshots are passed back to the Aether agent
+         * thread before being delivered to the {@code CounterSnapshotListener}. Position samples and session
+         * evictions are reported on the poller threads.
+         *
+         * @param pollerThreadCount number of poller threads
+         * @return this for a fluent API
+         */
+        public Context pollerThreadCount(final int pollerThreadCount)
+        {
+            this.pollerThreadCount = pollerThreadCount;
+            return this;
+        }
+
+        public int pollerThreadCount()
+        {
+            return pollerThreadCount;
+        }
+
+        /**
+         * Sets the length of the buffer used to pass snapshots from poller threads to the Aether agent thread.
+         * Snapshots are dropped if the buffer is full.
+         *
+         * @param handOffBufferLength buffer length in bytes, must be a power of two
+         * @return this for a fluent API
+         */
+        public Context handOffBufferLength(final int handOffBufferLength)
+        {
+            this.handOffBufferLength = handOffBufferLength;
+            return this;
+        }
+
+        public int handOffBufferLength()
+        {
+            return handOffBufferLength;
+        }
+
+        /**
+         * Sets the number of shards that snapshots are partitioned into. In PUBLISHER mode, publishers and
+         * subscribers are partitioned by a hash of their channel and streamId, and each shard is published on its
+         * own stream, starting at the configured transport streamId.
+         *
+         * @param shardCount number of shards, must be at least 1
+         * @return this for a fluent API
+         */
+        public Context shardCount(final int shardCount)
+        {
+            this.shardCount = shardCount;
+            return this;
+        }
+
+        public int shardCount()
+        {
+            return shardCount;
+        }
+
+        /**
+         * Sets the shard that is aggregated in SUBSCRIBER mode. The subscriber receives the stream of this shard,
+         * offset from the configured transport streamId.
+         *
+         * @param shard the shard, between 0 and {@code shardCount - 1}
+         * @return this for a fluent API
+         */
+        public Context shard(final int shard)
+        {
+            this.shard = shard;
+            return this;
+        }
+
+        public int shard()
+        {
+            return shard;
+        }
+
         public Context monitoringLocations(final List<MonitoringLocation> monitoringLocations)
         {
             this.monitoringLocations = monitoringLocations;
@@ -275,9 +693,7 @@ public final class Aether implements Agent, AutoCloseable
                     final String[] instances = spec.split(";");
                     for (final String instance : instances)
                     {
-                        monitoringLocations.add(new MonitoringLocation(
-                            instance.substring(0, instance.indexOf(':')),
-                            instance.substring(instance.indexOf(':') + 1)));
+                        monitoringLocations.add(parseMonitoringLocation(instance));
                     }
                 }
             }
@@ -285,6 +701,22 @@ public final class Aether implements Agent, AutoCloseable
             return monitoringLocations;
         }
 
+        private static MonitoringLocation parseMonitoringLocation(final String instance)
+        {
+            final int labelEnd = instance.indexOf(':');
+            final int pollIntervalStart = instance.lastIndexOf(',');
+            if (pollIntervalStart < labelEnd)
+            {
+                return new MonitoringLocation(instance.substring(0, labelEnd), instance.substring(labelEnd + 1));
+            }
+
+            return new MonitoringLocation(
+                instance.substring(0, labelEnd),
+                instance.substring(labelEnd + 1, pollIntervalStart),
+                Long.parseLong(instance.substring(pollIntervalStart + 1).trim()),
+                Configuration.positionSampleIntervalMs());
+        }
+
         public Context threadingMode(final ThreadingMode threadingMode)
         {
             this.threadingMode = threadingMode;
@@ -323,11 +755,36 @@ public final class Aether implements Agent, AutoCloseable
     {
         private final String label;
         private final String aeronDirectoryName;
+        private final long pollIntervalMs;
+        private final long positionSampleIntervalMs;
 
         public MonitoringLocation(final String label, final String aeronDirectoryName)
         {
+            this(label, aeronDirectoryName, Configuration.pollIntervalMs(), Configuration.positionSampleIntervalMs());
+        }
+
+        /**
+         * Describes a MediaDriver to be monitored.
+         *
+         * @param label                    label of the MediaDriver
+         * @param aeronDirectoryName       Aeron directory of the MediaDriver
+         * @param pollIntervalMs           interval between full counter snapshots, must be at least 1ms
+         * @param positionSampleIntervalMs interval between samples of position counters, or zero to disable
+         */
+        public MonitoringLocation(
+            final String label,
+            final String aeronDirectoryName,
+            final long pollIntervalMs,
+            final long positionSampleIntervalMs)
+        {
+            if (pollIntervalMs < 1)
+            {
+                throw new IllegalArgumentException("Poll interval must be at least 1ms: " + pollIntervalMs);
+            }
             this.aeronDirectoryName = aeronDirectoryName;
             this.label = label;
+            this.pollIntervalMs = pollIntervalMs;
+            this.positionSampleIntervalMs = positionSampleIntervalMs;
         }
     }
 
@@ -336,6 +793,13 @@ public final class Aether implements Agent, AutoCloseable
         public static final String MONITORING_LOCATIONS_PROPERTY_NAME = "aether.monitoringLocations";
         public static final String TRANSPORT_PROPERTY_NAME = "aether.transport";
         public static final String MODE_PROPERTY_NAME = "aether.mode";
+        public static final String POLL_INTERVAL_MS_PROPERTY_NAME = "aether.pollIntervalMs";
+        public static final String POSITION_SAMPLE_INTERVAL_MS_PROPERTY_NAME = "aether.positionSampleIntervalMs";
+        public static final String SESSION_TIMEOUT_MS_PROPERTY_NAME = "aether.sessionTimeoutMs";
+        public static final String POLLER_THREAD_COUNT_PROPERTY_NAME = "aether.pollerThreads";
+        public static final String HAND_OFF_BUFFER_LENGTH_PROPERTY_NAME = "aether.handOffBufferLength";
+        public static final String SHARD_COUNT_PROPERTY_NAME = "aether.shardCount";
+        public static final String SHARD_PROPERTY_NAME = "aether.shard";
 
         public static String monitoringLocations()
         {
@@ -343,6 +807,41 @@ public final class Aether implements Agent, AutoCloseable
                 "default:" + CommonContext.getAeronDirectoryName());
         }
 
+        public static long pollIntervalMs()
+        {
+            return Long.getLong(POLL_INTERVAL_MS_PROPERTY_NAME, CountersPoller.DEFAULT_POLL_INTERVAL_MS);
+        }
+
+        public static long positionSampleIntervalMs()
+        {
+            return Long.getLong(POSITION_SAMPLE_INTERVAL_MS_PROPERTY_NAME, 0L);
+        }
+
+        public static long sessionTimeoutMs()
+        {
+            return Long.getLong(SESSION_TIMEOUT_MS_PROPERTY_NAME, 0L);
+        }
+
+        public static int pollerThreadCount()
+        {
+            return Integer.getInteger(POLLER_THREAD_COUNT_PROPERTY_NAME, 1);
+        }
+
+        public static int handOffBufferLength()
+        {
+            return Integer.getInteger(HAND_OFF_BUFFER_LENGTH_PROPERTY_NAME, 4 * 1024 * 1024);
+        }
+
+        public static int shardCount()
+        {
+            return Integer.getInteger(SHARD_COUNT_PROPERTY_NAME, 1);
+        }
+
+        public static int shard()
+        {
+            return Integer.getInteger(SHARD_PROPERTY_NAME, 0);
+        }
+
         public static Transport transport()
         {
             return Optional.ofNullable(System.getProperty(TRANSPORT_PROPERTY_NAME))
@@ -32,31 +32,27 @@ import java.nio.channels.FileChannel;
 import java.nio.file.StandardOpenOption;
 
 import com.aitusoftware.aether.event.CounterValueListener;
+import com.aitusoftware.aether.event.PositionSampleListener;
 
 import org.agrona.DirectBuffer;
 import org.agrona.concurrent.Agent;
 import org.agrona.concurrent.EpochClock;
 import org.agrona.concurrent.status.CountersReader;
 
-import io.aeron.driver.status.PublisherLimit;
-import io.aeron.driver.status.PublisherPos;
-import io.aeron.driver.status.ReceiverHwm;
-import io.aeron.driver.status.ReceiverPos;
-import io.aeron.driver.status.SenderBpe;
-import io.aeron.driver.status.SenderLimit;
-import io.aeron.driver.status.SenderPos;
-import io.aeron.driver.status.SubscriberPos;
-import io.aeron.driver.status.SystemCounterDescriptor;
-
-final class CountersPoller implements Agent, CountersReader.MetaData
+final class CountersPoller implements Agent
 {
-    private static final long POLL_INTERVAL_MS = 1_000;
+    static final long DEFAULT_POLL_INTERVAL_MS = 1_000;
     private final CounterValueListener counterValueListener;
+    private final PositionSampleListener positionSampleListener;
     private final CountersReader countersReader;
-    private final StringBuilder labelBuffer = new StringBuilder();
+    private final MonitoredCounters monitoredCounters = new MonitoredCounters();
     private final String label;
     private final EpochClock epochClock;
+    private final long pollIntervalMs;
+    private final long positionSampleIntervalMs;
+    private final PollerCounters pollerCounters;
     private long lastPollMs = 0L;
+    private long lastPositionSampleMs = 0L;
     private int countersRead;
 
     CountersPoller(
@@ -64,99 +60,111 @@ final class CountersPoller implements Agent, CountersReader.MetaData
         final String label, final String aeronDirectoryName,
         final EpochClock epochClock)
     {
-        this.counterValueListener = counterValueListener;
-        this.label = label;
-        this.epochClock = epochClock;
-        final File cncFile = new File(aeronDirectoryName, CNC_FILE);
+        this(counterValueListener, label, mapCountersReader(aeronDirectoryName), epochClock,
+            DEFAULT_POLL_INTERVAL_MS, 0L, null, null);
+    }
 
-        final MappedByteBuffer cncByteBuffer = mapExistingFileReadOnly(cncFile);
-        final DirectBuffer cncMetaData = createMetaDataBuffer(cncByteBuffer);
-        final int cncVersion = cncMetaData.getInt(cncVersionOffset(0));
+    CountersPoller(
+        final CounterValueListener counterValueListener,
+        final String label, final CountersReader countersReader,
+        final EpochClock epochClock)
+    {
+        this(counterValueListener, label, countersReader, epochClock, DEFAULT_POLL_INTERVAL_MS, 0L, null, null);
+    }
 
-        if (CNC_VERSION != cncVersion)
+    CountersPoller(
+        final CounterValueListener counterValueListener,
+        final String label, final String aeronDirectoryName,
+        final EpochClock epochClock,
+        final long pollIntervalMs,
+        final long positionSampleIntervalMs,
+        final PositionSampleListener positionSampleListener,
+        final PollerCounters pollerCounters)
+    {
+        this(counterValueListener, label, mapCountersReader(aeronDirectoryName), epochClock,
+            pollIntervalMs, positionSampleIntervalMs, positionSampleListener, pollerCounters);
+    }
+
+    /**
+     * Creates a poller that reads all monitored counters every {@code pollIntervalMs}. If a
+     * {@code PositionSampleListener} is supplied and {@code positionSampleIntervalMs} is positive,
+     * position counters will also be sampled at the faster rate between full polls. If {@code PollerCounters}
+     * are supplied, they are updated after each full poll.
+     */
+    CountersPoller(
+        final CounterValueListener counterValueListener,
+        final String label, final CountersReader countersReader,
+        final EpochClock epochClock,
+        final long pollIntervalMs,
+        final long positionSampleIntervalMs,
+        final PositionSampleListener positionSampleListener,
+        final PollerCounters pollerCounters)
+    {
+        if (pollIntervalMs < 1)
         {
-            throw new IllegalStateException("CnC version not supported: file version=" + cncVersion);
+            throw new IllegalArgumentException("Poll interval must be at least 1ms: " + pollIntervalMs);
         }
-
-        countersReader = new CountersReader(
-            createCountersMetaDataBuffer(cncByteBuffer, cncMetaData),
-            createCountersValuesBuffer(cncByteBuffer, cncMetaData));
+        this.counterValueListener = counterValueListener;
+        this.label = label;
+        this.epochClock = epochClock;
+        this.countersReader = countersReader;
+        this.pollIntervalMs = pollIntervalMs;
+        this.positionSampleIntervalMs = positionSampleListener == null ? 0L : positionSampleIntervalMs;
+        this.positionSampleListener = positionSampleListener;
+        this.pollerCounters = pollerCounters;
     }
 
     @Override
     public int doWork()
     {
         countersRead = 0;
-        if (epochClock.time() > lastPollMs + POLL_INTERVAL_MS)
+        final long nowMs = epochClock.time();
+        if (nowMs >= lastPollMs + pollIntervalMs)
         {
-            lastPollMs = epochClock.time();
-            countersReader.forEach(this);
+            lastPollMs = nowMs;
+            lastPositionSampleMs = nowMs;
+            final long startNs = pollerCounters == null ? 0L : System.nanoTime();
+            countersRead = monitoredCounters.refresh(countersReader.metaDataBuffer());
+            monitoredCounters.readValues(countersReader, counterValueListener);
             counterValueListener.onEndOfBatch(label);
+            if (pollerCounters != null)
+            {
+                pollerCounters.onPoll(System.nanoTime() - startNs, countersRead);
+            }
+        }
+        else if (positionSampleIntervalMs > 0 && nowMs >= lastPositionSampleMs + positionSampleIntervalMs)
+        {
+            lastPositionSampleMs = nowMs;
+            countersRead = monitoredCounters.readPositions(countersReader, label, nowMs, positionSampleListener);
         }
         return countersRead;
     }
 
     @Override
-    public void accept(final int counterId, final int typeId, final DirectBuffer keyBuffer, final String label)
+    public String roleName()
     {
-        countersRead++;
-        labelBuffer.setLength(0);
-        int streamId = -1;
-        int sessionId = -1;
-        long registrationId = -1;
-        boolean isMonitoredType = isMonitoredSystemCounter(counterId, typeId);
-        final String[] tokens = label.split(" ");
-        switch (typeId)
-        {
-            // publisher counters
-            case SenderLimit.SENDER_LIMIT_TYPE_ID:
-            case SenderPos.SENDER_POSITION_TYPE_ID:
-            case PublisherLimit.PUBLISHER_LIMIT_TYPE_ID:
-            case SenderBpe.SENDER_BPE_TYPE_ID:
-            case ReceiverHwm.RECEIVER_HWM_TYPE_ID:
-            case ReceiverPos.RECEIVER_POS_TYPE_ID:
-            case SubscriberPos.SUBSCRIBER_POSITION_TYPE_ID:
-                registrationId = Long.parseLong(tokens[1]);
-                sessionId = Integer.parseInt(tokens[2]);
-                streamId = Integer.parseInt(tokens[3]);
-                labelBuffer.append(tokens[4]);
-                isMonitoredType = true;
-                break;
-            case PublisherPos.PUBLISHER_POS_TYPE_ID:
-                registrationId = Long.parseLong(tokens[2]);
-                sessionId = Integer.parseInt(tokens[3]);
-                streamId = Integer.parseInt(tokens[4]);
-                labelBuffer.append(tokens[5]);
-                isMonitoredType = true;
-                break;
-        }
-        if (isMonitoredType)
-        {
-            final long value = countersReader.getCounterValue(counterId);
-            counterValueListener.onCounterEvent(
-                counterId, typeId, labelBuffer, sessionId, streamId, registrationId, value);
-        }
+        return "counters-poller";
     }
 
-    private static boolean isMonitoredSystemCounter(final int counterId, final int typeId)
+    private static CountersReader mapCountersReader(final String aeronDirectoryName)
     {
-        return typeId == SystemCounterDescriptor.SYSTEM_COUNTER_TYPE_ID &&
-            (
-                counterId == SystemCounterDescriptor.BYTES_SENT.id() ||
-                counterId == SystemCounterDescriptor.BYTES_RECEIVED.id() ||
-                counterId == SystemCounterDescriptor.NAK_MESSAGES_SENT.id() ||
-                counterId == SystemCounterDescriptor.NAK_MESSAGES_RECEIVED.id() ||
-                counterId == SystemCounterDescriptor.ERRORS.id() ||
-                counterId == SystemCounterDescriptor.CLIENT_TIMEOUTS.id());
-    }
+        final File cncFile = new File(aeronDirectoryName, CNC_FILE);
 
-    @Override
-    public String roleName()
-    {
-        return "counters-poller";
+        final MappedByteBuffer cncByteBuffer = mapExistingFileReadOnly(cncFile);
+        final DirectBuffer cncMetaData = createMetaDataBuffer(cncByteBuffer);
+        final int cncVersion = cncMetaData.getInt(cncVersionOffset(0));
+
+        if (CNC_VERSION != cncVersion)
+        {
+            throw new IllegalStateException("CnC version not supported: file version=" + cncVersion);
+        }
+
+        return new CountersReader(
+            createCountersMetaDataBuffer(cncByteBuffer, cncMetaData),
+            createCountersValuesBuffer(cncByteBuffer, cncMetaData));
     }
 
-    private MappedByteBuffer mapExistingFileReadOnly(final File cncFile)
+    private static MappedByteBuffer mapExistingFileReadOnly(final File cncFile)
     {
         if (!cncFile.exists())
         {
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether;
+
+import static org.agrona.concurrent.status.CountersReader.KEY_OFFSET;
+import static org.agrona.concurrent.status.CountersReader.METADATA_LENGTH;
+import static org.agrona.concurrent.status.CountersReader.RECORD_ALLOCATED;
+import static org.agrona.concurrent.status.CountersReader.RECORD_UNUSED;
+import static org.agrona.concurrent.status.CountersReader.TYPE_ID_OFFSET;
+
+import java.util.Arrays;
+
+import com.aitusoftware.aether.event.CounterValueListener;
+import com.aitusoftware.aether.event.PositionSampleListener;
+
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.status.CountersReader;
+
+import io.aeron.driver.status.PublisherLimit;
+import io.aeron.driver.status.PublisherPos;
+import io.aeron.driver.status.ReceiverHwm;
+import io.aeron.driver.status.ReceiverPos;
+import io.aeron.driver.status.SenderBpe;
+import io.aeron.driver.status.SenderLimit;
+import io.aeron.driver.status.SenderPos;
+import io.aeron.driver.status.SubscriberPos;
+import io.aeron.driver.status.SystemCounterDescriptor;
+
+/**
+ * Tracks the allocation state of the counters in a counters file between polls, so that counter keys
+ * are only decoded and classified when a counter is allocated, or a counterId is re-used.
+ * <p>
+ * The identity of an allocated counter is its typeId together with the first eight bytes of its key
+ * (the registrationId for stream counters). A counter that has been freed and re-allocated between
+ * two polls will have a different identity, and is re-classified.
+ * <p>
+ * Monitored counters are held as a dense array of (counterId, typeId, key) tuples, from which values are read.
+ */
+final class MonitoredCounters
+{
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int NOT_MONITORED = -1;
+    private static final String NO_CHANNEL = "";
+
+    private final StreamCounterDecoder streamCounterDecoder = new StreamCounterDecoder();
+    private int[] knownTypeIdByCounterId = new int[0];
+    private long[] knownKeyIdByCounterId = new long[0];
+    private boolean[] allocatedByCounterId = new boolean[0];
+    private int[] indexByCounterId = new int[0];
+
+    private int[] counterIds = new int[INITIAL_CAPACITY];
+    private int[] typeIds = new int[INITIAL_CAPACITY];
+    private long[] registrationIds = new long[INITIAL_CAPACITY];
+    private int[] sessionIds = new int[INITIAL_CAPACITY];
+    private int[] streamIds = new int[INITIAL_CAPACITY];
+    private StringBuilder[] channels = new StringBuilder[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Compares the state of each counter record with that seen on the previous call, updating the set of
+     * monitored counters.
+     *
+     * @param metaDataBuffer the counters metadata buffer
+     * @return the number of allocated counters
+     */
+    int refresh(final AtomicBuffer metaDataBuffer)
+    {
+        final int capacity = metaDataBuffer.capacity();
+        ensureCounterIdCapacity(capacity / METADATA_LENGTH);
+        int allocatedCount = 0;
+        int counterId = 0;
+        for (int recordOffset = 0; recordOffset < capacity; recordOffset += METADATA_LENGTH)
+        {
+            final int recordState = metaDataBuffer.getIntVolatile(recordOffset);
+            if (RECORD_ALLOCATED == recordState)
+            {
+                allocatedCount++;
+                final int typeId = metaDataBuffer.getInt(recordOffset + TYPE_ID_OFFSET);
+                final long keyId = metaDataBuffer.getLong(recordOffset + KEY_OFFSET);
+                if (!allocatedByCounterId[counterId] ||
+                    knownTypeIdByCounterId[counterId] != typeId ||
+                    knownKeyIdByCounterId[counterId] != keyId)
+                {
+                    onCounterAllocated(counterId, typeId, keyId, metaDataBuffer, recordOffset);
+                }
+            }
+            else if (RECORD_UNUSED == recordState)
+            {
+                break;
+            }
+            else if (allocatedByCounterId[counterId])
+            {
+                onCounterFreed(counterId);
+            }
+            counterId++;
+        }
+
+        return allocatedCount;
+    }
+
+    /**
+     * Reads the current value of each monitored counter.
+     *
+     * @param countersReader       reader for the counter values
+     * @param counterValueListener listener to receive the values
+     */
+    void readValues(final CountersReader countersReader, final CounterValueListener counterValueListener)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            final int counterId = counterIds[i];
+            counterValueListener.onCounterEvent(
+                counterId, typeIds[i], channels[i], sessionIds[i], streamIds[i], registrationIds[i],
+                countersReader.getCounterValue(counterId));
+        }
+    }
+
+    /**
+     * Reads the current value of each monitored position counter.
+     *
+     * @param countersReader         reader for the counter values
+     * @param label                  label of the MediaDriver
+     * @param timestamp              timestamp of the sample
+     * @param positionSampleListener listener to receive the values
+     * @return the number of position counters read
+     */
+    int readPositions(
+        final CountersReader countersReader,
+        final String label,
+        final long timestamp,
+        final PositionSampleListener positionSampleListener)
+    {
+        int positionsRead = 0;
+        for (int i = 0; i < size; i++)
+        {
+            final int typeId = typeIds[i];
+            if (isPositionCounter(typeId))
+            {
+                positionsRead++;
+                positionSampleListener.onPositionSample(
+                    label, timestamp, typeId, channels[i], sessionIds[i], streamIds[i], registrationIds[i],
+                    countersReader.getCounterValue(counterIds[i]));
+            }
+        }
+        positionSampleListener.onEndOfSample(label, timestamp);
+
+        return positionsRead;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    private void onCounterAllocated(
+        final int counterId, final int typeId, final long keyId,
+        final AtomicBuffer metaDataBuffer, final int recordOffset)
+    {
+        if (allocatedByCounterId[counterId])
+        {
+            onCounterFreed(counterId);
+        }
+        allocatedByCounterId[counterId] = true;
+        knownTypeIdByCounterId[counterId] = typeId;
+        knownKeyIdByCounterId[counterId] = keyId;
+
+        if (isStreamCounter(typeId))
+        {
+            streamCounterDecoder.decode(metaDataBuffer, recordOffset);
+            add(counterId, typeId, streamCounterDecoder.registrationId(), streamCounterDecoder.sessionId(),
+                streamCounterDecoder.streamId(), streamCounterDecoder.channel());
+        }
+        else if (isMonitoredSystemCounter(counterId, typeId))
+        {
+            add(counterId, typeId, -1, -1, -1, NO_CHANNEL);
+        }
+    }
+
+    private void onCounterFreed(final int counterId)
+    {
+        allocatedByCounterId[counterId] = false;
+        final int index = indexByCounterId[counterId];
+        if (index != NOT_MONITORED)
+        {
+            indexByCounterId[counterId] = NOT_MONITORED;
+            final int lastIndex = --size;
+            if (index != lastIndex)
+            {
+                final StringBuilder removedChannel = channels[index];
+                counterIds[index] = counterIds[lastIndex];
+                typeIds[index] = typeIds[lastIndex];
+                registrationIds[index] = registrationIds[lastIndex];
+                sessionIds[index] = sessionIds[lastIndex];
+                streamIds[index] = streamIds[lastIndex];
+                channels[index] = channels[lastIndex];
+                channels[lastIndex] = removedChannel;
+                indexByCounterId[counterIds[index]] = index;
+            }
+        }
+    }
+
+    private void add(
+        final int counterId, final int typeId, final long registrationId,
+        final int sessionId, final int streamId, final CharSequence channel)
+    {
+        if (size == counterIds.length)
+        {
+            final int newCapacity = size * 2;
+            counterIds = Arrays.copyOf(counterIds, newCapacity);
+            typeIds = Arrays.copyOf(typeIds, newCapacity);
+            registrationIds = Arrays.copyOf(registrationIds, newCapacity);
+            sessionIds = Arrays.copyOf(sessionIds, newCapacity);
+            streamIds = Arrays.copyOf(streamIds, newCapacity);
+            channels = Arrays.copyOf(channels, newCapacity);
+        }
+        final int index = size++;
+        counterIds[index] = counterId;
+        typeIds[index] = typeId;
+        registrationIds[index] = registrationId;
+        sessionIds[index] = sessionId;
+        streamIds[index] = streamId;
+        if (channels[index] == null)
+        {
+            channels[index] = new StringBuilder(channel.length());
+        }
+        channels[index].setLength(0);
+        channels[index].append(channel);
+        indexByCounterId[counterId] = index;
+    }
+
+    private void ensureCounterIdCapacity(final int maxCounters)
+    {
+        if (indexByCounterId.length < maxCounters)
+        {
+            final int oldLength = indexByCounterId.length;
+            knownTypeIdByCounterId = Arrays.copyOf(knownTypeIdByCounterId, maxCounters);
+            knownKeyIdByCounterId = Arrays.copyOf(knownKeyIdByCounterId, maxCounters);
+            allocatedByCounterId = Arrays.copyOf(allocatedByCounterId, maxCounters);
+            indexByCounterId = Arrays.copyOf(indexByCounterId, maxCounters);
+            Arrays.fill(indexByCounterId, oldLength, maxCounters, NOT_MONITORED);
+        }
+    }
+
+    private static boolean isStreamCounter(final int typeId)
+    {
+        switch (typeId)
+        {
+            // publisher counters
+            case SenderLimit.SENDER_LIMIT_TYPE_ID:
+            case SenderPos.SENDER_POSITION_TYPE_ID:
+            case PublisherLimit.PUBLISHER_LIMIT_TYPE_ID:
+            case SenderBpe.SENDER_BPE_TYPE_ID:
+            case PublisherPos.PUBLISHER_POS_TYPE_ID:
+            // subscriber counters
+            case ReceiverHwm.RECEIVER_HWM_TYPE_ID:
+            case ReceiverPos.RECEIVER_POS_TYPE_ID:
+            case SubscriberPos.SUBSCRIBER_POSITION_TYPE_ID:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isPositionCounter(final int typeId)
+    {
+        return typeId == PublisherPos.PUBLISHER_POS_TYPE_ID ||
+            typeId == SenderPos.SENDER_POSITION_TYPE_ID ||
+            typeId == SubscriberPos.SUBSCRIBER_POSITION_TYPE_ID;
+    }
+
+    private static boolean isMonitoredSystemCounter(final int counterId, final int typeId)
+    {
+        return typeId == SystemCounterDescriptor.SYSTEM_COUNTER_TYPE_ID &&
+            (
+                counterId == SystemCounterDescriptor.BYTES_SENT.id() ||
+                counterId == SystemCounterDescriptor.BYTES_RECEIVED.id() ||
+                counterId == SystemCounterDescriptor.NAK_MESSAGES_SENT.id() ||
+                counterId == SystemCounterDescriptor.NAK_MESSAGES_RECEIVED.id() ||
+                counterId == SystemCounterDescriptor.ERRORS.id() ||
+                counterId == SystemCounterDescriptor.CLIENT_TIMEOUTS.id());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether;
+
+import java.util.function.IntSupplier;
+
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.status.AtomicCounter;
+
+import io.aeron.Aeron;
+
+/**
+ * Aeron counters describing the work done by a {@code CountersPoller} for a single monitoring location.
+ */
+final class PollerCounters implements AutoCloseable
+{
+    static final int POLL_DURATION_COUNTER_TYPE_ID = 10008;
+    static final int COUNTERS_SCANNED_COUNTER_TYPE_ID = 10009;
+    static final int TRACKED_SESSIONS_COUNTER_TYPE_ID = 10010;
+
+    private final AtomicCounter pollDurationNs;
+    private final AtomicCounter countersScanned;
+    private final AtomicCounter trackedSessions;
+    private final IntSupplier trackedSessionCount;
+
+    PollerCounters(final Aeron aeronClient, final String label, final IntSupplier trackedSessionCount)
+    {
+        this(
+            aeronClient.addCounter(POLL_DURATION_COUNTER_TYPE_ID, "aether-poll-duration-ns: " + label),
+            aeronClient.addCounter(COUNTERS_SCANNED_COUNTER_TYPE_ID, "aether-counters-scanned: " + label),
+            aeronClient.addCounter(TRACKED_SESSIONS_COUNTER_TYPE_ID, "aether-tracked-sessions: " + label),
+            trackedSessionCount);
+    }
+
+    PollerCounters(
+        final AtomicCounter pollDurationNs,
+        final AtomicCounter countersScanned,
+        final AtomicCounter trackedSessions,
+        final IntSupplier trackedSessionCount)
+    {
+        this.pollDurationNs = pollDurationNs;
+        this.countersScanned = countersScanned;
+        this.trackedSessions = trackedSessions;
+        this.trackedSessionCount = trackedSessionCount;
+    }
+
+    /**
+     * Records the outcome of the latest full poll, including the time taken to build and deliver its snapshot.
+     */
+    void onPoll(final long durationNs, final int countersRead)
+    {
+        pollDurationNs.setOrdered(durationNs);
+        countersScanned.setOrdered(countersRead);
+        trackedSessions.setOrdered(trackedSessionCount.getAsInt());
+    }
+
+    @Override
+    public void close()
+    {
+        CloseHelper.closeAll(pollDurationNs, countersScanned, trackedSessions);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether;
+
+import static io.aeron.driver.status.StreamCounter.CHANNEL_OFFSET;
+import static io.aeron.driver.status.StreamCounter.REGISTRATION_ID_OFFSET;
+import static io.aeron.driver.status.StreamCounter.SESSION_ID_OFFSET;
+import static io.aeron.driver.status.StreamCounter.STREAM_ID_OFFSET;
+import static org.agrona.concurrent.status.CountersReader.KEY_OFFSET;
+import static org.agrona.concurrent.status.CountersReader.LABEL_OFFSET;
+import static org.agrona.concurrent.status.CountersReader.MAX_KEY_LENGTH;
+
+import org.agrona.DirectBuffer;
+
+/**
+ * Decodes the key of an Aeron stream counter (registrationId, sessionId, streamId, channel)
+ * directly from the counters metadata buffer without allocation.
+ */
+final class StreamCounterDecoder
+{
+    private static final int MAX_KEY_CHANNEL_LENGTH = MAX_KEY_LENGTH - (CHANNEL_OFFSET + Integer.BYTES);
+    private static final int STREAM_ID_TOKEN_COUNT = 3;
+
+    private final StringBuilder channel = new StringBuilder();
+    private long registrationId;
+    private int sessionId;
+    private int streamId;
+
+    /**
+     * Decodes the stream counter whose metadata record starts at the given offset.
+     *
+     * @param metaDataBuffer counters metadata buffer
+     * @param recordOffset   offset of the counter's metadata record
+     */
+    void decode(final DirectBuffer metaDataBuffer, final int recordOffset)
+    {
+        final int keyOffset = recordOffset + KEY_OFFSET;
+        registrationId = metaDataBuffer.getLong(keyOffset + REGISTRATION_ID_OFFSET);
+        sessionId = metaDataBuffer.getInt(keyOffset + SESSION_ID_OFFSET);
+        streamId = metaDataBuffer.getInt(keyOffset + STREAM_ID_OFFSET);
+
+        channel.setLength(0);
+        final int channelLength = metaDataBuffer.getInt(keyOffset + CHANNEL_OFFSET);
+        if (channelLength >= 0 && channelLength < MAX_KEY_CHANNEL_LENGTH)
+        {
+            metaDataBuffer.getStringWithoutLengthAscii(
+                keyOffset + CHANNEL_OFFSET + Integer.BYTES, channelLength, channel);
+        }
+        else
+        {
+            // channel was truncated to fit in the key, the label may hold more of it
+            decodeChannelFromLabel(metaDataBuffer, recordOffset + LABEL_OFFSET);
+        }
+    }
+
+    long registrationId()
+    {
+        return registrationId;
+    }
+
+    int sessionId()
+    {
+        return sessionId;
+    }
+
+    int streamId()
+    {
+        return streamId;
+    }
+
+    CharSequence channel()
+    {
+        return channel;
+    }
+
+    /**
+     * Label format is {@code <name>: <registrationId> <sessionId> <streamId> <channel>[ <suffix>]}.
+     */
+    private void decodeChannelFromLabel(final DirectBuffer metaDataBuffer, final int labelOffset)
+    {
+        final int labelStart = labelOffset + Integer.BYTES;
+        final int labelEnd = labelStart + metaDataBuffer.getInt(labelOffset);
+        int index = labelStart;
+        while (index < labelEnd - 1 &&
+            !(metaDataBuffer.getByte(index) == ':' && metaDataBuffer.getByte(index + 1) == ' '))
+        {
+            index++;
+        }
+        index += 2;
+
+        int tokensSkipped = 0;
+        while (index < labelEnd && tokensSkipped < STREAM_ID_TOKEN_COUNT)
+        {
+            if (metaDataBuffer.getByte(index) == ' ')
+            {
+                tokensSkipped++;
+            }
+            index++;
+        }
+
+        while (index < labelEnd)
+        {
+            final byte value = metaDataBuffer.getByte(index);
+            if (value == ' ')
+            {
+                break;
+            }
+            channel.append((char)value);
+            index++;
+        }
+    }
+}
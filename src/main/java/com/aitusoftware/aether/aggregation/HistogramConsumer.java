@@ -0,0 +1,35 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.aggregation;
+
+import java.util.concurrent.TimeUnit;
+
+import com.aitusoftware.aether.annotation.CallerOwned;
+
+public interface HistogramConsumer
+{
+    /**
+     * Called with the histogram of values recorded over a rolling window.
+     *
+     * @param duration     duration of the window
+     * @param durationUnit unit of the window duration
+     * @param histogram    values recorded in the window; copy or merge with {@link LogHistogram#add(LogHistogram)}
+     *                     to retain
+     */
+    void onAggregateHistogram(long duration, TimeUnit durationUnit, @CallerOwned LogHistogram histogram);
+}
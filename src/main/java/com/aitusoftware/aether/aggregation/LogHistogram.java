@@ -0,0 +1,162 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.aggregation;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size histogram with logarithmic buckets, each power of two divided into {@value #SUB_BUCKET_COUNT}
+ * linear sub-buckets. Values are recorded with a relative error of at most 1 / {@value #SUB_BUCKET_COUNT}, and
+ * recording does not allocate. Negative values are recorded as zero.
+ * <p>
+ * All histograms share the same bucket layout, so histograms from different sessions or hosts can be merged
+ * with {@link #add(LogHistogram)} without loss of precision.
+ */
+public final class LogHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final int[] counts = new int[BUCKET_COUNT];
+    private long totalCount;
+    private long minValue = Long.MAX_VALUE;
+    private long maxValue;
+
+    /**
+     * Records a value.
+     *
+     * @param value value to record
+     */
+    public void record(final long value)
+    {
+        final long recordedValue = Math.max(0, value);
+        counts[bucketIndex(recordedValue)]++;
+        totalCount++;
+        minValue = Math.min(minValue, recordedValue);
+        maxValue = Math.max(maxValue, recordedValue);
+    }
+
+    /**
+     * Adds the values recorded in another histogram to this histogram.
+     *
+     * @param other histogram to merge into this histogram
+     */
+    public void add(final LogHistogram other)
+    {
+        if (other.totalCount == 0)
+        {
+            return;
+        }
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        minValue = Math.min(minValue, other.minValue);
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    /**
+     * Copies the values recorded in this histogram to another histogram, replacing its contents.
+     *
+     * @param target histogram to copy into
+     */
+    public void copyInto(final LogHistogram target)
+    {
+        target.reset();
+        target.add(this);
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset()
+    {
+        if (totalCount != 0)
+        {
+            Arrays.fill(counts, 0);
+            totalCount = 0;
+            minValue = Long.MAX_VALUE;
+            maxValue = 0;
+        }
+    }
+
+    public long totalCount()
+    {
+        return totalCount;
+    }
+
+    public long minValue()
+    {
+        return totalCount == 0 ? 0 : minValue;
+    }
+
+    public long maxValue()
+    {
+        return maxValue;
+    }
+
+    /**
+     * Returns the highest value in the bucket containing the value at the given percentile, bounded by the exact
+     * minimum and maximum recorded values.
+     *
+     * @param percentile percentile in the range 0 to 100
+     * @return value at the percentile, or zero if no values have been recorded
+     */
+    public long valueAtPercentile(final double percentile)
+    {
+        if (totalCount == 0)
+        {
+            return 0;
+        }
+        final long rank = Math.max(1, (long)Math.ceil(Math.min(100.0, percentile) / 100.0 * totalCount));
+        long cumulativeCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            cumulativeCount += counts[i];
+            if (cumulativeCount >= rank)
+            {
+                return Math.max(minValue, Math.min(maxValue, highestEquivalentValue(i)));
+            }
+        }
+        return maxValue;
+    }
+
+    static int bucketIndex(final long value)
+    {
+        if (value < SUB_BUCKET_COUNT)
+        {
+            return (int)value;
+        }
+        final int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        final int subBucket = (int)((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long highestEquivalentValue(final int bucketIndex)
+    {
+        if (bucketIndex < SUB_BUCKET_COUNT)
+        {
+            return bucketIndex;
+        }
+        final int shift = bucketIndex / SUB_BUCKET_COUNT - 1;
+        final long subBucket = bucketIndex % SUB_BUCKET_COUNT;
+        return ((SUB_BUCKET_COUNT + subBucket) << shift) + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.aggregation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Comparator.comparingLong;
+
+/**
+ * Histogram of the values recorded over a rolling window.
+ * <p>
+ * The window is divided into {@value #SLOTS_PER_WINDOW} slots, each holding a {@code LogHistogram} of the values
+ * recorded during that slot, so memory use is fixed and recording does not allocate.
+ */
+final class RollingHistogram
+{
+    static final int SLOTS_PER_WINDOW = 10;
+
+    private final LogHistogram[] slots = new LogHistogram[SLOTS_PER_WINDOW];
+    private final LogHistogram aggregate = new LogHistogram();
+    private final long duration;
+    private final TimeUnit durationUnit;
+    private final long slotDurationMs;
+    private long currentSlot = -1;
+
+    RollingHistogram(final long duration, final TimeUnit durationUnit)
+    {
+        this.duration = duration;
+        this.durationUnit = durationUnit;
+        slotDurationMs = Math.max(1, durationUnit.toMillis(duration) / SLOTS_PER_WINDOW);
+        for (int i = 0; i < slots.length; i++)
+        {
+            slots[i] = new LogHistogram();
+        }
+    }
+
+    static RollingHistogram[] forBuckets(final List<RateBucket> rateBuckets)
+    {
+        final List<RateBucket> copy = new ArrayList<>(rateBuckets);
+        copy.sort(comparingLong(bucket -> bucket.getDurationUnit().toNanos(bucket.getDuration())));
+        final RollingHistogram[] rollingHistograms = new RollingHistogram[copy.size()];
+        for (int i = 0; i < copy.size(); i++)
+        {
+            final RateBucket rateBucket = copy.get(i);
+            for (int j = 0; j < i; j++)
+            {
+                if (rollingHistograms[j].duration == rateBucket.getDuration() &&
+                    rollingHistograms[j].durationUnit == rateBucket.getDurationUnit())
+                {
+                    throw new IllegalArgumentException("Bucket already defined: " +
+                        rateBucket.getDuration() + " " + rateBucket.getDurationUnit());
+                }
+            }
+            rollingHistograms[i] = new RollingHistogram(rateBucket.getDuration(), rateBucket.getDurationUnit());
+        }
+        return rollingHistograms;
+    }
+
+    long duration()
+    {
+        return duration;
+    }
+
+    TimeUnit durationUnit()
+    {
+        return durationUnit;
+    }
+
+    void record(final long epochMillis, final long value)
+    {
+        final long slot = epochMillis / slotDurationMs;
+        if (slot > currentSlot)
+        {
+            final long firstExpiredSlot = Math.max(currentSlot + 1, slot - SLOTS_PER_WINDOW + 1);
+            for (long expiredSlot = firstExpiredSlot; expiredSlot <= slot; expiredSlot++)
+            {
+                slots[(int)(expiredSlot % SLOTS_PER_WINDOW)].reset();
+            }
+            currentSlot = slot;
+        }
+        slots[(int)(currentSlot % SLOTS_PER_WINDOW)].record(value);
+    }
+
+    LogHistogram aggregate()
+    {
+        aggregate.reset();
+        for (final LogHistogram slot : slots)
+        {
+            aggregate.add(slot);
+        }
+        return aggregate;
+    }
+}
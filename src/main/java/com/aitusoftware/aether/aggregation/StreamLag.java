@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.aggregation;
+
+import java.util.List;
+
+/**
+ * Tracks the lag, in bytes, between the publishers and subscribers of a stream over rolling windows.
+ * <p>
+ * Each window is held in a fixed-size histogram, so recording does not allocate.
+ */
+public final class StreamLag
+{
+    private final RollingHistogram[] lagWindows;
+
+    public StreamLag(final List<RateBucket> windows)
+    {
+        lagWindows = RollingHistogram.forBuckets(windows);
+    }
+
+    /**
+     * Records the lag between a publisher and one of its subscribers.
+     *
+     * @param epochMillis time of the sample
+     * @param lag         publisher position minus subscriber position
+     */
+    public void lag(final long epochMillis, final long lag)
+    {
+        for (final RollingHistogram lagWindow : lagWindows)
+        {
+            lagWindow.record(epochMillis, lag);
+        }
+    }
+
+    public void consumeLag(final LagConsumer lagConsumer)
+    {
+        for (final RollingHistogram lagWindow : lagWindows)
+        {
+            final LogHistogram aggregate = lagWindow.aggregate();
+            lagConsumer.onAggregateLag(lagWindow.duration(), lagWindow.durationUnit(), aggregate.minValue(),
+                aggregate.valueAtPercentile(50.0), aggregate.valueAtPercentile(99.0), aggregate.maxValue());
+        }
+    }
+
+    public void consumeLagHistograms(final HistogramConsumer histogramConsumer)
+    {
+        for (final RollingHistogram lagWindow : lagWindows)
+        {
+            histogramConsumer.onAggregateHistogram(
+                lagWindow.duration(), lagWindow.durationUnit(), lagWindow.aggregate());
+        }
+    }
+}
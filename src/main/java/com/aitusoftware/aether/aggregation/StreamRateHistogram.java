@@ -0,0 +1,73 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.aggregation;
+
+import java.util.List;
+
+/**
+ * Records the throughput of a stream, measured between consecutive position updates, in rolling histograms.
+ * <p>
+ * Where {@code StreamRate} reports the mean rate over each window, this reports the distribution of rates, exposing
+ * bursts that a mean hides. Recording does not allocate.
+ */
+public final class StreamRateHistogram
+{
+    private static final long NO_UPDATE = Long.MIN_VALUE;
+
+    private final RollingHistogram[] rateWindows;
+    private long lastUpdate = NO_UPDATE;
+    private long lastPosition;
+
+    public StreamRateHistogram(final List<RateBucket> rateBuckets)
+    {
+        rateWindows = RollingHistogram.forBuckets(rateBuckets);
+    }
+
+    public void streamPosition(final long epochMillis, final long position)
+    {
+        if (lastUpdate != NO_UPDATE)
+        {
+            final long elapsedMs = epochMillis - lastUpdate;
+            if (elapsedMs <= 0)
+            {
+                return;
+            }
+            final long bytesPerSecond = (position - lastPosition) * 1000 / elapsedMs;
+            for (final RollingHistogram rateWindow : rateWindows)
+            {
+                rateWindow.record(epochMillis, bytesPerSecond);
+            }
+        }
+        lastUpdate = epochMillis;
+        lastPosition = position;
+    }
+
+    /**
+     * Passes the histogram of bytes-per-second rates recorded in each window to the consumer.
+     *
+     * @param histogramConsumer consumer of rate histograms
+     */
+    public void consumeRateHistograms(final HistogramConsumer histogramConsumer)
+    {
+        for (final RollingHistogram rateWindow : rateWindows)
+        {
+            histogramConsumer.onAggregateHistogram(
+                rateWindow.duration(), rateWindow.durationUnit(), rateWindow.aggregate());
+        }
+    }
+}
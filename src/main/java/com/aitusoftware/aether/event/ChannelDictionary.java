@@ -0,0 +1,146 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+import java.util.Arrays;
+
+import org.agrona.collections.Hashing;
+
+/**
+ * Interns channels, assigning each distinct channel a dense integer id.
+ * <p>
+ * Lookups by {@code CharSequence} do not allocate; a {@code String} is only created the first time a channel is seen.
+ */
+public final class ChannelDictionary
+{
+    /**
+     * Returned by {@link #find(CharSequence)} if the channel has not been interned.
+     */
+    public static final int NULL_CHANNEL_ID = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] channelById = new String[INITIAL_CAPACITY];
+    private int[] hashById = new int[INITIAL_CAPACITY];
+    private int[] idBySlot = newSlots(INITIAL_CAPACITY * 2);
+    private int size;
+
+    /**
+     * Returns the id of the channel, interning the channel if it has not been seen before.
+     *
+     * @param channel the channel
+     * @return the channel id
+     */
+    public int idOf(final CharSequence channel)
+    {
+        final int hash = CharSequenceUtil.hash(channel);
+        final int existingId = find(channel, hash);
+        if (existingId != NULL_CHANNEL_ID)
+        {
+            return existingId;
+        }
+
+        if (size == channelById.length)
+        {
+            channelById = Arrays.copyOf(channelById, size * 2);
+            hashById = Arrays.copyOf(hashById, size * 2);
+            rehash(idBySlot.length * 2);
+        }
+        final int id = size++;
+        channelById[id] = channel.toString();
+        hashById[id] = hash;
+        insert(id, hash);
+
+        return id;
+    }
+
+    /**
+     * Returns the id of the channel, or {@link #NULL_CHANNEL_ID} if the channel has not been interned.
+     *
+     * @param channel the channel
+     * @return the channel id
+     */
+    public int find(final CharSequence channel)
+    {
+        return find(channel, CharSequenceUtil.hash(channel));
+    }
+
+    /**
+     * Returns the channel with the given id.
+     *
+     * @param channelId the channel id
+     * @return the channel
+     */
+    public String channel(final int channelId)
+    {
+        return channelById[channelId];
+    }
+
+    /**
+     * Returns the number of interned channels.
+     *
+     * @return the number of interned channels
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    private int find(final CharSequence channel, final int hash)
+    {
+        final int mask = idBySlot.length - 1;
+        int slot = Hashing.hash(hash, mask);
+        int id;
+        while ((id = idBySlot[slot]) != NULL_CHANNEL_ID)
+        {
+            if (hashById[id] == hash && CharSequenceUtil.charSequencesEqual(channelById[id], channel))
+            {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return NULL_CHANNEL_ID;
+    }
+
+    private void insert(final int id, final int hash)
+    {
+        final int mask = idBySlot.length - 1;
+        int slot = Hashing.hash(hash, mask);
+        while (idBySlot[slot] != NULL_CHANNEL_ID)
+        {
+            slot = (slot + 1) & mask;
+        }
+        idBySlot[slot] = id;
+    }
+
+    private void rehash(final int slotCount)
+    {
+        idBySlot = newSlots(slotCount);
+        for (int id = 0; id < size; id++)
+        {
+            insert(id, hashById[id]);
+        }
+    }
+
+    private static int[] newSlots(final int slotCount)
+    {
+        final int[] slots = new int[slotCount];
+        Arrays.fill(slots, NULL_CHANNEL_ID);
+        return slots;
+    }
+}
@@ -40,4 +40,15 @@ final class CharSequenceUtil
 
         return true;
     }
+
+    static int hash(final CharSequence charSequence)
+    {
+        int hashCode = 0;
+        for (int i = 0; i < charSequence.length(); i++)
+        {
+            hashCode = 31 * hashCode + charSequence.charAt(i);
+        }
+
+        return hashCode;
+    }
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.aitusoftware.aether.annotation.CallerOwned;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+/**
+ * An implementation of {@code CounterSnapshotListener} that retains only the most recent snapshot received for
+ * each label, so that a consumer can pull the latest view of each MediaDriver on its own schedule without
+ * processing superseded snapshots.
+ * <p>
+ * Snapshots are copied into storage that is reused for each label, so memory is bounded by the number of labels
+ * and the number of sessions in their snapshots. Snapshots may be received on one thread and polled on another;
+ * each label has three buffers, owned in turn by the receiving thread, the polling thread and a hand-off slot,
+ * so that neither thread waits for the other and the polling thread always sees a complete snapshot.
+ */
+public final class ConflatingSnapshotCache implements CounterSnapshotListener
+{
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH_FLAG = 4;
+
+    private final Map<String, LabelSnapshots> snapshotsByLabel = new HashMap<>();
+    private volatile LabelSnapshots[] labelSnapshots = new LabelSnapshots[0];
+    private volatile long conflatedSnapshots;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onSnapshot(
+        final String label,
+        final long timestamp,
+        @CallerOwned final List<PublisherCounterSet> publisherCounters,
+        @CallerOwned final List<SubscriberCounterSet> subscriberCounters,
+        @CallerOwned final SystemCounters systemCounters)
+    {
+        LabelSnapshots snapshots = snapshotsByLabel.get(label);
+        if (snapshots == null)
+        {
+            snapshots = new LabelSnapshots(label);
+            snapshotsByLabel.put(label, snapshots);
+            final LabelSnapshots[] existing = labelSnapshots;
+            final LabelSnapshots[] updated = Arrays.copyOf(existing, existing.length + 1);
+            updated[existing.length] = snapshots;
+            labelSnapshots = updated;
+        }
+        if (snapshots.publish(timestamp, publisherCounters, subscriberCounters, systemCounters))
+        {
+            conflatedSnapshots++;
+        }
+    }
+
+    /**
+     * Delivers the latest snapshot of each label that has been received since the previous poll. Must only be
+     * called from a single thread.
+     *
+     * @param counterSnapshotListener listener to receive the latest snapshots
+     * @return number of snapshots delivered
+     */
+    public int poll(final CounterSnapshotListener counterSnapshotListener)
+    {
+        final LabelSnapshots[] snapshots = labelSnapshots;
+        int delivered = 0;
+        for (final LabelSnapshots labelSnapshot : snapshots)
+        {
+            if (labelSnapshot.poll(counterSnapshotListener))
+            {
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * Returns the number of snapshots that were replaced by a later snapshot before they were polled.
+     *
+     * @return the number of conflated snapshots
+     */
+    public long conflatedSnapshots()
+    {
+        return conflatedSnapshots;
+    }
+
+    private static final class LabelSnapshots
+    {
+        private final Snapshot[] buffers = new Snapshot[3];
+        private final AtomicInteger handOff = new AtomicInteger(1);
+        private final String label;
+        private int publishing = 0;
+        private int polling = 2;
+
+        LabelSnapshots(final String label)
+        {
+            this.label = label;
+            for (int i = 0; i < buffers.length; i++)
+            {
+                buffers[i] = new Snapshot();
+            }
+        }
+
+        boolean publish(
+            final long timestamp,
+            final List<PublisherCounterSet> publisherCounters,
+            final List<SubscriberCounterSet> subscriberCounters,
+            final SystemCounters systemCounters)
+        {
+            buffers[publishing].copyFrom(timestamp, publisherCounters, subscriberCounters, systemCounters);
+            final int previous = handOff.getAndSet(publishing | FRESH_FLAG);
+            publishing = previous & INDEX_MASK;
+            return (previous & FRESH_FLAG) != 0;
+        }
+
+        boolean poll(final CounterSnapshotListener counterSnapshotListener)
+        {
+            if ((handOff.get() & FRESH_FLAG) == 0)
+            {
+                return false;
+            }
+            polling = handOff.getAndSet(polling) & INDEX_MASK;
+            final Snapshot snapshot = buffers[polling];
+            counterSnapshotListener.onSnapshot(label, snapshot.timestamp,
+                snapshot.publisherCounters, snapshot.subscriberCounters, snapshot.systemCounters);
+            return true;
+        }
+    }
+
+    private static final class Snapshot
+    {
+        private final List<PublisherCounterSet> publisherCounters = new ArrayList<>();
+        private final List<SubscriberCounterSet> subscriberCounters = new ArrayList<>();
+        private final List<PublisherCounterSet> publisherCounterPool = new ArrayList<>();
+        private final List<SubscriberCounterSet> subscriberCounterPool = new ArrayList<>();
+        private final SystemCounters systemCounters = new SystemCounters();
+        private long timestamp;
+
+        void copyFrom(
+            final long timestamp,
+            final List<PublisherCounterSet> publisherCounters,
+            final List<SubscriberCounterSet> subscriberCounters,
+            final SystemCounters systemCounters)
+        {
+            this.timestamp = timestamp;
+            systemCounters.copyInto(this.systemCounters);
+            this.publisherCounters.clear();
+            for (int i = 0; i < publisherCounters.size(); i++)
+            {
+                if (i == publisherCounterPool.size())
+                {
+                    publisherCounterPool.add(new PublisherCounterSet());
+                }
+                final PublisherCounterSet copy = publisherCounterPool.get(i);
+                publisherCounters.get(i).copyInto(copy);
+                this.publisherCounters.add(copy);
+            }
+            this.subscriberCounters.clear();
+            for (int i = 0; i < subscriberCounters.size(); i++)
+            {
+                if (i == subscriberCounterPool.size())
+                {
+                    subscriberCounterPool.add(new SubscriberCounterSet());
+                }
+                final SubscriberCounterSet copy = subscriberCounterPool.get(i);
+                subscriberCounters.get(i).copyInto(copy);
+                this.subscriberCounters.add(copy);
+            }
+        }
+    }
+}
@@ -17,10 +17,14 @@
  */
 package com.aitusoftware.aether.event;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+import com.aitusoftware.aether.aggregation.RateBucket;
+import com.aitusoftware.aether.aggregation.StreamLag;
 import com.aitusoftware.aether.annotation.CallerOwned;
 import com.aitusoftware.aether.model.ChannelSessionKey;
 import com.aitusoftware.aether.model.PublisherCounterSet;
@@ -31,7 +35,11 @@ import org.agrona.collections.Long2LongHashMap;
 
 public final class ConsolePrinter implements CounterSnapshotListener
 {
+    private static final List<RateBucket> LAG_WINDOWS = Arrays.asList(
+        new RateBucket(10, TimeUnit.SECONDS), new RateBucket(1, TimeUnit.MINUTES));
+
     private final SystemSnapshot systemSnapshot = new SystemSnapshot();
+    private final LagMonitor lagMonitor = new LagMonitor(LAG_WINDOWS);
 
     @Override
     public void onSnapshot(
@@ -42,6 +50,7 @@ public final class ConsolePrinter implements CounterSnapshotListener
         @CallerOwned final SystemCounters systemCounters)
     {
         systemSnapshot.onSnapshot(label, timestamp, publisherCounters, subscriberCounters, systemCounters);
+        lagMonitor.onSnapshot(label, timestamp, publisherCounters, subscriberCounters, systemCounters);
         systemSnapshot.getSystemCounters().forEach((contextLabel, counters) ->
         {
             System.out.printf("===== System counters for \"%s\" =====%n", contextLabel);
@@ -58,6 +67,15 @@ public final class ConsolePrinter implements CounterSnapshotListener
         for (final StreamKey streamKey : connectionsByStream.keySet())
         {
             System.out.printf("==== %s/%d ====%n", streamKey.getChannel(), streamKey.getStreamId());
+            final StreamLag streamLag = lagMonitor.streamLags().get(streamKey);
+            if (streamLag != null)
+            {
+                streamLag.consumeLag((duration, durationUnit, minLag, medianLag, p99Lag, maxLag) ->
+                {
+                    System.out.printf("| lag (%d %s): min %d, p50 %d, p99 %d, max %d%n",
+                        duration, durationUnit, minLag, medianLag, p99Lag, maxLag);
+                });
+            }
             final Set<Map.Entry<ChannelSessionKey, Set<ChannelSessionKey>>> sources =
                 connectionsByStream.get(streamKey).entrySet();
             for (final Map.Entry<ChannelSessionKey, Set<ChannelSessionKey>> source : sources)
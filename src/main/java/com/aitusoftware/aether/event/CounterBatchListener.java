@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+import com.aitusoftware.aether.annotation.CallerOwned;
+import com.aitusoftware.aether.model.PublisherBatch;
+import com.aitusoftware.aether.model.SubscriberBatch;
+import com.aitusoftware.aether.model.SystemCounters;
+
+/**
+ * Defines a listener to snapshots of a MediaDriver's counters, presented as structure-of-arrays batches.
+ * <p>
+ * This is an alternative to {@code CounterSnapshotListener} for consumers that process all sessions in a snapshot
+ * with a loop over primitive arrays, rather than through a list of counter sets.
+ */
+public interface CounterBatchListener
+{
+    /**
+     * Called when a complete snapshot of the counters has been built.
+     *
+     * @param label label of the MediaDriver
+     * @param timestamp timestamp of the snapshot
+     * @param publishers counters describing publisher state
+     * @param subscribers counters describing subscriber state
+     * @param systemCounters counters describing system state
+     */
+    void onBatch(
+        String label,
+        long timestamp,
+        @CallerOwned PublisherBatch publishers,
+        @CallerOwned SubscriberBatch subscribers,
+        @CallerOwned SystemCounters systemCounters);
+}
@@ -18,9 +18,14 @@
 package com.aitusoftware.aether.event;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 import com.aitusoftware.aether.annotation.CallerOwned;
+import com.aitusoftware.aether.model.ChannelType;
+import com.aitusoftware.aether.model.PublisherBatch;
+import com.aitusoftware.aether.model.SubscriberBatch;
 import com.aitusoftware.aether.model.SystemCounters;
 import com.aitusoftware.aether.model.PublisherCounterSet;
 import com.aitusoftware.aether.model.SubscriberCounterSet;
@@ -42,11 +47,26 @@ public final class CounterEventHandler implements CounterValueListener
     private final CounterRepository<PublisherCounterSet> publisherCounterRepository;
     private final CounterRepository<SubscriberCounterSet> subscriberCounterRepository;
     private final CounterSnapshotListener counterSnapshotListener;
+    private final CounterBatchListener counterBatchListener;
     private final EpochClock epochClock;
+    private final long sessionTimeoutMs;
+    private final SessionEvictionListener sessionEvictionListener;
+    private final Consumer<PublisherCounterSet> publisherEvictionHandler = this::onPublisherEvicted;
+    private final Consumer<SubscriberCounterSet> subscriberEvictionHandler = this::onSubscriberEvicted;
     private final List<PublisherCounterSet> publisherCounters = new ArrayList<>();
     private final List<SubscriberCounterSet> subscriberCounters = new ArrayList<>();
+    private final Consumer<PublisherCounterSet> addPublisherCounters = publisherCounters::add;
+    private final Consumer<SubscriberCounterSet> addSubscriberCounters = subscriberCounters::add;
+    private final PublisherBatch publisherBatch = new PublisherBatch();
+    private final SubscriberBatch subscriberBatch = new SubscriberBatch();
+    private final Consumer<PublisherCounterSet> addToPublisherBatch = publisherBatch::add;
+    private final Consumer<SubscriberCounterSet> addToSubscriberBatch = subscriberBatch::add;
     private final StringBuilder strippedChannel = new StringBuilder();
     private final SystemCounters systemCounters = new SystemCounters();
+    private int[] cachedTypeIdByCounterId = new int[0];
+    private long[] cachedRegistrationIdByCounterId = new long[0];
+    private int[] cachedChannelIdByCounterId = new int[0];
+    private String currentLabel;
 
     public CounterEventHandler(
         final CounterRepository<PublisherCounterSet> publisherCounterRepository,
@@ -54,10 +74,65 @@ public final class CounterEventHandler implements CounterValueListener
         final CounterSnapshotListener counterSnapshotListener,
         final EpochClock epochClock)
     {
+        this(publisherCounterRepository, subscriberCounterRepository, counterSnapshotListener, epochClock,
+            0L, null);
+    }
+
+    /**
+     * Constructs a handler that removes sessions once they are no longer reported.
+     *
+     * @param publisherCounterRepository  repository of publisher counters
+     * @param subscriberCounterRepository repository of subscriber counters
+     * @param counterSnapshotListener     listener for snapshots
+     * @param epochClock                  clock used to timestamp snapshots
+     * @param sessionTimeoutMs            time after which a session missing from a batch is removed,
+     *                                    or zero to remove it from the first batch it is missing from
+     * @param sessionEvictionListener     optional listener notified of removed sessions, may be null
+     */
+    public CounterEventHandler(
+        final CounterRepository<PublisherCounterSet> publisherCounterRepository,
+        final CounterRepository<SubscriberCounterSet> subscriberCounterRepository,
+        final CounterSnapshotListener counterSnapshotListener,
+        final EpochClock epochClock,
+        final long sessionTimeoutMs,
+        final SessionEvictionListener sessionEvictionListener)
+    {
+        this(publisherCounterRepository, subscriberCounterRepository, counterSnapshotListener, null, epochClock,
+            sessionTimeoutMs, sessionEvictionListener);
+    }
+
+    /**
+     * Constructs a handler that delivers snapshots as lists of counter sets, as columnar batches, or both.
+     *
+     * @param publisherCounterRepository  repository of publisher counters
+     * @param subscriberCounterRepository repository of subscriber counters
+     * @param counterSnapshotListener     optional listener for snapshots as lists, may be null
+     * @param counterBatchListener        optional listener for snapshots as batches, may be null
+     * @param epochClock                  clock used to timestamp snapshots
+     * @param sessionTimeoutMs            time after which a session missing from a batch is removed,
+     *                                    or zero to remove it from the first batch it is missing from
+     * @param sessionEvictionListener     optional listener notified of removed sessions, may be null
+     */
+    public CounterEventHandler(
+        final CounterRepository<PublisherCounterSet> publisherCounterRepository,
+        final CounterRepository<SubscriberCounterSet> subscriberCounterRepository,
+        final CounterSnapshotListener counterSnapshotListener,
+        final CounterBatchListener counterBatchListener,
+        final EpochClock epochClock,
+        final long sessionTimeoutMs,
+        final SessionEvictionListener sessionEvictionListener)
+    {
+        if (sessionTimeoutMs < 0)
+        {
+            throw new IllegalArgumentException("Session timeout must not be negative: " + sessionTimeoutMs);
+        }
         this.publisherCounterRepository = publisherCounterRepository;
         this.subscriberCounterRepository = subscriberCounterRepository;
         this.counterSnapshotListener = counterSnapshotListener;
+        this.counterBatchListener = counterBatchListener;
         this.epochClock = epochClock;
+        this.sessionTimeoutMs = sessionTimeoutMs;
+        this.sessionEvictionListener = sessionEvictionListener;
     }
 
     @Override
@@ -65,48 +140,25 @@ public final class CounterEventHandler implements CounterValueListener
         final int counterId, final int counterTypeId, @CallerOwned final CharSequence channel,
         final int sessionId, final int streamId, final long registrationId, final long value)
     {
-        strippedChannel.setLength(0);
-        for (int i = 0; i < channel.length(); i++)
-        {
-            if (channel.charAt(i) == '|')
-            {
-                break;
-            }
-            strippedChannel.append(channel.charAt(i));
-        }
-        if (strippedChannel.indexOf("aeron:ipc") == 0)
-        {
-            strippedChannel.setLength("aeron:ipc".length());
-        }
         switch (counterTypeId)
         {
             // publisher counters
             case SenderLimit.SENDER_LIMIT_TYPE_ID:
-                getPublisherCounters(strippedChannel, sessionId, streamId).senderLimit(value);
-                break;
             case SenderPos.SENDER_POSITION_TYPE_ID:
-                getPublisherCounters(strippedChannel, sessionId, streamId).senderPosition(value);
-                break;
             case PublisherPos.PUBLISHER_POS_TYPE_ID:
-                getPublisherCounters(strippedChannel, sessionId, streamId).publisherPosition(value);
-                break;
             case PublisherLimit.PUBLISHER_LIMIT_TYPE_ID:
-                getPublisherCounters(strippedChannel, sessionId, streamId).publisherLimit(value);
-                break;
             case SenderBpe.SENDER_BPE_TYPE_ID:
-                getPublisherCounters(strippedChannel, sessionId, streamId).backPressureEvents(value);
+                onPublisherCounter(
+                    getPublisherCounters(counterId, counterTypeId, registrationId, channel, sessionId, streamId),
+                    counterTypeId, value);
                 break;
             // subscriber counters
             case ReceiverHwm.RECEIVER_HWM_TYPE_ID:
-                getSubscriberCounters(strippedChannel, sessionId, streamId)
-                    .receiverHighWaterMark(value);
-                break;
             case ReceiverPos.RECEIVER_POS_TYPE_ID:
-                getSubscriberCounters(strippedChannel, sessionId, streamId).receiverPosition(value);
-                break;
             case SubscriberPos.SUBSCRIBER_POSITION_TYPE_ID:
-                getSubscriberCounters(strippedChannel, sessionId, streamId)
-                    .subscriberPosition(registrationId, value);
+                onSubscriberCounter(
+                    getSubscriberCounters(counterId, counterTypeId, registrationId, channel, sessionId, streamId),
+                    counterTypeId, registrationId, value);
                 break;
             //system counters
             case SystemCounterDescriptor.SYSTEM_COUNTER_TYPE_ID:
@@ -137,27 +189,169 @@ public final class CounterEventHandler implements CounterValueListener
         }
     }
 
+    private static void onPublisherCounter(
+        final PublisherCounterSet publisherCounters, final int counterTypeId, final long value)
+    {
+        switch (counterTypeId)
+        {
+            case SenderLimit.SENDER_LIMIT_TYPE_ID:
+                publisherCounters.senderLimit(value);
+                break;
+            case SenderPos.SENDER_POSITION_TYPE_ID:
+                publisherCounters.senderPosition(value);
+                break;
+            case PublisherPos.PUBLISHER_POS_TYPE_ID:
+                publisherCounters.publisherPosition(value);
+                break;
+            case PublisherLimit.PUBLISHER_LIMIT_TYPE_ID:
+                publisherCounters.publisherLimit(value);
+                break;
+            case SenderBpe.SENDER_BPE_TYPE_ID:
+                publisherCounters.backPressureEvents(value);
+                break;
+        }
+    }
+
+    private static void onSubscriberCounter(
+        final SubscriberCounterSet subscriberCounters, final int counterTypeId,
+        final long registrationId, final long value)
+    {
+        switch (counterTypeId)
+        {
+            case ReceiverHwm.RECEIVER_HWM_TYPE_ID:
+                subscriberCounters.receiverHighWaterMark(value);
+                break;
+            case ReceiverPos.RECEIVER_POS_TYPE_ID:
+                subscriberCounters.receiverPosition(value);
+                break;
+            case SubscriberPos.SUBSCRIBER_POSITION_TYPE_ID:
+                subscriberCounters.subscriberPosition(registrationId, value);
+                break;
+        }
+    }
+
     @Override
     public void onEndOfBatch(final String label)
     {
-        publisherCounters.clear();
-        subscriberCounters.clear();
-        publisherCounterRepository.forEach(publisherCounters::add);
-        subscriberCounterRepository.forEach(subscriberCounters::add);
+        final long timestamp = epochClock.time();
+        currentLabel = label;
+        publisherCounterRepository.removeStale(timestamp, sessionTimeoutMs, publisherEvictionHandler);
+        subscriberCounterRepository.removeStale(timestamp, sessionTimeoutMs, subscriberEvictionHandler);
+
+        if (counterSnapshotListener != null)
+        {
+            publisherCounters.clear();
+            subscriberCounters.clear();
+            publisherCounterRepository.forEach(addPublisherCounters);
+            subscriberCounterRepository.forEach(addSubscriberCounters);
+
+            counterSnapshotListener.onSnapshot(label, timestamp,
+                publisherCounters, subscriberCounters, systemCounters);
+        }
+        if (counterBatchListener != null)
+        {
+            publisherBatch.clear();
+            subscriberBatch.clear();
+            publisherCounterRepository.forEach(addToPublisherBatch);
+            subscriberCounterRepository.forEach(addToSubscriberBatch);
 
-        counterSnapshotListener.onSnapshot(label, epochClock.time(),
-            publisherCounters, subscriberCounters, systemCounters);
+            counterBatchListener.onBatch(label, timestamp, publisherBatch, subscriberBatch, systemCounters);
+        }
+    }
+
+    /**
+     * Returns the number of publisher and subscriber sessions currently tracked.
+     *
+     * @return the number of tracked sessions
+     */
+    public int trackedSessionCount()
+    {
+        return publisherCounterRepository.size() + subscriberCounterRepository.size();
+    }
+
+    private void onPublisherEvicted(final PublisherCounterSet publisherCounterSet)
+    {
+        if (sessionEvictionListener != null)
+        {
+            sessionEvictionListener.onSessionEvicted(currentLabel, ChannelType.PUBLISHER,
+                publisherCounterSet.channel(), publisherCounterSet.streamId(), publisherCounterSet.sessionId());
+        }
+    }
+
+    private void onSubscriberEvicted(final SubscriberCounterSet subscriberCounterSet)
+    {
+        if (sessionEvictionListener != null)
+        {
+            sessionEvictionListener.onSessionEvicted(currentLabel, ChannelType.SUBSCRIBER,
+                subscriberCounterSet.channel(), subscriberCounterSet.streamId(), subscriberCounterSet.sessionId());
+        }
     }
 
     private PublisherCounterSet getPublisherCounters(
+        final int counterId, final int counterTypeId, final long registrationId,
         final CharSequence channel, final int sessionId, final int streamId)
     {
-        return publisherCounterRepository.getOrCreate(channel, sessionId, streamId);
+        final int channelId = channelId(
+            publisherCounterRepository, counterId, counterTypeId, registrationId, channel);
+        return publisherCounterRepository.getOrCreate(channelId, sessionId, streamId);
     }
 
     private SubscriberCounterSet getSubscriberCounters(
+        final int counterId, final int counterTypeId, final long registrationId,
         final CharSequence channel, final int sessionId, final int streamId)
     {
-        return subscriberCounterRepository.getOrCreate(channel, sessionId, streamId);
+        final int channelId = channelId(
+            subscriberCounterRepository, counterId, counterTypeId, registrationId, channel);
+        return subscriberCounterRepository.getOrCreate(channelId, sessionId, streamId);
+    }
+
+    /**
+     * The channel of a counter does not change while it is allocated, so the channel id is cached by counterId,
+     * and only re-computed if the counterId is re-used for a different counter.
+     */
+    private int channelId(
+        final CounterRepository<?> repository, final int counterId, final int counterTypeId,
+        final long registrationId, final CharSequence channel)
+    {
+        if (counterId >= cachedChannelIdByCounterId.length)
+        {
+            final int oldLength = cachedChannelIdByCounterId.length;
+            final int newLength = Math.max(counterId + 1, oldLength * 2);
+            cachedTypeIdByCounterId = Arrays.copyOf(cachedTypeIdByCounterId, newLength);
+            cachedRegistrationIdByCounterId = Arrays.copyOf(cachedRegistrationIdByCounterId, newLength);
+            cachedChannelIdByCounterId = Arrays.copyOf(cachedChannelIdByCounterId, newLength);
+            Arrays.fill(cachedChannelIdByCounterId, oldLength, newLength, ChannelDictionary.NULL_CHANNEL_ID);
+        }
+        else if (cachedChannelIdByCounterId[counterId] != ChannelDictionary.NULL_CHANNEL_ID &&
+            cachedTypeIdByCounterId[counterId] == counterTypeId &&
+            cachedRegistrationIdByCounterId[counterId] == registrationId)
+        {
+            return cachedChannelIdByCounterId[counterId];
+        }
+
+        final int channelId = repository.channelId(stripChannel(channel));
+        cachedTypeIdByCounterId[counterId] = counterTypeId;
+        cachedRegistrationIdByCounterId[counterId] = registrationId;
+        cachedChannelIdByCounterId[counterId] = channelId;
+
+        return channelId;
+    }
+
+    private CharSequence stripChannel(final CharSequence channel)
+    {
+        strippedChannel.setLength(0);
+        for (int i = 0; i < channel.length(); i++)
+        {
+            if (channel.charAt(i) == '|')
+            {
+                break;
+            }
+            strippedChannel.append(channel.charAt(i));
+        }
+        if (strippedChannel.indexOf("aeron:ipc") == 0)
+        {
+            strippedChannel.setLength("aeron:ipc".length());
+        }
+        return strippedChannel;
     }
 }
\ No newline at end of file
@@ -17,94 +17,233 @@
  */
 package com.aitusoftware.aether.event;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import com.aitusoftware.aether.model.SessionKeyed;
 
+import org.agrona.collections.Hashing;
+import org.agrona.collections.Long2ObjectHashMap;
+
+/**
+ * Stores counter sets keyed by channel, sessionId and streamId.
+ * <p>
+ * Channels are interned to an integer id, and counter sets are held in open-addressing maps keyed by the
+ * composite of sessionId and streamId, one map per channel id. Lookups do not allocate.
+ * <p>
+ * Each call to {@link #removeStale(long, long, Consumer)} closes a generation; counter sets that were not
+ * looked up during the generation, and have not been seen within the session timeout, are removed.
+ *
+ * @param <T> the type of counter set
+ */
 public final class CounterRepository<T extends SessionKeyed>
 {
-    private final Map<Key, T> countersMap = new HashMap<>();
+    private final ChannelDictionary channelDictionary = new ChannelDictionary();
     private final Supplier<T> factory;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Long2ObjectHashMap<Entry<T>>[] countersByChannelId = new Long2ObjectHashMap[8];
+    private long generation;
+    private int size;
 
     public CounterRepository(final Supplier<T> factory)
     {
         this.factory = factory;
     }
 
-    T getOrCreate(
-        final CharSequence channel, final int sessionId, final int streamId)
+    /**
+     * Returns the interned id of the channel, to be used in calls to {@link #getOrCreate(int, int, int)}.
+     *
+     * @param channel the channel
+     * @return the channel id
+     */
+    public int channelId(final CharSequence channel)
     {
-        final Key key = new Key().set(channel, sessionId, streamId);
-        T counters = countersMap.get(key);
-        if (counters == null)
-        {
-            counters = factory.get();
-            counters.reset(channel, sessionId, streamId);
-            countersMap.put(key, counters);
-        }
-        return counters;
+        return channelDictionary.idOf(channel);
     }
 
-    void forEach(final Consumer<T> consumer)
+    /**
+     * Returns the counter set for the session, creating it if it does not exist, and marks it as seen in the
+     * current generation.
+     *
+     * @param channel   the channel
+     * @param sessionId the sessionId
+     * @param streamId  the streamId
+     * @return the counter set
+     */
+    public T getOrCreate(
+        final CharSequence channel, final int sessionId, final int streamId)
     {
-        countersMap.values().forEach(consumer);
+        return getOrCreate(channelId(channel), sessionId, streamId);
     }
 
-    private static final class Key
+    /**
+     * Returns the counter set for the session, creating it if it does not exist, and marks it as seen in the
+     * current generation.
+     *
+     * @param channelId the channel id returned by {@link #channelId(CharSequence)}
+     * @param sessionId the sessionId
+     * @param streamId  the streamId
+     * @return the counter set
+     */
+    public T getOrCreate(
+        final int channelId, final int sessionId, final int streamId)
     {
-        private StringBuilder channel = new StringBuilder();
-        private int sessionId;
-        private int streamId;
-
-        Key set(final CharSequence channel, final int sessionId, final int streamId)
+        final Long2ObjectHashMap<Entry<T>> counters = countersForChannel(channelId);
+        final long sessionKey = Hashing.compoundKey(sessionId, streamId);
+        Entry<T> entry = counters.get(sessionKey);
+        if (entry == null)
         {
-            this.channel.setLength(0);
-            this.channel.append(channel);
-            this.sessionId = sessionId;
-            this.streamId = streamId;
+            final T counterSet = factory.get();
+            counterSet.reset(channelDictionary.channel(channelId), sessionId, streamId);
+            entry = new Entry<>(counterSet);
+            counters.put(sessionKey, entry);
+            size++;
+        }
+        entry.lastSeenGeneration = generation;
+        return entry.counterSet;
+    }
 
-            return this;
+    /**
+     * Removes the counter set for the session, if it exists.
+     *
+     * @param channel   the channel
+     * @param sessionId the sessionId
+     * @param streamId  the streamId
+     * @return the removed counter set, or null if there was no counter set for the session
+     */
+    public T remove(final CharSequence channel, final int sessionId, final int streamId)
+    {
+        final int channelId = channelDictionary.find(channel);
+        if (channelId == ChannelDictionary.NULL_CHANNEL_ID || countersByChannelId[channelId] == null)
+        {
+            return null;
         }
+        final Entry<T> entry = countersByChannelId[channelId].remove(Hashing.compoundKey(sessionId, streamId));
+        if (entry == null)
+        {
+            return null;
+        }
+        size--;
 
-        @Override
-        public boolean equals(final Object o)
+        return entry.counterSet;
+    }
+
+    /**
+     * Removes all counter sets. Interned channel ids are retained.
+     */
+    public void clear()
+    {
+        for (int i = 0, length = channelDictionary.size(); i < length; i++)
         {
-            if (this == o)
+            if (countersByChannelId[i] != null)
             {
-                return true;
+                countersByChannelId[i].clear();
             }
-            if (o == null || getClass() != o.getClass())
-            {
-                return false;
-            }
-            final Key key = (Key)o;
-            return sessionId == key.sessionId &&
-                streamId == key.streamId &&
-                CharSequenceUtil.charSequencesEqual(channel, key.channel);
         }
+        size = 0;
+    }
 
-        @Override
-        public int hashCode()
+    /**
+     * Passes each counter set to the supplied consumer.
+     *
+     * @param consumer the consumer
+     */
+    public void forEach(final Consumer<T> consumer)
+    {
+        final Long2ObjectHashMap<Entry<T>>[] countersByChannelId = this.countersByChannelId;
+        for (int i = 0, length = channelDictionary.size(); i < length; i++)
         {
-            int hashCode = hashCharSequence(channel);
-            hashCode = 31 * hashCode + sessionId;
-            hashCode = 31 * hashCode + streamId;
-            return hashCode;
+            final Long2ObjectHashMap<Entry<T>> counters = countersByChannelId[i];
+            if (counters != null && !counters.isEmpty())
+            {
+                for (final Entry<T> entry : counters.values())
+                {
+                    consumer.accept(entry.counterSet);
+                }
+            }
         }
+    }
 
-        private int hashCharSequence(final CharSequence charSequence)
+    /**
+     * Removes counter sets that were not looked up since the previous call, and have not been seen for at least
+     * {@code sessionTimeoutMs}, then starts a new generation.
+     *
+     * @param nowMs            the current time
+     * @param sessionTimeoutMs the time after which an unseen session is removed, or zero to remove a session as
+     *                         soon as it is missing from a batch
+     * @param evictionHandler  notified of each removed counter set before it is discarded
+     * @return the number of removed counter sets
+     */
+    public int removeStale(final long nowMs, final long sessionTimeoutMs, final Consumer<? super T> evictionHandler)
+    {
+        final long generation = this.generation;
+        final Long2ObjectHashMap<Entry<T>>[] countersByChannelId = this.countersByChannelId;
+        int removed = 0;
+        for (int i = 0, length = channelDictionary.size(); i < length; i++)
         {
-            int hashCode = 0;
-            for (int i = 0; i < charSequence.length(); i++)
+            final Long2ObjectHashMap<Entry<T>> counters = countersByChannelId[i];
+            if (counters != null && !counters.isEmpty())
             {
-                hashCode = 31 * hashCode + charSequence.charAt(i);
+                final Iterator<Entry<T>> iterator = counters.values().iterator();
+                while (iterator.hasNext())
+                {
+                    final Entry<T> entry = iterator.next();
+                    if (entry.lastSeenGeneration == generation)
+                    {
+                        entry.lastSeenTimeMs = nowMs;
+                    }
+                    else if (nowMs - entry.lastSeenTimeMs >= sessionTimeoutMs)
+                    {
+                        evictionHandler.accept(entry.counterSet);
+                        iterator.remove();
+                        removed++;
+                    }
+                }
             }
+        }
+        size -= removed;
+        this.generation = generation + 1;
+
+        return removed;
+    }
+
+    /**
+     * Returns the number of counter sets.
+     *
+     * @return the number of counter sets
+     */
+    public int size()
+    {
+        return size;
+    }
 
-            return hashCode;
+    private Long2ObjectHashMap<Entry<T>> countersForChannel(final int channelId)
+    {
+        if (channelId >= countersByChannelId.length)
+        {
+            countersByChannelId = Arrays.copyOf(countersByChannelId,
+                Math.max(channelId + 1, countersByChannelId.length * 2));
+        }
+        Long2ObjectHashMap<Entry<T>> counters = countersByChannelId[channelId];
+        if (counters == null)
+        {
+            counters = new Long2ObjectHashMap<>();
+            countersByChannelId[channelId] = counters;
         }
+        return counters;
+    }
+
+    private static final class Entry<T>
+    {
+        private final T counterSet;
+        private long lastSeenGeneration;
+        private long lastSeenTimeMs;
 
+        Entry(final T counterSet)
+        {
+            this.counterSet = counterSet;
+        }
     }
-}
\ No newline at end of file
+}
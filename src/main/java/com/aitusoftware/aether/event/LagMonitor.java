@@ -0,0 +1,294 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.aitusoftware.aether.aggregation.RateBucket;
+import com.aitusoftware.aether.aggregation.StreamLag;
+import com.aitusoftware.aether.annotation.CallerOwned;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SessionKeyed;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import org.agrona.collections.Long2LongHashMap;
+
+/**
+ * Derives the lag of each subscriber behind its publisher, as publisher position minus subscriber position, by
+ * joining the publishers and subscribers of the same channel, streamId and sessionId, regardless of which
+ * MediaDriver reports them.
+ * <p>
+ * Lag is sampled for every subscriber of a publisher each time a snapshot containing the publisher is received,
+ * and aggregated per stream by a {@code StreamLag}, which is kept while at least one session of the stream has
+ * both a publisher and a subscriber.
+ * <p>
+ * Sessions are held in a {@code CounterRepository} per label, and each session is linked to its join and stream
+ * when it is first seen, so processing a snapshot that contains no new or removed sessions does not allocate.
+ */
+public final class LagMonitor implements CounterSnapshotListener
+{
+    private final Map<StreamKey, StreamLag> lagByStream = new HashMap<>();
+    private final Map<StreamKey, ConnectedStream> connectedStreams = new HashMap<>();
+    private final Map<String, LabelSessions> sessionsByLabel = new HashMap<>();
+    private final CounterRepository<SessionJoin> joins = new CounterRepository<>(SessionJoin::new);
+    private final List<PublisherSession> snapshotPublishers = new ArrayList<>();
+    private final Consumer<PublisherSession> publisherEvictionHandler = this::onPublisherRemoved;
+    private final Consumer<SubscriberSession> subscriberEvictionHandler = this::onSubscriberRemoved;
+    private final List<RateBucket> windows;
+
+    /**
+     * Constructs a monitor that aggregates lag over the supplied windows.
+     *
+     * @param windows durations of the rolling windows over which lag is aggregated
+     */
+    public LagMonitor(final List<RateBucket> windows)
+    {
+        this.windows = windows;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onSnapshot(
+        final String label,
+        final long timestamp,
+        @CallerOwned final List<PublisherCounterSet> publisherCounters,
+        @CallerOwned final List<SubscriberCounterSet> subscriberCounters,
+        @CallerOwned final SystemCounters systemCounters)
+    {
+        final LabelSessions labelSessions = sessionsByLabel.computeIfAbsent(label, key -> new LabelSessions());
+        for (int i = 0; i < subscriberCounters.size(); i++)
+        {
+            final SubscriberCounterSet subscriberCounter = subscriberCounters.get(i);
+            final SubscriberSession subscriber = labelSessions.subscribers.getOrCreate(
+                subscriberCounter.channel(), subscriberCounter.sessionId(), subscriberCounter.streamId());
+            if (subscriber.join == null)
+            {
+                subscriber.join = join(subscriber);
+                subscriber.join.subscribers.add(subscriber);
+                updateConnection(subscriber.join);
+            }
+            subscriber.copyPositions(subscriberCounter.subscriberPositions());
+        }
+        for (int i = 0; i < publisherCounters.size(); i++)
+        {
+            final PublisherCounterSet publisherCounter = publisherCounters.get(i);
+            final PublisherSession publisher = labelSessions.publishers.getOrCreate(
+                publisherCounter.channel(), publisherCounter.sessionId(), publisherCounter.streamId());
+            if (publisher.join == null)
+            {
+                publisher.join = join(publisher);
+                publisher.join.publisherCount++;
+                updateConnection(publisher.join);
+            }
+            publisher.publisherPosition = publisherCounter.publisherPosition();
+            snapshotPublishers.add(publisher);
+        }
+
+        // sessions missing from the snapshot have been removed by the MediaDriver
+        labelSessions.publishers.removeStale(0, 0, publisherEvictionHandler);
+        labelSessions.subscribers.removeStale(0, 0, subscriberEvictionHandler);
+
+        try
+        {
+            for (int i = 0; i < snapshotPublishers.size(); i++)
+            {
+                recordLag(timestamp, snapshotPublishers.get(i));
+            }
+        }
+        finally
+        {
+            snapshotPublishers.clear();
+        }
+    }
+
+    /**
+     * Returns lag aggregates keyed by stream.
+     *
+     * @return the lag of each stream that has at least one publisher with a subscriber
+     */
+    public Map<StreamKey, StreamLag> streamLags()
+    {
+        return lagByStream;
+    }
+
+    private static void recordLag(final long timestamp, final PublisherSession publisher)
+    {
+        final SessionJoin join = publisher.join;
+        if (join.stream == null)
+        {
+            return;
+        }
+        final StreamLag streamLag = join.stream.streamLag;
+        final List<SubscriberSession> subscribers = join.subscribers;
+        for (int i = 0; i < subscribers.size(); i++)
+        {
+            final Long2LongHashMap.ValueIterator positions = subscribers.get(i).positions.values().iterator();
+            while (positions.hasNext())
+            {
+                streamLag.lag(timestamp, publisher.publisherPosition - positions.nextValue());
+            }
+        }
+    }
+
+    private SessionJoin join(final SessionKeyed session)
+    {
+        return joins.getOrCreate(session.channel(), session.sessionId(), session.streamId());
+    }
+
+    private void onPublisherRemoved(final PublisherSession publisher)
+    {
+        publisher.join.publisherCount--;
+        onSessionRemoved(publisher.join);
+    }
+
+    private void onSubscriberRemoved(final SubscriberSession subscriber)
+    {
+        subscriber.join.subscribers.remove(subscriber);
+        onSessionRemoved(subscriber.join);
+    }
+
+    private void onSessionRemoved(final SessionJoin join)
+    {
+        updateConnection(join);
+        if (join.publisherCount == 0 && join.subscribers.isEmpty())
+        {
+            joins.remove(join.channel(), join.sessionId(), join.streamId());
+        }
+    }
+
+    private void updateConnection(final SessionJoin join)
+    {
+        final boolean connected = join.publisherCount != 0 && !join.subscribers.isEmpty();
+        if (connected && join.stream == null)
+        {
+            final StreamKey streamKey = new StreamKey(join.channel().toString(), join.streamId());
+            ConnectedStream stream = connectedStreams.get(streamKey);
+            if (stream == null)
+            {
+                stream = new ConnectedStream(streamKey, new StreamLag(windows));
+                connectedStreams.put(streamKey, stream);
+                lagByStream.put(streamKey, stream.streamLag);
+            }
+            stream.sessionCount++;
+            join.stream = stream;
+        }
+        else if (!connected && join.stream != null)
+        {
+            final ConnectedStream stream = join.stream;
+            if (--stream.sessionCount == 0)
+            {
+                connectedStreams.remove(stream.streamKey);
+                lagByStream.remove(stream.streamKey);
+            }
+            join.stream = null;
+        }
+    }
+
+    private static final class LabelSessions
+    {
+        private final CounterRepository<PublisherSession> publishers = new CounterRepository<>(PublisherSession::new);
+        private final CounterRepository<SubscriberSession> subscribers =
+            new CounterRepository<>(SubscriberSession::new);
+    }
+
+    private static final class ConnectedStream
+    {
+        private final StreamKey streamKey;
+        private final StreamLag streamLag;
+        private int sessionCount;
+
+        ConnectedStream(final StreamKey streamKey, final StreamLag streamLag)
+        {
+            this.streamKey = streamKey;
+            this.streamLag = streamLag;
+        }
+    }
+
+    private abstract static class Session implements SessionKeyed
+    {
+        private CharSequence channel;
+        private int sessionId;
+        private int streamId;
+
+        @Override
+        public void reset(final CharSequence channel, final int sessionId, final int streamId)
+        {
+            this.channel = channel;
+            this.sessionId = sessionId;
+            this.streamId = streamId;
+        }
+
+        @Override
+        public CharSequence channel()
+        {
+            return channel;
+        }
+
+        @Override
+        public int sessionId()
+        {
+            return sessionId;
+        }
+
+        @Override
+        public int streamId()
+        {
+            return streamId;
+        }
+    }
+
+    /**
+     * The publishers and subscribers of a session, across all labels.
+     */
+    private static final class SessionJoin extends Session
+    {
+        private final List<SubscriberSession> subscribers = new ArrayList<>();
+        private int publisherCount;
+        private ConnectedStream stream;
+    }
+
+    private static final class PublisherSession extends Session
+    {
+        private SessionJoin join;
+        private long publisherPosition;
+    }
+
+    private static final class SubscriberSession extends Session
+    {
+        private final Long2LongHashMap positions = new Long2LongHashMap(Long.MIN_VALUE);
+        private SessionJoin join;
+
+        void copyPositions(final Long2LongHashMap subscriberPositions)
+        {
+            positions.clear();
+            final Long2LongHashMap.EntryIterator iterator = subscriberPositions.entrySet().iterator();
+            while (iterator.hasNext())
+            {
+                iterator.next();
+                positions.put(iterator.getLongKey(), iterator.getLongValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+import com.aitusoftware.aether.annotation.CallerOwned;
+import com.aitusoftware.aether.model.ChannelSessionKey;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import org.agrona.collections.Long2LongHashMap;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An implementation of {@code CounterSnapshotListener} that serves the aggregated {@code SystemSnapshot} over HTTP
+ * in the OpenMetrics text format.
+ * <p>
+ * The response is rendered once per snapshot, and each scrape is answered with the latest rendered bytes on the
+ * HTTP server thread. Rendering cost does not grow with the number of scrapers, and the snapshot thread
+ * never blocks on socket I/O.
+ */
+public final class OpenMetricsExporter implements CounterSnapshotListener, AutoCloseable
+{
+    static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    private static final String EOF = "# EOF\n";
+
+    private final SystemSnapshot systemSnapshot;
+    private final StringBuilder text = new StringBuilder();
+    private final HttpServer httpServer;
+    private volatile byte[] renderedMetrics = EOF.getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Construct a new exporter using runtime configuration.
+     */
+    public OpenMetricsExporter()
+    {
+        this(new Context());
+    }
+
+    /**
+     * Construct a new exporter from the supplied context, and start serving metrics.
+     *
+     * @param context configuration context
+     */
+    public OpenMetricsExporter(final Context context)
+    {
+        systemSnapshot = context.systemSnapshot();
+        try
+        {
+            httpServer = HttpServer.create(new InetSocketAddress(context.hostname(), context.port()), 0);
+        }
+        catch (final IOException e)
+        {
+            throw new IllegalStateException("Unable to bind metrics endpoint", e);
+        }
+        httpServer.createContext(context.path(), this::onScrape);
+        httpServer.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onSnapshot(
+        final String label,
+        final long timestamp,
+        @CallerOwned final List<PublisherCounterSet> publisherCounters,
+        @CallerOwned final List<SubscriberCounterSet> subscriberCounters,
+        @CallerOwned final SystemCounters systemCounters)
+    {
+        systemSnapshot.onSnapshot(label, timestamp, publisherCounters, subscriberCounters, systemCounters);
+        render();
+    }
+
+    /**
+     * Returns the port that the HTTP server is bound to.
+     *
+     * @return the bound port
+     */
+    public int port()
+    {
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close()
+    {
+        httpServer.stop(0);
+    }
+
+    private void onScrape(final HttpExchange exchange) throws IOException
+    {
+        final byte[] response = renderedMetrics;
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream body = exchange.getResponseBody())
+        {
+            body.write(response);
+        }
+    }
+
+    private void render()
+    {
+        text.setLength(0);
+        final Map<String, SystemCounters> systemCounters = systemSnapshot.getSystemCounters();
+        renderSystemCounter(systemCounters, "aether_bytes_sent", SystemCounters::bytesSent);
+        renderSystemCounter(systemCounters, "aether_bytes_received", SystemCounters::bytesReceived);
+        renderSystemCounter(systemCounters, "aether_naks_sent", SystemCounters::naksSent);
+        renderSystemCounter(systemCounters, "aether_naks_received", SystemCounters::naksReceived);
+        renderSystemCounter(systemCounters, "aether_errors", SystemCounters::errors);
+        renderSystemCounter(systemCounters, "aether_client_timeouts", SystemCounters::clientTimeouts);
+
+        final Map<ChannelSessionKey, PublisherCounterSet> publishers = systemSnapshot.getPublisherCounterSets();
+        renderSessionMetric(publishers, "aether_publisher_position", "gauge", PublisherCounterSet::publisherPosition);
+        renderSessionMetric(publishers, "aether_publisher_limit", "gauge", PublisherCounterSet::publisherLimit);
+        renderSessionMetric(publishers, "aether_sender_position", "gauge", PublisherCounterSet::senderPosition);
+        renderSessionMetric(publishers, "aether_sender_limit", "gauge", PublisherCounterSet::senderLimit);
+        renderSessionMetric(publishers, "aether_back_pressure_events", "counter",
+            PublisherCounterSet::backPressureEvents);
+
+        final Map<ChannelSessionKey, SubscriberCounterSet> subscribers = systemSnapshot.getSubscriberCounterSets();
+        renderSessionMetric(subscribers, "aether_receiver_position", "gauge", SubscriberCounterSet::receiverPosition);
+        renderSessionMetric(subscribers, "aether_receiver_hwm", "gauge", SubscriberCounterSet::receiverHighWaterMark);
+        renderSubscriberPositions(subscribers);
+
+        text.append(EOF);
+        renderedMetrics = text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void renderSystemCounter(
+        final Map<String, SystemCounters> systemCounters,
+        final String name,
+        final ToLongFunction<SystemCounters> value)
+    {
+        appendFamily(name, "counter");
+        for (final Map.Entry<String, SystemCounters> entry : systemCounters.entrySet())
+        {
+            text.append(name).append("_total{label=\"");
+            appendEscaped(entry.getKey());
+            text.append("\"} ").append(value.applyAsLong(entry.getValue())).append('\n');
+        }
+    }
+
+    private <T> void renderSessionMetric(
+        final Map<ChannelSessionKey, T> counterSets,
+        final String name,
+        final String type,
+        final ToLongFunction<T> value)
+    {
+        appendFamily(name, type);
+        final String sampleName = "counter".equals(type) ? name + "_total" : name;
+        for (final Map.Entry<ChannelSessionKey, T> entry : counterSets.entrySet())
+        {
+            text.append(sampleName);
+            appendSessionLabels(entry.getKey());
+            text.append("} ").append(value.applyAsLong(entry.getValue())).append('\n');
+        }
+    }
+
+    private void renderSubscriberPositions(final Map<ChannelSessionKey, SubscriberCounterSet> subscribers)
+    {
+        appendFamily("aether_subscriber_position", "gauge");
+        for (final Map.Entry<ChannelSessionKey, SubscriberCounterSet> entry : subscribers.entrySet())
+        {
+            final Long2LongHashMap.EntryIterator positions =
+                entry.getValue().subscriberPositions().entrySet().iterator();
+            while (positions.hasNext())
+            {
+                positions.next();
+                text.append("aether_subscriber_position");
+                appendSessionLabels(entry.getKey());
+                text.append(",registration_id=\"").append(positions.getLongKey()).append("\"} ")
+                    .append(positions.getLongValue()).append('\n');
+            }
+        }
+    }
+
+    private void appendFamily(final String name, final String type)
+    {
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private void appendSessionLabels(final ChannelSessionKey key)
+    {
+        text.append("{label=\"");
+        appendEscaped(key.getLabel());
+        text.append("\",channel=\"");
+        appendEscaped(key.getChannel());
+        text.append("\",stream_id=\"").append(key.getStreamId())
+            .append("\",session_id=\"").append(key.getSessionId()).append('"');
+    }
+
+    private void appendEscaped(final CharSequence value)
+    {
+        for (int i = 0; i < value.length(); i++)
+        {
+            final char c = value.charAt(i);
+            if (c == '\\' || c == '"')
+            {
+                text.append('\\').append(c);
+            }
+            else if (c == '\n')
+            {
+                text.append("\\n");
+            }
+            else
+            {
+                text.append(c);
+            }
+        }
+    }
+
+    /**
+     * Configuration context.
+     */
+    public static final class Context
+    {
+        private SystemSnapshot systemSnapshot = new SystemSnapshot();
+        private String hostname = Configuration.hostname();
+        private int port = Configuration.port();
+        private String path = Configuration.path();
+
+        /**
+         * Sets the view used to aggregate snapshots, for example to configure session timeouts.
+         *
+         * @param systemSnapshot aggregated view of all snapshots
+         * @return this for a fluent API
+         */
+        public Context systemSnapshot(final SystemSnapshot systemSnapshot)
+        {
+            this.systemSnapshot = systemSnapshot;
+            return this;
+        }
+
+        public SystemSnapshot systemSnapshot()
+        {
+            return systemSnapshot;
+        }
+
+        public Context hostname(final String hostname)
+        {
+            this.hostname = hostname;
+            return this;
+        }
+
+        public String hostname()
+        {
+            return hostname;
+        }
+
+        /**
+         * Sets the port that metrics are served on. A value of zero binds to an ephemeral port.
+         *
+         * @param port HTTP port
+         * @return this for a fluent API
+         */
+        public Context port(final int port)
+        {
+            this.port = port;
+            return this;
+        }
+
+        public int port()
+        {
+            return port;
+        }
+
+        public Context path(final String path)
+        {
+            this.path = path;
+            return this;
+        }
+
+        public String path()
+        {
+            return path;
+        }
+    }
+
+    public static final class Configuration
+    {
+        public static final String HOSTNAME_PROPERTY_NAME = "aether.metrics.hostname";
+        public static final String PORT_PROPERTY_NAME = "aether.metrics.port";
+        public static final String PATH_PROPERTY_NAME = "aether.metrics.path";
+
+        public static String hostname()
+        {
+            return System.getProperty(HOSTNAME_PROPERTY_NAME, "0.0.0.0");
+        }
+
+        public static int port()
+        {
+            return Integer.getInteger(PORT_PROPERTY_NAME, 9464);
+        }
+
+        public static String path()
+        {
+            return System.getProperty(PATH_PROPERTY_NAME, "/metrics");
+        }
+    }
+}
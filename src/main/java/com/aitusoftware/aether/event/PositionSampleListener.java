@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+import com.aitusoftware.aether.annotation.CallerOwned;
+
+/**
+ * Defines a listener to high-frequency samples of a MediaDriver's position counters
+ * (publisher position, sender position and subscriber position).
+ * <p>
+ * Samples are taken between full counter snapshots, and are not published to a {@code CounterSnapshotListener}.
+ */
+public interface PositionSampleListener
+{
+    /**
+     * Called for each position counter in a sample.
+     *
+     * @param label          label of the MediaDriver
+     * @param timestamp      timestamp of the sample
+     * @param counterTypeId  type of the position counter
+     * @param channel        channel of the stream
+     * @param sessionId      sessionId of the stream
+     * @param streamId       streamId of the stream
+     * @param registrationId registrationId of the publication or subscription
+     * @param position       the position
+     */
+    void onPositionSample(
+        String label,
+        long timestamp,
+        int counterTypeId,
+        @CallerOwned CharSequence channel,
+        int sessionId,
+        int streamId,
+        long registrationId,
+        long position);
+
+    /**
+     * Called when all position counters in a sample have been read.
+     *
+     * @param label     label of the MediaDriver
+     * @param timestamp timestamp of the sample
+     */
+    void onEndOfSample(String label, long timestamp);
+}
@@ -19,6 +19,7 @@ package com.aitusoftware.aether.event;
 
 import com.aitusoftware.aether.aggregation.RateBucket;
 import com.aitusoftware.aether.aggregation.StreamRate;
+import com.aitusoftware.aether.aggregation.StreamRateHistogram;
 import com.aitusoftware.aether.annotation.CallerOwned;
 import com.aitusoftware.aether.model.ChannelSessionKey;
 import com.aitusoftware.aether.model.PublisherCounterSet;
@@ -33,10 +34,24 @@ public final class RateMonitor implements CounterSnapshotListener
 {
     private final List<RateBucket> rateBuckets;
     private final HashMap<ChannelSessionKey, StreamRate> streamRateByPublisher = new HashMap<>();
+    private final HashMap<ChannelSessionKey, StreamRateHistogram> rateHistogramByPublisher = new HashMap<>();
+    private final boolean recordRateHistograms;
 
     public RateMonitor(final List<RateBucket> rateBuckets)
+    {
+        this(rateBuckets, false);
+    }
+
+    /**
+     * Constructs a monitor of publisher rates.
+     *
+     * @param rateBuckets          durations of the rolling windows over which rates are aggregated
+     * @param recordRateHistograms whether to also record the distribution of rates in each window
+     */
+    public RateMonitor(final List<RateBucket> rateBuckets, final boolean recordRateHistograms)
     {
         this.rateBuckets = rateBuckets;
+        this.recordRateHistograms = recordRateHistograms;
     }
 
     @Override
@@ -60,6 +75,17 @@ public final class RateMonitor implements CounterSnapshotListener
             }
 
             streamRate.streamPosition(timestamp, publisherCounter.publisherPosition());
+
+            if (recordRateHistograms)
+            {
+                StreamRateHistogram rateHistogram = rateHistogramByPublisher.get(streamKey);
+                if (rateHistogram == null)
+                {
+                    rateHistogram = new StreamRateHistogram(rateBuckets);
+                    rateHistogramByPublisher.put(streamKey, rateHistogram);
+                }
+                rateHistogram.streamPosition(timestamp, publisherCounter.publisherPosition());
+            }
         }
     }
 
@@ -67,4 +93,14 @@ public final class RateMonitor implements CounterSnapshotListener
     {
         return streamRateByPublisher;
     }
+
+    /**
+     * Returns the distribution of publisher rates, if enabled.
+     *
+     * @return rate histograms keyed by publisher, empty unless rate histograms are recorded
+     */
+    public Map<ChannelSessionKey, StreamRateHistogram> publisherRateHistograms()
+    {
+        return rateHistogramByPublisher;
+    }
 }
\ No newline at end of file
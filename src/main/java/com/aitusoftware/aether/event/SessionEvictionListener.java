@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+import com.aitusoftware.aether.annotation.CallerOwned;
+import com.aitusoftware.aether.model.ChannelType;
+
+/**
+ * Defines a listener to sessions that are removed because they are no longer reported by a MediaDriver.
+ */
+public interface SessionEvictionListener
+{
+    /**
+     * Called when the counters of a publisher or subscriber session are removed.
+     *
+     * @param label       label of the MediaDriver
+     * @param channelType whether the session belonged to a publisher or subscriber
+     * @param channel     channel of the stream
+     * @param streamId    streamId of the stream
+     * @param sessionId   sessionId of the stream
+     */
+    void onSessionEvicted(
+        String label,
+        ChannelType channelType,
+        @CallerOwned CharSequence channel,
+        int streamId,
+        int sessionId);
+}
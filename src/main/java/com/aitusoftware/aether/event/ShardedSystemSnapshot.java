@@ -0,0 +1,156 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.aitusoftware.aether.model.ChannelSessionKey;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+/**
+ * Answers whole-system queries over the {@code SystemSnapshot} of each shard created by a
+ * {@code ShardingSnapshotListener}.
+ * <p>
+ * Queries for a single publisher or subscriber are routed to the shard that owns its stream. Queries for the whole
+ * system merge the views of every shard into a new map on each call, so are intended for reporting rather than the
+ * snapshot path. Each shard receives the system counters of every MediaDriver, so they can be read from any shard
+ * that has received a snapshot of the MediaDriver.
+ */
+public final class ShardedSystemSnapshot
+{
+    private final List<SystemSnapshot> shards;
+
+    /**
+     * Creates a view over the snapshots of each shard, indexed by shard.
+     *
+     * @param shards the snapshot of each shard
+     */
+    public ShardedSystemSnapshot(final List<SystemSnapshot> shards)
+    {
+        if (shards.isEmpty())
+        {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = new ArrayList<>(shards);
+    }
+
+    /**
+     * Returns the snapshot of a single shard.
+     *
+     * @param shard the shard
+     * @return the snapshot of the shard
+     */
+    public SystemSnapshot shard(final int shard)
+    {
+        return shards.get(shard);
+    }
+
+    /**
+     * Returns system counters keyed by MediaDriver label.
+     *
+     * @return the system counters
+     */
+    public Map<String, SystemCounters> getSystemCounters()
+    {
+        final Map<String, SystemCounters> systemCounters = new HashMap<>();
+        for (final SystemSnapshot shard : shards)
+        {
+            systemCounters.putAll(shard.getSystemCounters());
+        }
+        return systemCounters;
+    }
+
+    /**
+     * Returns a tree-like structure identifying participants in individual message flows, across all shards.
+     *
+     * @return the structure of identifiers
+     */
+    public Map<StreamKey, Map<ChannelSessionKey, Set<ChannelSessionKey>>> getConnectionsByStream()
+    {
+        final Map<StreamKey, Map<ChannelSessionKey, Set<ChannelSessionKey>>> connectionsByStream = new HashMap<>();
+        for (final SystemSnapshot shard : shards)
+        {
+            connectionsByStream.putAll(shard.getConnectionsByStream());
+        }
+        return connectionsByStream;
+    }
+
+    /**
+     * Returns the counters of all known publishers, across all shards.
+     *
+     * @return publisher counters keyed by publisher identifier
+     */
+    public Map<ChannelSessionKey, PublisherCounterSet> getPublisherCounterSets()
+    {
+        final Map<ChannelSessionKey, PublisherCounterSet> publishers = new HashMap<>();
+        for (final SystemSnapshot shard : shards)
+        {
+            publishers.putAll(shard.getPublisherCounterSets());
+        }
+        return publishers;
+    }
+
+    /**
+     * Returns the counters of all known subscribers, across all shards.
+     *
+     * @return subscriber counters keyed by subscriber identifier
+     */
+    public Map<ChannelSessionKey, SubscriberCounterSet> getSubscriberCounterSets()
+    {
+        final Map<ChannelSessionKey, SubscriberCounterSet> subscribers = new HashMap<>();
+        for (final SystemSnapshot shard : shards)
+        {
+            subscribers.putAll(shard.getSubscriberCounterSets());
+        }
+        return subscribers;
+    }
+
+    /**
+     * Returns the publisher counters associated with a particular publisher.
+     *
+     * @param channelSessionKey the identifier of the publisher
+     * @return the publisher counters
+     */
+    public PublisherCounterSet getPublisherCounterSet(final ChannelSessionKey channelSessionKey)
+    {
+        return shardOf(channelSessionKey).getPublisherCounterSet(channelSessionKey);
+    }
+
+    /**
+     * Returns the subscriber counters associated with a particular subscriber.
+     *
+     * @param channelSessionKey the identifier of the subscriber
+     * @return the subscriber counters
+     */
+    public SubscriberCounterSet getSubscriberCounterSet(final ChannelSessionKey channelSessionKey)
+    {
+        return shardOf(channelSessionKey).getSubscriberCounterSet(channelSessionKey);
+    }
+
+    private SystemSnapshot shardOf(final ChannelSessionKey channelSessionKey)
+    {
+        return shards.get(ShardingSnapshotListener.shardOf(
+            channelSessionKey.getChannel(), channelSessionKey.getStreamId(), shards.size()));
+    }
+}
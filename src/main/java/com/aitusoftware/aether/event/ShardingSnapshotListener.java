@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.aitusoftware.aether.annotation.CallerOwned;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+/**
+ * Partitions each snapshot across a number of shards, so that aggregation can be spread over several processes.
+ * <p>
+ * Publishers and subscribers are assigned to a shard by a hash of their channel and streamId, so the publishers and
+ * subscribers of a stream always share a shard, and an aggregator that owns a shard can build a complete view of
+ * its streams. Every shard receives every snapshot, together with the system counters, even if none of the
+ * snapshot's sessions belong to it, so that removed sessions are detected by each shard.
+ */
+public final class ShardingSnapshotListener implements CounterSnapshotListener
+{
+    private final CounterSnapshotListener[] shards;
+    private final List<List<PublisherCounterSet>> publishersByShard = new ArrayList<>();
+    private final List<List<SubscriberCounterSet>> subscribersByShard = new ArrayList<>();
+
+    /**
+     * Creates a listener that delivers each partition of a snapshot to the listener of its shard.
+     *
+     * @param shards the listener of each shard
+     */
+    public ShardingSnapshotListener(final List<? extends CounterSnapshotListener> shards)
+    {
+        if (shards.isEmpty())
+        {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = shards.toArray(new CounterSnapshotListener[0]);
+        for (int i = 0; i < shards.size(); i++)
+        {
+            publishersByShard.add(new ArrayList<>());
+            subscribersByShard.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Returns the shard that a stream is assigned to.
+     *
+     * @param channel    the channel of the stream
+     * @param streamId   the streamId of the stream
+     * @param shardCount the number of shards
+     * @return the shard, between 0 and {@code shardCount - 1}
+     */
+    public static int shardOf(final CharSequence channel, final int streamId, final int shardCount)
+    {
+        int hash = 31 * CharSequenceUtil.hash(channel) + streamId;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, shardCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onSnapshot(
+        final String label,
+        final long timestamp,
+        @CallerOwned final List<PublisherCounterSet> publisherCounters,
+        @CallerOwned final List<SubscriberCounterSet> subscriberCounters,
+        @CallerOwned final SystemCounters systemCounters)
+    {
+        final int shardCount = shards.length;
+        for (int i = 0, size = publisherCounters.size(); i < size; i++)
+        {
+            final PublisherCounterSet publisher = publisherCounters.get(i);
+            publishersByShard.get(shardOf(publisher.channel(), publisher.streamId(), shardCount)).add(publisher);
+        }
+        for (int i = 0, size = subscriberCounters.size(); i < size; i++)
+        {
+            final SubscriberCounterSet subscriber = subscriberCounters.get(i);
+            subscribersByShard.get(shardOf(subscriber.channel(), subscriber.streamId(), shardCount)).add(subscriber);
+        }
+
+        try
+        {
+            for (int shard = 0; shard < shardCount; shard++)
+            {
+                shards[shard].onSnapshot(
+                    label, timestamp, publishersByShard.get(shard), subscribersByShard.get(shard), systemCounters);
+            }
+        }
+        finally
+        {
+            // counter sets are owned by the caller, so must not be retained after the snapshot
+            for (int shard = 0; shard < shardCount; shard++)
+            {
+                publishersByShard.get(shard).clear();
+                subscribersByShard.get(shard).clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+/**
+ * Defines a listener to discontinuities in the snapshots received for a label, for example so that state derived
+ * from consecutive snapshots, such as rates, can be reset.
+ * <p>
+ * Callbacks are made before the snapshot that revealed the discontinuity is passed to the
+ * {@code CounterSnapshotListener}.
+ */
+public interface SnapshotSequenceListener
+{
+    /**
+     * Called when snapshots published for a label were not delivered, because they were lost, dropped by the
+     * publisher, or discarded while waiting for a key frame.
+     *
+     * @param label       label of the MediaDriver
+     * @param missedCount number of snapshots that were not delivered
+     * @param sequence    sequence number of the snapshot that revealed the gap
+     */
+    void onSnapshotsMissed(String label, long missedCount, long sequence);
+
+    /**
+     * Called when the collector publishing snapshots for a label has been restarted, so that its counters and
+     * sequence numbers may have been reset.
+     *
+     * @param label                label of the MediaDriver
+     * @param previousStartEpochMs start time of the previous collector in epoch milliseconds
+     * @param startEpochMs         start time of the new collector in epoch milliseconds
+     */
+    void onCollectorRestarted(String label, long previousStartEpochMs, long startEpochMs);
+}
@@ -19,26 +19,61 @@ package com.aitusoftware.aether.event;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import com.aitusoftware.aether.annotation.CallerOwned;
 import com.aitusoftware.aether.model.ChannelSessionKey;
+import com.aitusoftware.aether.model.ChannelType;
 import com.aitusoftware.aether.model.PublisherCounterSet;
 import com.aitusoftware.aether.model.SubscriberCounterSet;
 import com.aitusoftware.aether.model.SystemCounters;
 
 /**
  * Maintains an aggregate view over multiple MediaDriver snapshots.
+ * <p>
+ * Publishers are joined to the subscribers of the same channel, streamId and sessionId through an index that is
+ * updated as sessions are added and removed, regardless of which MediaDriver reports them.
+ * <p>
+ * Publishers and subscribers that are missing from the latest snapshot of their MediaDriver, and have not been
+ * seen within the session timeout, are removed from the view.
  */
 public final class SystemSnapshot implements CounterSnapshotListener
 {
-    private final Map<StreamKey, Map<Integer, SubscriberCounterSet>> allSubscribers = new HashMap<>();
     private final Map<StreamKey, Map<ChannelSessionKey, Set<ChannelSessionKey>>> connectionsByStream = new HashMap<>();
     private final Map<ChannelSessionKey, PublisherCounterSet> publishersByRegistration = new HashMap<>();
     private final Map<ChannelSessionKey, SubscriberCounterSet> subscribersByRegistration = new HashMap<>();
     private final Map<String, SystemCounters> systemCountersByLabel = new HashMap<>();
+    private final Map<String, LabelSessions> sessionsByLabel = new HashMap<>();
+    private final Map<SessionKey, Set<ChannelSessionKey>> publishersBySession = new HashMap<>();
+    private final Map<SessionKey, Set<ChannelSessionKey>> subscribersBySession = new HashMap<>();
+    private final long sessionTimeoutMs;
+    private final SessionEvictionListener sessionEvictionListener;
+
+    public SystemSnapshot()
+    {
+        this(0L, null);
+    }
+
+    /**
+     * Constructs a view that removes sessions once they are no longer reported.
+     *
+     * @param sessionTimeoutMs        time after which a session missing from a snapshot is removed,
+     *                                or zero to remove it from the first snapshot it is missing from
+     * @param sessionEvictionListener optional listener notified of removed sessions, may be null
+     */
+    public SystemSnapshot(final long sessionTimeoutMs, final SessionEvictionListener sessionEvictionListener)
+    {
+        if (sessionTimeoutMs < 0)
+        {
+            throw new IllegalArgumentException("Session timeout must not be negative: " + sessionTimeoutMs);
+        }
+        this.sessionTimeoutMs = sessionTimeoutMs;
+        this.sessionEvictionListener = sessionEvictionListener;
+    }
 
     /**
      * {@inheritDoc}
@@ -52,47 +87,43 @@ public final class SystemSnapshot implements CounterSnapshotListener
         @CallerOwned final SystemCounters systemCounters)
     {
         systemCounters.copyInto(systemCountersByLabel.computeIfAbsent(label, key -> new SystemCounters()));
+        final LabelSessions labelSessions = sessionsByLabel.computeIfAbsent(label, key -> new LabelSessions());
+        final long generation = ++labelSessions.generation;
         for (final SubscriberCounterSet subscriberCounter : subscriberCounters)
         {
-            final StreamKey streamKey = new StreamKey(
-                subscriberCounter.channel().toString(), subscriberCounter.streamId());
-            allSubscribers.computeIfAbsent(streamKey, key -> new HashMap<>())
-                .put(subscriberCounter.sessionId(), subscriberCounter.copy());
-            subscribersByRegistration.put(
-                new ChannelSessionKey(label, subscriberCounter.channel().toString(), subscriberCounter.streamId(),
-                subscriberCounter.sessionId()), subscriberCounter.copy());
+            final ChannelSessionKey subscriberChannelSessionKey = new ChannelSessionKey(
+                label, subscriberCounter.channel().toString(), subscriberCounter.streamId(),
+                subscriberCounter.sessionId());
+            subscribersByRegistration.put(subscriberChannelSessionKey, subscriberCounter.copy());
+            LastSeen lastSeen = labelSessions.subscribers.get(subscriberChannelSessionKey);
+            if (lastSeen == null)
+            {
+                lastSeen = new LastSeen();
+                labelSessions.subscribers.put(subscriberChannelSessionKey, lastSeen);
+                onSubscriberAdded(subscriberChannelSessionKey);
+            }
+            lastSeen.seen(generation, timestamp);
         }
 
         for (final PublisherCounterSet publisherCounter : publisherCounters)
         {
-            publishersByRegistration.put(
-                new ChannelSessionKey(label, publisherCounter.channel().toString(), publisherCounter.streamId(),
-                publisherCounter.sessionId()), publisherCounter.copy());
-
-            final StreamKey publisherStreamKey = new StreamKey(
-                publisherCounter.channel().toString(), publisherCounter.streamId());
-            final Map<ChannelSessionKey, Set<ChannelSessionKey>> streamPublishers =
-                connectionsByStream.computeIfAbsent(publisherStreamKey, key -> new HashMap<>());
             final ChannelSessionKey publisherChannelSessionKey = new ChannelSessionKey(
                 label, publisherCounter.channel().toString(), publisherCounter.streamId(),
                 publisherCounter.sessionId()
             );
-            final Set<ChannelSessionKey> channelSessionKeys = streamPublishers
-                .computeIfAbsent(publisherChannelSessionKey, key -> new HashSet<>());
-
-            final Set<Map.Entry<ChannelSessionKey, SubscriberCounterSet>> subscribers =
-                subscribersByRegistration.entrySet();
-            for (final Map.Entry<ChannelSessionKey, SubscriberCounterSet> subscriber : subscribers)
+            publishersByRegistration.put(publisherChannelSessionKey, publisherCounter.copy());
+            LastSeen lastSeen = labelSessions.publishers.get(publisherChannelSessionKey);
+            if (lastSeen == null)
             {
-                if (
-                    subscriber.getKey().getChannel().equals(publisherChannelSessionKey.getChannel()) &&
-                    subscriber.getKey().getStreamId() == publisherChannelSessionKey.getStreamId() &&
-                    subscriber.getKey().getSessionId() == publisherChannelSessionKey.getSessionId())
-                {
-                    channelSessionKeys.add(subscriber.getKey());
-                }
+                lastSeen = new LastSeen();
+                labelSessions.publishers.put(publisherChannelSessionKey, lastSeen);
+                onPublisherAdded(publisherChannelSessionKey);
             }
+            lastSeen.seen(generation, timestamp);
         }
+
+        removeStalePublishers(label, labelSessions.publishers, generation, timestamp);
+        removeStaleSubscribers(label, labelSessions.subscribers, generation, timestamp);
     }
 
     /**
@@ -115,6 +146,26 @@ public final class SystemSnapshot implements CounterSnapshotListener
         return connectionsByStream;
     }
 
+    /**
+     * Returns the counters of all known publishers.
+     *
+     * @return publisher counters keyed by publisher identifier
+     */
+    public Map<ChannelSessionKey, PublisherCounterSet> getPublisherCounterSets()
+    {
+        return publishersByRegistration;
+    }
+
+    /**
+     * Returns the counters of all known subscribers.
+     *
+     * @return subscriber counters keyed by subscriber identifier
+     */
+    public Map<ChannelSessionKey, SubscriberCounterSet> getSubscriberCounterSets()
+    {
+        return subscribersByRegistration;
+    }
+
     /**
      * Returns the publisher counters associated with a particular publisher.
      *
@@ -136,4 +187,187 @@ public final class SystemSnapshot implements CounterSnapshotListener
     {
         return subscribersByRegistration.get(channelSessionKey);
     }
-}
\ No newline at end of file
+
+    private void onPublisherAdded(final ChannelSessionKey publisherKey)
+    {
+        final SessionKey sessionKey = new SessionKey(publisherKey);
+        publishersBySession.computeIfAbsent(sessionKey, key -> new HashSet<>()).add(publisherKey);
+
+        final StreamKey streamKey = new StreamKey(publisherKey.getChannel(), publisherKey.getStreamId());
+        final Set<ChannelSessionKey> connectedSubscribers = connectionsByStream
+            .computeIfAbsent(streamKey, key -> new HashMap<>())
+            .computeIfAbsent(publisherKey, key -> new HashSet<>());
+        final Set<ChannelSessionKey> subscribers = subscribersBySession.get(sessionKey);
+        if (subscribers != null)
+        {
+            connectedSubscribers.addAll(subscribers);
+        }
+    }
+
+    private void onSubscriberAdded(final ChannelSessionKey subscriberKey)
+    {
+        final SessionKey sessionKey = new SessionKey(subscriberKey);
+        subscribersBySession.computeIfAbsent(sessionKey, key -> new HashSet<>()).add(subscriberKey);
+
+        final Set<ChannelSessionKey> publishers = publishersBySession.get(sessionKey);
+        if (publishers != null)
+        {
+            final Map<ChannelSessionKey, Set<ChannelSessionKey>> streamPublishers = connectionsByStream.get(
+                new StreamKey(subscriberKey.getChannel(), subscriberKey.getStreamId()));
+            for (final ChannelSessionKey publisherKey : publishers)
+            {
+                streamPublishers.get(publisherKey).add(subscriberKey);
+            }
+        }
+    }
+
+    private void removeStalePublishers(
+        final String label, final Map<ChannelSessionKey, LastSeen> publishers,
+        final long generation, final long timestamp)
+    {
+        final Iterator<Map.Entry<ChannelSessionKey, LastSeen>> iterator = publishers.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            final Map.Entry<ChannelSessionKey, LastSeen> entry = iterator.next();
+            if (entry.getValue().isStale(generation, timestamp, sessionTimeoutMs))
+            {
+                final ChannelSessionKey publisherKey = entry.getKey();
+                iterator.remove();
+                publishersByRegistration.remove(publisherKey);
+                removeFromIndex(publishersBySession, publisherKey);
+                final StreamKey streamKey = new StreamKey(publisherKey.getChannel(), publisherKey.getStreamId());
+                final Map<ChannelSessionKey, Set<ChannelSessionKey>> streamPublishers =
+                    connectionsByStream.get(streamKey);
+                if (streamPublishers != null)
+                {
+                    streamPublishers.remove(publisherKey);
+                    if (streamPublishers.isEmpty())
+                    {
+                        connectionsByStream.remove(streamKey);
+                    }
+                }
+                onSessionEvicted(label, ChannelType.PUBLISHER, publisherKey);
+            }
+        }
+    }
+
+    private void removeStaleSubscribers(
+        final String label, final Map<ChannelSessionKey, LastSeen> subscribers,
+        final long generation, final long timestamp)
+    {
+        final Iterator<Map.Entry<ChannelSessionKey, LastSeen>> iterator = subscribers.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            final Map.Entry<ChannelSessionKey, LastSeen> entry = iterator.next();
+            if (entry.getValue().isStale(generation, timestamp, sessionTimeoutMs))
+            {
+                final ChannelSessionKey subscriberKey = entry.getKey();
+                iterator.remove();
+                subscribersByRegistration.remove(subscriberKey);
+                final SessionKey sessionKey = removeFromIndex(subscribersBySession, subscriberKey);
+                final Set<ChannelSessionKey> publishers = publishersBySession.get(sessionKey);
+                if (publishers != null)
+                {
+                    final Map<ChannelSessionKey, Set<ChannelSessionKey>> streamPublishers = connectionsByStream.get(
+                        new StreamKey(subscriberKey.getChannel(), subscriberKey.getStreamId()));
+                    for (final ChannelSessionKey publisherKey : publishers)
+                    {
+                        streamPublishers.get(publisherKey).remove(subscriberKey);
+                    }
+                }
+                onSessionEvicted(label, ChannelType.SUBSCRIBER, subscriberKey);
+            }
+        }
+    }
+
+    private static SessionKey removeFromIndex(
+        final Map<SessionKey, Set<ChannelSessionKey>> index, final ChannelSessionKey channelSessionKey)
+    {
+        final SessionKey sessionKey = new SessionKey(channelSessionKey);
+        final Set<ChannelSessionKey> keys = index.get(sessionKey);
+        if (keys != null)
+        {
+            keys.remove(channelSessionKey);
+            if (keys.isEmpty())
+            {
+                index.remove(sessionKey);
+            }
+        }
+        return sessionKey;
+    }
+
+    private void onSessionEvicted(
+        final String label, final ChannelType channelType, final ChannelSessionKey channelSessionKey)
+    {
+        if (sessionEvictionListener != null)
+        {
+            sessionEvictionListener.onSessionEvicted(label, channelType, channelSessionKey.getChannel(),
+                channelSessionKey.getStreamId(), channelSessionKey.getSessionId());
+        }
+    }
+
+    /**
+     * Identifies a session independently of the MediaDriver that reported it, used to join publishers
+     * to their subscribers.
+     */
+    private static final class SessionKey
+    {
+        private final String channel;
+        private final int streamId;
+        private final int sessionId;
+
+        SessionKey(final ChannelSessionKey channelSessionKey)
+        {
+            this.channel = channelSessionKey.getChannel();
+            this.streamId = channelSessionKey.getStreamId();
+            this.sessionId = channelSessionKey.getSessionId();
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass())
+            {
+                return false;
+            }
+            final SessionKey that = (SessionKey)o;
+            return streamId == that.streamId &&
+                sessionId == that.sessionId &&
+                Objects.equals(channel, that.channel);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(channel, streamId, sessionId);
+        }
+    }
+
+    private static final class LabelSessions
+    {
+        private final Map<ChannelSessionKey, LastSeen> publishers = new HashMap<>();
+        private final Map<ChannelSessionKey, LastSeen> subscribers = new HashMap<>();
+        private long generation;
+    }
+
+    private static final class LastSeen
+    {
+        private long generation;
+        private long timestamp;
+
+        void seen(final long generation, final long timestamp)
+        {
+            this.generation = generation;
+            this.timestamp = timestamp;
+        }
+
+        boolean isStale(final long currentGeneration, final long currentTimestamp, final long sessionTimeoutMs)
+        {
+            return generation != currentGeneration && currentTimestamp - timestamp >= sessionTimeoutMs;
+        }
+    }
+}
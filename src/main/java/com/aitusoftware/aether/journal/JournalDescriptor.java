@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.journal;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Layout of journal segment files.
+ * <p>
+ * A segment is a sequence of fixed-width slots. The first slot is the segment header, holding the timestamps of the
+ * first and last snapshots in the segment. Each counter record occupies a single slot, and refers to its label and
+ * channel by ids that are defined by records earlier in the same segment. A definition record holds the text of a
+ * label or channel, and may extend over several slots.
+ * <p>
+ * The type of a record is written last, so a reader stops at the first slot with a zero type.
+ */
+final class JournalDescriptor
+{
+    static final int MAGIC = 0x4A455441;
+    static final int VERSION = 1;
+    static final String SEGMENT_FILE_SUFFIX = ".journal";
+
+    static final int SLOT_LENGTH = 80;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int FIRST_TIMESTAMP_OFFSET = 8;
+    static final int LAST_TIMESTAMP_OFFSET = 16;
+
+    static final int TYPE_OFFSET = 0;
+    static final int LABEL_ID_OFFSET = 4;
+    static final int TIMESTAMP_OFFSET = 8;
+    static final int CHANNEL_ID_OFFSET = 16;
+    static final int STREAM_ID_OFFSET = 20;
+    static final int SESSION_ID_OFFSET = 24;
+    static final int COUNT_OFFSET = 28;
+    static final int VALUES_OFFSET = 32;
+
+    static final int DEFINITION_ID_OFFSET = 4;
+    static final int DEFINITION_LENGTH_OFFSET = 8;
+    static final int DEFINITION_CHARS_OFFSET = 12;
+
+    static final int DEFINE_LABEL = 16;
+    static final int DEFINE_CHANNEL = 17;
+
+    private JournalDescriptor()
+    {
+    }
+
+    static int valueOffset(final int index)
+    {
+        return VALUES_OFFSET + index * Long.BYTES;
+    }
+
+    static int definitionLength(final int charLength)
+    {
+        final int length = DEFINITION_CHARS_OFFSET + charLength * Character.BYTES;
+        return ((length + SLOT_LENGTH - 1) / SLOT_LENGTH) * SLOT_LENGTH;
+    }
+
+    static String segmentFileName(final long sequence)
+    {
+        return String.format("%016d%s", sequence, SEGMENT_FILE_SUFFIX);
+    }
+
+    static long segmentSequence(final File segmentFile)
+    {
+        final String name = segmentFile.getName();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_FILE_SUFFIX.length()));
+    }
+
+    static File[] listSegments(final File directory)
+    {
+        final File[] segmentFiles = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_FILE_SUFFIX));
+        if (segmentFiles == null)
+        {
+            return new File[0];
+        }
+        Arrays.sort(segmentFiles);
+        return segmentFiles;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.journal;
+
+import static com.aitusoftware.aether.journal.JournalDescriptor.CHANNEL_ID_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.DEFINE_CHANNEL;
+import static com.aitusoftware.aether.journal.JournalDescriptor.DEFINE_LABEL;
+import static com.aitusoftware.aether.journal.JournalDescriptor.DEFINITION_CHARS_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.DEFINITION_ID_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.DEFINITION_LENGTH_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.FIRST_TIMESTAMP_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.LABEL_ID_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.LAST_TIMESTAMP_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.MAGIC;
+import static com.aitusoftware.aether.journal.JournalDescriptor.MAGIC_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.SLOT_LENGTH;
+import static com.aitusoftware.aether.journal.JournalDescriptor.TIMESTAMP_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.TYPE_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.VERSION;
+import static com.aitusoftware.aether.journal.JournalDescriptor.VERSION_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.definitionLength;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.agrona.IoUtil;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Reads records from a journal written by a {@code SnapshotJournal}.
+ * <p>
+ * Segments that do not overlap the requested time range are skipped using their headers, and records are passed to
+ * the handler through a reused flyweight, so scanning does not allocate per record. Records are written in
+ * timestamp order, so scanning stops at the first record or segment after the requested time range. Segments that
+ * are deleted by the retention policy of the journal while it is being scanned are skipped.
+ */
+public final class JournalReader
+{
+    private final JournalRecord record = new JournalRecord();
+    private final Int2ObjectHashMap<String> labelById = new Int2ObjectHashMap<>();
+    private final Int2ObjectHashMap<String> channelById = new Int2ObjectHashMap<>();
+    private final UnsafeBuffer buffer = new UnsafeBuffer(0, 0);
+    private final File directory;
+
+    public JournalReader(final File directory)
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * Passes each record with a timestamp in the supplied range to the handler, in the order that they were
+     * written.
+     *
+     * @param fromTimestamp earliest timestamp to read, inclusive
+     * @param toTimestamp   latest timestamp to read, inclusive
+     * @param handler       handler for records
+     * @return the number of records read
+     */
+    public long scan(final long fromTimestamp, final long toTimestamp, final JournalRecordHandler handler)
+    {
+        long recordCount = 0;
+        for (final File segmentFile : JournalDescriptor.listSegments(directory))
+        {
+            final MappedByteBuffer mappedSegment = mapSegment(segmentFile);
+            if (mappedSegment == null)
+            {
+                continue;
+            }
+            try
+            {
+                buffer.wrap(mappedSegment);
+                if (buffer.getIntVolatile(MAGIC_OFFSET) == MAGIC && buffer.getInt(VERSION_OFFSET) == VERSION)
+                {
+                    if (buffer.getLong(FIRST_TIMESTAMP_OFFSET) > toTimestamp)
+                    {
+                        break;
+                    }
+                    if (buffer.getLongVolatile(LAST_TIMESTAMP_OFFSET) >= fromTimestamp)
+                    {
+                        recordCount += scanSegment(fromTimestamp, toTimestamp, handler);
+                    }
+                }
+            }
+            finally
+            {
+                buffer.wrap(0, 0);
+                IoUtil.unmap(mappedSegment);
+            }
+        }
+        return recordCount;
+    }
+
+    private long scanSegment(final long fromTimestamp, final long toTimestamp, final JournalRecordHandler handler)
+    {
+        labelById.clear();
+        channelById.clear();
+        long recordCount = 0;
+        int offset = SLOT_LENGTH;
+        while (offset + SLOT_LENGTH <= buffer.capacity())
+        {
+            final int type = buffer.getIntVolatile(offset + TYPE_OFFSET);
+            if (type == 0)
+            {
+                break;
+            }
+            if (type == DEFINE_LABEL || type == DEFINE_CHANNEL)
+            {
+                final int charLength = buffer.getInt(offset + DEFINITION_LENGTH_OFFSET);
+                final StringBuilder text = new StringBuilder(charLength);
+                for (int i = 0; i < charLength; i++)
+                {
+                    text.append(buffer.getChar(offset + DEFINITION_CHARS_OFFSET + i * Character.BYTES));
+                }
+                final Int2ObjectHashMap<String> dictionary = type == DEFINE_LABEL ? labelById : channelById;
+                dictionary.put(buffer.getInt(offset + DEFINITION_ID_OFFSET), text.toString());
+                offset += definitionLength(charLength);
+                continue;
+            }
+
+            final long timestamp = buffer.getLong(offset + TIMESTAMP_OFFSET);
+            if (timestamp > toTimestamp)
+            {
+                break;
+            }
+            if (timestamp >= fromTimestamp)
+            {
+                record.wrap(buffer, offset, labelById.get(buffer.getInt(offset + LABEL_ID_OFFSET)),
+                    type == JournalRecord.SYSTEM_COUNTERS ? null :
+                    channelById.get(buffer.getInt(offset + CHANNEL_ID_OFFSET)));
+                handler.onRecord(record);
+                recordCount++;
+            }
+            offset += SLOT_LENGTH;
+        }
+        return recordCount;
+    }
+
+    private static MappedByteBuffer mapSegment(final File segmentFile)
+    {
+        try
+        {
+            return IoUtil.mapExistingFile(segmentFile, FileChannel.MapMode.READ_ONLY, "journal segment");
+        }
+        catch (final Exception ex)
+        {
+            if (segmentFile.exists())
+            {
+                throw ex;
+            }
+            // the segment was deleted by the retention policy of the journal after it was listed
+            return null;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.journal;
+
+import static com.aitusoftware.aether.journal.JournalDescriptor.CHANNEL_ID_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.COUNT_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.SESSION_ID_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.STREAM_ID_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.TIMESTAMP_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.TYPE_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.valueOffset;
+
+import org.agrona.DirectBuffer;
+
+/**
+ * Flyweight over a single counter record in a journal segment.
+ * <p>
+ * Instances are reused by {@code JournalReader}, and are only valid for the duration of the callback.
+ */
+public final class JournalRecord
+{
+    /**
+     * Record containing the system counters of a MediaDriver.
+     */
+    public static final int SYSTEM_COUNTERS = 1;
+    /**
+     * Record containing the counters of a publication.
+     */
+    public static final int PUBLISHER = 2;
+    /**
+     * Record containing the receiver counters of an image.
+     */
+    public static final int SUBSCRIBER = 3;
+    /**
+     * Record containing the position of a single subscription to an image.
+     */
+    public static final int SUBSCRIBER_POSITION = 4;
+
+    static final int BYTES_SENT = 0;
+    static final int BYTES_RECEIVED = 1;
+    static final int NAKS_SENT = 2;
+    static final int NAKS_RECEIVED = 3;
+    static final int ERRORS = 4;
+    static final int CLIENT_TIMEOUTS = 5;
+
+    static final int PUBLISHER_POSITION = 0;
+    static final int BACK_PRESSURE_EVENTS = 1;
+    static final int SENDER_POSITION = 2;
+    static final int SENDER_LIMIT = 3;
+    static final int PUBLISHER_LIMIT = 4;
+
+    static final int RECEIVER_POSITION = 0;
+    static final int RECEIVER_HWM = 1;
+
+    static final int REGISTRATION_ID = 0;
+    static final int SUBSCRIBER_POSITION_VALUE = 1;
+
+    private DirectBuffer buffer;
+    private int offset;
+    private String label;
+    private String channel;
+
+    void wrap(final DirectBuffer buffer, final int offset, final String label, final String channel)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.label = label;
+        this.channel = channel;
+    }
+
+    /**
+     * Returns the type of this record.
+     *
+     * @return one of {@link #SYSTEM_COUNTERS}, {@link #PUBLISHER}, {@link #SUBSCRIBER} or
+     * {@link #SUBSCRIBER_POSITION}
+     */
+    public int type()
+    {
+        return buffer.getInt(offset + TYPE_OFFSET);
+    }
+
+    public String label()
+    {
+        return label;
+    }
+
+    public long timestamp()
+    {
+        return buffer.getLong(offset + TIMESTAMP_OFFSET);
+    }
+
+    /**
+     * Returns the channel of this record, or {@code null} for a {@link #SYSTEM_COUNTERS} record.
+     *
+     * @return the channel
+     */
+    public CharSequence channel()
+    {
+        return channel;
+    }
+
+    public int channelId()
+    {
+        return buffer.getInt(offset + CHANNEL_ID_OFFSET);
+    }
+
+    public int streamId()
+    {
+        return buffer.getInt(offset + STREAM_ID_OFFSET);
+    }
+
+    public int sessionId()
+    {
+        return buffer.getInt(offset + SESSION_ID_OFFSET);
+    }
+
+    public long bytesSent()
+    {
+        return value(BYTES_SENT);
+    }
+
+    public long bytesReceived()
+    {
+        return value(BYTES_RECEIVED);
+    }
+
+    public long naksSent()
+    {
+        return value(NAKS_SENT);
+    }
+
+    public long naksReceived()
+    {
+        return value(NAKS_RECEIVED);
+    }
+
+    public long errors()
+    {
+        return value(ERRORS);
+    }
+
+    public long clientTimeouts()
+    {
+        return value(CLIENT_TIMEOUTS);
+    }
+
+    public long publisherPosition()
+    {
+        return value(PUBLISHER_POSITION);
+    }
+
+    public long backPressureEvents()
+    {
+        return value(BACK_PRESSURE_EVENTS);
+    }
+
+    public long senderPosition()
+    {
+        return value(SENDER_POSITION);
+    }
+
+    public long senderLimit()
+    {
+        return value(SENDER_LIMIT);
+    }
+
+    public long publisherLimit()
+    {
+        return value(PUBLISHER_LIMIT);
+    }
+
+    public long receiverPosition()
+    {
+        return value(RECEIVER_POSITION);
+    }
+
+    public long receiverHighWaterMark()
+    {
+        return value(RECEIVER_HWM);
+    }
+
+    /**
+     * Returns the number of subscriptions to the image, followed by this many {@link #SUBSCRIBER_POSITION} records.
+     *
+     * @return the number of subscriptions
+     */
+    public int subscriberCount()
+    {
+        return buffer.getInt(offset + COUNT_OFFSET);
+    }
+
+    public long registrationId()
+    {
+        return value(REGISTRATION_ID);
+    }
+
+    public long subscriberPosition()
+    {
+        return value(SUBSCRIBER_POSITION_VALUE);
+    }
+
+    private long value(final int index)
+    {
+        return buffer.getLong(offset + valueOffset(index));
+    }
+}
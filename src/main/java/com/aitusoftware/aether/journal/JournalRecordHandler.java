@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.journal;
+
+import com.aitusoftware.aether.annotation.CallerOwned;
+
+/**
+ * Receives records read from a journal.
+ */
+@FunctionalInterface
+public interface JournalRecordHandler
+{
+    /**
+     * Called for each record in the scanned range.
+     *
+     * @param record flyweight over the record, only valid for the duration of the call
+     */
+    void onRecord(@CallerOwned JournalRecord record);
+}
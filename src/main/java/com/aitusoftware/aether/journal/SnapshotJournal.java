@@ -0,0 +1,422 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.journal;
+
+import static com.aitusoftware.aether.journal.JournalDescriptor.CHANNEL_ID_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.COUNT_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.DEFINE_CHANNEL;
+import static com.aitusoftware.aether.journal.JournalDescriptor.DEFINE_LABEL;
+import static com.aitusoftware.aether.journal.JournalDescriptor.DEFINITION_CHARS_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.DEFINITION_ID_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.DEFINITION_LENGTH_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.FIRST_TIMESTAMP_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.LABEL_ID_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.LAST_TIMESTAMP_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.MAGIC;
+import static com.aitusoftware.aether.journal.JournalDescriptor.MAGIC_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.SESSION_ID_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.SLOT_LENGTH;
+import static com.aitusoftware.aether.journal.JournalDescriptor.STREAM_ID_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.TIMESTAMP_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.TYPE_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.VERSION;
+import static com.aitusoftware.aether.journal.JournalDescriptor.VERSION_OFFSET;
+import static com.aitusoftware.aether.journal.JournalDescriptor.definitionLength;
+import static com.aitusoftware.aether.journal.JournalDescriptor.valueOffset;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
+
+import com.aitusoftware.aether.annotation.CallerOwned;
+import com.aitusoftware.aether.event.ChannelDictionary;
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import org.agrona.IoUtil;
+import org.agrona.collections.IntHashSet;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * An implementation of {@code CounterSnapshotListener} that appends every snapshot to a journal of memory-mapped
+ * segment files, to be read by a {@code JournalReader}.
+ * <p>
+ * A new segment is started when the current segment is full. The oldest segments are deleted when the journal
+ * exceeds its maximum length, or when their last snapshot is older than the maximum age.
+ */
+public final class SnapshotJournal implements CounterSnapshotListener, AutoCloseable
+{
+    private final ChannelDictionary labels = new ChannelDictionary();
+    private final ChannelDictionary channels = new ChannelDictionary();
+    private final IntHashSet labelsInSegment = new IntHashSet();
+    private final IntHashSet channelsInSegment = new IntHashSet();
+    private final ArrayDeque<Segment> closedSegments = new ArrayDeque<>();
+    private final UnsafeBuffer buffer = new UnsafeBuffer(0, 0);
+    private final File directory;
+    private final int segmentLength;
+    private final long maxJournalLength;
+    private final long maxAgeMs;
+    private MappedByteBuffer mappedSegment;
+    private File segmentFile;
+    private long segmentSequence;
+    private long lastTimestamp;
+    private int position;
+
+    /**
+     * Construct a new journal from the supplied context.
+     *
+     * @param context configuration context
+     */
+    public SnapshotJournal(final Context context)
+    {
+        context.validate();
+        directory = context.directory();
+        segmentLength = context.segmentLength();
+        maxJournalLength = context.maxJournalLength();
+        maxAgeMs = context.maxAgeMs();
+        IoUtil.ensureDirectoryExists(directory, "journal");
+
+        for (final File existingSegment : JournalDescriptor.listSegments(directory))
+        {
+            final MappedByteBuffer mappedBuffer = IoUtil.mapExistingFile(existingSegment, "journal segment");
+            try
+            {
+                closedSegments.addLast(new Segment(existingSegment, mappedBuffer.getLong(LAST_TIMESTAMP_OFFSET)));
+            }
+            finally
+            {
+                IoUtil.unmap(mappedBuffer);
+            }
+            segmentSequence = JournalDescriptor.segmentSequence(existingSegment) + 1;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onSnapshot(
+        final String label,
+        final long timestamp,
+        @CallerOwned final List<PublisherCounterSet> publisherCounters,
+        @CallerOwned final List<SubscriberCounterSet> subscriberCounters,
+        @CallerOwned final SystemCounters systemCounters)
+    {
+        lastTimestamp = timestamp;
+        deleteExpiredSegments(timestamp);
+        final int labelId = labels.idOf(label);
+
+        final int systemOffset = claimRecord(labelId, ChannelDictionary.NULL_CHANNEL_ID, timestamp);
+        buffer.putLong(systemOffset + valueOffset(JournalRecord.BYTES_SENT), systemCounters.bytesSent());
+        buffer.putLong(systemOffset + valueOffset(JournalRecord.BYTES_RECEIVED), systemCounters.bytesReceived());
+        buffer.putLong(systemOffset + valueOffset(JournalRecord.NAKS_SENT), systemCounters.naksSent());
+        buffer.putLong(systemOffset + valueOffset(JournalRecord.NAKS_RECEIVED), systemCounters.naksReceived());
+        buffer.putLong(systemOffset + valueOffset(JournalRecord.ERRORS), systemCounters.errors());
+        buffer.putLong(systemOffset + valueOffset(JournalRecord.CLIENT_TIMEOUTS), systemCounters.clientTimeouts());
+        buffer.putIntOrdered(systemOffset + TYPE_OFFSET, JournalRecord.SYSTEM_COUNTERS);
+
+        for (int i = 0; i < publisherCounters.size(); i++)
+        {
+            final PublisherCounterSet publisher = publisherCounters.get(i);
+            final int offset = claimSessionRecord(labelId, publisher.channel(),
+                publisher.streamId(), publisher.sessionId(), timestamp);
+            buffer.putLong(offset + valueOffset(JournalRecord.PUBLISHER_POSITION), publisher.publisherPosition());
+            buffer.putLong(offset + valueOffset(JournalRecord.BACK_PRESSURE_EVENTS), publisher.backPressureEvents());
+            buffer.putLong(offset + valueOffset(JournalRecord.SENDER_POSITION), publisher.senderPosition());
+            buffer.putLong(offset + valueOffset(JournalRecord.SENDER_LIMIT), publisher.senderLimit());
+            buffer.putLong(offset + valueOffset(JournalRecord.PUBLISHER_LIMIT), publisher.publisherLimit());
+            buffer.putIntOrdered(offset + TYPE_OFFSET, JournalRecord.PUBLISHER);
+        }
+
+        for (int i = 0; i < subscriberCounters.size(); i++)
+        {
+            final SubscriberCounterSet subscriber = subscriberCounters.get(i);
+            final int offset = claimSessionRecord(labelId, subscriber.channel(),
+                subscriber.streamId(), subscriber.sessionId(), timestamp);
+            buffer.putInt(offset + COUNT_OFFSET, subscriber.subscriberCount());
+            buffer.putLong(offset + valueOffset(JournalRecord.RECEIVER_POSITION), subscriber.receiverPosition());
+            buffer.putLong(offset + valueOffset(JournalRecord.RECEIVER_HWM), subscriber.receiverHighWaterMark());
+            buffer.putIntOrdered(offset + TYPE_OFFSET, JournalRecord.SUBSCRIBER);
+
+            final Long2LongHashMap.EntryIterator positions = subscriber.subscriberPositions().entrySet().iterator();
+            while (positions.hasNext())
+            {
+                positions.next();
+                final int positionOffset = claimSessionRecord(labelId, subscriber.channel(),
+                    subscriber.streamId(), subscriber.sessionId(), timestamp);
+                buffer.putLong(positionOffset + valueOffset(JournalRecord.REGISTRATION_ID), positions.getLongKey());
+                buffer.putLong(positionOffset + valueOffset(JournalRecord.SUBSCRIBER_POSITION_VALUE),
+                    positions.getLongValue());
+                buffer.putIntOrdered(positionOffset + TYPE_OFFSET, JournalRecord.SUBSCRIBER_POSITION);
+            }
+        }
+
+        buffer.putLongOrdered(LAST_TIMESTAMP_OFFSET, timestamp);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close()
+    {
+        if (mappedSegment != null)
+        {
+            buffer.putLongOrdered(LAST_TIMESTAMP_OFFSET, lastTimestamp);
+            IoUtil.unmap(mappedSegment);
+            mappedSegment = null;
+        }
+    }
+
+    private int claimSessionRecord(
+        final int labelId,
+        final CharSequence channel,
+        final int streamId,
+        final int sessionId,
+        final long timestamp)
+    {
+        final int offset = claimRecord(labelId, channels.idOf(channel), timestamp);
+        buffer.putInt(offset + STREAM_ID_OFFSET, streamId);
+        buffer.putInt(offset + SESSION_ID_OFFSET, sessionId);
+        return offset;
+    }
+
+    private int claimRecord(final int labelId, final int channelId, final long timestamp)
+    {
+        if (mappedSegment == null || position + requiredLength(labelId, channelId) > segmentLength)
+        {
+            rollSegment(timestamp);
+        }
+        if (!labelsInSegment.contains(labelId))
+        {
+            writeDefinition(DEFINE_LABEL, labelId, labels.channel(labelId));
+            labelsInSegment.add(labelId);
+        }
+        if (channelId != ChannelDictionary.NULL_CHANNEL_ID && !channelsInSegment.contains(channelId))
+        {
+            writeDefinition(DEFINE_CHANNEL, channelId, channels.channel(channelId));
+            channelsInSegment.add(channelId);
+        }
+
+        final int offset = position;
+        position += SLOT_LENGTH;
+        buffer.putInt(offset + LABEL_ID_OFFSET, labelId);
+        buffer.putLong(offset + TIMESTAMP_OFFSET, timestamp);
+        buffer.putInt(offset + CHANNEL_ID_OFFSET, channelId);
+        return offset;
+    }
+
+    private int requiredLength(final int labelId, final int channelId)
+    {
+        int length = SLOT_LENGTH;
+        if (!labelsInSegment.contains(labelId))
+        {
+            length += definitionLength(labels.channel(labelId).length());
+        }
+        if (channelId != ChannelDictionary.NULL_CHANNEL_ID && !channelsInSegment.contains(channelId))
+        {
+            length += definitionLength(channels.channel(channelId).length());
+        }
+        return length;
+    }
+
+    private void writeDefinition(final int type, final int id, final String text)
+    {
+        final int offset = position;
+        position += definitionLength(text.length());
+        buffer.putInt(offset + DEFINITION_ID_OFFSET, id);
+        buffer.putInt(offset + DEFINITION_LENGTH_OFFSET, text.length());
+        for (int i = 0; i < text.length(); i++)
+        {
+            buffer.putChar(offset + DEFINITION_CHARS_OFFSET + i * Character.BYTES, text.charAt(i));
+        }
+        buffer.putIntOrdered(offset + TYPE_OFFSET, type);
+    }
+
+    private void rollSegment(final long timestamp)
+    {
+        if (mappedSegment != null)
+        {
+            buffer.putLongOrdered(LAST_TIMESTAMP_OFFSET, lastTimestamp);
+            IoUtil.unmap(mappedSegment);
+            closedSegments.addLast(new Segment(segmentFile, lastTimestamp));
+        }
+        while (!closedSegments.isEmpty() && (closedSegments.size() + 1L) * segmentLength > maxJournalLength)
+        {
+            IoUtil.deleteIfExists(closedSegments.removeFirst().file);
+        }
+
+        segmentFile = new File(directory, JournalDescriptor.segmentFileName(segmentSequence++));
+        mappedSegment = IoUtil.mapNewFile(segmentFile, segmentLength, false);
+        buffer.wrap(mappedSegment);
+        buffer.putLong(FIRST_TIMESTAMP_OFFSET, timestamp);
+        buffer.putLong(LAST_TIMESTAMP_OFFSET, timestamp);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putIntOrdered(MAGIC_OFFSET, MAGIC);
+        position = SLOT_LENGTH;
+        labelsInSegment.clear();
+        channelsInSegment.clear();
+    }
+
+    private void deleteExpiredSegments(final long timestamp)
+    {
+        while (maxAgeMs != 0 && !closedSegments.isEmpty() &&
+            closedSegments.peekFirst().lastTimestamp < timestamp - maxAgeMs)
+        {
+            IoUtil.deleteIfExists(closedSegments.removeFirst().file);
+        }
+    }
+
+    private static final class Segment
+    {
+        private final File file;
+        private final long lastTimestamp;
+
+        Segment(final File file, final long lastTimestamp)
+        {
+            this.file = file;
+            this.lastTimestamp = lastTimestamp;
+        }
+    }
+
+    /**
+     * Configuration context.
+     */
+    public static final class Context
+    {
+        private File directory = new File(Configuration.directory());
+        private int segmentLength = Configuration.segmentLength();
+        private long maxJournalLength = Configuration.maxJournalLength();
+        private long maxAgeMs = Configuration.maxAgeMs();
+
+        void validate()
+        {
+            if (segmentLength < Configuration.MIN_SEGMENT_LENGTH)
+            {
+                throw new IllegalStateException("Segment length must be at least " +
+                    Configuration.MIN_SEGMENT_LENGTH + ": " + segmentLength);
+            }
+            if (maxJournalLength < segmentLength)
+            {
+                throw new IllegalStateException("Maximum journal length must be at least the segment length: " +
+                    maxJournalLength);
+            }
+            if (maxAgeMs < 0)
+            {
+                throw new IllegalStateException("Maximum age must not be negative: " + maxAgeMs);
+            }
+        }
+
+        public Context directory(final File directory)
+        {
+            this.directory = directory;
+            return this;
+        }
+
+        public File directory()
+        {
+            return directory;
+        }
+
+        /**
+         * Sets the length of each segment file.
+         *
+         * @param segmentLength segment length in bytes
+         * @return this for a fluent API
+         */
+        public Context segmentLength(final int segmentLength)
+        {
+            this.segmentLength = segmentLength;
+            return this;
+        }
+
+        public int segmentLength()
+        {
+            return segmentLength;
+        }
+
+        /**
+         * Sets the maximum combined length of all segment files. The oldest segments are deleted when a new
+         * segment would exceed this length.
+         *
+         * @param maxJournalLength maximum journal length in bytes
+         * @return this for a fluent API
+         */
+        public Context maxJournalLength(final long maxJournalLength)
+        {
+            this.maxJournalLength = maxJournalLength;
+            return this;
+        }
+
+        public long maxJournalLength()
+        {
+            return maxJournalLength;
+        }
+
+        /**
+         * Sets the age after which a segment is deleted, measured from the last snapshot in the segment.
+         * A value of zero keeps segments until the maximum journal length is reached.
+         *
+         * @param maxAgeMs maximum age in milliseconds
+         * @return this for a fluent API
+         */
+        public Context maxAgeMs(final long maxAgeMs)
+        {
+            this.maxAgeMs = maxAgeMs;
+            return this;
+        }
+
+        public long maxAgeMs()
+        {
+            return maxAgeMs;
+        }
+    }
+
+    public static final class Configuration
+    {
+        public static final String DIRECTORY_PROPERTY_NAME = "aether.journal.dir";
+        public static final String SEGMENT_LENGTH_PROPERTY_NAME = "aether.journal.segmentLength";
+        public static final String MAX_JOURNAL_LENGTH_PROPERTY_NAME = "aether.journal.maxLength";
+        public static final String MAX_AGE_MS_PROPERTY_NAME = "aether.journal.maxAgeMs";
+        static final int MIN_SEGMENT_LENGTH = 64 * 1024;
+
+        public static String directory()
+        {
+            return System.getProperty(DIRECTORY_PROPERTY_NAME, "aether-journal");
+        }
+
+        public static int segmentLength()
+        {
+            return Integer.getInteger(SEGMENT_LENGTH_PROPERTY_NAME, 64 * 1024 * 1024);
+        }
+
+        public static long maxJournalLength()
+        {
+            return Long.getLong(MAX_JOURNAL_LENGTH_PROPERTY_NAME, 1024L * 1024 * 1024);
+        }
+
+        public static long maxAgeMs()
+        {
+            return Long.getLong(MAX_AGE_MS_PROPERTY_NAME, 0L);
+        }
+    }
+}
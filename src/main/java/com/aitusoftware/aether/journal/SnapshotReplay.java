@@ -0,0 +1,290 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.journal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.aitusoftware.aether.annotation.CallerOwned;
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import org.agrona.concurrent.CachedEpochClock;
+import org.agrona.concurrent.EpochClock;
+
+/**
+ * Replays snapshots recorded by a {@code SnapshotJournal} into a {@code CounterSnapshotListener}, with their original
+ * timestamps.
+ * <p>
+ * Snapshots are replayed as fast as possible, or paced at a multiple of the speed at which they were recorded.
+ * The replay {@code EpochClock} reports the timestamp of the snapshot being replayed, so that time-dependent
+ * components behave as they did when the snapshots were recorded.
+ */
+public final class SnapshotReplay implements JournalRecordHandler
+{
+    private final List<PublisherCounterSet> publisherCounterPool = new ArrayList<>();
+    private final List<SubscriberCounterSet> subscriberCounterPool = new ArrayList<>();
+    private final List<PublisherCounterSet> publisherCounters = new ArrayList<>();
+    private final List<SubscriberCounterSet> subscriberCounters = new ArrayList<>();
+    private final SystemCounters systemCounters = new SystemCounters();
+    private final JournalReader journalReader;
+    private final CounterSnapshotListener counterSnapshotListener;
+    private final CachedEpochClock epochClock;
+    private final double speed;
+    private String label;
+    private long timestamp;
+    private long snapshotCount;
+    private long firstTimestamp;
+    private long replayStartNs;
+
+    /**
+     * Construct a new replay from the supplied context.
+     *
+     * @param context configuration context
+     */
+    public SnapshotReplay(final Context context)
+    {
+        context.validate();
+        journalReader = new JournalReader(context.directory());
+        counterSnapshotListener = context.counterSnapshotListener();
+        epochClock = context.epochClock();
+        speed = context.speed();
+    }
+
+    /**
+     * Replays the recorded snapshots with timestamps in the supplied range.
+     *
+     * @param fromTimestamp earliest timestamp to replay, inclusive
+     * @param toTimestamp   latest timestamp to replay, inclusive
+     * @return the number of snapshots replayed
+     */
+    public long replay(final long fromTimestamp, final long toTimestamp)
+    {
+        snapshotCount = 0;
+        label = null;
+        journalReader.scan(fromTimestamp, toTimestamp, this);
+        deliverSnapshot();
+        return snapshotCount;
+    }
+
+    /**
+     * Returns the clock that reports the timestamp of the snapshot being replayed.
+     *
+     * @return the replay clock
+     */
+    public EpochClock epochClock()
+    {
+        return epochClock;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onRecord(@CallerOwned final JournalRecord record)
+    {
+        switch (record.type())
+        {
+            case JournalRecord.SYSTEM_COUNTERS:
+                deliverSnapshot();
+                label = record.label();
+                timestamp = record.timestamp();
+                systemCounters.bytesSent(record.bytesSent());
+                systemCounters.bytesReceived(record.bytesReceived());
+                systemCounters.naksSent(record.naksSent());
+                systemCounters.naksReceived(record.naksReceived());
+                systemCounters.errors(record.errors());
+                systemCounters.clientTimeouts(record.clientTimeouts());
+                break;
+            case JournalRecord.PUBLISHER:
+                onPublisher(record);
+                break;
+            case JournalRecord.SUBSCRIBER:
+                onSubscriber(record);
+                break;
+            case JournalRecord.SUBSCRIBER_POSITION:
+                if (label != null && !subscriberCounters.isEmpty())
+                {
+                    subscriberCounters.get(subscriberCounters.size() - 1)
+                        .subscriberPosition(record.registrationId(), record.subscriberPosition());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void onPublisher(final JournalRecord record)
+    {
+        if (label == null)
+        {
+            return;
+        }
+        if (publisherCounters.size() == publisherCounterPool.size())
+        {
+            publisherCounterPool.add(new PublisherCounterSet());
+        }
+        final PublisherCounterSet publisher = publisherCounterPool.get(publisherCounters.size());
+        publisher.reset(record.channel(), record.sessionId(), record.streamId());
+        publisher.publisherPosition(record.publisherPosition());
+        publisher.backPressureEvents(record.backPressureEvents());
+        publisher.senderPosition(record.senderPosition());
+        publisher.senderLimit(record.senderLimit());
+        publisher.publisherLimit(record.publisherLimit());
+        publisherCounters.add(publisher);
+    }
+
+    private void onSubscriber(final JournalRecord record)
+    {
+        if (label == null)
+        {
+            return;
+        }
+        if (subscriberCounters.size() == subscriberCounterPool.size())
+        {
+            subscriberCounterPool.add(new SubscriberCounterSet());
+        }
+        final SubscriberCounterSet subscriber = subscriberCounterPool.get(subscriberCounters.size());
+        subscriber.reset(record.channel(), record.sessionId(), record.streamId());
+        subscriber.receiverPosition(record.receiverPosition());
+        subscriber.receiverHighWaterMark(record.receiverHighWaterMark());
+        subscriberCounters.add(subscriber);
+    }
+
+    private void deliverSnapshot()
+    {
+        if (label == null)
+        {
+            return;
+        }
+        awaitReplayTime(timestamp);
+        epochClock.update(timestamp);
+        counterSnapshotListener.onSnapshot(label, timestamp, publisherCounters, subscriberCounters, systemCounters);
+        snapshotCount++;
+        label = null;
+        publisherCounters.clear();
+        subscriberCounters.clear();
+    }
+
+    private void awaitReplayTime(final long timestamp)
+    {
+        if (speed == 0)
+        {
+            return;
+        }
+        if (snapshotCount == 0)
+        {
+            firstTimestamp = timestamp;
+            replayStartNs = System.nanoTime();
+            return;
+        }
+        final long deadlineNs = replayStartNs +
+            (long)(TimeUnit.MILLISECONDS.toNanos(timestamp - firstTimestamp) / speed);
+        long remainingNs;
+        while ((remainingNs = deadlineNs - System.nanoTime()) > 0)
+        {
+            LockSupport.parkNanos(remainingNs);
+        }
+    }
+
+    /**
+     * Configuration context.
+     */
+    public static final class Context
+    {
+        private File directory = new File(SnapshotJournal.Configuration.directory());
+        private CounterSnapshotListener counterSnapshotListener;
+        private CachedEpochClock epochClock = new CachedEpochClock();
+        private double speed = 0;
+
+        void validate()
+        {
+            if (counterSnapshotListener == null)
+            {
+                throw new IllegalStateException("Counter snapshot listener must be set");
+            }
+            if (!(speed >= 0))
+            {
+                throw new IllegalStateException("Speed must not be negative: " + speed);
+            }
+        }
+
+        public Context directory(final File directory)
+        {
+            this.directory = directory;
+            return this;
+        }
+
+        public File directory()
+        {
+            return directory;
+        }
+
+        public Context counterSnapshotListener(final CounterSnapshotListener counterSnapshotListener)
+        {
+            this.counterSnapshotListener = counterSnapshotListener;
+            return this;
+        }
+
+        public CounterSnapshotListener counterSnapshotListener()
+        {
+            return counterSnapshotListener;
+        }
+
+        /**
+         * Sets the clock to be updated with the timestamp of each replayed snapshot. Components that should
+         * follow replay time can be constructed with this clock before the replay starts.
+         *
+         * @param epochClock replay clock
+         * @return this for a fluent API
+         */
+        public Context epochClock(final CachedEpochClock epochClock)
+        {
+            this.epochClock = epochClock;
+            return this;
+        }
+
+        public CachedEpochClock epochClock()
+        {
+            return epochClock;
+        }
+
+        /**
+         * Sets the speed of replay relative to the speed at which snapshots were recorded. A value of zero
+         * replays snapshots as fast as possible.
+         *
+         * @param speed replay speed multiplier
+         * @return this for a fluent API
+         */
+        public Context speed(final double speed)
+        {
+            this.speed = speed;
+            return this;
+        }
+
+        public double speed()
+        {
+            return speed;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.model;
+
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays view of the publisher counters in a snapshot.
+ * <p>
+ * The counters of publisher {@code i} are at index {@code i} of each array, for {@code 0 <= i < size()}. Arrays are
+ * reused between batches and may be longer than {@link #size()}.
+ */
+public final class PublisherBatch
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private CharSequence[] channels = new CharSequence[INITIAL_CAPACITY];
+    private int[] sessionIds = new int[INITIAL_CAPACITY];
+    private int[] streamIds = new int[INITIAL_CAPACITY];
+    private long[] publisherPositions = new long[INITIAL_CAPACITY];
+    private long[] backPressureEvents = new long[INITIAL_CAPACITY];
+    private long[] senderPositions = new long[INITIAL_CAPACITY];
+    private long[] senderLimits = new long[INITIAL_CAPACITY];
+    private long[] publisherLimits = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Removes all publishers from the batch.
+     */
+    public void clear()
+    {
+        Arrays.fill(channels, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Appends the counters of a publisher to the batch. The channel is referenced, not copied.
+     *
+     * @param publisher counters of the publisher
+     */
+    public void add(final PublisherCounterSet publisher)
+    {
+        if (size == sessionIds.length)
+        {
+            grow();
+        }
+        channels[size] = publisher.channel();
+        sessionIds[size] = publisher.sessionId();
+        streamIds[size] = publisher.streamId();
+        publisherPositions[size] = publisher.publisherPosition();
+        backPressureEvents[size] = publisher.backPressureEvents();
+        senderPositions[size] = publisher.senderPosition();
+        senderLimits[size] = publisher.senderLimit();
+        publisherLimits[size] = publisher.publisherLimit();
+        size++;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public CharSequence[] channels()
+    {
+        return channels;
+    }
+
+    public int[] sessionIds()
+    {
+        return sessionIds;
+    }
+
+    public int[] streamIds()
+    {
+        return streamIds;
+    }
+
+    public long[] publisherPositions()
+    {
+        return publisherPositions;
+    }
+
+    public long[] backPressureEvents()
+    {
+        return backPressureEvents;
+    }
+
+    public long[] senderPositions()
+    {
+        return senderPositions;
+    }
+
+    public long[] senderLimits()
+    {
+        return senderLimits;
+    }
+
+    public long[] publisherLimits()
+    {
+        return publisherLimits;
+    }
+
+    private void grow()
+    {
+        final int capacity = sessionIds.length * 2;
+        channels = Arrays.copyOf(channels, capacity);
+        sessionIds = Arrays.copyOf(sessionIds, capacity);
+        streamIds = Arrays.copyOf(streamIds, capacity);
+        publisherPositions = Arrays.copyOf(publisherPositions, capacity);
+        backPressureEvents = Arrays.copyOf(backPressureEvents, capacity);
+        senderPositions = Arrays.copyOf(senderPositions, capacity);
+        senderLimits = Arrays.copyOf(senderLimits, capacity);
+        publisherLimits = Arrays.copyOf(publisherLimits, capacity);
+    }
+}
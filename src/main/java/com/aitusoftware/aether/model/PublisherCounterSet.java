@@ -98,6 +98,10 @@ public final class PublisherCounterSet implements SessionKeyed
         return publisherLimit;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
     public int sessionId()
     {
         return sessionId;
@@ -113,11 +117,19 @@ public final class PublisherCounterSet implements SessionKeyed
         return Math.max(0, publisherPosition - senderPosition);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
     public CharSequence channel()
     {
         return channel;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
     public int streamId()
     {
         return streamId;
@@ -126,12 +138,17 @@ public final class PublisherCounterSet implements SessionKeyed
     public PublisherCounterSet copy()
     {
         final PublisherCounterSet copy = new PublisherCounterSet();
-        copy.reset(channel().toString(), sessionId(), streamId());
-        copy.backPressureEvents(backPressureEvents());
-        copy.publisherLimit(publisherLimit());
-        copy.publisherPosition(publisherPosition());
-        copy.senderLimit(senderLimit());
-        copy.senderPosition(senderPosition());
+        copyInto(copy);
         return copy;
     }
+
+    public void copyInto(final PublisherCounterSet copy)
+    {
+        copy.reset(channel, sessionId, streamId);
+        copy.backPressureEvents(backPressureEvents);
+        copy.publisherLimit(publisherLimit);
+        copy.publisherPosition(publisherPosition);
+        copy.senderLimit(senderLimit);
+        copy.senderPosition(senderPosition);
+    }
 }
\ No newline at end of file
@@ -30,4 +30,25 @@ public interface SessionKeyed
      * @param streamId  the streamId
      */
     void reset(CharSequence channel, int sessionId, int streamId);
+
+    /**
+     * Returns the channel of this entity.
+     *
+     * @return the channel
+     */
+    CharSequence channel();
+
+    /**
+     * Returns the sessionId of this entity.
+     *
+     * @return the sessionId
+     */
+    int sessionId();
+
+    /**
+     * Returns the streamId of this entity.
+     *
+     * @return the streamId
+     */
+    int streamId();
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.model;
+
+import java.util.Arrays;
+
+import org.agrona.collections.Long2LongHashMap;
+
+/**
+ * Structure-of-arrays view of the subscriber counters in a snapshot.
+ * <p>
+ * The counters of subscriber {@code i} are at index {@code i} of each per-subscriber array, for
+ * {@code 0 <= i < size()}. The positions of its subscriptions are at indices
+ * {@code subscriberPositionOffsets()[i]} (inclusive) to {@code subscriberPositionOffsets()[i + 1]} (exclusive) of
+ * {@link #registrationIds()} and {@link #subscriberPositions()}. Arrays are reused between batches and may be longer
+ * than the data they hold.
+ */
+public final class SubscriberBatch
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private CharSequence[] channels = new CharSequence[INITIAL_CAPACITY];
+    private int[] sessionIds = new int[INITIAL_CAPACITY];
+    private int[] streamIds = new int[INITIAL_CAPACITY];
+    private long[] receiverPositions = new long[INITIAL_CAPACITY];
+    private long[] receiverHighWaterMarks = new long[INITIAL_CAPACITY];
+    private int[] subscriberPositionOffsets = new int[INITIAL_CAPACITY + 1];
+    private long[] registrationIds = new long[INITIAL_CAPACITY];
+    private long[] subscriberPositions = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Removes all subscribers from the batch.
+     */
+    public void clear()
+    {
+        Arrays.fill(channels, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Appends the counters of a subscriber to the batch. The channel is referenced, not copied.
+     *
+     * @param subscriber counters of the subscriber
+     */
+    public void add(final SubscriberCounterSet subscriber)
+    {
+        if (size == sessionIds.length)
+        {
+            grow();
+        }
+        channels[size] = subscriber.channel();
+        sessionIds[size] = subscriber.sessionId();
+        streamIds[size] = subscriber.streamId();
+        receiverPositions[size] = subscriber.receiverPosition();
+        receiverHighWaterMarks[size] = subscriber.receiverHighWaterMark();
+
+        int positionIndex = subscriberPositionOffsets[size];
+        final int positionLimit = positionIndex + subscriber.subscriberCount();
+        if (positionLimit > registrationIds.length)
+        {
+            final int capacity = Math.max(positionLimit, registrationIds.length * 2);
+            registrationIds = Arrays.copyOf(registrationIds, capacity);
+            subscriberPositions = Arrays.copyOf(subscriberPositions, capacity);
+        }
+        final Long2LongHashMap.EntryIterator positions = subscriber.subscriberPositions().entrySet().iterator();
+        while (positions.hasNext())
+        {
+            positions.next();
+            registrationIds[positionIndex] = positions.getLongKey();
+            subscriberPositions[positionIndex] = positions.getLongValue();
+            positionIndex++;
+        }
+        size++;
+        subscriberPositionOffsets[size] = positionIndex;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public CharSequence[] channels()
+    {
+        return channels;
+    }
+
+    public int[] sessionIds()
+    {
+        return sessionIds;
+    }
+
+    public int[] streamIds()
+    {
+        return streamIds;
+    }
+
+    public long[] receiverPositions()
+    {
+        return receiverPositions;
+    }
+
+    public long[] receiverHighWaterMarks()
+    {
+        return receiverHighWaterMarks;
+    }
+
+    public int[] subscriberPositionOffsets()
+    {
+        return subscriberPositionOffsets;
+    }
+
+    public long[] registrationIds()
+    {
+        return registrationIds;
+    }
+
+    public long[] subscriberPositions()
+    {
+        return subscriberPositions;
+    }
+
+    private void grow()
+    {
+        final int capacity = sessionIds.length * 2;
+        channels = Arrays.copyOf(channels, capacity);
+        sessionIds = Arrays.copyOf(sessionIds, capacity);
+        streamIds = Arrays.copyOf(streamIds, capacity);
+        receiverPositions = Arrays.copyOf(receiverPositions, capacity);
+        receiverHighWaterMarks = Arrays.copyOf(receiverHighWaterMarks, capacity);
+        subscriberPositionOffsets = Arrays.copyOf(subscriberPositionOffsets, capacity + 1);
+    }
+}
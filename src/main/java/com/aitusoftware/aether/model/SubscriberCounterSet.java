@@ -84,6 +84,10 @@ public final class SubscriberCounterSet implements SessionKeyed
         return receiverHighWaterMark;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
     public int sessionId()
     {
         return sessionId;
@@ -99,11 +103,19 @@ public final class SubscriberCounterSet implements SessionKeyed
         return Math.max(0, receiverHighWaterMark - publisher.senderPosition());
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
     public CharSequence channel()
     {
         return channel;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
     public int streamId()
     {
         return streamId;
@@ -112,16 +124,21 @@ public final class SubscriberCounterSet implements SessionKeyed
     public SubscriberCounterSet copy()
     {
         final SubscriberCounterSet copy = new SubscriberCounterSet();
-        copy.reset(channel(), sessionId(), streamId());
-        copy.receiverHighWaterMark(receiverHighWaterMark());
-        copy.receiverPosition(receiverPosition());
+        copyInto(copy);
+        return copy;
+    }
+
+    public void copyInto(final SubscriberCounterSet copy)
+    {
+        copy.reset(channel, sessionId, streamId);
+        copy.receiverHighWaterMark(receiverHighWaterMark);
+        copy.receiverPosition(receiverPosition);
 
-        final Long2LongHashMap.KeyIterator registrationIds = subscriberPositions.keySet().iterator();
-        while (registrationIds.hasNext())
+        final Long2LongHashMap.EntryIterator positions = subscriberPositions.entrySet().iterator();
+        while (positions.hasNext())
         {
-            final long registrationId = registrationIds.nextValue();
-            copy.subscriberPosition(registrationId, subscriberPositions.get(registrationId));
+            positions.next();
+            copy.subscriberPosition(positions.getLongKey(), positions.getLongValue());
         }
-        return copy;
     }
 }
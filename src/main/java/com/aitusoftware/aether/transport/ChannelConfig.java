@@ -22,7 +22,21 @@ final class ChannelConfig
     private static final String AETHER_CHANNEL_DEFAULT = "aeron:udp?endpoint=localhost:15566";
     private static final String AETHER_TRANSPORT_CHANNEL_PROP_NAME = "aether.transport.channel";
     private static final String AETHER_TRANSPORT_STREAM_ID_PROP_NAME = "aether.transport.streamId";
+    private static final String AETHER_TRANSPORT_KEY_FRAME_INTERVAL_PROP_NAME = "aether.transport.keyFrameInterval";
+    private static final String AETHER_TRANSPORT_PENDING_QUEUE_LENGTH_PROP_NAME =
+        "aether.transport.pendingQueueLength";
+    private static final String AETHER_TRANSPORT_CONFLATE_PROP_NAME = "aether.transport.conflate";
+    private static final String AETHER_TRANSPORT_CHANNEL_ENCODING_PROP_NAME = "aether.transport.channelEncoding";
+    private static final String AETHER_TRANSPORT_COMPRESS_PROP_NAME = "aether.transport.compress";
     static final String AETHER_CHANNEL = System.getProperty(AETHER_TRANSPORT_CHANNEL_PROP_NAME,
         AETHER_CHANNEL_DEFAULT);
     static final int AETHER_STREAM_ID = Integer.getInteger(AETHER_TRANSPORT_STREAM_ID_PROP_NAME, 0xAE01);
+    static final int KEY_FRAME_INTERVAL = Integer.getInteger(AETHER_TRANSPORT_KEY_FRAME_INTERVAL_PROP_NAME,
+        Versions.DEFAULT_KEY_FRAME_INTERVAL);
+    static final int PENDING_QUEUE_LENGTH = Integer.getInteger(AETHER_TRANSPORT_PENDING_QUEUE_LENGTH_PROP_NAME,
+        1024 * 1024);
+    static final boolean CONFLATE = Boolean.getBoolean(AETHER_TRANSPORT_CONFLATE_PROP_NAME);
+    static final ChannelEncoding CHANNEL_ENCODING = ChannelEncoding.valueOf(
+        System.getProperty(AETHER_TRANSPORT_CHANNEL_ENCODING_PROP_NAME, ChannelEncoding.ASCII.name()));
+    static final boolean COMPRESS = Boolean.getBoolean(AETHER_TRANSPORT_COMPRESS_PROP_NAME);
 }
\ No newline at end of file
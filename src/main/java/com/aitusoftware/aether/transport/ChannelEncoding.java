@@ -0,0 +1,60 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.transport;
+
+/**
+ * Determines how labels and channels are encoded in serialised snapshots.
+ */
+public enum ChannelEncoding
+{
+    /**
+     * Each character is encoded as two bytes, so any label or channel can be represented.
+     */
+    UTF_16((byte)0),
+
+    /**
+     * Each character is encoded as a single byte, halving the size of Aeron URIs, which only contain ASCII
+     * characters. A label or channel containing characters outside the ASCII range is encoded as UTF-16.
+     */
+    ASCII((byte)1);
+
+    private final byte code;
+
+    ChannelEncoding(final byte code)
+    {
+        this.code = code;
+    }
+
+    byte code()
+    {
+        return code;
+    }
+
+    static ChannelEncoding get(final byte code)
+    {
+        if (code == ASCII.code)
+        {
+            return ASCII;
+        }
+        if (code == UTF_16.code)
+        {
+            return UTF_16;
+        }
+        throw new IllegalArgumentException("Unknown channel encoding: " + code);
+    }
+}
@@ -18,6 +18,7 @@
 package com.aitusoftware.aether.transport;
 
 import com.aitusoftware.aether.annotation.CallerOwned;
+import com.aitusoftware.aether.event.ConflatingSnapshotCache;
 import com.aitusoftware.aether.event.CounterSnapshotListener;
 import com.aitusoftware.aether.model.SystemCounters;
 import com.aitusoftware.aether.model.PublisherCounterSet;
@@ -25,22 +26,56 @@ import com.aitusoftware.aether.model.SubscriberCounterSet;
 import io.aeron.Aeron;
 import io.aeron.CommonContext;
 import io.aeron.Publication;
+import org.agrona.BitUtil;
 import org.agrona.CloseHelper;
+import org.agrona.DirectBuffer;
 import org.agrona.ExpandableArrayBuffer;
+import org.agrona.ExpandableRingBuffer;
 import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
 
 import java.util.List;
 
 /**
  * An implementation of {@code CounterSnapshotListener} that publishes to an Aeron {@code Publication}.
+ * <p>
+ * Snapshots are split into pages no larger than the maximum payload length of the {@code Publication}, so that
+ * large snapshots are published without fragmentation, and each page is offered as a separate message. If
+ * compression is enabled, each page is compressed, and sent compressed if that makes it smaller; subscribers
+ * detect compressed pages from the page header.
+ * <p>
+ * Publishing never waits for the {@code Publication}. Snapshots that cannot be published because of back pressure
+ * are held in a bounded queue, and retried when {@link #doWork()} is called, or before the next snapshot is
+ * published. If conflation is enabled, only the latest snapshot of each label is kept while the queue is not
+ * empty. Snapshots that do not fit in the queue, or cannot be published because the {@code Publication} is not
+ * connected or is closed, are dropped, and the next snapshot of the label is sent as a key frame. Dropped and
+ * conflated snapshots still consume a sequence number, so subscribers report them as missed.
+ * <p>
+ * Serialised bytes, dropped snapshots and offer retries are reported as Aeron counters, labelled with the
+ * streamId of the publication.
  */
 public final class CounterSnapshotPublisher implements CounterSnapshotListener, AutoCloseable
 {
+    public static final int SERIALISED_BYTES_COUNTER_TYPE_ID = 10003;
+    public static final int OFFER_FAILURES_COUNTER_TYPE_ID = 10004;
+    public static final int OFFER_RETRIES_COUNTER_TYPE_ID = 10005;
+
     private final MutableDirectBuffer buffer = new ExpandableArrayBuffer();
-    private final SnapshotSerialiser serialiser = new SnapshotSerialiser();
+    private final ExpandableRingBuffer.MessageConsumer pendingSnapshotSender = this::sendPendingSnapshot;
+    private final CounterSnapshotListener conflatedSnapshotSender = this::sendSnapshot;
+    private final SnapshotSerialiser serialiser;
+    private final ExpandableRingBuffer pendingSnapshots;
+    private final ConflatingSnapshotCache conflatingSnapshotCache;
+    private final PageCompressor pageCompressor;
     private final Publication publication;
     private final Aeron aeronClient;
     private final boolean ownsAeronClient;
+    private final AtomicCounter serialisedBytes;
+    private final AtomicCounter offerFailures;
+    private final AtomicCounter offerRetries;
+    // snapshots whose last page is waiting in the pending queue, so that failures count snapshots, not pages
+    private int pendingSnapshotCount;
+    private boolean dropPendingSnapshots;
 
     /**
      * Construct a new publisher using runtime configuration.
@@ -57,6 +92,7 @@ public final class CounterSnapshotPublisher implements CounterSnapshotListener,
      */
     public CounterSnapshotPublisher(final Context context)
     {
+        context.validate();
         if (context.aeronClient() == null)
         {
             aeronClient = Aeron.connect(new Aeron.Context()
@@ -70,6 +106,17 @@ public final class CounterSnapshotPublisher implements CounterSnapshotListener,
         }
 
         publication = aeronClient.addPublication(context.aetherChannel(), context.aetherStreamId());
+        serialiser = new SnapshotSerialiser(
+            context.keyFrameInterval(), context.channelEncoding(), publication.maxPayloadLength());
+        pendingSnapshots = new ExpandableRingBuffer(0, context.pendingQueueLength(), false);
+        conflatingSnapshotCache = context.conflate() ? new ConflatingSnapshotCache() : null;
+        pageCompressor = context.compress() ? new PageCompressor() : null;
+        // the streamId distinguishes the counters of publishers for different shards
+        final int streamId = context.aetherStreamId();
+        serialisedBytes = aeronClient.addCounter(
+            SERIALISED_BYTES_COUNTER_TYPE_ID, "aether-serialised-bytes: " + streamId);
+        offerFailures = aeronClient.addCounter(OFFER_FAILURES_COUNTER_TYPE_ID, "aether-offer-failures: " + streamId);
+        offerRetries = aeronClient.addCounter(OFFER_RETRIES_COUNTER_TYPE_ID, "aether-offer-retries: " + streamId);
     }
 
     /**
@@ -83,20 +130,137 @@ public final class CounterSnapshotPublisher implements CounterSnapshotListener,
         @CallerOwned final List<SubscriberCounterSet> subscriberCounters,
         @CallerOwned final SystemCounters systemCounters)
     {
-        final int length = serialiser.serialiseSnapshot(
-            label, timestamp, publisherCounters, subscriberCounters, systemCounters, buffer);
+        doWork();
+        if (conflatingSnapshotCache != null && !pendingSnapshots.isEmpty())
+        {
+            final long conflatedSnapshots = conflatingSnapshotCache.conflatedSnapshots();
+            conflatingSnapshotCache.onSnapshot(
+                label, timestamp, publisherCounters, subscriberCounters, systemCounters);
+            if (conflatingSnapshotCache.conflatedSnapshots() != conflatedSnapshots)
+            {
+                // the replaced snapshot will never be published, so subscribers should see a gap
+                serialiser.skipSnapshot(label);
+            }
+        }
+        else
+        {
+            sendSnapshot(label, timestamp, publisherCounters, subscriberCounters, systemCounters);
+        }
+    }
+
+    /**
+     * Retries publication of snapshots that were held back by back pressure. Must be called on the thread that
+     * delivers snapshots to this publisher.
+     *
+     * @return amount of work done
+     */
+    public int doWork()
+    {
+        int work = 0;
+        if (!pendingSnapshots.isEmpty())
+        {
+            work += pendingSnapshots.consume(pendingSnapshotSender, pendingSnapshots.size());
+            if (dropPendingSnapshots)
+            {
+                dropPendingSnapshots = false;
+                offerFailures.getAndAddOrdered(pendingSnapshotCount);
+                pendingSnapshotCount = 0;
+                pendingSnapshots.reset(0);
+                // queued deltas were encoded against snapshots that subscribers will not receive
+                serialiser.forceKeyFrames();
+            }
+        }
+        if (conflatingSnapshotCache != null && pendingSnapshots.isEmpty())
+        {
+            work += conflatingSnapshotCache.poll(conflatedSnapshotSender);
+        }
+        return work;
+    }
+
+    private void sendSnapshot(
+        final String label,
+        final long timestamp,
+        final List<PublisherCounterSet> publisherCounters,
+        final List<SubscriberCounterSet> subscriberCounters,
+        final SystemCounters systemCounters)
+    {
+        serialiser.serialiseSnapshot(label, timestamp, publisherCounters, subscriberCounters, systemCounters, buffer);
 
-        int retryCount = 5;
-        long result;
-        do
+        int pageOffset = 0;
+        boolean queued = false;
+        for (int page = 0, pageCount = serialiser.pageCount(); page < pageCount; page++)
         {
-            result = publication.offer(buffer, 0, length);
-            if (result == Publication.CLOSED)
+            final int pageLimit = serialiser.pageLimit(page);
+            DirectBuffer pageBuffer = buffer;
+            int offset = pageOffset;
+            int length = pageLimit - pageOffset;
+            if (pageCompressor != null)
             {
-                throw new IllegalStateException("Publication closed");
+                final int compressedLength = pageCompressor.compress(buffer, pageOffset, length);
+                if (compressedLength < length)
+                {
+                    pageBuffer = pageCompressor.buffer();
+                    offset = 0;
+                    length = compressedLength;
+                }
             }
+            serialisedBytes.getAndAddOrdered(length);
+
+            final long result = pendingSnapshots.isEmpty() ?
+                publication.offer(pageBuffer, offset, length) : Publication.BACK_PRESSURED;
+            if (result < 0)
+            {
+                if (isRetryable(result) && pendingSnapshots.append(pageBuffer, offset, length))
+                {
+                    if (!queued)
+                    {
+                        queued = true;
+                        pendingSnapshotCount++;
+                    }
+                }
+                else
+                {
+                    if (queued)
+                    {
+                        // the queued pages can no longer complete the snapshot, which is counted here instead
+                        pendingSnapshotCount--;
+                    }
+                    offerFailures.incrementOrdered();
+                    // subscribers can only apply the next delta if they received this one
+                    serialiser.forceKeyFrame(label);
+                    return;
+                }
+            }
+            pageOffset = pageLimit;
         }
-        while (--retryCount != 0 && result < 0);
+    }
+
+    private boolean sendPendingSnapshot(
+        final MutableDirectBuffer buffer, final int offset, final int length, final int headOffset)
+    {
+        final long result = publication.offer(buffer, offset, length);
+        if (result > 0)
+        {
+            if ((buffer.getByte(offset + Versions.PAGE_FLAGS_OFFSET) & Versions.END_PAGE_FLAG) != 0)
+            {
+                pendingSnapshotCount--;
+            }
+            return true;
+        }
+        if (isRetryable(result))
+        {
+            offerRetries.incrementOrdered();
+        }
+        else
+        {
+            dropPendingSnapshots = true;
+        }
+        return false;
+    }
+
+    private static boolean isRetryable(final long result)
+    {
+        return result == Publication.BACK_PRESSURED || result == Publication.ADMIN_ACTION;
     }
 
     /**
@@ -105,6 +269,7 @@ public final class CounterSnapshotPublisher implements CounterSnapshotListener,
     @Override
     public void close()
     {
+        CloseHelper.closeAll(serialisedBytes, offerFailures, offerRetries);
         CloseHelper.close(publication);
         if (ownsAeronClient)
         {
@@ -121,6 +286,19 @@ public final class CounterSnapshotPublisher implements CounterSnapshotListener,
         private String aetherChannel = ChannelConfig.AETHER_CHANNEL;
         private int aetherStreamId = ChannelConfig.AETHER_STREAM_ID;
         private String aeronDirectoryName = CommonContext.getAeronDirectoryName();
+        private int keyFrameInterval = ChannelConfig.KEY_FRAME_INTERVAL;
+        private int pendingQueueLength = ChannelConfig.PENDING_QUEUE_LENGTH;
+        private boolean conflate = ChannelConfig.CONFLATE;
+        private ChannelEncoding channelEncoding = ChannelConfig.CHANNEL_ENCODING;
+        private boolean compress = ChannelConfig.COMPRESS;
+
+        void validate()
+        {
+            if (!BitUtil.isPowerOfTwo(pendingQueueLength))
+            {
+                throw new IllegalStateException("Pending queue length must be a power of two: " + pendingQueueLength);
+            }
+        }
 
         public Context aeronClient(final Aeron aeronClient)
         {
@@ -165,5 +343,93 @@ public final class CounterSnapshotPublisher implements CounterSnapshotListener,
         {
             return aeronDirectoryName;
         }
+
+        /**
+         * Sets the number of snapshots of each label between key frames. Snapshots between key frames are
+         * encoded as deltas, and a subscriber that joins late starts receiving snapshots at the next key frame.
+         *
+         * @param keyFrameInterval number of snapshots between key frames, must be at least 1
+         * @return this for a fluent API
+         */
+        public Context keyFrameInterval(final int keyFrameInterval)
+        {
+            this.keyFrameInterval = keyFrameInterval;
+            return this;
+        }
+
+        public int keyFrameInterval()
+        {
+            return keyFrameInterval;
+        }
+
+        /**
+         * Sets the maximum length of the queue holding snapshots that could not be published because of
+         * back pressure.
+         *
+         * @param pendingQueueLength queue length in bytes, must be a power of two
+         * @return this for a fluent API
+         */
+        public Context pendingQueueLength(final int pendingQueueLength)
+        {
+            this.pendingQueueLength = pendingQueueLength;
+            return this;
+        }
+
+        public int pendingQueueLength()
+        {
+            return pendingQueueLength;
+        }
+
+        /**
+         * Sets whether only the latest snapshot of each label is kept while earlier snapshots are waiting to be
+         * published.
+         *
+         * @param conflate true to conflate snapshots
+         * @return this for a fluent API
+         */
+        public Context conflate(final boolean conflate)
+        {
+            this.conflate = conflate;
+            return this;
+        }
+
+        public boolean conflate()
+        {
+            return conflate;
+        }
+
+        /**
+         * Sets the encoding used to write labels and channels.
+         *
+         * @param channelEncoding the channel encoding
+         * @return this for a fluent API
+         */
+        public Context channelEncoding(final ChannelEncoding channelEncoding)
+        {
+            this.channelEncoding = channelEncoding;
+            return this;
+        }
+
+        public ChannelEncoding channelEncoding()
+        {
+            return channelEncoding;
+        }
+
+        /**
+         * Sets whether snapshot pages are compressed, trading CPU time for bandwidth on constrained links.
+         *
+         * @param compress true to compress snapshot pages
+         * @return this for a fluent API
+         */
+        public Context compress(final boolean compress)
+        {
+            this.compress = compress;
+            return this;
+        }
+
+        public boolean compress()
+        {
+            return compress;
+        }
     }
-}
\ No newline at end of file
+}
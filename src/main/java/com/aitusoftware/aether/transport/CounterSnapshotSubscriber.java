@@ -18,6 +18,7 @@
 package com.aitusoftware.aether.transport;
 
 import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.event.SnapshotSequenceListener;
 import io.aeron.Aeron;
 import io.aeron.CommonContext;
 import io.aeron.FragmentAssembler;
@@ -26,18 +27,39 @@ import io.aeron.logbuffer.FragmentHandler;
 import io.aeron.logbuffer.Header;
 import org.agrona.CloseHelper;
 import org.agrona.DirectBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
 
 /**
  * A listener to data published by a {@code CounterSnapshotPublisher}.
+ * <p>
+ * Snapshots are received as pages that each fit in a single fragment, and each page is decoded as it arrives.
+ * The {@code FragmentAssembler} passes unfragmented messages straight through, and is only needed to reassemble
+ * a page holding a single counter set that is larger than the maximum payload length. Compressed pages are
+ * decompressed into a re-used buffer before decoding.
+ * <p>
+ * Received fragments and the time spent decoding them are reported as Aeron counters, along with snapshots that
+ * were not delivered and restarts of collectors, which are also passed to the optional
+ * {@code SnapshotSequenceListener}.
  */
 public final class CounterSnapshotSubscriber implements FragmentHandler, AutoCloseable
 {
-    private final SnapshotDeserialiser deserialiser = new SnapshotDeserialiser();
+    public static final int FRAGMENTS_RECEIVED_COUNTER_TYPE_ID = 10006;
+    public static final int DECODE_TIME_COUNTER_TYPE_ID = 10007;
+    public static final int MISSED_SNAPSHOTS_COUNTER_TYPE_ID = 10011;
+    public static final int COLLECTOR_RESTARTS_COUNTER_TYPE_ID = 10012;
+
+    private final SnapshotDeserialiser deserialiser = new SnapshotDeserialiser(new SequenceTracker());
     private final FragmentAssembler fragmentAssembler = new FragmentAssembler(this);
+    private final PageCompressor pageCompressor = new PageCompressor();
     private final Subscription subscription;
     private final CounterSnapshotListener counterSnapshotListener;
     private final Aeron aeronClient;
     private final boolean ownsAeronClient;
+    private final AtomicCounter fragmentsReceived;
+    private final AtomicCounter decodeTimeNs;
+    private final AtomicCounter missedSnapshots;
+    private final AtomicCounter collectorRestarts;
+    private final SnapshotSequenceListener snapshotSequenceListener;
 
     /**
      * Creates a new subscriber using runtime configuration.
@@ -67,6 +89,11 @@ public final class CounterSnapshotSubscriber implements FragmentHandler, AutoClo
 
         subscription = aeronClient.addSubscription(context.aetherChannel(), context.aetherStreamId());
         counterSnapshotListener = context.counterSnapshotListener();
+        fragmentsReceived = aeronClient.addCounter(FRAGMENTS_RECEIVED_COUNTER_TYPE_ID, "aether-fragments-received");
+        decodeTimeNs = aeronClient.addCounter(DECODE_TIME_COUNTER_TYPE_ID, "aether-decode-time-ns");
+        missedSnapshots = aeronClient.addCounter(MISSED_SNAPSHOTS_COUNTER_TYPE_ID, "aether-missed-snapshots");
+        collectorRestarts = aeronClient.addCounter(COLLECTOR_RESTARTS_COUNTER_TYPE_ID, "aether-collector-restarts");
+        snapshotSequenceListener = context.snapshotSequenceListener();
     }
 
     /**
@@ -75,6 +102,7 @@ public final class CounterSnapshotSubscriber implements FragmentHandler, AutoClo
     @Override
     public void close() throws Exception
     {
+        CloseHelper.closeAll(fragmentsReceived, decodeTimeNs, missedSnapshots, collectorRestarts);
         CloseHelper.close(subscription);
         if (ownsAeronClient)
         {
@@ -92,7 +120,17 @@ public final class CounterSnapshotSubscriber implements FragmentHandler, AutoClo
         final int length,
         final Header header)
     {
-        deserialiser.deserialiseSnapshot(buffer, offset, counterSnapshotListener);
+        final long startNs = System.nanoTime();
+        if (PageCompressor.isCompressed(buffer, offset))
+        {
+            pageCompressor.decompress(buffer, offset, length);
+            deserialiser.deserialiseSnapshot(pageCompressor.buffer(), 0, counterSnapshotListener);
+        }
+        else
+        {
+            deserialiser.deserialiseSnapshot(buffer, offset, counterSnapshotListener);
+        }
+        decodeTimeNs.getAndAddOrdered(System.nanoTime() - startNs);
     }
 
     /**
@@ -102,7 +140,35 @@ public final class CounterSnapshotSubscriber implements FragmentHandler, AutoClo
      */
     public int doWork()
     {
-        return subscription.poll(fragmentAssembler, 100);
+        final int fragments = subscription.poll(fragmentAssembler, 100);
+        if (fragments != 0)
+        {
+            fragmentsReceived.getAndAddOrdered(fragments);
+        }
+        return fragments;
+    }
+
+    private final class SequenceTracker implements SnapshotSequenceListener
+    {
+        @Override
+        public void onSnapshotsMissed(final String label, final long missedCount, final long sequence)
+        {
+            missedSnapshots.getAndAddOrdered(missedCount);
+            if (snapshotSequenceListener != null)
+            {
+                snapshotSequenceListener.onSnapshotsMissed(label, missedCount, sequence);
+            }
+        }
+
+        @Override
+        public void onCollectorRestarted(final String label, final long previousStartEpochMs, final long startEpochMs)
+        {
+            collectorRestarts.incrementOrdered();
+            if (snapshotSequenceListener != null)
+            {
+                snapshotSequenceListener.onCollectorRestarted(label, previousStartEpochMs, startEpochMs);
+            }
+        }
     }
 
     /**
@@ -115,6 +181,7 @@ public final class CounterSnapshotSubscriber implements FragmentHandler, AutoClo
         private int aetherStreamId = ChannelConfig.AETHER_STREAM_ID;
         private String aeronDirectoryName = CommonContext.getAeronDirectoryName();
         private CounterSnapshotListener counterSnapshotListener;
+        private SnapshotSequenceListener snapshotSequenceListener;
 
         public Context counterSnapshotListener(final CounterSnapshotListener counterSnapshotListener)
         {
@@ -127,6 +194,17 @@ public final class CounterSnapshotSubscriber implements FragmentHandler, AutoClo
             return counterSnapshotListener;
         }
 
+        public Context snapshotSequenceListener(final SnapshotSequenceListener snapshotSequenceListener)
+        {
+            this.snapshotSequenceListener = snapshotSequenceListener;
+            return this;
+        }
+
+        public SnapshotSequenceListener snapshotSequenceListener()
+        {
+            return snapshotSequenceListener;
+        }
+
         public Context aeronClient(final Aeron aeronClient)
         {
             this.aeronClient = aeronClient;
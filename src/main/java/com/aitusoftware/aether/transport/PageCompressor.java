@@ -0,0 +1,269 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.transport;
+
+import java.nio.ByteOrder;
+
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+
+/**
+ * Compresses the body of snapshot pages using the LZ4 block format.
+ * <p>
+ * The header of a compressed page, up to and including the page flags, is not compressed, so that the
+ * {@code Versions.COMPRESSED_PAGE_FLAG} can be checked before decoding. It is followed by the uncompressed length
+ * of the body, and the compressed body.
+ * <p>
+ * Compressed and decompressed pages are written to a re-used direct buffer, so neither operation allocates once
+ * the buffer has grown to the largest page.
+ */
+final class PageCompressor
+{
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int MAX_DISTANCE = 0xFFFF;
+    private static final int HASH_LOG = 12;
+    private static final int RUN_MASK = 0xF;
+    private static final int COMPRESSED_BODY_OFFSET = Versions.PAGE_BODY_OFFSET + Integer.BYTES;
+
+    private final ExpandableDirectByteBuffer buffer = new ExpandableDirectByteBuffer(4096);
+    private final int[] hashTable = new int[1 << HASH_LOG];
+
+    static boolean isCompressed(final DirectBuffer page, final int offset)
+    {
+        return (page.getByte(offset + Versions.PAGE_FLAGS_OFFSET) & Versions.COMPRESSED_PAGE_FLAG) != 0;
+    }
+
+    /**
+     * Returns the buffer containing the result of the last call to {@link #compress(DirectBuffer, int, int)} or
+     * {@link #decompress(DirectBuffer, int, int)}, starting at offset 0.
+     *
+     * @return the buffer
+     */
+    DirectBuffer buffer()
+    {
+        return buffer;
+    }
+
+    /**
+     * Compresses a page into {@link #buffer()}.
+     *
+     * @param page   the buffer containing the page
+     * @param offset the offset of the page in the buffer
+     * @param length the length of the page
+     * @return the length of the compressed page
+     */
+    int compress(final DirectBuffer page, final int offset, final int length)
+    {
+        final int bodyLength = length - Versions.PAGE_BODY_OFFSET;
+        buffer.checkLimit(COMPRESSED_BODY_OFFSET + bodyLength + bodyLength / 255 + 16);
+        buffer.putBytes(0, page, offset, Versions.PAGE_BODY_OFFSET);
+        buffer.putByte(Versions.PAGE_FLAGS_OFFSET,
+            (byte)(page.getByte(offset + Versions.PAGE_FLAGS_OFFSET) | Versions.COMPRESSED_PAGE_FLAG));
+        buffer.putInt(Versions.PAGE_BODY_OFFSET, bodyLength);
+
+        return compressBlock(page, offset + Versions.PAGE_BODY_OFFSET, bodyLength, buffer, COMPRESSED_BODY_OFFSET);
+    }
+
+    /**
+     * Decompresses a page compressed by {@link #compress(DirectBuffer, int, int)} into {@link #buffer()}.
+     *
+     * @param page   the buffer containing the compressed page
+     * @param offset the offset of the compressed page in the buffer
+     * @param length the length of the compressed page
+     * @return the length of the decompressed page
+     */
+    int decompress(final DirectBuffer page, final int offset, final int length)
+    {
+        final int bodyLength = page.getInt(offset + Versions.PAGE_BODY_OFFSET);
+        buffer.checkLimit(Versions.PAGE_BODY_OFFSET + bodyLength);
+        buffer.putBytes(0, page, offset, Versions.PAGE_BODY_OFFSET);
+        buffer.putByte(Versions.PAGE_FLAGS_OFFSET,
+            (byte)(page.getByte(offset + Versions.PAGE_FLAGS_OFFSET) & ~Versions.COMPRESSED_PAGE_FLAG));
+
+        final int decompressedLength = decompressBlock(
+            page, offset + COMPRESSED_BODY_OFFSET, length - COMPRESSED_BODY_OFFSET, buffer, Versions.PAGE_BODY_OFFSET);
+        if (decompressedLength != bodyLength)
+        {
+            throw new IllegalArgumentException(
+                "Decompressed length " + decompressedLength + " does not match expected length " + bodyLength);
+        }
+        return Versions.PAGE_BODY_OFFSET + bodyLength;
+    }
+
+    private int compressBlock(
+        final DirectBuffer src,
+        final int srcOffset,
+        final int srcLength,
+        final MutableDirectBuffer dst,
+        final int dstOffset)
+    {
+        final int srcEnd = srcOffset + srcLength;
+        final int matchLimit = srcEnd - LAST_LITERALS;
+        final int matchFindLimit = srcEnd - MATCH_FIND_LIMIT;
+        final int[] hashTable = this.hashTable;
+        int anchor = srcOffset;
+        int dstIndex = dstOffset;
+        int index = srcOffset;
+
+        // the hash table is not cleared between blocks, so every candidate is checked against the input
+        while (index < matchFindLimit)
+        {
+            final int sequence = src.getInt(index);
+            final int hash = hash(sequence);
+            final int candidate = srcOffset + hashTable[hash];
+            hashTable[hash] = index - srcOffset;
+            if (candidate >= index || index - candidate > MAX_DISTANCE || src.getInt(candidate) != sequence)
+            {
+                index++;
+                continue;
+            }
+
+            int matchLength = MIN_MATCH;
+            while (index + matchLength < matchLimit &&
+                src.getByte(candidate + matchLength) == src.getByte(index + matchLength))
+            {
+                matchLength++;
+            }
+
+            dstIndex = writeSequence(src, anchor, index - anchor, index - candidate, matchLength, dst, dstIndex);
+            index += matchLength;
+            anchor = index;
+        }
+
+        final int literalLength = srcEnd - anchor;
+        final int tokenIndex = dstIndex;
+        dstIndex = writeLength(dst, dstIndex + 1, literalLength);
+        dst.putByte(tokenIndex, (byte)(Math.min(literalLength, RUN_MASK) << 4));
+        dst.putBytes(dstIndex, src, anchor, literalLength);
+        return dstIndex + literalLength;
+    }
+
+    private static int writeSequence(
+        final DirectBuffer src,
+        final int literalOffset,
+        final int literalLength,
+        final int matchDistance,
+        final int matchLength,
+        final MutableDirectBuffer dst,
+        final int dstOffset)
+    {
+        final int tokenIndex = dstOffset;
+        int dstIndex = writeLength(dst, dstOffset + 1, literalLength);
+        dst.putBytes(dstIndex, src, literalOffset, literalLength);
+        dstIndex += literalLength;
+        dst.putShort(dstIndex, (short)matchDistance, ByteOrder.LITTLE_ENDIAN);
+        dstIndex += Short.BYTES;
+        dstIndex = writeLength(dst, dstIndex, matchLength - MIN_MATCH);
+        dst.putByte(tokenIndex,
+            (byte)((Math.min(literalLength, RUN_MASK) << 4) | Math.min(matchLength - MIN_MATCH, RUN_MASK)));
+        return dstIndex;
+    }
+
+    private static int writeLength(final MutableDirectBuffer dst, final int offset, final int length)
+    {
+        int dstIndex = offset;
+        if (length >= RUN_MASK)
+        {
+            int remaining = length - RUN_MASK;
+            while (remaining >= 0xFF)
+            {
+                dst.putByte(dstIndex++, (byte)0xFF);
+                remaining -= 0xFF;
+            }
+            dst.putByte(dstIndex++, (byte)remaining);
+        }
+        return dstIndex;
+    }
+
+    private static int decompressBlock(
+        final DirectBuffer src,
+        final int srcOffset,
+        final int srcLength,
+        final MutableDirectBuffer dst,
+        final int dstOffset)
+    {
+        final int srcEnd = srcOffset + srcLength;
+        int srcIndex = srcOffset;
+        int dstIndex = dstOffset;
+        while (srcIndex < srcEnd)
+        {
+            final int token = src.getByte(srcIndex++) & 0xFF;
+            int literalLength = token >>> 4;
+            if (literalLength == RUN_MASK)
+            {
+                int lengthByte;
+                do
+                {
+                    lengthByte = src.getByte(srcIndex++) & 0xFF;
+                    literalLength += lengthByte;
+                }
+                while (lengthByte == 0xFF);
+            }
+            dst.putBytes(dstIndex, src, srcIndex, literalLength);
+            srcIndex += literalLength;
+            dstIndex += literalLength;
+            if (srcIndex >= srcEnd)
+            {
+                break;
+            }
+
+            final int matchDistance = src.getShort(srcIndex, ByteOrder.LITTLE_ENDIAN) & 0xFFFF;
+            srcIndex += Short.BYTES;
+            int matchLength = token & RUN_MASK;
+            if (matchLength == RUN_MASK)
+            {
+                int lengthByte;
+                do
+                {
+                    lengthByte = src.getByte(srcIndex++) & 0xFF;
+                    matchLength += lengthByte;
+                }
+                while (lengthByte == 0xFF);
+            }
+            matchLength += MIN_MATCH;
+
+            final int matchIndex = dstIndex - matchDistance;
+            if (matchDistance == 0 || matchIndex < dstOffset)
+            {
+                throw new IllegalArgumentException("Invalid match distance: " + matchDistance);
+            }
+            if (matchDistance >= matchLength)
+            {
+                dst.putBytes(dstIndex, dst, matchIndex, matchLength);
+            }
+            else
+            {
+                // overlapping matches repeat the bytes that are being written
+                for (int i = 0; i < matchLength; i++)
+                {
+                    dst.putByte(dstIndex + i, dst.getByte(matchIndex + i));
+                }
+            }
+            dstIndex += matchLength;
+        }
+        return dstIndex - dstOffset;
+    }
+
+    private static int hash(final int sequence)
+    {
+        return (sequence * -1640531535) >>> (Integer.SIZE - HASH_LOG);
+    }
+}
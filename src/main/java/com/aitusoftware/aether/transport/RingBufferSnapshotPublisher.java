@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.transport;
+
+import java.util.List;
+
+import com.aitusoftware.aether.annotation.CallerOwned;
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+
+/**
+ * An implementation of {@code CounterSnapshotListener} that hands snapshots to another thread through a
+ * {@code RingBuffer}, to be received by a {@code RingBufferSnapshotSubscriber}.
+ * <p>
+ * Each instance must only be used by a single thread; multiple publishers can share a many-to-one ring buffer.
+ * Every snapshot is encoded as a key frame, so a snapshot that is dropped because the ring buffer is full does not
+ * affect the snapshots that follow it. Dropped snapshots are reported to an optional Aeron counter.
+ */
+public final class RingBufferSnapshotPublisher implements CounterSnapshotListener
+{
+    public static final int DROPPED_SNAPSHOTS_COUNTER_TYPE_ID = 10013;
+    static final int SNAPSHOT_MSG_TYPE_ID = 1;
+
+    private final MutableDirectBuffer buffer = new ExpandableArrayBuffer();
+    private final SnapshotSerialiser serialiser = new SnapshotSerialiser(1);
+    private final RingBuffer ringBuffer;
+    private final AtomicCounter droppedSnapshotsCounter;
+    private long droppedSnapshots;
+
+    public RingBufferSnapshotPublisher(final RingBuffer ringBuffer)
+    {
+        this(ringBuffer, null);
+    }
+
+    /**
+     * Constructs a publisher that reports dropped snapshots to the supplied counter.
+     *
+     * @param ringBuffer              the ring buffer to write snapshots to
+     * @param droppedSnapshotsCounter counter of dropped snapshots, may be null
+     */
+    public RingBufferSnapshotPublisher(final RingBuffer ringBuffer, final AtomicCounter droppedSnapshotsCounter)
+    {
+        this.ringBuffer = ringBuffer;
+        this.droppedSnapshotsCounter = droppedSnapshotsCounter;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onSnapshot(
+        final String label,
+        final long timestamp,
+        @CallerOwned final List<PublisherCounterSet> publisherCounters,
+        @CallerOwned final List<SubscriberCounterSet> subscriberCounters,
+        @CallerOwned final SystemCounters systemCounters)
+    {
+        final int length = serialiser.serialiseSnapshot(
+            label, timestamp, publisherCounters, subscriberCounters, systemCounters, buffer);
+        if (length > ringBuffer.maxMsgLength() || !ringBuffer.write(SNAPSHOT_MSG_TYPE_ID, buffer, 0, length))
+        {
+            droppedSnapshots++;
+            if (droppedSnapshotsCounter != null)
+            {
+                droppedSnapshotsCounter.setOrdered(droppedSnapshots);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of snapshots that could not be written to the ring buffer.
+     *
+     * @return the number of dropped snapshots
+     */
+    public long droppedSnapshots()
+    {
+        return droppedSnapshots;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.transport;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+
+/**
+ * Receives snapshots written to a {@code RingBuffer} by one or more {@code RingBufferSnapshotPublisher}s, and passes
+ * them to a {@code CounterSnapshotListener} on the polling thread.
+ */
+public final class RingBufferSnapshotSubscriber implements MessageHandler
+{
+    private static final int MESSAGE_LIMIT = 100;
+
+    private final SnapshotDeserialiser deserialiser = new SnapshotDeserialiser();
+    private final RingBuffer ringBuffer;
+    private final CounterSnapshotListener counterSnapshotListener;
+
+    public RingBufferSnapshotSubscriber(
+        final RingBuffer ringBuffer, final CounterSnapshotListener counterSnapshotListener)
+    {
+        this.ringBuffer = ringBuffer;
+        this.counterSnapshotListener = counterSnapshotListener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onMessage(final int msgTypeId, final MutableDirectBuffer buffer, final int index, final int length)
+    {
+        if (msgTypeId == RingBufferSnapshotPublisher.SNAPSHOT_MSG_TYPE_ID)
+        {
+            deserialiser.deserialiseSnapshot(buffer, index, counterSnapshotListener);
+        }
+    }
+
+    /**
+     * Read snapshots from the ring buffer.
+     *
+     * @return number of snapshots read
+     */
+    public int doWork()
+    {
+        return ringBuffer.read(this, MESSAGE_LIMIT);
+    }
+}
@@ -18,30 +18,99 @@
 package com.aitusoftware.aether.transport;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
+import com.aitusoftware.aether.event.ChannelDictionary;
+import com.aitusoftware.aether.event.CounterRepository;
 import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.event.SnapshotSequenceListener;
 import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SessionKeyed;
 import com.aitusoftware.aether.model.SubscriberCounterSet;
 import com.aitusoftware.aether.model.SystemCounters;
 
 import org.agrona.DirectBuffer;
+import org.agrona.collections.Long2LongHashMap;
 
+/**
+ * Decodes frames written by {@code SnapshotSerialiser}, applying delta frames to the state of each label to
+ * rebuild complete snapshots.
+ * <p>
+ * Delta frames for a label are discarded until its first key frame has been received.
+ * <p>
+ * Each page of a frame is applied to the state of its label as it arrives, and the snapshot is passed to the
+ * listener when the last page of the frame has been applied. Pages received before the first page of a frame
+ * are discarded. If a frame begins before the previous frame of the label has ended, pages have been lost, and
+ * the label waits for the next key frame.
+ * <p>
+ * The sequence number and collector start epoch on the first page of each frame are compared with those of the
+ * last frame applied for the label, and snapshots that were not delivered, or a restart of the collector, are
+ * reported to the {@code SnapshotSequenceListener} before the frame is applied. Frames discarded before the first
+ * key frame of a label are not reported. After a restart, the label waits for a key frame from the new collector.
+ * <p>
+ * Counter sets are pooled per label and keyed by channel, streamId and sessionId, labels and channels are
+ * interned, and the lists passed to the listener are re-used, so decoding a snapshot that contains no new
+ * sessions or channels does not allocate.
+ */
 final class SnapshotDeserialiser
 {
+    private static final Consumer<SessionKeyed> NO_OP_EVICTION_HANDLER = removed -> {};
+    private static final long RETAIN_UNSEEN = Long.MAX_VALUE;
+    private static final long UNKNOWN_START_EPOCH = Long.MIN_VALUE;
+    private static final long NO_SEQUENCE = -1;
+    private static final SnapshotSequenceListener NO_OP_SEQUENCE_LISTENER = new SnapshotSequenceListener()
+    {
+        @Override
+        public void onSnapshotsMissed(final String label, final long missedCount, final long sequence)
+        {
+        }
+
+        @Override
+        public void onCollectorRestarted(final String label, final long previousStartEpochMs, final long startEpochMs)
+        {
+        }
+    };
+
     private final StringBuilder charBuffer = new StringBuilder();
-    private final SystemCounters systemCounters = new SystemCounters();
+    private final ChannelDictionary labels = new ChannelDictionary();
+    private final SnapshotSequenceListener sequenceListener;
+    private LabelState[] labelStates = new LabelState[4];
+    private long[] registrationIds = new long[16];
+    private long[] positions = new long[16];
+    private ChannelEncoding channelEncoding;
+    private int offset;
 
-    void deserialiseSnapshot(
+    SnapshotDeserialiser()
+    {
+        this(NO_OP_SEQUENCE_LISTENER);
+    }
+
+    SnapshotDeserialiser(final SnapshotSequenceListener sequenceListener)
+    {
+        this.sequenceListener = sequenceListener;
+    }
+
+    /**
+     * Decodes a page and, if it completes a frame of a synchronised label, passes the resulting snapshot to the
+     * listener.
+     *
+     * @param buffer   the buffer containing the page
+     * @param offset   the offset of the page in the buffer
+     * @param listener the listener
+     * @return true if a snapshot was passed to the listener
+     */
+    boolean deserialiseSnapshot(
         final DirectBuffer buffer,
         final int offset,
         final CounterSnapshotListener listener)
     {
-        int relativeOffset = offset;
-        final int headerId = buffer.getInt(relativeOffset);
-        relativeOffset += Integer.BYTES;
-        final byte version = buffer.getByte(relativeOffset);
-        relativeOffset += Byte.BYTES;
+        this.offset = offset;
+        final int headerId = buffer.getInt(this.offset);
+        this.offset += Integer.BYTES;
+        final byte version = buffer.getByte(this.offset);
+        this.offset += Byte.BYTES;
         if (Versions.SNAPSHOT_HEADER_ID != headerId)
         {
             throw new IllegalArgumentException("Unknown message type: " + headerId);
@@ -50,133 +119,342 @@ final class SnapshotDeserialiser
         {
             throw new IllegalArgumentException("Unknown version: " + version);
         }
-        final int labelLength = buffer.getInt(relativeOffset);
-        relativeOffset += Integer.BYTES;
-        final StringBuilder label = new StringBuilder();
-        for (int i = 0; i < labelLength; i++)
+        final byte frameType = buffer.getByte(this.offset);
+        this.offset += Byte.BYTES;
+        if (frameType != Versions.KEY_FRAME && frameType != Versions.DELTA_FRAME)
         {
-            label.append(buffer.getChar(relativeOffset));
-            relativeOffset += Character.BYTES;
+            throw new IllegalArgumentException("Unknown frame type: " + frameType);
         }
-        final long timestamp = buffer.getLong(relativeOffset);
-        relativeOffset += Long.BYTES;
+        final boolean keyFrame = frameType == Versions.KEY_FRAME;
+        channelEncoding = ChannelEncoding.get(buffer.getByte(this.offset));
+        this.offset += Byte.BYTES;
+        final byte flags = buffer.getByte(this.offset);
+        this.offset += Byte.BYTES;
+        if ((flags & Versions.COMPRESSED_PAGE_FLAG) != 0)
+        {
+            throw new IllegalArgumentException("Compressed pages must be decompressed before decoding");
+        }
+        readString(buffer);
+        final LabelState state = labelState(labels.idOf(charBuffer));
+        final long timestamp = buffer.getLong(this.offset);
+        this.offset += Long.BYTES;
+        final boolean beginPage = (flags & Versions.BEGIN_PAGE_FLAG) != 0;
+        final boolean inFrame = beginPage ? beginFrame(buffer, keyFrame, state) : state.inFrame;
+        if (!inFrame)
+        {
+            return false;
+        }
+
+        final int publisherCount = buffer.getInt(this.offset);
+        final int removedPublisherCount = buffer.getInt(this.offset + Integer.BYTES);
+        final int subscriberCount = buffer.getInt(this.offset + 2 * Integer.BYTES);
+        final int removedSubscriberCount = buffer.getInt(this.offset + 3 * Integer.BYTES);
+        this.offset += Versions.SECTION_COUNT * Integer.BYTES;
+        readPublisherCounters(buffer, keyFrame, state, publisherCount, removedPublisherCount);
+        readSubscriberCounters(buffer, keyFrame, state, subscriberCount, removedSubscriberCount);
+
+        if ((flags & Versions.END_PAGE_FLAG) == 0)
+        {
+            return false;
+        }
+        state.inFrame = false;
+        state.lastSequence = state.frameSequence;
 
-        systemCounters.bytesSent(buffer.getLong(relativeOffset));
-        relativeOffset += Long.BYTES;
-        systemCounters.bytesReceived(buffer.getLong(relativeOffset));
-        relativeOffset += Long.BYTES;
-        systemCounters.naksSent(buffer.getLong(relativeOffset));
-        relativeOffset += Long.BYTES;
-        systemCounters.naksReceived(buffer.getLong(relativeOffset));
-        relativeOffset += Long.BYTES;
-        systemCounters.errors(buffer.getLong(relativeOffset));
-        relativeOffset += Long.BYTES;
-        systemCounters.clientTimeouts(buffer.getLong(relativeOffset));
-        relativeOffset += Long.BYTES;
+        // a key frame contains every session, so any session not updated by it has been removed
+        final long sessionTimeout = keyFrame ? 0 : RETAIN_UNSEEN;
+        state.publishers.removeStale(0, sessionTimeout, NO_OP_EVICTION_HANDLER);
+        state.subscribers.removeStale(0, sessionTimeout, NO_OP_EVICTION_HANDLER);
 
-        final List<PublisherCounterSet> publisherCounters = new ArrayList<>();
-        relativeOffset = readPublisherCounters(relativeOffset, publisherCounters, buffer);
-        final List<SubscriberCounterSet> subscriberCounters = new ArrayList<>();
-        relativeOffset = readSubscriberCounters(relativeOffset, subscriberCounters, buffer);
+        state.publisherList.clear();
+        state.subscriberList.clear();
+        state.publishers.forEach(state.addPublisher);
+        state.subscribers.forEach(state.addSubscriber);
+        listener.onSnapshot(
+            state.label, timestamp, state.publisherList, state.subscriberList, state.systemCounters);
 
-        listener.onSnapshot(label.toString(), timestamp, publisherCounters, subscriberCounters, systemCounters);
+        return true;
     }
 
-    private int readSubscriberCounters(
-        final int offset,
-        final List<SubscriberCounterSet> subscriberCounters,
-        final DirectBuffer buffer)
+    private boolean beginFrame(final DirectBuffer buffer, final boolean keyFrame, final LabelState state)
     {
-        int localOffset = offset;
-        final int count = buffer.getInt(localOffset);
-        localOffset += Integer.BYTES;
+        final long startEpochMs = buffer.getLong(offset);
+        offset += Long.BYTES;
+        final long sequence = readVarLong(buffer);
+        if (state.startEpochMs != startEpochMs)
+        {
+            onCollectorStarted(state, startEpochMs);
+        }
+        if (state.inFrame)
+        {
+            // the previous frame did not end, so its pages were only partially applied
+            state.synchronised = false;
+            state.publishers.removeStale(0, RETAIN_UNSEEN, NO_OP_EVICTION_HANDLER);
+            state.subscribers.removeStale(0, RETAIN_UNSEEN, NO_OP_EVICTION_HANDLER);
+        }
+        if (keyFrame)
+        {
+            state.synchronised = true;
+        }
+        state.inFrame = state.synchronised;
+        if (!state.inFrame)
+        {
+            return false;
+        }
+
+        if (state.lastSequence == NO_SEQUENCE)
+        {
+            // snapshots published before the first frame applied for the label were not expected
+            state.lastSequence = sequence - 1;
+        }
+        // every snapshot between the last one delivered and this one, including frames that did not end,
+        // was not delivered
+        final long missedCount = sequence - state.lastSequence - 1;
+        state.frameSequence = sequence;
+        if (missedCount > 0)
+        {
+            sequenceListener.onSnapshotsMissed(state.label, missedCount, sequence);
+        }
+        readSystemCounters(buffer, keyFrame, state.systemCounters);
+
+        return true;
+    }
+
+    private void onCollectorStarted(final LabelState state, final long startEpochMs)
+    {
+        if (state.startEpochMs != UNKNOWN_START_EPOCH)
+        {
+            // deltas from the new collector cannot be applied to the state of the previous one
+            state.synchronised = false;
+            state.lastSequence = 0;
+            sequenceListener.onCollectorRestarted(state.label, state.startEpochMs, startEpochMs);
+        }
+        state.startEpochMs = startEpochMs;
+    }
 
+    private LabelState labelState(final int labelId)
+    {
+        if (labelId >= labelStates.length)
+        {
+            labelStates = Arrays.copyOf(labelStates, Math.max(labelId + 1, labelStates.length * 2));
+        }
+        LabelState state = labelStates[labelId];
+        if (state == null)
+        {
+            state = new LabelState(labels.channel(labelId));
+            labelStates[labelId] = state;
+        }
+        return state;
+    }
+
+    private void readSystemCounters(final DirectBuffer buffer, final boolean keyFrame, final SystemCounters counters)
+    {
+        counters.bytesSent(readZigZag(buffer) + (keyFrame ? 0 : counters.bytesSent()));
+        counters.bytesReceived(readZigZag(buffer) + (keyFrame ? 0 : counters.bytesReceived()));
+        counters.naksSent(readZigZag(buffer) + (keyFrame ? 0 : counters.naksSent()));
+        counters.naksReceived(readZigZag(buffer) + (keyFrame ? 0 : counters.naksReceived()));
+        counters.errors(readZigZag(buffer) + (keyFrame ? 0 : counters.errors()));
+        counters.clientTimeouts(readZigZag(buffer) + (keyFrame ? 0 : counters.clientTimeouts()));
+    }
+
+    private void readPublisherCounters(
+        final DirectBuffer buffer,
+        final boolean keyFrame,
+        final LabelState state,
+        final int count,
+        final int removedCount)
+    {
         for (int i = 0; i < count; i++)
         {
-            final int labelLength = buffer.getInt(localOffset);
+            final String channel = readChannel(buffer, state);
+            final int streamId = (int)readZigZag(buffer);
+            final int sessionId = (int)readZigZag(buffer);
+            final int fields = buffer.getByte(offset);
+            offset += Byte.BYTES;
 
-            localOffset += Integer.BYTES;
-            charBuffer.setLength(0);
-            for (int c = 0; c < labelLength; c++)
-            {
-                charBuffer.append(buffer.getChar(localOffset));
-                localOffset += Character.BYTES;
-            }
-            final int streamId = buffer.getInt(localOffset);
-            localOffset += Integer.BYTES;
-            final int sessionId = buffer.getInt(localOffset);
-            localOffset += Integer.BYTES;
+            final PublisherCounterSet counterSet = state.publishers.getOrCreate(channel, sessionId, streamId);
+            counterSet.publisherPosition(
+                readField(buffer, fields, Versions.PUBLISHER_POSITION_FIELD, keyFrame,
+                counterSet.publisherPosition()));
+            counterSet.backPressureEvents(
+                readField(buffer, fields, Versions.BACK_PRESSURE_EVENTS_FIELD, keyFrame,
+                counterSet.backPressureEvents()));
+            counterSet.senderPosition(
+                readField(buffer, fields, Versions.SENDER_POSITION_FIELD, keyFrame, counterSet.senderPosition()));
+            counterSet.senderLimit(
+                readField(buffer, fields, Versions.SENDER_LIMIT_FIELD, keyFrame, counterSet.senderLimit()));
+            counterSet.publisherLimit(
+                readField(buffer, fields, Versions.PUBLISHER_LIMIT_FIELD, keyFrame, counterSet.publisherLimit()));
+        }
 
-            final int subscriberCount = buffer.getInt(localOffset);
-            localOffset += Integer.BYTES;
-            final SubscriberCounterSet counterSet = new SubscriberCounterSet();
-            counterSet.reset(charBuffer.toString(), sessionId, streamId);
+        for (int i = 0; i < removedCount; i++)
+        {
+            final String channel = readChannel(buffer, state);
+            final int streamId = (int)readZigZag(buffer);
+            final int sessionId = (int)readZigZag(buffer);
+            state.publishers.remove(channel, sessionId, streamId);
+        }
+    }
 
-            for (int j = 0; j < subscriberCount; j++)
+    private void readSubscriberCounters(
+        final DirectBuffer buffer,
+        final boolean keyFrame,
+        final LabelState state,
+        final int count,
+        final int removedCount)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            final String channel = readChannel(buffer, state);
+            final int streamId = (int)readZigZag(buffer);
+            final int sessionId = (int)readZigZag(buffer);
+            final int fields = buffer.getByte(offset);
+            offset += Byte.BYTES;
+
+            final SubscriberCounterSet counterSet = state.subscribers.getOrCreate(channel, sessionId, streamId);
+            counterSet.receiverPosition(
+                readField(buffer, fields, Versions.RECEIVER_POSITION_FIELD, keyFrame, counterSet.receiverPosition()));
+            counterSet.receiverHighWaterMark(
+                readField(buffer, fields, Versions.RECEIVER_HWM_FIELD, keyFrame,
+                counterSet.receiverHighWaterMark()));
+            if ((fields & Versions.SUBSCRIBER_POSITIONS_FIELD) != 0)
             {
-                final long regId = buffer.getLong(localOffset);
-                localOffset += Long.BYTES;
-                final long value = buffer.getLong(localOffset);
-                localOffset += Long.BYTES;
-                counterSet.subscriberPosition(regId, value);
+                readSubscriberPositions(buffer, keyFrame, counterSet);
             }
+        }
 
-            final long receiverPosition = buffer.getLong(localOffset);
-            localOffset += Long.BYTES;
-            final long receiverHighWaterMark = buffer.getLong(localOffset);
-            localOffset += Long.BYTES;
+        for (int i = 0; i < removedCount; i++)
+        {
+            final String channel = readChannel(buffer, state);
+            final int streamId = (int)readZigZag(buffer);
+            final int sessionId = (int)readZigZag(buffer);
+            state.subscribers.remove(channel, sessionId, streamId);
+        }
+    }
 
-            counterSet.receiverPosition(receiverPosition);
-            counterSet.receiverHighWaterMark(receiverHighWaterMark);
-            subscriberCounters.add(counterSet);
+    private void readSubscriberPositions(
+        final DirectBuffer buffer, final boolean keyFrame, final SubscriberCounterSet counterSet)
+    {
+        final Long2LongHashMap subscriberPositions = counterSet.subscriberPositions();
+        final int subscriberCount = (int)readVarLong(buffer);
+        if (subscriberCount > registrationIds.length)
+        {
+            registrationIds = Arrays.copyOf(registrationIds, subscriberCount);
+            positions = Arrays.copyOf(positions, subscriberCount);
+        }
+        for (int i = 0; i < subscriberCount; i++)
+        {
+            final long registrationId = readVarLong(buffer);
+            final long previousPosition = keyFrame ? 0 : subscriberPositions.get(registrationId);
+            registrationIds[i] = registrationId;
+            positions[i] = readZigZag(buffer) +
+                (previousPosition == subscriberPositions.missingValue() ? 0 : previousPosition);
+        }
+
+        subscriberPositions.clear();
+        for (int i = 0; i < subscriberCount; i++)
+        {
+            subscriberPositions.put(registrationIds[i], positions[i]);
         }
-        return localOffset;
     }
 
-    private int readPublisherCounters(
-        final int offset,
-        final List<PublisherCounterSet> publisherCounters,
-        final DirectBuffer buffer)
+    private String readChannel(final DirectBuffer buffer, final LabelState state)
     {
-        int localOffset = offset;
-        final int count = buffer.getInt(localOffset);
-        localOffset += Integer.BYTES;
-        for (int i = 0; i < count; i++)
+        final long channelReference = readVarLong(buffer);
+        final int channelId = (int)(channelReference >>> 1);
+        if ((channelReference & 1) != 0)
         {
-            final int labelLength = buffer.getInt(localOffset);
-            localOffset += Integer.BYTES;
-            charBuffer.setLength(0);
-            for (int c = 0; c < labelLength; c++)
+            readString(buffer);
+            if (channelId >= state.channels.length)
             {
-                charBuffer.append(buffer.getChar(localOffset));
-                localOffset += Character.BYTES;
+                state.channels = Arrays.copyOf(state.channels, Math.max(channelId + 1, state.channels.length * 2));
             }
-            final int streamId = buffer.getInt(localOffset);
-            localOffset += Integer.BYTES;
-            final int sessionId = buffer.getInt(localOffset);
-            localOffset += Integer.BYTES;
-
-            final long publisherPosition = buffer.getLong(localOffset);
-            localOffset += Long.BYTES;
-            final long backPressureEvents = buffer.getLong(localOffset);
-            localOffset += Long.BYTES;
-            final long senderPosition = buffer.getLong(localOffset);
-            localOffset += Long.BYTES;
-            final long senderLimit = buffer.getLong(localOffset);
-            localOffset += Long.BYTES;
-            final long publisherLimit = buffer.getLong(localOffset);
-            localOffset += Long.BYTES;
-
-            final PublisherCounterSet counterSet = new PublisherCounterSet();
-            counterSet.reset(charBuffer.toString(), sessionId, streamId);
-            counterSet.publisherPosition(publisherPosition);
-            counterSet.publisherLimit(publisherLimit);
-            counterSet.backPressureEvents(backPressureEvents);
-            counterSet.senderPosition(senderPosition);
-            counterSet.senderLimit(senderLimit);
-
-            publisherCounters.add(counterSet);
-        }
-        return localOffset;
+            if (state.channels[channelId] == null || !state.channels[channelId].contentEquals(charBuffer))
+            {
+                state.channels[channelId] = charBuffer.toString();
+            }
+        }
+        else if (channelId >= state.channels.length || state.channels[channelId] == null)
+        {
+            throw new IllegalStateException("Unknown channel id: " + channelId);
+        }
+
+        return state.channels[channelId];
+    }
+
+    private void readString(final DirectBuffer buffer)
+    {
+        charBuffer.setLength(0);
+        final int length;
+        if (channelEncoding == ChannelEncoding.ASCII)
+        {
+            final long lengthAndFlag = readVarLong(buffer);
+            length = (int)(lengthAndFlag >>> 1);
+            if ((lengthAndFlag & Versions.UTF_16_STRING_FLAG) == 0)
+            {
+                buffer.getStringWithoutLengthAscii(offset, length, charBuffer);
+                offset += length;
+                return;
+            }
+        }
+        else
+        {
+            length = buffer.getInt(offset);
+            offset += Integer.BYTES;
+        }
+        for (int i = 0; i < length; i++)
+        {
+            charBuffer.append(buffer.getChar(offset));
+            offset += Character.BYTES;
+        }
+    }
+
+    private long readField(
+        final DirectBuffer buffer, final int fields, final int field, final boolean keyFrame, final long value)
+    {
+        if ((fields & field) != 0)
+        {
+            return readZigZag(buffer) + (keyFrame ? 0 : value);
+        }
+
+        return keyFrame ? 0 : value;
+    }
+
+    private long readVarLong(final DirectBuffer buffer)
+    {
+        final long value = VarInt.getVarLong(buffer, offset);
+        offset += VarInt.varLongLength(value);
+        return value;
+    }
+
+    private long readZigZag(final DirectBuffer buffer)
+    {
+        final long value = VarInt.getZigZag(buffer, offset);
+        offset += VarInt.zigZagLength(value);
+        return value;
+    }
+
+    private static final class LabelState
+    {
+        private final String label;
+        private final CounterRepository<PublisherCounterSet> publishers =
+            new CounterRepository<>(PublisherCounterSet::new);
+        private final CounterRepository<SubscriberCounterSet> subscribers =
+            new CounterRepository<>(SubscriberCounterSet::new);
+        private final List<PublisherCounterSet> publisherList = new ArrayList<>();
+        private final List<SubscriberCounterSet> subscriberList = new ArrayList<>();
+        private final Consumer<PublisherCounterSet> addPublisher = publisherList::add;
+        private final Consumer<SubscriberCounterSet> addSubscriber = subscriberList::add;
+        private final SystemCounters systemCounters = new SystemCounters();
+        private String[] channels = new String[16];
+        private boolean synchronised;
+        private boolean inFrame;
+        private long startEpochMs = UNKNOWN_START_EPOCH;
+        private long lastSequence = NO_SEQUENCE;
+        private long frameSequence;
+
+        LabelState(final String label)
+        {
+            this.label = label;
+        }
     }
 }
@@ -0,0 +1,444 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.transport;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.aitusoftware.aether.annotation.CallerOwned;
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import org.agrona.BitUtil;
+import org.agrona.CloseHelper;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.BackoffIdleStrategy;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBufferDescriptor;
+import org.agrona.concurrent.status.AtomicCounter;
+
+import io.aeron.Aeron;
+
+/**
+ * An implementation of {@code CounterSnapshotListener} that passes each snapshot to a number of listeners,
+ * each of which reads from its own bounded queue on its own agent, so that a slow listener cannot stall
+ * counter polling or delay other listeners.
+ * <p>
+ * Each snapshot is serialised once and offered to every queue. When a queue is full, the listener's
+ * {@code OverflowPolicy} determines whether the snapshot is dropped, conflated with later snapshots of the same
+ * label, or whether the polling thread waits for space. Every snapshot is serialised as a key frame, so a held
+ * snapshot can be delivered on its own.
+ */
+public final class SnapshotFanOut implements CounterSnapshotListener, AutoCloseable
+{
+    public static final int DROPPED_SNAPSHOTS_COUNTER_TYPE_ID = 10001;
+    public static final int QUEUE_DEPTH_COUNTER_TYPE_ID = 10002;
+
+    private final MutableDirectBuffer buffer = new ExpandableArrayBuffer();
+    private final SnapshotSerialiser serialiser = new SnapshotSerialiser(1);
+    private final ListenerQueue[] queues;
+    private volatile boolean closed;
+
+    /**
+     * Construct a new instance with the given context.
+     *
+     * @param context configuration context
+     */
+    public SnapshotFanOut(final Context context)
+    {
+        context.validate();
+        queues = new ListenerQueue[context.listeners.size()];
+        for (int i = 0; i < queues.length; i++)
+        {
+            queues[i] = new ListenerQueue(i, context.listeners.get(i), context.policies.get(i),
+                context.queueLength(), context.aeronClient());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onSnapshot(
+        final String label,
+        final long timestamp,
+        @CallerOwned final List<PublisherCounterSet> publisherCounters,
+        @CallerOwned final List<SubscriberCounterSet> subscriberCounters,
+        @CallerOwned final SystemCounters systemCounters)
+    {
+        final int length = serialiser.serialiseSnapshot(
+            label, timestamp, publisherCounters, subscriberCounters, systemCounters, buffer);
+        for (final ListenerQueue queue : queues)
+        {
+            queue.offer(label, buffer, length);
+        }
+    }
+
+    /**
+     * Retries conflated snapshots that could not be queued when they were received. Should be called on the
+     * thread that delivers snapshots to this instance.
+     *
+     * @return number of conflated snapshots queued
+     */
+    public int doWork()
+    {
+        int work = 0;
+        for (final ListenerQueue queue : queues)
+        {
+            work += queue.retryPending();
+        }
+        return work;
+    }
+
+    /**
+     * Delivers queued snapshots to every listener on the calling thread, for use when the listener agents
+     * are not run on their own threads.
+     *
+     * @return number of snapshots delivered
+     */
+    public int invokeListeners()
+    {
+        int work = 0;
+        for (final ListenerQueue queue : queues)
+        {
+            work += queue.doWork();
+        }
+        return work;
+    }
+
+    /**
+     * Returns the agents that deliver queued snapshots to each listener, in the order the listeners were added.
+     *
+     * @return the listener agents
+     */
+    public List<Agent> listenerAgents()
+    {
+        final List<Agent> agents = new ArrayList<>(queues.length);
+        for (final ListenerQueue queue : queues)
+        {
+            agents.add(queue);
+        }
+        return agents;
+    }
+
+    /**
+     * Returns the number of snapshots that were not delivered to the listener at the given index.
+     *
+     * @param listenerIndex index of the listener, in the order it was added
+     * @return the number of dropped snapshots
+     */
+    public long droppedSnapshots(final int listenerIndex)
+    {
+        return queues[listenerIndex].droppedSnapshots;
+    }
+
+    /**
+     * Returns the number of bytes waiting to be read by the listener at the given index.
+     *
+     * @param listenerIndex index of the listener, in the order it was added
+     * @return the queue depth in bytes
+     */
+    public int queueDepth(final int listenerIndex)
+    {
+        return queues[listenerIndex].ringBuffer.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        for (final ListenerQueue queue : queues)
+        {
+            CloseHelper.closeAll(queue.droppedSnapshotsCounter, queue.queueDepthCounter);
+        }
+    }
+
+    /**
+     * Determines what happens to a snapshot when a listener's queue is full.
+     */
+    public enum OverflowPolicy
+    {
+        /**
+         * The snapshot is not delivered to the listener.
+         */
+        DROP,
+        /**
+         * The latest snapshot of each label is held until there is space in the queue, replacing any snapshot of
+         * the same label already held.
+         */
+        CONFLATE,
+        /**
+         * The polling thread waits until there is space in the queue.
+         */
+        BLOCK
+    }
+
+    private final class ListenerQueue implements Agent
+    {
+        private final IdleStrategy idleStrategy = new BackoffIdleStrategy(
+            1, 1, 1, TimeUnit.MICROSECONDS.toNanos(100L));
+        private final int index;
+        private final OverflowPolicy policy;
+        private final RingBuffer ringBuffer;
+        private final RingBufferSnapshotSubscriber subscriber;
+        private final AtomicCounter droppedSnapshotsCounter;
+        private final AtomicCounter queueDepthCounter;
+        private final List<PendingSnapshot> pendingSnapshots = new ArrayList<>();
+        private long droppedSnapshots;
+
+        ListenerQueue(
+            final int index,
+            final CounterSnapshotListener listener,
+            final OverflowPolicy policy,
+            final int queueLength,
+            final Aeron aeronClient)
+        {
+            this.index = index;
+            this.policy = policy;
+            ringBuffer = new OneToOneRingBuffer(new UnsafeBuffer(
+                ByteBuffer.allocateDirect(queueLength + RingBufferDescriptor.TRAILER_LENGTH)));
+            subscriber = new RingBufferSnapshotSubscriber(ringBuffer, listener);
+            if (aeronClient != null)
+            {
+                final String listenerName = listener.getClass().getSimpleName();
+                droppedSnapshotsCounter = aeronClient.addCounter(DROPPED_SNAPSHOTS_COUNTER_TYPE_ID,
+                    "aether-fan-out-dropped: " + index + " " + listenerName);
+                queueDepthCounter = aeronClient.addCounter(QUEUE_DEPTH_COUNTER_TYPE_ID,
+                    "aether-fan-out-depth: " + index + " " + listenerName);
+            }
+            else
+            {
+                droppedSnapshotsCounter = null;
+                queueDepthCounter = null;
+            }
+        }
+
+        void offer(final String label, final MutableDirectBuffer buffer, final int length)
+        {
+            retryPending();
+            final PendingSnapshot pending = policy == OverflowPolicy.CONFLATE ? pendingSnapshot(label) : null;
+            if (pending != null && pending.length != 0)
+            {
+                // the held snapshot of the label is superseded by this one
+                pending.length = 0;
+                onDropped();
+            }
+            if (length > ringBuffer.maxMsgLength())
+            {
+                onDropped();
+            }
+            else if (!write(buffer, length))
+            {
+                switch (policy)
+                {
+                    case CONFLATE:
+                        pending.hold(buffer, length);
+                        break;
+                    case BLOCK:
+                        idleStrategy.reset();
+                        while (!write(buffer, length))
+                        {
+                            if (closed)
+                            {
+                                onDropped();
+                                break;
+                            }
+                            idleStrategy.idle();
+                        }
+                        break;
+                    default:
+                        onDropped();
+                }
+            }
+        }
+
+        int retryPending()
+        {
+            int work = 0;
+            for (int i = 0; i < pendingSnapshots.size(); i++)
+            {
+                final PendingSnapshot pending = pendingSnapshots.get(i);
+                if (pending.length != 0 && write(pending.buffer, pending.length))
+                {
+                    pending.length = 0;
+                    work++;
+                }
+            }
+            return work;
+        }
+
+        private PendingSnapshot pendingSnapshot(final String label)
+        {
+            for (int i = 0; i < pendingSnapshots.size(); i++)
+            {
+                final PendingSnapshot pending = pendingSnapshots.get(i);
+                if (pending.label.equals(label))
+                {
+                    return pending;
+                }
+            }
+            final PendingSnapshot pending = new PendingSnapshot(label);
+            pendingSnapshots.add(pending);
+            return pending;
+        }
+
+        @Override
+        public int doWork()
+        {
+            final int work = subscriber.doWork();
+            if (queueDepthCounter != null && !closed)
+            {
+                queueDepthCounter.setOrdered(ringBuffer.size());
+            }
+            return work;
+        }
+
+        @Override
+        public String roleName()
+        {
+            return "aether-fan-out-" + index;
+        }
+
+        private boolean write(final MutableDirectBuffer buffer, final int length)
+        {
+            return ringBuffer.write(RingBufferSnapshotPublisher.SNAPSHOT_MSG_TYPE_ID, buffer, 0, length);
+        }
+
+        private void onDropped()
+        {
+            droppedSnapshots++;
+            if (droppedSnapshotsCounter != null)
+            {
+                droppedSnapshotsCounter.setOrdered(droppedSnapshots);
+            }
+        }
+    }
+
+    private static final class PendingSnapshot
+    {
+        private final MutableDirectBuffer buffer = new ExpandableArrayBuffer();
+        private final String label;
+        private int length;
+
+        PendingSnapshot(final String label)
+        {
+            this.label = label;
+        }
+
+        void hold(final MutableDirectBuffer snapshot, final int length)
+        {
+            buffer.putBytes(0, snapshot, 0, length);
+            this.length = length;
+        }
+    }
+
+    /**
+     * Configuration context.
+     */
+    public static final class Context
+    {
+        private final List<CounterSnapshotListener> listeners = new ArrayList<>();
+        private final List<OverflowPolicy> policies = new ArrayList<>();
+        private int queueLength = Configuration.queueLength();
+        private Aeron aeronClient;
+
+        void validate()
+        {
+            if (!BitUtil.isPowerOfTwo(queueLength))
+            {
+                throw new IllegalStateException("Queue length must be a power of two: " + queueLength);
+            }
+        }
+
+        /**
+         * Adds a listener that will receive snapshots from its own queue.
+         *
+         * @param listener       listener for snapshots
+         * @param overflowPolicy policy applied when the listener's queue is full
+         * @return this for a fluent API
+         */
+        public Context listener(final CounterSnapshotListener listener, final OverflowPolicy overflowPolicy)
+        {
+            listeners.add(listener);
+            policies.add(overflowPolicy);
+            return this;
+        }
+
+        public int listenerCount()
+        {
+            return listeners.size();
+        }
+
+        /**
+         * Sets the length of each listener's queue.
+         *
+         * @param queueLength queue length in bytes, must be a power of two
+         * @return this for a fluent API
+         */
+        public Context queueLength(final int queueLength)
+        {
+            this.queueLength = queueLength;
+            return this;
+        }
+
+        public int queueLength()
+        {
+            return queueLength;
+        }
+
+        /**
+         * Sets the Aeron client used to allocate counters for dropped snapshots and queue depth.
+         * If not set, no counters are allocated.
+         *
+         * @param aeronClient Aeron client
+         * @return this for a fluent API
+         */
+        public Context aeronClient(final Aeron aeronClient)
+        {
+            this.aeronClient = aeronClient;
+            return this;
+        }
+
+        public Aeron aeronClient()
+        {
+            return aeronClient;
+        }
+    }
+
+    public static final class Configuration
+    {
+        public static final String QUEUE_LENGTH_PROPERTY_NAME = "aether.fanOut.queueLength";
+
+        public static int queueLength()
+        {
+            return Integer.getInteger(QUEUE_LENGTH_PROPERTY_NAME, 1024 * 1024);
+        }
+    }
+}
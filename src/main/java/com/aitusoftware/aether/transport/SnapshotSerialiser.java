@@ -17,18 +17,166 @@
  */
 package com.aitusoftware.aether.transport;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
 import com.aitusoftware.aether.annotation.CallerOwned;
+import com.aitusoftware.aether.event.ChannelDictionary;
+import com.aitusoftware.aether.event.CounterRepository;
 import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SessionKeyed;
 import com.aitusoftware.aether.model.SubscriberCounterSet;
 import com.aitusoftware.aether.model.SystemCounters;
 
 import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.Long2LongHashMap;
 
-import java.util.List;
-import java.util.Map;
-
+/**
+ * Encodes snapshots as a sequence of key frames and delta frames, tracked separately for each label.
+ * <p>
+ * A key frame contains every publisher and subscriber. A delta frame only contains the sessions whose counters
+ * changed since the previous frame, encoded as zig-zag varint deltas, followed by the sessions that were removed.
+ * Channels are referenced by a dictionary id, and the channel itself is only written the first time the id is
+ * used after each key frame. Labels and channels are written using the configured {@code ChannelEncoding}; the
+ * ASCII encoding of each label and channel is computed once and copied into each frame. In ASCII mode, a label or
+ * channel containing non-ASCII characters is written as UTF-16, flagged by the lowest bit of its length varint.
+ * <p>
+ * A frame is split into self-describing pages of at most {@code maxPageLength} bytes, each containing a whole
+ * number of counter sets, so that large snapshots can be published without fragmentation and decoded as each
+ * page arrives. The first page of a frame is flagged as the beginning of the batch and carries the system
+ * counters, and the last page is flagged as the end of the batch. A counter set that does not fit in an empty
+ * page is written to a page of its own, which exceeds {@code maxPageLength}.
+ * <p>
+ * The first page of each frame also carries the start epoch of the serialiser and a sequence number that is
+ * incremented for every snapshot of the label, including snapshots that fail to be published and snapshots
+ * skipped by {@link #skipSnapshot(String)}, so that a subscriber can detect lost snapshots and restarts of the
+ * collector.
+ */
 final class SnapshotSerialiser
 {
+    private final Map<String, LabelState> labelStates = new HashMap<>();
+    private final Consumer<SessionKeyed> removedSessionWriter = this::writeRemovedSession;
+    private final int keyFrameInterval;
+    private final ChannelEncoding channelEncoding;
+    private final int maxPageLength;
+    private final long startEpochMs;
+    private int[] pageLimits = new int[4];
+    private int pageCount;
+    private LabelState currentState;
+    private MutableDirectBuffer currentBuffer;
+    private String currentLabel;
+    private long currentTimestamp;
+    private boolean currentKeyFrame;
+    private int currentOffset;
+    private int pageOffset;
+    private int pageCountsOffset;
+    private int pageEntryCount;
+    private int removedSection;
+
+    SnapshotSerialiser()
+    {
+        this(Versions.DEFAULT_KEY_FRAME_INTERVAL);
+    }
+
+    SnapshotSerialiser(final int keyFrameInterval)
+    {
+        this(keyFrameInterval, ChannelEncoding.ASCII);
+    }
+
+    SnapshotSerialiser(final int keyFrameInterval, final ChannelEncoding channelEncoding)
+    {
+        this(keyFrameInterval, channelEncoding, Integer.MAX_VALUE);
+    }
+
+    SnapshotSerialiser(final int keyFrameInterval, final ChannelEncoding channelEncoding, final int maxPageLength)
+    {
+        this(keyFrameInterval, channelEncoding, maxPageLength, System.currentTimeMillis());
+    }
+
+    SnapshotSerialiser(
+        final int keyFrameInterval,
+        final ChannelEncoding channelEncoding,
+        final int maxPageLength,
+        final long startEpochMs)
+    {
+        if (keyFrameInterval < 1)
+        {
+            throw new IllegalArgumentException("Key frame interval must be at least 1: " + keyFrameInterval);
+        }
+        if (maxPageLength < 1)
+        {
+            throw new IllegalArgumentException("Max page length must be at least 1: " + maxPageLength);
+        }
+        this.keyFrameInterval = keyFrameInterval;
+        this.channelEncoding = channelEncoding;
+        this.maxPageLength = maxPageLength;
+        this.startEpochMs = startEpochMs;
+    }
+
+    /**
+     * Returns the number of pages written by the last call to
+     * {@link #serialiseSnapshot(String, long, List, List, SystemCounters, MutableDirectBuffer)}.
+     *
+     * @return the number of pages
+     */
+    int pageCount()
+    {
+        return pageCount;
+    }
+
+    /**
+     * Returns the offset of the end of a page written by the last call to
+     * {@link #serialiseSnapshot(String, long, List, List, SystemCounters, MutableDirectBuffer)}. Pages are written
+     * back to back, so each page starts at the limit of the previous page, and the first page starts at 0.
+     *
+     * @param page index of the page
+     * @return the offset of the end of the page
+     */
+    int pageLimit(final int page)
+    {
+        return pageLimits[page];
+    }
+
+    /**
+     * Causes the next snapshot for the label to be encoded as a key frame, for example because the previous
+     * frame could not be published.
+     *
+     * @param label label of the MediaDriver
+     */
+    void forceKeyFrame(final String label)
+    {
+        final LabelState state = labelStates.get(label);
+        if (state != null)
+        {
+            state.snapshotsUntilKeyFrame = 0;
+        }
+    }
+
+    /**
+     * Advances the sequence number of the label for a snapshot that will not be serialised, for example because it
+     * was replaced by a later snapshot while waiting to be published.
+     *
+     * @param label label of the MediaDriver
+     */
+    void skipSnapshot(final String label)
+    {
+        labelStates.computeIfAbsent(label, LabelState::new).sequence++;
+    }
+
+    /**
+     * Causes the next snapshot of every label to be encoded as a key frame.
+     */
+    void forceKeyFrames()
+    {
+        for (final LabelState state : labelStates.values())
+        {
+            state.snapshotsUntilKeyFrame = 0;
+        }
+    }
+
     int serialiseSnapshot(
         final String label,
         final long timestamp,
@@ -37,110 +185,411 @@ final class SnapshotSerialiser
         @CallerOwned final SystemCounters systemCounters,
         final MutableDirectBuffer buffer)
     {
-        int offset = 0;
+        final LabelState state = labelStates.computeIfAbsent(label, LabelState::new);
+        final boolean keyFrame = state.snapshotsUntilKeyFrame <= 0;
+        if (keyFrame)
+        {
+            state.snapshotsUntilKeyFrame = keyFrameInterval;
+            state.keyFrameNumber++;
+        }
+        state.snapshotsUntilKeyFrame--;
+        state.sequence++;
+
+        currentState = state;
+        currentBuffer = buffer;
+        currentLabel = label;
+        currentTimestamp = timestamp;
+        currentKeyFrame = keyFrame;
+        currentOffset = 0;
+        pageCount = 0;
+
+        beginPage(Versions.BEGIN_PAGE_FLAG, systemCounters);
+        writePublisherCounters(keyFrame, state, publisherCounters);
+        writeSubscriberCounters(keyFrame, state, subscriberCounters);
+        endPage(Versions.END_PAGE_FLAG);
+
+        currentState = null;
+        currentBuffer = null;
+        currentLabel = null;
+        return currentOffset;
+    }
+
+    private void beginPage(final byte flags, final SystemCounters systemCounters)
+    {
+        final MutableDirectBuffer buffer = currentBuffer;
+        int offset = currentOffset;
+        pageOffset = offset;
         buffer.putInt(offset, Versions.SNAPSHOT_HEADER_ID);
         offset += Integer.BYTES;
         buffer.putByte(offset, Versions.VERSION);
         offset += Byte.BYTES;
-        buffer.putInt(offset, label.length());
-        offset += Integer.BYTES;
-        for (int i = 0; i < label.length(); i++)
+        buffer.putByte(offset, currentKeyFrame ? Versions.KEY_FRAME : Versions.DELTA_FRAME);
+        offset += Byte.BYTES;
+        buffer.putByte(offset, channelEncoding.code());
+        offset += Byte.BYTES;
+        buffer.putByte(offset, flags);
+        offset += Byte.BYTES;
+        offset = putString(buffer, offset, currentLabel, currentState.asciiLabel);
+        buffer.putLong(offset, currentTimestamp);
+        offset += Long.BYTES;
+        if ((flags & Versions.BEGIN_PAGE_FLAG) != 0)
         {
-            buffer.putChar(offset, label.charAt(i));
-            offset += Character.BYTES;
+            buffer.putLong(offset, startEpochMs);
+            offset += Long.BYTES;
+            offset = VarInt.putVarLong(buffer, offset, currentState.sequence);
+            offset = writeSystemCounters(offset, currentKeyFrame, currentState.systemCounters, systemCounters, buffer);
         }
-        buffer.putLong(offset, timestamp);
-        offset += Long.BYTES;
-        buffer.putLong(offset, systemCounters.bytesSent());
-        offset += Long.BYTES;
-        buffer.putLong(offset, systemCounters.bytesReceived());
-        offset += Long.BYTES;
-        buffer.putLong(offset, systemCounters.naksSent());
-        offset += Long.BYTES;
-        buffer.putLong(offset, systemCounters.naksReceived());
-        offset += Long.BYTES;
-        buffer.putLong(offset, systemCounters.errors());
-        offset += Long.BYTES;
-        buffer.putLong(offset, systemCounters.clientTimeouts());
-        offset += Long.BYTES;
-        offset = writePublisherCounters(offset, publisherCounters, buffer);
-        offset = writeSubscriberCounters(offset, subscriberCounters, buffer);
-        return offset;
+
+        pageCountsOffset = offset;
+        for (int i = 0; i < Versions.SECTION_COUNT; i++)
+        {
+            buffer.putInt(offset, 0);
+            offset += Integer.BYTES;
+        }
+        currentOffset = offset;
+        pageEntryCount = 0;
+    }
+
+    private void endPage(final byte flags)
+    {
+        final int flagsOffset = pageOffset + Versions.PAGE_FLAGS_OFFSET;
+        currentBuffer.putByte(flagsOffset, (byte)(currentBuffer.getByte(flagsOffset) | flags));
+        if (pageCount == pageLimits.length)
+        {
+            pageLimits = Arrays.copyOf(pageLimits, pageCount * 2);
+        }
+        pageLimits[pageCount++] = currentOffset;
+    }
+
+    private void beginEntry(final int section, final int maxEntryLength)
+    {
+        if (pageEntryCount != 0 && (currentOffset - pageOffset) + maxEntryLength > maxPageLength)
+        {
+            endPage((byte)0);
+            beginPage((byte)0, null);
+        }
+        final int countOffset = pageCountsOffset + section * Integer.BYTES;
+        currentBuffer.putInt(countOffset, currentBuffer.getInt(countOffset) + 1);
+        pageEntryCount++;
+    }
+
+    private int maxSessionKeyLength(final CharSequence channel)
+    {
+        final int maxChannelLength = channelEncoding == ChannelEncoding.ASCII ?
+            VarInt.MAX_VAR_LONG_LENGTH + channel.length() * Character.BYTES :
+            Integer.BYTES + channel.length() * Character.BYTES;
+        return VarInt.MAX_VAR_LONG_LENGTH + maxChannelLength + 2 * VarInt.MAX_VAR_INT_LENGTH;
+    }
+
+    private static int writeSystemCounters(
+        final int offset,
+        final boolean keyFrame,
+        final SystemCounters previous,
+        final SystemCounters current,
+        final MutableDirectBuffer buffer)
+    {
+        int localOffset = offset;
+        localOffset = VarInt.putZigZag(buffer, localOffset,
+            current.bytesSent() - (keyFrame ? 0 : previous.bytesSent()));
+        localOffset = VarInt.putZigZag(buffer, localOffset,
+            current.bytesReceived() - (keyFrame ? 0 : previous.bytesReceived()));
+        localOffset = VarInt.putZigZag(buffer, localOffset,
+            current.naksSent() - (keyFrame ? 0 : previous.naksSent()));
+        localOffset = VarInt.putZigZag(buffer, localOffset,
+            current.naksReceived() - (keyFrame ? 0 : previous.naksReceived()));
+        localOffset = VarInt.putZigZag(buffer, localOffset,
+            current.errors() - (keyFrame ? 0 : previous.errors()));
+        localOffset = VarInt.putZigZag(buffer, localOffset,
+            current.clientTimeouts() - (keyFrame ? 0 : previous.clientTimeouts()));
+        current.copyInto(previous);
+        return localOffset;
+    }
+
+    private void writePublisherCounters(
+        final boolean keyFrame,
+        final LabelState state,
+        final List<PublisherCounterSet> publisherCounters)
+    {
+        final MutableDirectBuffer buffer = currentBuffer;
+        final CounterRepository<PublisherCounterSet> sent = state.publishers;
+        for (int i = 0, size = publisherCounters.size(); i < size; i++)
+        {
+            final PublisherCounterSet current = publisherCounters.get(i);
+            final int sizeBefore = sent.size();
+            final PublisherCounterSet previous =
+                sent.getOrCreate(current.channel(), current.sessionId(), current.streamId());
+            final boolean isNew = sent.size() != sizeBefore;
+
+            final long publisherPosition = keyFrame ? 0 : previous.publisherPosition();
+            final long backPressureEvents = keyFrame ? 0 : previous.backPressureEvents();
+            final long senderPosition = keyFrame ? 0 : previous.senderPosition();
+            final long senderLimit = keyFrame ? 0 : previous.senderLimit();
+            final long publisherLimit = keyFrame ? 0 : previous.publisherLimit();
+            int fields = 0;
+            fields |= current.publisherPosition() != publisherPosition ? Versions.PUBLISHER_POSITION_FIELD : 0;
+            fields |= current.backPressureEvents() != backPressureEvents ? Versions.BACK_PRESSURE_EVENTS_FIELD : 0;
+            fields |= current.senderPosition() != senderPosition ? Versions.SENDER_POSITION_FIELD : 0;
+            fields |= current.senderLimit() != senderLimit ? Versions.SENDER_LIMIT_FIELD : 0;
+            fields |= current.publisherLimit() != publisherLimit ? Versions.PUBLISHER_LIMIT_FIELD : 0;
+            if (!keyFrame && !isNew && fields == 0)
+            {
+                continue;
+            }
+
+            beginEntry(Versions.PUBLISHERS_SECTION,
+                maxSessionKeyLength(current.channel()) + Byte.BYTES + 5 * VarInt.MAX_VAR_LONG_LENGTH);
+            int localOffset = writeSessionKey(
+                currentOffset, state, current.channel(), current.streamId(), current.sessionId(), buffer);
+            buffer.putByte(localOffset, (byte)fields);
+            localOffset += Byte.BYTES;
+            localOffset = putDelta(buffer, localOffset, fields, Versions.PUBLISHER_POSITION_FIELD,
+                current.publisherPosition(), publisherPosition);
+            localOffset = putDelta(buffer, localOffset, fields, Versions.BACK_PRESSURE_EVENTS_FIELD,
+                current.backPressureEvents(), backPressureEvents);
+            localOffset = putDelta(buffer, localOffset, fields, Versions.SENDER_POSITION_FIELD,
+                current.senderPosition(), senderPosition);
+            localOffset = putDelta(buffer, localOffset, fields, Versions.SENDER_LIMIT_FIELD,
+                current.senderLimit(), senderLimit);
+            currentOffset = putDelta(buffer, localOffset, fields, Versions.PUBLISHER_LIMIT_FIELD,
+                current.publisherLimit(), publisherLimit);
+
+            previous.publisherPosition(current.publisherPosition());
+            previous.backPressureEvents(current.backPressureEvents());
+            previous.senderPosition(current.senderPosition());
+            previous.senderLimit(current.senderLimit());
+            previous.publisherLimit(current.publisherLimit());
+        }
+
+        writeRemovedSessions(keyFrame, Versions.REMOVED_PUBLISHERS_SECTION, sent);
     }
 
-    private static int writeSubscriberCounters(
+    private void writeSubscriberCounters(
+        final boolean keyFrame,
+        final LabelState state,
+        final List<SubscriberCounterSet> subscriberCounters)
+    {
+        final MutableDirectBuffer buffer = currentBuffer;
+        final CounterRepository<SubscriberCounterSet> sent = state.subscribers;
+        for (int i = 0, size = subscriberCounters.size(); i < size; i++)
+        {
+            final SubscriberCounterSet current = subscriberCounters.get(i);
+            final int sizeBefore = sent.size();
+            final SubscriberCounterSet previous =
+                sent.getOrCreate(current.channel(), current.sessionId(), current.streamId());
+            final boolean isNew = sent.size() != sizeBefore;
+
+            final long receiverPosition = keyFrame ? 0 : previous.receiverPosition();
+            final long receiverHighWaterMark = keyFrame ? 0 : previous.receiverHighWaterMark();
+            int fields = 0;
+            fields |= current.receiverPosition() != receiverPosition ? Versions.RECEIVER_POSITION_FIELD : 0;
+            fields |= current.receiverHighWaterMark() != receiverHighWaterMark ? Versions.RECEIVER_HWM_FIELD : 0;
+            fields |= (keyFrame ? current.subscriberCount() != 0 : !positionsEqual(current, previous)) ?
+                Versions.SUBSCRIBER_POSITIONS_FIELD : 0;
+            if (!keyFrame && !isNew && fields == 0)
+            {
+                continue;
+            }
+
+            beginEntry(Versions.SUBSCRIBERS_SECTION, maxSessionKeyLength(current.channel()) + Byte.BYTES +
+                (3 + 2 * current.subscriberCount()) * VarInt.MAX_VAR_LONG_LENGTH);
+            int localOffset = writeSessionKey(
+                currentOffset, state, current.channel(), current.streamId(), current.sessionId(), buffer);
+            buffer.putByte(localOffset, (byte)fields);
+            localOffset += Byte.BYTES;
+            localOffset = putDelta(buffer, localOffset, fields, Versions.RECEIVER_POSITION_FIELD,
+                current.receiverPosition(), receiverPosition);
+            localOffset = putDelta(buffer, localOffset, fields, Versions.RECEIVER_HWM_FIELD,
+                current.receiverHighWaterMark(), receiverHighWaterMark);
+            if ((fields & Versions.SUBSCRIBER_POSITIONS_FIELD) != 0)
+            {
+                localOffset = writeSubscriberPositions(localOffset, keyFrame, current, previous, buffer);
+            }
+            currentOffset = localOffset;
+
+            previous.receiverPosition(current.receiverPosition());
+            previous.receiverHighWaterMark(current.receiverHighWaterMark());
+        }
+
+        writeRemovedSessions(keyFrame, Versions.REMOVED_SUBSCRIBERS_SECTION, sent);
+    }
+
+    private static int writeSubscriberPositions(
         final int offset,
-        final List<SubscriberCounterSet> subscriberCounters,
+        final boolean keyFrame,
+        final SubscriberCounterSet current,
+        final SubscriberCounterSet previous,
         final MutableDirectBuffer buffer)
+    {
+        final Long2LongHashMap previousPositions = previous.subscriberPositions();
+        int localOffset = VarInt.putVarLong(buffer, offset, current.subscriberCount());
+        final Long2LongHashMap.EntryIterator positions = current.subscriberPositions().entrySet().iterator();
+        while (positions.hasNext())
+        {
+            positions.next();
+            final long registrationId = positions.getLongKey();
+            final long position = positions.getLongValue();
+            final long previousPosition = keyFrame ? 0 : previousPositions.get(registrationId);
+            localOffset = VarInt.putVarLong(buffer, localOffset, registrationId);
+            localOffset = VarInt.putZigZag(buffer, localOffset,
+                position - (previousPosition == previousPositions.missingValue() ? 0 : previousPosition));
+        }
+
+        previousPositions.clear();
+        final Long2LongHashMap.EntryIterator updatedPositions = current.subscriberPositions().entrySet().iterator();
+        while (updatedPositions.hasNext())
+        {
+            updatedPositions.next();
+            previousPositions.put(updatedPositions.getLongKey(), updatedPositions.getLongValue());
+        }
+        return localOffset;
+    }
+
+    private static boolean positionsEqual(final SubscriberCounterSet current, final SubscriberCounterSet previous)
+    {
+        final Long2LongHashMap previousPositions = previous.subscriberPositions();
+        if (current.subscriberCount() != previousPositions.size())
+        {
+            return false;
+        }
+        final Long2LongHashMap.EntryIterator positions = current.subscriberPositions().entrySet().iterator();
+        while (positions.hasNext())
+        {
+            positions.next();
+            if (previousPositions.get(positions.getLongKey()) != positions.getLongValue())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeRemovedSessions(final boolean keyFrame, final int section, final CounterRepository<?> sent)
+    {
+        // a key frame contains every session, so removed sessions do not need to be written
+        removedSection = keyFrame ? -1 : section;
+        sent.removeStale(0, 0, removedSessionWriter);
+    }
+
+    private void writeRemovedSession(final SessionKeyed removed)
+    {
+        if (removedSection >= 0)
+        {
+            beginEntry(removedSection, maxSessionKeyLength(removed.channel()));
+            currentOffset = writeSessionKey(currentOffset, currentState,
+                removed.channel(), removed.streamId(), removed.sessionId(), currentBuffer);
+        }
+    }
+
+    private int putString(
+        final MutableDirectBuffer buffer, final int offset, final CharSequence value, final byte[] asciiValue)
     {
         int localOffset = offset;
-        buffer.putInt(localOffset, subscriberCounters.size());
-        localOffset += Integer.BYTES;
-        for (final SubscriberCounterSet subscriberCounter : subscriberCounters)
+        if (channelEncoding == ChannelEncoding.ASCII)
         {
-            buffer.putInt(localOffset, subscriberCounter.channel().length());
-            localOffset += Integer.BYTES;
-            for (int i = 0; i < subscriberCounter.channel().length(); i++)
+            if (asciiValue != null)
             {
-                buffer.putChar(localOffset, subscriberCounter.channel().charAt(i));
-                localOffset += Character.BYTES;
+                localOffset = VarInt.putVarLong(buffer, localOffset, (long)asciiValue.length << 1);
+                buffer.putBytes(localOffset, asciiValue);
+                return localOffset + asciiValue.length;
             }
-            buffer.putInt(localOffset, subscriberCounter.streamId());
-            localOffset += Integer.BYTES;
-            buffer.putInt(localOffset, subscriberCounter.sessionId());
+            localOffset = VarInt.putVarLong(
+                buffer, localOffset, ((long)value.length() << 1) | Versions.UTF_16_STRING_FLAG);
+        }
+        else
+        {
+            buffer.putInt(localOffset, value.length());
             localOffset += Integer.BYTES;
+        }
+        for (int i = 0; i < value.length(); i++)
+        {
+            buffer.putChar(localOffset, value.charAt(i));
+            localOffset += Character.BYTES;
+        }
+        return localOffset;
+    }
 
-            buffer.putInt(localOffset, subscriberCounter.subscriberCount());
-            localOffset += Integer.BYTES;
-            for (final Map.Entry<Long, Long> positions : subscriberCounter.subscriberPositions().entrySet())
+    private static byte[] toAscii(final CharSequence value)
+    {
+        for (int i = 0; i < value.length(); i++)
+        {
+            if (value.charAt(i) > 127)
             {
-                buffer.putLong(localOffset, positions.getKey());
-                localOffset += Long.BYTES;
-                buffer.putLong(localOffset, positions.getValue());
-                localOffset += Long.BYTES;
+                return null;
             }
+        }
 
-            buffer.putLong(localOffset, subscriberCounter.receiverPosition());
-            localOffset += Long.BYTES;
-            buffer.putLong(localOffset, subscriberCounter.receiverHighWaterMark());
-            localOffset += Long.BYTES;
+        final byte[] ascii = new byte[value.length()];
+        for (int i = 0; i < ascii.length; i++)
+        {
+            ascii[i] = (byte)value.charAt(i);
         }
-        return localOffset;
+        return ascii;
     }
 
-    private static int writePublisherCounters(
+    private int writeSessionKey(
         final int offset,
-        final List<PublisherCounterSet> publisherCounters,
+        final LabelState state,
+        final CharSequence channel,
+        final int streamId,
+        final int sessionId,
         final MutableDirectBuffer buffer)
     {
+        final int channelId = state.channels.idOf(channel);
+        if (channelId >= state.announcedInKeyFrame.length)
+        {
+            final int length = Math.max(channelId + 1, state.announcedInKeyFrame.length * 2);
+            state.announcedInKeyFrame = Arrays.copyOf(state.announcedInKeyFrame, length);
+            state.asciiChannels = Arrays.copyOf(state.asciiChannels, length);
+        }
+
         int localOffset = offset;
-        buffer.putInt(localOffset, publisherCounters.size());
-        localOffset += Integer.BYTES;
-        for (final PublisherCounterSet publisherCounter : publisherCounters)
+        if (state.announcedInKeyFrame[channelId] != state.keyFrameNumber)
         {
-            buffer.putInt(localOffset, publisherCounter.channel().length());
-            localOffset += Integer.BYTES;
-            for (int i = 0; i < publisherCounter.channel().length(); i++)
+            state.announcedInKeyFrame[channelId] = state.keyFrameNumber;
+            if (channelEncoding == ChannelEncoding.ASCII && state.asciiChannels[channelId] == null)
             {
-                buffer.putChar(localOffset, publisherCounter.channel().charAt(i));
-                localOffset += Character.BYTES;
+                state.asciiChannels[channelId] = toAscii(channel);
             }
-            buffer.putInt(localOffset, publisherCounter.streamId());
-            localOffset += Integer.BYTES;
-            buffer.putInt(localOffset, publisherCounter.sessionId());
-            localOffset += Integer.BYTES;
+            localOffset = VarInt.putVarLong(buffer, localOffset, ((long)channelId << 1) | 1);
+            localOffset = putString(buffer, localOffset, channel, state.asciiChannels[channelId]);
+        }
+        else
+        {
+            localOffset = VarInt.putVarLong(buffer, localOffset, (long)channelId << 1);
+        }
+        localOffset = VarInt.putZigZag(buffer, localOffset, streamId);
+        return VarInt.putZigZag(buffer, localOffset, sessionId);
+    }
+
+    private static int putDelta(
+        final MutableDirectBuffer buffer,
+        final int offset,
+        final int fields,
+        final int field,
+        final long value,
+        final long previousValue)
+    {
+        return (fields & field) != 0 ? VarInt.putZigZag(buffer, offset, value - previousValue) : offset;
+    }
+
+    private static final class LabelState
+    {
+        private final ChannelDictionary channels = new ChannelDictionary();
+        private final CounterRepository<PublisherCounterSet> publishers =
+            new CounterRepository<>(PublisherCounterSet::new);
+        private final CounterRepository<SubscriberCounterSet> subscribers =
+            new CounterRepository<>(SubscriberCounterSet::new);
+        private final SystemCounters systemCounters = new SystemCounters();
+        private final byte[] asciiLabel;
+        private int[] announcedInKeyFrame = new int[16];
+        private byte[][] asciiChannels = new byte[16][];
+        private int keyFrameNumber;
+        private int snapshotsUntilKeyFrame;
+        private long sequence;
 
-            buffer.putLong(localOffset, publisherCounter.publisherPosition());
-            localOffset += Long.BYTES;
-            buffer.putLong(localOffset, publisherCounter.backPressureEvents());
-            localOffset += Long.BYTES;
-            buffer.putLong(localOffset, publisherCounter.senderPosition());
-            localOffset += Long.BYTES;
-            buffer.putLong(localOffset, publisherCounter.senderLimit());
-            localOffset += Long.BYTES;
-            buffer.putLong(localOffset, publisherCounter.publisherLimit());
-            localOffset += Long.BYTES;
+        LabelState(final String label)
+        {
+            asciiLabel = toAscii(label);
         }
-        return localOffset;
     }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.transport;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+
+/**
+ * Variable-length encoding of integers, seven bits per byte, least significant group first.
+ * Signed values are zig-zag encoded so that small negative deltas are also short.
+ */
+final class VarInt
+{
+    static final int MAX_VAR_INT_LENGTH = 5;
+    static final int MAX_VAR_LONG_LENGTH = 10;
+
+    private VarInt()
+    {
+    }
+
+    static int putVarLong(final MutableDirectBuffer buffer, final int offset, final long value)
+    {
+        int localOffset = offset;
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0)
+        {
+            buffer.putByte(localOffset++, (byte)((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.putByte(localOffset++, (byte)remaining);
+        return localOffset;
+    }
+
+    static int putZigZag(final MutableDirectBuffer buffer, final int offset, final long value)
+    {
+        return putVarLong(buffer, offset, (value << 1) ^ (value >> 63));
+    }
+
+    static long getVarLong(final DirectBuffer buffer, final int offset)
+    {
+        long value = 0;
+        int shift = 0;
+        int localOffset = offset;
+        byte b;
+        do
+        {
+            b = buffer.getByte(localOffset++);
+            value |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        }
+        while (b < 0 && shift < 64);
+        return value;
+    }
+
+    static long getZigZag(final DirectBuffer buffer, final int offset)
+    {
+        final long encoded = getVarLong(buffer, offset);
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+
+    static int varLongLength(final long value)
+    {
+        return value == 0 ? 1 : (70 - Long.numberOfLeadingZeros(value)) / 7;
+    }
+
+    static int zigZagLength(final long value)
+    {
+        return varLongLength((value << 1) ^ (value >> 63));
+    }
+}
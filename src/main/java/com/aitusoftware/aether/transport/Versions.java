@@ -20,7 +20,35 @@ package com.aitusoftware.aether.transport;
 final class Versions
 {
     static final int SNAPSHOT_HEADER_ID = 0xAE00_5555;
-    static final byte VERSION = 1;
+    static final byte VERSION = 6;
+
+    static final byte KEY_FRAME = 0;
+    static final byte DELTA_FRAME = 1;
+    static final int DEFAULT_KEY_FRAME_INTERVAL = 10;
+
+    static final byte BEGIN_PAGE_FLAG = 1;
+    static final byte END_PAGE_FLAG = 1 << 1;
+    static final byte COMPRESSED_PAGE_FLAG = 1 << 2;
+    static final int PAGE_FLAGS_OFFSET = Integer.BYTES + 3 * Byte.BYTES;
+    static final int PAGE_BODY_OFFSET = PAGE_FLAGS_OFFSET + Byte.BYTES;
+
+    static final int UTF_16_STRING_FLAG = 1;
+
+    static final int PUBLISHERS_SECTION = 0;
+    static final int REMOVED_PUBLISHERS_SECTION = 1;
+    static final int SUBSCRIBERS_SECTION = 2;
+    static final int REMOVED_SUBSCRIBERS_SECTION = 3;
+    static final int SECTION_COUNT = 4;
+
+    static final int PUBLISHER_POSITION_FIELD = 1;
+    static final int BACK_PRESSURE_EVENTS_FIELD = 1 << 1;
+    static final int SENDER_POSITION_FIELD = 1 << 2;
+    static final int SENDER_LIMIT_FIELD = 1 << 3;
+    static final int PUBLISHER_LIMIT_FIELD = 1 << 4;
+
+    static final int RECEIVER_POSITION_FIELD = 1;
+    static final int RECEIVER_HWM_FIELD = 1 << 1;
+    static final int SUBSCRIBER_POSITIONS_FIELD = 1 << 2;
 
     private Versions()
     {
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Asserts that work does not allocate once it has been compiled.
+ * <p>
+ * Recompilation can cause transient allocation, so the work is measured over several rounds, and passes if any
+ * round does not allocate.
+ */
+public final class AllocationAssertions
+{
+    private static final int WARM_UP_ITERATIONS = 10_000;
+    private static final int ITERATIONS_PER_ROUND = 1_000;
+
+    private AllocationAssertions()
+    {
+    }
+
+    /**
+     * Runs the work {@value #WARM_UP_ITERATIONS} times, then asserts that it does not allocate over
+     * {@value #ITERATIONS_PER_ROUND} iterations in at least one of up to {@code rounds} rounds.
+     *
+     * @param work   the work to measure
+     * @param rounds the maximum number of rounds to measure
+     * @return the number of times the work was run
+     */
+    public static long assertNoAllocation(final Runnable work, final int rounds)
+    {
+        return assertNoAllocation(work, WARM_UP_ITERATIONS, ITERATIONS_PER_ROUND, rounds);
+    }
+
+    /**
+     * Runs the work {@code warmUpIterations} times, then asserts that it does not allocate over
+     * {@code iterationsPerRound} iterations in at least one of up to {@code rounds} rounds.
+     *
+     * @param work               the work to measure
+     * @param warmUpIterations   the number of times to run the work before measuring
+     * @param iterationsPerRound the number of times to run the work in each round
+     * @param rounds             the maximum number of rounds to measure
+     * @return the number of times the work was run
+     */
+    public static long assertNoAllocation(
+        final Runnable work, final int warmUpIterations, final int iterationsPerRound, final int rounds)
+    {
+        for (int i = 0; i < warmUpIterations; i++)
+        {
+            work.run();
+        }
+        long iterations = warmUpIterations;
+
+        final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final long measurementOverhead = Math.abs(
+            threadMXBean.getThreadAllocatedBytes(threadId) - threadMXBean.getThreadAllocatedBytes(threadId));
+
+        long allocatedBytes = Long.MAX_VALUE;
+        for (int round = 0; round < rounds && allocatedBytes > 0; round++)
+        {
+            final long startBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < iterationsPerRound; i++)
+            {
+                work.run();
+            }
+            allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - startBytes - measurementOverhead;
+            iterations += iterationsPerRound;
+        }
+
+        assertThat(allocatedBytes).isAtMost(0L);
+        return iterations;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether;
+
+import static io.aeron.driver.status.StreamCounter.CHANNEL_OFFSET;
+import static io.aeron.driver.status.StreamCounter.REGISTRATION_ID_OFFSET;
+import static io.aeron.driver.status.StreamCounter.SESSION_ID_OFFSET;
+import static io.aeron.driver.status.StreamCounter.STREAM_ID_OFFSET;
+
+import java.nio.ByteBuffer;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.CountersManager;
+import org.agrona.concurrent.status.CountersReader;
+
+import io.aeron.driver.status.PublisherLimit;
+import io.aeron.driver.status.PublisherPos;
+import io.aeron.driver.status.ReceiverHwm;
+import io.aeron.driver.status.ReceiverPos;
+import io.aeron.driver.status.SenderBpe;
+import io.aeron.driver.status.SenderLimit;
+import io.aeron.driver.status.SenderPos;
+import io.aeron.driver.status.SubscriberPos;
+
+/**
+ * Builds a counters file containing stream counters laid out in the same way as those of a MediaDriver.
+ */
+final class SyntheticCounters
+{
+    private final UnsafeBuffer tempBuffer = new UnsafeBuffer(new byte[CountersReader.METADATA_LENGTH]);
+    private final CountersManager countersManager;
+    private long registrationId = 1;
+
+    SyntheticCounters(final int maxCounters)
+    {
+        countersManager = new CountersManager(
+            new UnsafeBuffer(ByteBuffer.allocateDirect(maxCounters * CountersReader.METADATA_LENGTH)),
+            new UnsafeBuffer(ByteBuffer.allocateDirect(maxCounters * CountersReader.COUNTER_LENGTH)));
+    }
+
+    CountersReader countersReader()
+    {
+        return countersManager;
+    }
+
+    CountersManager countersManager()
+    {
+        return countersManager;
+    }
+
+    /**
+     * Allocates the set of counters used by a network publication.
+     *
+     * @param sessionId the sessionId
+     * @param streamId  the streamId
+     * @param channel   the channel
+     * @return the registrationId of the publication
+     */
+    long addPublication(final int sessionId, final int streamId, final String channel)
+    {
+        final long publicationId = registrationId++;
+        addStreamCounter("pub-pos (sampled)", PublisherPos.PUBLISHER_POS_TYPE_ID,
+            publicationId, sessionId, streamId, channel);
+        addStreamCounter("pub-lmt", PublisherLimit.PUBLISHER_LIMIT_TYPE_ID,
+            publicationId, sessionId, streamId, channel);
+        addStreamCounter("snd-pos", SenderPos.SENDER_POSITION_TYPE_ID,
+            publicationId, sessionId, streamId, channel);
+        addStreamCounter("snd-lmt", SenderLimit.SENDER_LIMIT_TYPE_ID,
+            publicationId, sessionId, streamId, channel);
+        addStreamCounter("snd-bpe", SenderBpe.SENDER_BPE_TYPE_ID,
+            publicationId, sessionId, streamId, channel);
+        return publicationId;
+    }
+
+    /**
+     * Allocates the set of counters used by a network image with a single subscriber.
+     *
+     * @param sessionId the sessionId
+     * @param streamId  the streamId
+     * @param channel   the channel
+     * @return the registrationId of the subscription
+     */
+    long addImage(final int sessionId, final int streamId, final String channel)
+    {
+        final long subscriptionId = registrationId++;
+        addStreamCounter("rcv-hwm", ReceiverHwm.RECEIVER_HWM_TYPE_ID,
+            subscriptionId, sessionId, streamId, channel);
+        addStreamCounter("rcv-pos", ReceiverPos.RECEIVER_POS_TYPE_ID,
+            subscriptionId, sessionId, streamId, channel);
+        addStreamCounter("sub-pos", SubscriberPos.SUBSCRIBER_POSITION_TYPE_ID,
+            subscriptionId, sessionId, streamId, channel);
+        return subscriptionId;
+    }
+
+    /**
+     * Allocates a counter using the key and label format of {@code io.aeron.driver.status.StreamCounter}.
+     *
+     * @param name           the counter name
+     * @param typeId         the counter type
+     * @param registrationId the registrationId
+     * @param sessionId      the sessionId
+     * @param streamId       the streamId
+     * @param channel        the channel
+     * @return the counterId
+     */
+    int addStreamCounter(
+        final String name, final int typeId, final long registrationId,
+        final int sessionId, final int streamId, final String channel)
+    {
+        tempBuffer.setMemory(0, tempBuffer.capacity(), (byte)0);
+        tempBuffer.putLong(REGISTRATION_ID_OFFSET, registrationId);
+        tempBuffer.putInt(SESSION_ID_OFFSET, sessionId);
+        tempBuffer.putInt(STREAM_ID_OFFSET, streamId);
+        final int maxChannelLength = CountersReader.MAX_KEY_LENGTH - (CHANNEL_OFFSET + Integer.BYTES);
+        final int channelLength = tempBuffer.putStringWithoutLengthAscii(
+            CHANNEL_OFFSET + Integer.BYTES, channel, 0, maxChannelLength);
+        tempBuffer.putInt(CHANNEL_OFFSET, channelLength);
+        final int keyLength = CHANNEL_OFFSET + Integer.BYTES + channelLength;
+
+        final String label = name + ": " + registrationId + " " + sessionId + " " + streamId + " " + channel;
+        final int labelLength = tempBuffer.putStringWithoutLengthAscii(keyLength, label);
+
+        return countersManager.allocate(typeId, tempBuffer, 0, keyLength, tempBuffer, keyLength, labelLength);
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether;
+
+import static com.aitusoftware.aether.AllocationAssertions.assertNoAllocation;
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.aitusoftware.aether.event.CounterValueListener;
+import com.aitusoftware.aether.event.PositionSampleListener;
+
+import org.agrona.concurrent.CachedEpochClock;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.junit.jupiter.api.Test;
+
+import io.aeron.driver.status.PublisherLimit;
+import io.aeron.driver.status.PublisherPos;
+import io.aeron.driver.status.SenderPos;
+import io.aeron.driver.status.SubscriberPos;
+
+class SyntheticCountersPollerTest
+{
+    private static final String CHANNEL = "aeron:udp?endpoint=localhost:14567";
+    private static final String CHANNEL_2 = "aeron:udp?endpoint=localhost:14568";
+    private static final int SESSION_ID = -77_234;
+    private static final int STREAM_ID = 9;
+    private static final int PUBLICATION_COUNT = 500;
+
+    private final SyntheticCounters counters = new SyntheticCounters(4096);
+    private final CachedEpochClock epochClock = new CachedEpochClock();
+
+    @Test
+    void shouldDecodeStreamCounterKeys()
+    {
+        final long publicationId = counters.addPublication(SESSION_ID, STREAM_ID, CHANNEL);
+        final long subscriptionId = counters.addImage(SESSION_ID, STREAM_ID, CHANNEL);
+        final CapturingCounterValueListener listener = new CapturingCounterValueListener();
+
+        poll(new CountersPoller(listener, "label", counters.countersReader(), epochClock));
+
+        assertThat(listener.values.size()).isEqualTo(8);
+        for (final CapturedCounterValue value : listener.values)
+        {
+            assertThat(value.channel).isEqualTo(CHANNEL);
+            assertThat(value.sessionId).isEqualTo(SESSION_ID);
+            assertThat(value.streamId).isEqualTo(STREAM_ID);
+        }
+        assertThat(listener.registrationIdOf(PublisherPos.PUBLISHER_POS_TYPE_ID)).isEqualTo(publicationId);
+        assertThat(listener.registrationIdOf(SubscriberPos.SUBSCRIBER_POSITION_TYPE_ID)).isEqualTo(subscriptionId);
+    }
+
+    @Test
+    void shouldDecodeChannelTruncatedInKeyFromLabel()
+    {
+        final StringBuilder longChannel = new StringBuilder("aeron:udp?endpoint=localhost:14567");
+        while (longChannel.length() < 200)
+        {
+            longChannel.append("|alias=padding");
+        }
+        counters.addPublication(SESSION_ID, STREAM_ID, longChannel.toString());
+        final CapturingCounterValueListener listener = new CapturingCounterValueListener();
+
+        poll(new CountersPoller(listener, "label", counters.countersReader(), epochClock));
+
+        assertThat(listener.values.size()).isEqualTo(5);
+        for (final CapturedCounterValue value : listener.values)
+        {
+            assertThat(value.channel).isEqualTo(longChannel.toString());
+        }
+    }
+
+    @Test
+    void shouldStopReportingFreedCountersAndDecodeReusedCounters()
+    {
+        final int counterId = counters.addStreamCounter(
+            "pub-lmt", PublisherLimit.PUBLISHER_LIMIT_TYPE_ID, 17L, SESSION_ID, STREAM_ID, CHANNEL);
+        counters.addImage(SESSION_ID, STREAM_ID, CHANNEL);
+        final CapturingCounterValueListener listener = new CapturingCounterValueListener();
+        final CountersPoller countersPoller = new CountersPoller(
+            listener, "label", counters.countersReader(), epochClock);
+
+        poll(countersPoller);
+        assertThat(listener.values.size()).isEqualTo(4);
+
+        listener.values.clear();
+        counters.countersManager().free(counterId);
+        poll(countersPoller);
+        assertThat(listener.values.size()).isEqualTo(3);
+        assertThat(listener.registrationIdOf(PublisherLimit.PUBLISHER_LIMIT_TYPE_ID)).isEqualTo(-1L);
+
+        listener.values.clear();
+        final int reusedCounterId = counters.addStreamCounter(
+            "snd-pos", SenderPos.SENDER_POSITION_TYPE_ID, 99L, SESSION_ID + 1, STREAM_ID, CHANNEL_2);
+        assertThat(reusedCounterId).isEqualTo(counterId);
+        poll(countersPoller);
+        assertThat(listener.values.size()).isEqualTo(4);
+        assertThat(listener.registrationIdOf(SenderPos.SENDER_POSITION_TYPE_ID)).isEqualTo(99L);
+        assertThat(listener.channelOf(SenderPos.SENDER_POSITION_TYPE_ID)).isEqualTo(CHANNEL_2);
+    }
+
+    @Test
+    void shouldSamplePositionCountersBetweenFullPolls()
+    {
+        counters.addPublication(SESSION_ID, STREAM_ID, CHANNEL);
+        counters.addImage(SESSION_ID, STREAM_ID, CHANNEL);
+        final CapturingCounterValueListener listener = new CapturingCounterValueListener();
+        final CapturingPositionSampleListener sampleListener = new CapturingPositionSampleListener();
+        final CountersPoller countersPoller = new CountersPoller(
+            listener, "label", counters.countersReader(), epochClock, 100L, 1L, sampleListener, null);
+
+        epochClock.update(1_000L);
+        for (int i = 0; i < 250; i++)
+        {
+            countersPoller.doWork();
+            epochClock.advance(1L);
+        }
+
+        assertThat(listener.batchCount).isEqualTo(3);
+        assertThat(listener.values.size()).isEqualTo(3 * 8);
+        assertThat(sampleListener.sampleCount).isEqualTo(250 - 3);
+        assertThat(sampleListener.typeIds).containsExactly(
+            PublisherPos.PUBLISHER_POS_TYPE_ID,
+            SenderPos.SENDER_POSITION_TYPE_ID,
+            SubscriberPos.SUBSCRIBER_POSITION_TYPE_ID);
+    }
+
+    @Test
+    void shouldNotAllocateWhenPolling()
+    {
+        for (int i = 0; i < PUBLICATION_COUNT; i++)
+        {
+            counters.addPublication(SESSION_ID + i, STREAM_ID, CHANNEL);
+            counters.addImage(SESSION_ID + i, STREAM_ID, CHANNEL);
+        }
+        final CountingCounterValueListener listener = new CountingCounterValueListener();
+        final CountersPoller countersPoller = new CountersPoller(
+            listener, "label", counters.countersReader(), epochClock);
+        final long polls = assertNoAllocation(() -> poll(countersPoller), 100, 100, 5);
+
+        assertThat(listener.counterEvents).isEqualTo(polls * PUBLICATION_COUNT * 8L);
+    }
+
+    @Test
+    void shouldReportPollMetricsToCounters()
+    {
+        counters.addPublication(SESSION_ID, STREAM_ID, CHANNEL);
+        counters.addImage(SESSION_ID, STREAM_ID, CHANNEL_2);
+        final AtomicCounter pollDurationNs = counters.countersManager().newCounter(
+            "poll-duration", PollerCounters.POLL_DURATION_COUNTER_TYPE_ID);
+        final AtomicCounter countersScanned = counters.countersManager().newCounter(
+            "counters-scanned", PollerCounters.COUNTERS_SCANNED_COUNTER_TYPE_ID);
+        final AtomicCounter trackedSessions = counters.countersManager().newCounter(
+            "tracked-sessions", PollerCounters.TRACKED_SESSIONS_COUNTER_TYPE_ID);
+        final CountersPoller countersPoller = new CountersPoller(
+            new CountingCounterValueListener(), "label", counters.countersReader(), epochClock, 100L, 0L, null,
+            new PollerCounters(pollDurationNs, countersScanned, trackedSessions, () -> 2));
+
+        epochClock.advance(1_001L);
+        final int countersRead = countersPoller.doWork();
+
+        assertThat(countersRead).isGreaterThan(0);
+        assertThat(countersScanned.get()).isEqualTo(countersRead);
+        assertThat(trackedSessions.get()).isEqualTo(2L);
+        assertThat(pollDurationNs.get()).isGreaterThan(0L);
+    }
+
+    private void poll(final CountersPoller countersPoller)
+    {
+        epochClock.advance(1_001L);
+        countersPoller.doWork();
+    }
+
+    private static final class CountingCounterValueListener implements CounterValueListener
+    {
+        private long counterEvents;
+
+        @Override
+        public void onCounterEvent(
+            final int counterId, final int counterTypeId, final CharSequence channel,
+            final int sessionId, final int streamId,
+            final long registrationId, final long value)
+        {
+            counterEvents++;
+        }
+
+        @Override
+        public void onEndOfBatch(final String label)
+        {
+        }
+    }
+
+    private static final class CapturingPositionSampleListener implements PositionSampleListener
+    {
+        private final Set<Integer> typeIds = new HashSet<>();
+        private int sampleCount;
+
+        @Override
+        public void onPositionSample(
+            final String label, final long timestamp, final int counterTypeId, final CharSequence channel,
+            final int sessionId, final int streamId, final long registrationId, final long position)
+        {
+            typeIds.add(counterTypeId);
+        }
+
+        @Override
+        public void onEndOfSample(final String label, final long timestamp)
+        {
+            sampleCount++;
+        }
+    }
+
+    private static final class CapturingCounterValueListener implements CounterValueListener
+    {
+        private final List<CapturedCounterValue> values = new ArrayList<>();
+        private int batchCount;
+
+        @Override
+        public void onCounterEvent(
+            final int counterId, final int counterTypeId, final CharSequence channel,
+            final int sessionId, final int streamId,
+            final long registrationId, final long value)
+        {
+            values.add(new CapturedCounterValue(
+                counterTypeId, channel.toString(), sessionId, streamId, registrationId));
+        }
+
+        @Override
+        public void onEndOfBatch(final String label)
+        {
+            batchCount++;
+        }
+
+        long registrationIdOf(final int typeId)
+        {
+            return values.stream().filter(v -> v.typeId == typeId).findFirst()
+                .map(v -> v.registrationId).orElse(-1L);
+        }
+
+        String channelOf(final int typeId)
+        {
+            return values.stream().filter(v -> v.typeId == typeId).findFirst()
+                .map(v -> v.channel).orElse(null);
+        }
+    }
+
+    private static final class CapturedCounterValue
+    {
+        private final int typeId;
+        private final String channel;
+        private final int sessionId;
+        private final int streamId;
+        private final long registrationId;
+
+        CapturedCounterValue(
+            final int typeId, final String channel, final int sessionId, final int streamId, final long registrationId)
+        {
+            this.typeId = typeId;
+            this.channel = channel;
+            this.sessionId = sessionId;
+            this.streamId = streamId;
+            this.registrationId = registrationId;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.aggregation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Assertions on values read from a {@code LogHistogram}.
+ */
+final class LogHistogramAssertions
+{
+    private LogHistogramAssertions()
+    {
+    }
+
+    /**
+     * Asserts that a value read from a histogram is within the precision of the bucket of the recorded value.
+     *
+     * @param actual   the value read from the histogram
+     * @param expected the value that was recorded
+     */
+    static void assertWithinBucketPrecision(final long actual, final long expected)
+    {
+        assertThat(actual).isAtLeast(expected);
+        assertThat(actual).isAtMost(expected + expected / LogHistogram.SUB_BUCKET_COUNT);
+    }
+}
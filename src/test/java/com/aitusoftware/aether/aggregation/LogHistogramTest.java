@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.aggregation;
+
+import org.junit.jupiter.api.Test;
+
+import static com.aitusoftware.aether.aggregation.LogHistogramAssertions.assertWithinBucketPrecision;
+import static com.google.common.truth.Truth.assertThat;
+
+class LogHistogramTest
+{
+    private final LogHistogram histogram = new LogHistogram();
+
+    @Test
+    void shouldReportPercentilesWithinBucketPrecision()
+    {
+        for (long value = 1; value <= 10_000; value++)
+        {
+            histogram.record(value);
+        }
+
+        assertThat(histogram.totalCount()).isEqualTo(10_000L);
+        assertThat(histogram.minValue()).isEqualTo(1L);
+        assertThat(histogram.maxValue()).isEqualTo(10_000L);
+        assertWithinBucketPrecision(histogram.valueAtPercentile(50.0), 5_000L);
+        assertWithinBucketPrecision(histogram.valueAtPercentile(99.0), 9_900L);
+        assertWithinBucketPrecision(histogram.valueAtPercentile(99.9), 9_990L);
+        assertThat(histogram.valueAtPercentile(100.0)).isEqualTo(10_000L);
+    }
+
+    @Test
+    void shouldRecordExtremeValues()
+    {
+        histogram.record(0L);
+        histogram.record(Long.MAX_VALUE);
+
+        assertThat(histogram.valueAtPercentile(50.0)).isEqualTo(0L);
+        assertThat(histogram.valueAtPercentile(100.0)).isEqualTo(Long.MAX_VALUE);
+        assertThat(LogHistogram.bucketIndex(Long.MAX_VALUE)).isEqualTo(LogHistogram.BUCKET_COUNT - 1);
+        assertThat(LogHistogram.highestEquivalentValue(LogHistogram.BUCKET_COUNT - 1)).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void shouldMapEveryBucketBoundaryToItsOwnBucket()
+    {
+        for (int bucketIndex = 0; bucketIndex < LogHistogram.BUCKET_COUNT - 1; bucketIndex++)
+        {
+            final long highestValue = LogHistogram.highestEquivalentValue(bucketIndex);
+            assertThat(LogHistogram.bucketIndex(highestValue)).isEqualTo(bucketIndex);
+            assertThat(LogHistogram.bucketIndex(highestValue + 1)).isEqualTo(bucketIndex + 1);
+        }
+    }
+
+    @Test
+    void shouldMergeHistograms()
+    {
+        final LogHistogram other = new LogHistogram();
+        for (int i = 0; i < 99; i++)
+        {
+            histogram.record(100L);
+        }
+        other.record(1_000_000L);
+        other.record(50L);
+
+        final LogHistogram merged = new LogHistogram();
+        merged.add(histogram);
+        merged.add(other);
+
+        assertThat(merged.totalCount()).isEqualTo(101L);
+        assertThat(merged.minValue()).isEqualTo(50L);
+        assertThat(merged.maxValue()).isEqualTo(1_000_000L);
+        assertWithinBucketPrecision(merged.valueAtPercentile(50.0), 100L);
+        assertThat(merged.valueAtPercentile(100.0)).isEqualTo(1_000_000L);
+    }
+
+    @Test
+    void shouldCopyAndReset()
+    {
+        final LogHistogram copy = new LogHistogram();
+        copy.record(12345L);
+        histogram.record(7L);
+
+        histogram.copyInto(copy);
+        histogram.reset();
+
+        assertThat(copy.totalCount()).isEqualTo(1L);
+        assertThat(copy.maxValue()).isEqualTo(7L);
+        assertThat(histogram.totalCount()).isEqualTo(0L);
+        assertThat(histogram.valueAtPercentile(99.0)).isEqualTo(0L);
+    }
+}
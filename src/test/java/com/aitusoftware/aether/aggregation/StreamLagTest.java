@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.aggregation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.aitusoftware.aether.AllocationAssertions.assertNoAllocation;
+import static com.aitusoftware.aether.aggregation.LogHistogramAssertions.assertWithinBucketPrecision;
+import static com.google.common.truth.Truth.assertThat;
+
+class StreamLagTest
+{
+    private static final long START_MS = TimeUnit.SECONDS.toMillis(1000);
+    private final StreamLag streamLag = new StreamLag(Arrays.asList(
+        new RateBucket(1, TimeUnit.MINUTES),
+        new RateBucket(10, TimeUnit.SECONDS)));
+
+    @Test
+    void shouldReportMinMaxAndPercentilesPerWindow()
+    {
+        for (int i = 1; i <= 100; i++)
+        {
+            streamLag.lag(START_MS + i, i * 1000L);
+        }
+
+        final List<long[]> lags = consumeLags();
+
+        assertThat(lags).hasSize(2);
+        for (final long[] lag : lags)
+        {
+            assertThat(lag[0]).isEqualTo(1000L);
+            assertWithinBucketPrecision(lag[1], 50_000L);
+            assertWithinBucketPrecision(lag[2], 99_000L);
+            assertThat(lag[3]).isEqualTo(100_000L);
+        }
+    }
+
+    @Test
+    void shouldExpireLagOutsideWindow()
+    {
+        streamLag.lag(START_MS, 1_000_000L);
+        for (int i = 1; i <= 30; i++)
+        {
+            streamLag.lag(START_MS + TimeUnit.SECONDS.toMillis(i), 100L);
+        }
+
+        final List<long[]> lags = consumeLags();
+
+        assertThat(lags.get(0)[3]).isEqualTo(100L);
+        assertThat(lags.get(1)[3]).isEqualTo(1_000_000L);
+    }
+
+    @Test
+    void shouldRecordNegativeLagAsZero()
+    {
+        streamLag.lag(START_MS, -4096L);
+
+        assertThat(consumeLags().get(0)[0]).isEqualTo(0L);
+    }
+
+    @Test
+    void shouldNotAllocateWhenRecordingLag()
+    {
+        final long[] update = new long[1];
+        assertNoAllocation(() ->
+        {
+            streamLag.lag(START_MS + update[0] * 100L, update[0]);
+            update[0]++;
+        }, 5);
+    }
+
+    private List<long[]> consumeLags()
+    {
+        final List<long[]> lags = new ArrayList<>();
+        streamLag.consumeLag((duration, durationUnit, minLag, medianLag, p99Lag, maxLag) ->
+            lags.add(new long[]{minLag, medianLag, p99Lag, maxLag}));
+        return lags;
+    }
+}
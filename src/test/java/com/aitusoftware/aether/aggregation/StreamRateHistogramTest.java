@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.aggregation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.aitusoftware.aether.AllocationAssertions.assertNoAllocation;
+import static com.google.common.truth.Truth.assertThat;
+
+class StreamRateHistogramTest
+{
+    private static final long BASE_TIME = TimeUnit.SECONDS.toMillis(1000);
+    private final StreamRateHistogram rateHistogram = new StreamRateHistogram(
+        Arrays.asList(
+        new RateBucket(10, TimeUnit.SECONDS),
+        new RateBucket(1, TimeUnit.MINUTES)));
+
+    @Test
+    void shouldExposeBurstsHiddenByAverageRate()
+    {
+        long position = 0;
+        for (int i = 0; i <= 100; i++)
+        {
+            position += i % 50 == 0 ? 1_000_000 : 1000;
+            rateHistogram.streamPosition(BASE_TIME + 100L * i, position);
+        }
+
+        final List<LogHistogram> histograms = new ArrayList<>();
+        rateHistogram.consumeRateHistograms((duration, durationUnit, histogram) ->
+        {
+            final LogHistogram copy = new LogHistogram();
+            histogram.copyInto(copy);
+            histograms.add(copy);
+        });
+
+        assertThat(histograms).hasSize(2);
+        final LogHistogram minute = histograms.get(1);
+        assertThat(minute.totalCount()).isEqualTo(100L);
+        assertThat(minute.valueAtPercentile(50.0)).isAtLeast(10_000L);
+        assertThat(minute.valueAtPercentile(50.0)).isAtMost(10_000L + 10_000L / LogHistogram.SUB_BUCKET_COUNT);
+        assertThat(minute.maxValue()).isEqualTo(10_000_000L);
+        assertThat(minute.valueAtPercentile(99.9)).isEqualTo(10_000_000L);
+    }
+
+    @Test
+    void shouldMergeRatesAcrossSessions()
+    {
+        final StreamRateHistogram otherSession = new StreamRateHistogram(
+            Arrays.asList(new RateBucket(10, TimeUnit.SECONDS)));
+        for (int i = 0; i <= 10; i++)
+        {
+            rateHistogram.streamPosition(BASE_TIME + TimeUnit.SECONDS.toMillis(i), 1000L * i);
+            otherSession.streamPosition(BASE_TIME + TimeUnit.SECONDS.toMillis(i), 64_000L * i);
+        }
+
+        final LogHistogram merged = new LogHistogram();
+        rateHistogram.consumeRateHistograms((duration, durationUnit, histogram) ->
+        {
+            if (durationUnit == TimeUnit.SECONDS)
+            {
+                merged.add(histogram);
+            }
+        });
+        otherSession.consumeRateHistograms((duration, durationUnit, histogram) -> merged.add(histogram));
+
+        assertThat(merged.totalCount()).isEqualTo(20L);
+        assertThat(merged.minValue()).isEqualTo(1000L);
+        assertThat(merged.maxValue()).isEqualTo(64_000L);
+    }
+
+    @Test
+    void shouldNotAllocateWhenRecordingPositions()
+    {
+        final long[] update = new long[1];
+        assertNoAllocation(() ->
+        {
+            rateHistogram.streamPosition(BASE_TIME + update[0] * 100L, update[0] * 1000L);
+            update[0]++;
+        }, 5);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+import static com.aitusoftware.aether.AllocationAssertions.assertNoAllocation;
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import org.junit.jupiter.api.Test;
+
+class ConflatingSnapshotCacheTest
+{
+    private static final long TIMESTAMP = 1234567890333L;
+    private final ConflatingSnapshotCache cache = new ConflatingSnapshotCache();
+    private final PublisherCounterSet publisherCounterSet = new PublisherCounterSet();
+    private final SubscriberCounterSet subscriberCounterSet = new SubscriberCounterSet();
+    private final List<PublisherCounterSet> publishers = Collections.singletonList(publisherCounterSet);
+    private final List<SubscriberCounterSet> subscribers = Collections.singletonList(subscriberCounterSet);
+    private final SystemCounters systemCounters = new SystemCounters();
+
+    @Test
+    void shouldDeliverOnlyLatestSnapshotForEachLabel()
+    {
+        final List<String> received = new ArrayList<>();
+        final CounterSnapshotListener listener =
+            (label, timestamp, publisherCounters, subscriberCounters, systemCounters) ->
+            received.add(label + ":" + timestamp + ":" + publisherCounters.get(0).publisherPosition() + ":" +
+            subscriberCounters.get(0).subscriberPositions().get(5L) + ":" + systemCounters.bytesSent());
+
+        publish("label-0", 0);
+        publish("label-1", 1);
+        publish("label-0", 2);
+        publish("label-0", 3);
+
+        assertThat(cache.poll(listener)).isEqualTo(2);
+        assertThat(received).containsExactly(
+            "label-0:" + (TIMESTAMP + 3) + ":3:3:3",
+            "label-1:" + (TIMESTAMP + 1) + ":1:1:1");
+        assertThat(cache.conflatedSnapshots()).isEqualTo(2L);
+
+        received.clear();
+        assertThat(cache.poll(listener)).isEqualTo(0);
+        assertThat(received).isEmpty();
+
+        publish("label-1", 4);
+        assertThat(cache.poll(listener)).isEqualTo(1);
+        assertThat(received).containsExactly("label-1:" + (TIMESTAMP + 4) + ":4:4:4");
+    }
+
+    @Test
+    void shouldProvideConsistentSnapshotsToPollingThread() throws Exception
+    {
+        final int snapshotCount = 200_000;
+        final ConsistencyCheckingListener listener = new ConsistencyCheckingListener();
+        final AtomicBoolean complete = new AtomicBoolean();
+        final Thread publisher = new Thread(() ->
+        {
+            for (int i = 1; i <= snapshotCount; i++)
+            {
+                publish("label-0", i);
+            }
+            complete.set(true);
+        });
+        publisher.start();
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while ((!complete.get() || listener.lastPosition != snapshotCount) && System.nanoTime() < deadline)
+        {
+            cache.poll(listener);
+        }
+        publisher.join();
+
+        assertThat(listener.inconsistent).isEqualTo(0);
+        assertThat(listener.outOfOrder).isEqualTo(0);
+        assertThat(listener.lastPosition).isEqualTo(snapshotCount);
+        assertThat(listener.received + cache.conflatedSnapshots()).isEqualTo(snapshotCount);
+    }
+
+    @Test
+    void shouldNotAllocateWhenPublishingAndPollingKnownLabels()
+    {
+        final CounterSnapshotListener listener =
+            (label, timestamp, publisherCounters, subscriberCounters, systemCounters) ->
+            {
+            };
+        final String[] labels = {"label-0", "label-1", "label-2", "label-3"};
+        final long[] sequence = new long[1];
+        assertNoAllocation(() ->
+        {
+            publish(labels[(int)(sequence[0] & 3)], sequence[0]);
+            cache.poll(listener);
+            sequence[0]++;
+        }, 5);
+    }
+
+    private void publish(final String label, final long sequence)
+    {
+        publisherCounterSet.reset("chan-1", 2, 7);
+        publisherCounterSet.publisherPosition(sequence);
+        subscriberCounterSet.reset("chan-1", 2, 7);
+        subscriberCounterSet.subscriberPosition(5L, sequence);
+        systemCounters.bytesSent(sequence);
+        cache.onSnapshot(label, TIMESTAMP + sequence, publishers, subscribers, systemCounters);
+    }
+
+    private static final class ConsistencyCheckingListener implements CounterSnapshotListener
+    {
+        private volatile long lastPosition;
+        private int received;
+        private int inconsistent;
+        private int outOfOrder;
+
+        @Override
+        public void onSnapshot(
+            final String label,
+            final long timestamp,
+            final List<PublisherCounterSet> publisherCounters,
+            final List<SubscriberCounterSet> subscriberCounters,
+            final SystemCounters systemCounters)
+        {
+            final long position = publisherCounters.get(0).publisherPosition();
+            if (timestamp != TIMESTAMP + position || systemCounters.bytesSent() != position ||
+                subscriberCounters.get(0).subscriberPositions().get(5L) != position)
+            {
+                inconsistent++;
+            }
+            if (position <= lastPosition)
+            {
+                outOfOrder++;
+            }
+            lastPosition = position;
+            received++;
+        }
+    }
+}
@@ -19,6 +19,7 @@ package com.aitusoftware.aether.event;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -119,6 +120,105 @@ class CounterEventHandlerTest
         assertThat(subscriberCounterSet.subscriberPositions().keySet()).contains(3L);
     }
 
+    @Test
+    void shouldRemoveSessionsMissingFromLatestBatch()
+    {
+        final List<String> handlerEvictions = new ArrayList<>();
+        final List<String> snapshotEvictions = new ArrayList<>();
+        final SystemSnapshot evictingSnapshot = new SystemSnapshot(0L,
+            (label, channelType, channel, streamId, sessionId) ->
+            snapshotEvictions.add(channelType + ":" + channel + ":" + streamId + ":" + sessionId));
+        final CounterEventHandler evictingHandler = new CounterEventHandler(
+            new CounterRepository<>(PublisherCounterSet::new),
+            new CounterRepository<>(SubscriberCounterSet::new),
+            evictingSnapshot, new SystemEpochClock(), 0L,
+            (label, channelType, channel, streamId, sessionId) ->
+            handlerEvictions.add(channelType + ":" + channel + ":" + streamId + ":" + sessionId));
+
+        for (final CounterValue testDatum : TEST_DATA)
+        {
+            evictingHandler.onCounterEvent(
+                0, testDatum.typeId, testDatum.channel,
+                testDatum.sessionId, testDatum.streamId,
+                testDatum.registrationId, testDatum.value);
+        }
+        evictingHandler.onEndOfBatch(LABEL);
+        assertThat(handlerEvictions).isEmpty();
+        assertThat(evictingSnapshot.getConnectionsByStream()).hasSize(2);
+
+        for (final CounterValue testDatum : TEST_DATA)
+        {
+            if (CHANNEL.equals(testDatum.channel))
+            {
+                evictingHandler.onCounterEvent(
+                    0, testDatum.typeId, testDatum.channel,
+                    testDatum.sessionId, testDatum.streamId,
+                    testDatum.registrationId, testDatum.value);
+            }
+        }
+        evictingHandler.onEndOfBatch(LABEL);
+
+        final List<String> expectedEvictions = Arrays.asList(
+            "PUBLISHER:" + CHANNEL_2 + ":" + STREAM_ID + ":" + SESSION_ID,
+            "SUBSCRIBER:" + CHANNEL_2 + ":" + STREAM_ID + ":" + SESSION_ID);
+        assertThat(handlerEvictions).containsExactlyElementsIn(expectedEvictions);
+        assertThat(snapshotEvictions).containsExactlyElementsIn(expectedEvictions);
+        assertThat(evictingSnapshot.getConnectionsByStream().keySet())
+            .containsExactly(new StreamKey(CHANNEL, STREAM_ID));
+        assertThat(evictingSnapshot.getPublisherCounterSet(
+            new ChannelSessionKey(LABEL, CHANNEL_2, STREAM_ID, SESSION_ID))).isNull();
+        assertThat(evictingSnapshot.getSubscriberCounterSet(
+            new ChannelSessionKey(LABEL, CHANNEL_2, STREAM_ID, SESSION_ID))).isNull();
+        assertThat(evictingSnapshot.getPublisherCounterSet(
+            new ChannelSessionKey(LABEL, CHANNEL, STREAM_ID, SESSION_ID))).isNotNull();
+    }
+
+    @Test
+    void shouldDeliverSnapshotAsColumnarBatches()
+    {
+        final List<String> publishers = new ArrayList<>();
+        final List<String> subscribers = new ArrayList<>();
+        final CounterEventHandler batchingHandler = new CounterEventHandler(
+            new CounterRepository<>(PublisherCounterSet::new),
+            new CounterRepository<>(SubscriberCounterSet::new),
+            null, (label, timestamp, publisherBatch, subscriberBatch, systemCounters) ->
+            {
+                for (int i = 0; i < publisherBatch.size(); i++)
+                {
+                    publishers.add(publisherBatch.channels()[i] + ":" + publisherBatch.streamIds()[i] + ":" +
+                        publisherBatch.sessionIds()[i] + ":" + publisherBatch.publisherPositions()[i]);
+                }
+                for (int i = 0; i < subscriberBatch.size(); i++)
+                {
+                    final int[] offsets = subscriberBatch.subscriberPositionOffsets();
+                    long positionSum = 0;
+                    for (int j = offsets[i]; j < offsets[i + 1]; j++)
+                    {
+                        positionSum += subscriberBatch.subscriberPositions()[j];
+                    }
+                    subscribers.add(subscriberBatch.channels()[i] + ":" + subscriberBatch.receiverPositions()[i] +
+                        ":" + (offsets[i + 1] - offsets[i]) + ":" + positionSum);
+                }
+            },
+            new SystemEpochClock(), 0L, null);
+
+        for (final CounterValue testDatum : TEST_DATA)
+        {
+            batchingHandler.onCounterEvent(
+                0, testDatum.typeId, testDatum.channel,
+                testDatum.sessionId, testDatum.streamId,
+                testDatum.registrationId, testDatum.value);
+        }
+        batchingHandler.onEndOfBatch(LABEL);
+
+        assertThat(publishers).containsExactly(
+            CHANNEL + ":" + STREAM_ID + ":" + SESSION_ID + ":" + VALUE,
+            CHANNEL_2 + ":" + STREAM_ID + ":" + SESSION_ID + ":" + VALUE);
+        assertThat(subscribers).containsExactly(
+            CHANNEL + ":" + VALUE + ":3:" + (3L * VALUE),
+            CHANNEL_2 + ":" + VALUE + ":2:" + (2L * VALUE));
+    }
+
     private static final class CounterValue
     {
         private final int typeId;
@@ -19,6 +19,9 @@ package com.aitusoftware.aether.event;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.aitusoftware.aether.model.PublisherCounterSet;
 
 import org.junit.jupiter.api.Test;
@@ -40,4 +43,75 @@ class CounterRepositoryTest
         assertThat(repository.getOrCreate(AERON_UDP_LOCALHOST_12355, SESSION_ID, STREAM_ID))
             .isSameAs(repository.getOrCreate(AERON_UDP_LOCALHOST_12355, SESSION_ID, STREAM_ID));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldKeyCountersByChannelSessionAndStream()
+    {
+        final PublisherCounterSet counters = repository.getOrCreate(AERON_UDP_LOCALHOST_12355, SESSION_ID, STREAM_ID);
+
+        assertThat(repository.getOrCreate(new StringBuilder(AERON_UDP_LOCALHOST_12355), SESSION_ID, STREAM_ID))
+            .isSameAs(counters);
+        assertThat(repository.getOrCreate(AERON_UDP_LOCALHOST_12355, STREAM_ID, SESSION_ID))
+            .isNotSameAs(counters);
+        assertThat(repository.getOrCreate(AERON_UDP_LOCALHOST_12355, SESSION_ID + 1, STREAM_ID))
+            .isNotSameAs(counters);
+        assertThat(repository.getOrCreate("aeron:ipc", SESSION_ID, STREAM_ID))
+            .isNotSameAs(counters);
+        assertThat(repository.size()).isEqualTo(4);
+
+        final List<PublisherCounterSet> allCounters = new ArrayList<>();
+        repository.forEach(allCounters::add);
+        assertThat(allCounters).hasSize(4);
+        assertThat(allCounters).contains(counters);
+        assertThat(counters.channel().toString()).isEqualTo(AERON_UDP_LOCALHOST_12355);
+    }
+
+    @Test
+    void shouldLookUpInternedChannelIds()
+    {
+        final int channelId = repository.channelId(AERON_UDP_LOCALHOST_12355);
+
+        assertThat(repository.channelId(new StringBuilder(AERON_UDP_LOCALHOST_12355))).isEqualTo(channelId);
+        assertThat(repository.channelId("aeron:ipc")).isNotEqualTo(channelId);
+        assertThat(repository.getOrCreate(channelId, SESSION_ID, STREAM_ID))
+            .isSameAs(repository.getOrCreate(AERON_UDP_LOCALHOST_12355, SESSION_ID, STREAM_ID));
+    }
+
+    @Test
+    void shouldRemoveCountersNotSeenInLatestGeneration()
+    {
+        final PublisherCounterSet retained = repository.getOrCreate(AERON_UDP_LOCALHOST_12355, SESSION_ID, STREAM_ID);
+        final PublisherCounterSet removed =
+            repository.getOrCreate(AERON_UDP_LOCALHOST_12355, SESSION_ID + 1, STREAM_ID);
+        final List<PublisherCounterSet> evicted = new ArrayList<>();
+
+        assertThat(repository.removeStale(1_000L, 0L, evicted::add)).isEqualTo(0);
+
+        repository.getOrCreate(AERON_UDP_LOCALHOST_12355, SESSION_ID, STREAM_ID);
+        assertThat(repository.removeStale(2_000L, 0L, evicted::add)).isEqualTo(1);
+
+        assertThat(evicted).containsExactly(removed);
+        assertThat(repository.size()).isEqualTo(1);
+        final List<PublisherCounterSet> allCounters = new ArrayList<>();
+        repository.forEach(allCounters::add);
+        assertThat(allCounters).containsExactly(retained);
+        assertThat(repository.getOrCreate(AERON_UDP_LOCALHOST_12355, SESSION_ID + 1, STREAM_ID))
+            .isNotSameAs(removed);
+    }
+
+    @Test
+    void shouldRetainUnseenCountersUntilSessionTimeout()
+    {
+        repository.getOrCreate(AERON_UDP_LOCALHOST_12355, SESSION_ID, STREAM_ID);
+        final List<PublisherCounterSet> evicted = new ArrayList<>();
+
+        assertThat(repository.removeStale(1_000L, 500L, evicted::add)).isEqualTo(0);
+        assertThat(repository.removeStale(1_200L, 500L, evicted::add)).isEqualTo(0);
+        assertThat(repository.removeStale(1_499L, 500L, evicted::add)).isEqualTo(0);
+        assertThat(repository.size()).isEqualTo(1);
+
+        assertThat(repository.removeStale(1_500L, 500L, evicted::add)).isEqualTo(1);
+        assertThat(evicted).hasSize(1);
+        assertThat(repository.size()).isEqualTo(0);
+    }
+}
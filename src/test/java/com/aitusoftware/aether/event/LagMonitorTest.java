@@ -0,0 +1,116 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+import com.aitusoftware.aether.aggregation.RateBucket;
+import com.aitusoftware.aether.aggregation.StreamLag;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.aitusoftware.aether.AllocationAssertions.assertNoAllocation;
+import static com.google.common.truth.Truth.assertThat;
+
+class LagMonitorTest
+{
+    private static final String CHANNEL = "aeron:udp?endpoint=localhost:5000";
+    private static final int SESSION_ID = 7;
+    private static final int STREAM_ID = 11;
+    private final LagMonitor lagMonitor = new LagMonitor(
+        Collections.singletonList(new RateBucket(1, TimeUnit.MINUTES)));
+
+    @Test
+    void shouldRecordLagOfEachSubscriberBehindPublisher()
+    {
+        final SubscriberCounterSet subscriber = new SubscriberCounterSet();
+        subscriber.reset(CHANNEL, SESSION_ID, STREAM_ID);
+        subscriber.subscriberPosition(1L, 1000L);
+        subscriber.subscriberPosition(2L, 4000L);
+        lagMonitor.onSnapshot("receiver", 1000L, Collections.emptyList(),
+            Collections.singletonList(subscriber), new SystemCounters());
+
+        final PublisherCounterSet publisher = new PublisherCounterSet();
+        publisher.reset(CHANNEL, SESSION_ID, STREAM_ID);
+        publisher.publisherPosition(5000L);
+        lagMonitor.onSnapshot("sender", 1000L, Collections.singletonList(publisher),
+            Collections.emptyList(), new SystemCounters());
+
+        assertThat(lagMonitor.streamLags()).hasSize(1);
+        final StreamLag streamLag = lagMonitor.streamLags().values().iterator().next();
+        final List<Long> lags = new ArrayList<>();
+        streamLag.consumeLag((duration, durationUnit, minLag, medianLag, p99Lag, maxLag) ->
+        {
+            lags.add(minLag);
+            lags.add(maxLag);
+        });
+        assertThat(lags).containsExactly(1000L, 4000L).inOrder();
+    }
+
+    @Test
+    void shouldRemoveLagWhenStreamIsNoLongerConnected()
+    {
+        final SubscriberCounterSet subscriber = new SubscriberCounterSet();
+        subscriber.reset(CHANNEL, SESSION_ID, STREAM_ID);
+        subscriber.subscriberPosition(1L, 1000L);
+        final PublisherCounterSet publisher = new PublisherCounterSet();
+        publisher.reset(CHANNEL, SESSION_ID, STREAM_ID);
+        publisher.publisherPosition(2000L);
+        lagMonitor.onSnapshot("host", 1000L, Collections.singletonList(publisher),
+            Collections.singletonList(subscriber), new SystemCounters());
+        assertThat(lagMonitor.streamLags()).hasSize(1);
+
+        lagMonitor.onSnapshot("host", 2000L, Collections.emptyList(), Collections.emptyList(), new SystemCounters());
+
+        assertThat(lagMonitor.streamLags()).isEmpty();
+    }
+
+    @Test
+    void shouldNotAllocateWhenRecordingLagOfKnownSessions()
+    {
+        final List<PublisherCounterSet> publishers = new ArrayList<>();
+        final List<SubscriberCounterSet> subscribers = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+        {
+            final PublisherCounterSet publisher = new PublisherCounterSet();
+            publisher.reset(CHANNEL, SESSION_ID + i, STREAM_ID);
+            publisher.publisherPosition(8192L);
+            publishers.add(publisher);
+            final SubscriberCounterSet subscriber = new SubscriberCounterSet();
+            subscriber.reset(CHANNEL, SESSION_ID + i, STREAM_ID);
+            subscriber.subscriberPosition(1L, 4096L);
+            subscriber.subscriberPosition(2L, 2048L);
+            subscribers.add(subscriber);
+        }
+        final SystemCounters systemCounters = new SystemCounters();
+        final long[] timestamp = {1000L};
+        assertNoAllocation(() ->
+        {
+            lagMonitor.onSnapshot("sender", timestamp[0], publishers, Collections.emptyList(), systemCounters);
+            lagMonitor.onSnapshot("receiver", timestamp[0], Collections.emptyList(), subscribers, systemCounters);
+            timestamp[0]++;
+        }, 5);
+
+        assertThat(lagMonitor.streamLags()).hasSize(1);
+    }
+}
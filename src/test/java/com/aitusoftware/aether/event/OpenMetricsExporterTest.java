@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class OpenMetricsExporterTest
+{
+    private final OpenMetricsExporter exporter = new OpenMetricsExporter(new OpenMetricsExporter.Context()
+        .hostname("localhost").port(0));
+
+    @AfterEach
+    void tearDown()
+    {
+        exporter.close();
+    }
+
+    @Test
+    void shouldServeEmptyExpositionBeforeFirstSnapshot() throws IOException
+    {
+        assertThat(scrape()).isEqualTo("# EOF\n");
+    }
+
+    @Test
+    void shouldServeLatestSnapshot() throws IOException
+    {
+        final SystemCounters systemCounters = new SystemCounters();
+        systemCounters.bytesSent(1000L);
+        systemCounters.errors(3L);
+        final PublisherCounterSet publisher = new PublisherCounterSet();
+        publisher.reset("aeron:udp?endpoint=\"host\":5000", 2, 7);
+        publisher.publisherPosition(4096L);
+        publisher.backPressureEvents(5L);
+        final SubscriberCounterSet subscriber = new SubscriberCounterSet();
+        subscriber.reset("aeron:ipc", 3, 11);
+        subscriber.receiverHighWaterMark(2048L);
+        subscriber.subscriberPosition(17L, 1024L);
+
+        exporter.onSnapshot("host-a", 1L, Collections.singletonList(publisher),
+            Collections.singletonList(subscriber), systemCounters);
+        publisher.publisherPosition(8192L);
+        exporter.onSnapshot("host-a", 2L, Collections.singletonList(publisher),
+            Collections.singletonList(subscriber), systemCounters);
+
+        final String metrics = scrape();
+        assertThat(metrics).contains(
+            "# TYPE aether_bytes_sent counter\naether_bytes_sent_total{label=\"host-a\"} 1000\n");
+        assertThat(metrics).contains("aether_errors_total{label=\"host-a\"} 3\n");
+        assertThat(metrics).contains("# TYPE aether_publisher_position gauge\n" +
+            "aether_publisher_position{label=\"host-a\",channel=\"aeron:udp?endpoint=\\\"host\\\":5000\"," +
+            "stream_id=\"7\",session_id=\"2\"} 8192\n");
+        assertThat(metrics).contains("aether_back_pressure_events_total{label=\"host-a\"");
+        assertThat(metrics).contains("aether_receiver_hwm{label=\"host-a\",channel=\"aeron:ipc\"," +
+            "stream_id=\"11\",session_id=\"3\"} 2048\n");
+        assertThat(metrics).contains("aether_subscriber_position{label=\"host-a\",channel=\"aeron:ipc\"," +
+            "stream_id=\"11\",session_id=\"3\",registration_id=\"17\"} 1024\n");
+        assertThat(metrics).endsWith("# EOF\n");
+    }
+
+    private String scrape() throws IOException
+    {
+        final HttpURLConnection connection = (HttpURLConnection)new URL(
+            "http://localhost:" + exporter.port() + "/metrics").openConnection();
+        try
+        {
+            assertThat(connection.getResponseCode()).isEqualTo(200);
+            assertThat(connection.getContentType()).isEqualTo(OpenMetricsExporter.CONTENT_TYPE);
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream input = connection.getInputStream())
+            {
+                final byte[] buffer = new byte[4096];
+                int read;
+                while ((read = input.read(buffer)) != -1)
+                {
+                    body.write(buffer, 0, read);
+                }
+            }
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        }
+        finally
+        {
+            connection.disconnect();
+        }
+    }
+}
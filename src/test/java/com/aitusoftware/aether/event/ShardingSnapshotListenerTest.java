@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.aitusoftware.aether.model.ChannelSessionKey;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import org.junit.jupiter.api.Test;
+
+class ShardingSnapshotListenerTest
+{
+    private static final int SHARD_COUNT = 3;
+    private static final int STREAM_COUNT = 30;
+    private static final String PUBLISHER_LABEL = "publisher-host";
+    private static final String SUBSCRIBER_LABEL = "subscriber-host";
+
+    private final List<SystemSnapshot> shards = Arrays.asList(
+        new SystemSnapshot(), new SystemSnapshot(), new SystemSnapshot());
+    private final ShardingSnapshotListener shardingListener = new ShardingSnapshotListener(shards);
+    private final ShardedSystemSnapshot shardedSnapshot = new ShardedSystemSnapshot(shards);
+    private final SystemCounters systemCounters = new SystemCounters();
+
+    @Test
+    void shouldAssignPublishersAndSubscribersOfAStreamToTheSameShard()
+    {
+        shardingListener.onSnapshot(PUBLISHER_LABEL, 1L, publishers(), Collections.emptyList(), systemCounters);
+        shardingListener.onSnapshot(SUBSCRIBER_LABEL, 1L, Collections.emptyList(), subscribers(), systemCounters);
+
+        for (int shard = 0; shard < SHARD_COUNT; shard++)
+        {
+            final SystemSnapshot snapshot = shards.get(shard);
+            assertThat(snapshot.getSystemCounters().keySet()).containsExactly(PUBLISHER_LABEL, SUBSCRIBER_LABEL);
+            assertThat(snapshot.getPublisherCounterSets().size()).isLessThan(STREAM_COUNT);
+            for (final ChannelSessionKey publisherKey : snapshot.getPublisherCounterSets().keySet())
+            {
+                assertThat(ShardingSnapshotListener.shardOf(
+                    publisherKey.getChannel(), publisherKey.getStreamId(), SHARD_COUNT)).isEqualTo(shard);
+                assertThat(snapshot.getConnectionsByStream()
+                    .get(new StreamKey(publisherKey.getChannel(), publisherKey.getStreamId()))
+                    .get(publisherKey)).hasSize(1);
+            }
+        }
+    }
+
+    @Test
+    void shouldAnswerWholeSystemQueriesAcrossShards()
+    {
+        shardingListener.onSnapshot(PUBLISHER_LABEL, 1L, publishers(), Collections.emptyList(), systemCounters);
+        shardingListener.onSnapshot(SUBSCRIBER_LABEL, 1L, Collections.emptyList(), subscribers(), systemCounters);
+
+        assertThat(shardedSnapshot.getPublisherCounterSets()).hasSize(STREAM_COUNT);
+        assertThat(shardedSnapshot.getSubscriberCounterSets()).hasSize(STREAM_COUNT);
+        assertThat(shardedSnapshot.getConnectionsByStream()).hasSize(STREAM_COUNT);
+        assertThat(shardedSnapshot.getSystemCounters().keySet()).containsExactly(PUBLISHER_LABEL, SUBSCRIBER_LABEL);
+        final ChannelSessionKey publisherKey = new ChannelSessionKey(PUBLISHER_LABEL, channel(7), 7, 7);
+        assertThat(shardedSnapshot.getPublisherCounterSet(publisherKey).senderPosition()).isEqualTo(7000L);
+        final ChannelSessionKey subscriberKey = new ChannelSessionKey(SUBSCRIBER_LABEL, channel(7), 7, 7);
+        assertThat(shardedSnapshot.getSubscriberCounterSet(subscriberKey).receiverPosition()).isEqualTo(7000L);
+    }
+
+    @Test
+    void shouldRemoveSessionsFromShardsThatNoLongerReceiveThem()
+    {
+        shardingListener.onSnapshot(PUBLISHER_LABEL, 1L, publishers(), Collections.emptyList(), systemCounters);
+        shardingListener.onSnapshot(
+            PUBLISHER_LABEL, 2L, Collections.emptyList(), Collections.emptyList(), systemCounters);
+
+        assertThat(shardedSnapshot.getPublisherCounterSets()).isEmpty();
+    }
+
+    private static String channel(final int stream)
+    {
+        return "aeron:udp?endpoint=host-" + stream + ":20123";
+    }
+
+    private static List<PublisherCounterSet> publishers()
+    {
+        final List<PublisherCounterSet> publishers = new ArrayList<>();
+        for (int i = 0; i < STREAM_COUNT; i++)
+        {
+            final PublisherCounterSet publisher = new PublisherCounterSet();
+            publisher.reset(channel(i), i, i);
+            publisher.senderPosition(i * 1000L);
+            publishers.add(publisher);
+        }
+        return publishers;
+    }
+
+    private static List<SubscriberCounterSet> subscribers()
+    {
+        final List<SubscriberCounterSet> subscribers = new ArrayList<>();
+        for (int i = 0; i < STREAM_COUNT; i++)
+        {
+            final SubscriberCounterSet subscriber = new SubscriberCounterSet();
+            subscriber.reset(channel(i), i, i);
+            subscriber.receiverPosition(i * 1000L);
+            subscribers.add(subscriber);
+        }
+        return subscribers;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.event;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.aitusoftware.aether.model.ChannelSessionKey;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import org.junit.jupiter.api.Test;
+
+class SystemSnapshotTest
+{
+    private static final String CHANNEL = "aeron:udp?endpoint=localhost:12355";
+    private static final int STREAM_ID = 7;
+    private static final int SESSION_ID = 884477;
+    private static final String PUBLISHER_LABEL = "publisher-host";
+    private static final String SUBSCRIBER_LABEL = "subscriber-host";
+
+    private final SystemSnapshot systemSnapshot = new SystemSnapshot();
+    private final SystemCounters systemCounters = new SystemCounters();
+    private final ChannelSessionKey publisherKey =
+        new ChannelSessionKey(PUBLISHER_LABEL, CHANNEL, STREAM_ID, SESSION_ID);
+    private final ChannelSessionKey subscriberKey =
+        new ChannelSessionKey(SUBSCRIBER_LABEL, CHANNEL, STREAM_ID, SESSION_ID);
+
+    @Test
+    void shouldConnectSubscriberReportedAfterPublisher()
+    {
+        systemSnapshot.onSnapshot(PUBLISHER_LABEL, 1L, publisher(SESSION_ID), Collections.emptyList(),
+            systemCounters);
+        assertThat(connectedSubscribers()).isEmpty();
+
+        systemSnapshot.onSnapshot(SUBSCRIBER_LABEL, 2L, Collections.emptyList(), subscriber(SESSION_ID),
+            systemCounters);
+        assertThat(connectedSubscribers()).containsExactly(subscriberKey);
+
+        systemSnapshot.onSnapshot(PUBLISHER_LABEL, 3L, publisher(SESSION_ID), Collections.emptyList(),
+            systemCounters);
+        assertThat(connectedSubscribers()).containsExactly(subscriberKey);
+    }
+
+    @Test
+    void shouldConnectPublisherReportedAfterSubscriber()
+    {
+        systemSnapshot.onSnapshot(SUBSCRIBER_LABEL, 1L, Collections.emptyList(), subscriber(SESSION_ID),
+            systemCounters);
+        systemSnapshot.onSnapshot(PUBLISHER_LABEL, 2L, publisher(SESSION_ID), Collections.emptyList(),
+            systemCounters);
+
+        assertThat(connectedSubscribers()).containsExactly(subscriberKey);
+    }
+
+    @Test
+    void shouldNotConnectSubscriberOfDifferentSession()
+    {
+        systemSnapshot.onSnapshot(PUBLISHER_LABEL, 1L, publisher(SESSION_ID), Collections.emptyList(),
+            systemCounters);
+        systemSnapshot.onSnapshot(SUBSCRIBER_LABEL, 2L, Collections.emptyList(), subscriber(SESSION_ID + 1),
+            systemCounters);
+
+        assertThat(connectedSubscribers()).isEmpty();
+    }
+
+    @Test
+    void shouldDisconnectRemovedSubscriber()
+    {
+        systemSnapshot.onSnapshot(PUBLISHER_LABEL, 1L, publisher(SESSION_ID), Collections.emptyList(),
+            systemCounters);
+        systemSnapshot.onSnapshot(SUBSCRIBER_LABEL, 2L, Collections.emptyList(), subscriber(SESSION_ID),
+            systemCounters);
+        systemSnapshot.onSnapshot(SUBSCRIBER_LABEL, 3L, Collections.emptyList(), Collections.emptyList(),
+            systemCounters);
+
+        assertThat(connectedSubscribers()).isEmpty();
+        assertThat(systemSnapshot.getSubscriberCounterSet(subscriberKey)).isNull();
+    }
+
+    private Set<ChannelSessionKey> connectedSubscribers()
+    {
+        final Map<ChannelSessionKey, Set<ChannelSessionKey>> streamPublishers =
+            systemSnapshot.getConnectionsByStream().get(new StreamKey(CHANNEL, STREAM_ID));
+        return streamPublishers.get(publisherKey);
+    }
+
+    private static List<PublisherCounterSet> publisher(final int sessionId)
+    {
+        final PublisherCounterSet publisherCounterSet = new PublisherCounterSet();
+        publisherCounterSet.reset(CHANNEL, sessionId, STREAM_ID);
+        return Collections.singletonList(publisherCounterSet);
+    }
+
+    private static List<SubscriberCounterSet> subscriber(final int sessionId)
+    {
+        final SubscriberCounterSet subscriberCounterSet = new SubscriberCounterSet();
+        subscriberCounterSet.reset(CHANNEL, sessionId, STREAM_ID);
+        return Collections.singletonList(subscriberCounterSet);
+    }
+}
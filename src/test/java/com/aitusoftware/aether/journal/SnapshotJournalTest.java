@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.journal;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class SnapshotJournalTest
+{
+    private static final String LABEL = "label-0";
+    private static final long TIMESTAMP = 1234567890333L;
+    private static final int SEGMENT_LENGTH = 64 * 1024;
+    private final SystemCounters systemCounters = new SystemCounters();
+    private final PublisherCounterSet publisher = new PublisherCounterSet();
+    private final SubscriberCounterSet subscriber = new SubscriberCounterSet();
+
+    @TempDir
+    File journalDir;
+
+    @Test
+    void shouldReadRecordsInTimeRange()
+    {
+        try (SnapshotJournal journal = new SnapshotJournal(context()))
+        {
+            for (int i = 0; i < 3; i++)
+            {
+                writeSnapshot(journal, TIMESTAMP + i);
+            }
+        }
+
+        final List<String> records = new ArrayList<>();
+        final long recordCount = new JournalReader(journalDir).scan(TIMESTAMP + 1, TIMESTAMP + 1, record ->
+        {
+            assertThat(record.label()).isEqualTo(LABEL);
+            assertThat(record.timestamp()).isEqualTo(TIMESTAMP + 1);
+            switch (record.type())
+            {
+                case JournalRecord.SYSTEM_COUNTERS:
+                    assertThat(record.bytesSent()).isEqualTo(1L);
+                    assertThat(record.clientTimeouts()).isEqualTo(6L);
+                    break;
+                case JournalRecord.PUBLISHER:
+                    assertThat(record.publisherPosition()).isEqualTo(1L);
+                    assertThat(record.senderLimit()).isEqualTo(2048L);
+                    break;
+                case JournalRecord.SUBSCRIBER:
+                    assertThat(record.receiverHighWaterMark()).isEqualTo(1025L);
+                    assertThat(record.subscriberCount()).isEqualTo(1);
+                    break;
+                case JournalRecord.SUBSCRIBER_POSITION:
+                    assertThat(record.registrationId()).isEqualTo(17L);
+                    assertThat(record.subscriberPosition()).isEqualTo(513L);
+                    break;
+                default:
+                    throw new AssertionError("Unexpected record type " + record.type());
+            }
+            if (record.type() != JournalRecord.SYSTEM_COUNTERS)
+            {
+                assertThat(record.channel().toString()).isEqualTo("aeron:ipc");
+                assertThat(record.streamId()).isEqualTo(7);
+                assertThat(record.sessionId()).isEqualTo(2);
+            }
+            records.add(String.valueOf(record.type()));
+        });
+
+        assertThat(recordCount).isEqualTo(4L);
+        assertThat(records).containsExactly("1", "2", "3", "4").inOrder();
+    }
+
+    @Test
+    void shouldDeleteOldestSegmentsWhenJournalExceedsMaxLength()
+    {
+        final int snapshotCount = 10_000;
+        try (SnapshotJournal journal = new SnapshotJournal(context().maxJournalLength(2L * SEGMENT_LENGTH)))
+        {
+            for (int i = 0; i < snapshotCount; i++)
+            {
+                writeSnapshot(journal, TIMESTAMP + i);
+            }
+        }
+
+        assertThat(JournalDescriptor.listSegments(journalDir).length).isEqualTo(2);
+        final long[] earliestTimestamp = {Long.MAX_VALUE};
+        new JournalReader(journalDir).scan(0, Long.MAX_VALUE,
+            record -> earliestTimestamp[0] = Math.min(earliestTimestamp[0], record.timestamp()));
+        assertThat(earliestTimestamp[0]).isGreaterThan(TIMESTAMP);
+        assertThat(new JournalReader(journalDir).scan(TIMESTAMP + snapshotCount - 1, Long.MAX_VALUE,
+            record -> assertThat(record.channel() == null || record.channel().toString().equals("aeron:ipc")).isTrue()))
+            .isEqualTo(4L);
+    }
+
+    @Test
+    void shouldDeleteSegmentsOlderThanMaxAge()
+    {
+        try (SnapshotJournal journal = new SnapshotJournal(context().maxAgeMs(1000L)))
+        {
+            for (int i = 0; i < 2000; i++)
+            {
+                writeSnapshot(journal, TIMESTAMP + i);
+            }
+            final int segmentCount = JournalDescriptor.listSegments(journalDir).length;
+            assertThat(segmentCount).isGreaterThan(1);
+
+            writeSnapshot(journal, TIMESTAMP + 10_000);
+            assertThat(JournalDescriptor.listSegments(journalDir).length).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void shouldContinueJournalAfterRestart()
+    {
+        try (SnapshotJournal journal = new SnapshotJournal(context()))
+        {
+            writeSnapshot(journal, TIMESTAMP);
+        }
+        try (SnapshotJournal journal = new SnapshotJournal(context()))
+        {
+            writeSnapshot(journal, TIMESTAMP + 1);
+        }
+
+        assertThat(JournalDescriptor.listSegments(journalDir).length).isEqualTo(2);
+        assertThat(new JournalReader(journalDir).scan(0, Long.MAX_VALUE, record -> {})).isEqualTo(8L);
+    }
+
+    @Test
+    void shouldNotAllocatePerRecordWhenScanning()
+    {
+        try (SnapshotJournal journal = new SnapshotJournal(context()))
+        {
+            for (int i = 0; i < 100; i++)
+            {
+                writeSnapshot(journal, TIMESTAMP + i);
+            }
+        }
+        final JournalReader reader = new JournalReader(journalDir);
+        final long[] recordCount = new long[1];
+        final JournalRecordHandler handler = record -> recordCount[0] += record.streamId();
+        for (int i = 0; i < 1000; i++)
+        {
+            reader.scan(TIMESTAMP, TIMESTAMP, handler);
+            reader.scan(TIMESTAMP, Long.MAX_VALUE, handler);
+        }
+
+        final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+
+        final long singleSnapshotStartBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        final long singleSnapshotRecords = reader.scan(TIMESTAMP, TIMESTAMP, handler);
+        final long singleSnapshotBytes = threadMXBean.getThreadAllocatedBytes(threadId) - singleSnapshotStartBytes;
+
+        final long allSnapshotsStartBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        final long allSnapshotsRecords = reader.scan(TIMESTAMP, Long.MAX_VALUE, handler);
+        final long allSnapshotsBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allSnapshotsStartBytes;
+
+        assertThat(singleSnapshotRecords).isEqualTo(4L);
+        assertThat(allSnapshotsRecords).isEqualTo(400L);
+        assertThat(allSnapshotsBytes).isAtMost(singleSnapshotBytes);
+    }
+
+    private SnapshotJournal.Context context()
+    {
+        return new SnapshotJournal.Context().directory(journalDir).segmentLength(SEGMENT_LENGTH);
+    }
+
+    private void writeSnapshot(final SnapshotJournal journal, final long timestamp)
+    {
+        final long sequence = timestamp - TIMESTAMP;
+        systemCounters.bytesSent(sequence);
+        systemCounters.clientTimeouts(6);
+        publisher.reset("aeron:ipc", 2, 7);
+        publisher.publisherPosition(sequence);
+        publisher.senderLimit(2048L);
+        subscriber.reset("aeron:ipc", 2, 7);
+        subscriber.receiverHighWaterMark(1024L + sequence);
+        subscriber.subscriberPosition(17L, 512L + sequence);
+        journal.onSnapshot(LABEL, timestamp, Collections.singletonList(publisher),
+            Collections.singletonList(subscriber), systemCounters);
+    }
+}
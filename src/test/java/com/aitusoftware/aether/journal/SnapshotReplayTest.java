@@ -0,0 +1,141 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.journal;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+import org.agrona.concurrent.EpochClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class SnapshotReplayTest
+{
+    private static final long TIMESTAMP = 1234567890333L;
+    private final CapturingListener listener = new CapturingListener();
+
+    @TempDir
+    File journalDir;
+
+    @BeforeEach
+    void setUp()
+    {
+        try (SnapshotJournal journal = new SnapshotJournal(new SnapshotJournal.Context().directory(journalDir)
+            .segmentLength(64 * 1024)))
+        {
+            final SystemCounters systemCounters = new SystemCounters();
+            final PublisherCounterSet p0 = new PublisherCounterSet();
+            final PublisherCounterSet p1 = new PublisherCounterSet();
+            final SubscriberCounterSet s0 = new SubscriberCounterSet();
+            for (int i = 0; i < 3; i++)
+            {
+                systemCounters.bytesSent(100L * i);
+                p0.reset("chan-1", 2, 7);
+                p0.publisherPosition(1024L * i);
+                p1.reset("chan-2", 5, 11);
+                p1.publisherLimit(2048L * i);
+                s0.reset("chan-1", 2, 7);
+                s0.receiverPosition(512L * i);
+                s0.subscriberPosition(17L, 256L * i);
+                s0.subscriberPosition(18L, 128L * i);
+                journal.onSnapshot("label-" + (i % 2), TIMESTAMP + 100L * i, Arrays.asList(p0, p1),
+                    Arrays.asList(s0), systemCounters);
+            }
+        }
+    }
+
+    @Test
+    void shouldReplayRecordedSnapshots()
+    {
+        final SnapshotReplay replay = new SnapshotReplay(new SnapshotReplay.Context()
+            .directory(journalDir).counterSnapshotListener(listener));
+        listener.epochClock = replay.epochClock();
+
+        assertThat(replay.replay(TIMESTAMP + 100L, Long.MAX_VALUE)).isEqualTo(2L);
+
+        assertThat(listener.labels).containsExactly("label-1", "label-0").inOrder();
+        assertThat(listener.timestamps).containsExactly(TIMESTAMP + 100L, TIMESTAMP + 200L).inOrder();
+        assertThat(listener.clockTimes).containsExactly(TIMESTAMP + 100L, TIMESTAMP + 200L).inOrder();
+        assertThat(listener.systemCounters.bytesSent()).isEqualTo(200L);
+        assertThat(listener.publisherCounters).hasSize(2);
+        assertThat(listener.publisherCounters.get(0).channel().toString()).isEqualTo("chan-1");
+        assertThat(listener.publisherCounters.get(0).publisherPosition()).isEqualTo(2048L);
+        assertThat(listener.publisherCounters.get(1).sessionId()).isEqualTo(5);
+        assertThat(listener.publisherCounters.get(1).streamId()).isEqualTo(11);
+        assertThat(listener.publisherCounters.get(1).publisherLimit()).isEqualTo(4096L);
+        assertThat(listener.subscriberCounters).hasSize(1);
+        assertThat(listener.subscriberCounters.get(0).receiverPosition()).isEqualTo(1024L);
+        assertThat(listener.subscriberCounters.get(0).subscriberPositions().get(17L)).isEqualTo(512L);
+        assertThat(listener.subscriberCounters.get(0).subscriberPositions().get(18L)).isEqualTo(256L);
+    }
+
+    @Test
+    void shouldPaceReplayBySpeed()
+    {
+        final SnapshotReplay replay = new SnapshotReplay(new SnapshotReplay.Context()
+            .directory(journalDir).counterSnapshotListener(listener).speed(10));
+
+        final long startNs = System.nanoTime();
+        assertThat(replay.replay(0, Long.MAX_VALUE)).isEqualTo(3L);
+        final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs);
+
+        assertThat(elapsedMs).isAtLeast(20L);
+    }
+
+    private static final class CapturingListener implements CounterSnapshotListener
+    {
+        private final List<String> labels = new ArrayList<>();
+        private final List<Long> timestamps = new ArrayList<>();
+        private final List<Long> clockTimes = new ArrayList<>();
+        private final SystemCounters systemCounters = new SystemCounters();
+        private final List<PublisherCounterSet> publisherCounters = new ArrayList<>();
+        private final List<SubscriberCounterSet> subscriberCounters = new ArrayList<>();
+        private EpochClock epochClock;
+
+        @Override
+        public void onSnapshot(
+            final String label,
+            final long timestamp,
+            final List<PublisherCounterSet> publisherCounters,
+            final List<SubscriberCounterSet> subscriberCounters,
+            final SystemCounters systemCounters)
+        {
+            labels.add(label);
+            timestamps.add(timestamp);
+            if (epochClock != null)
+            {
+                clockTimes.add(epochClock.time());
+            }
+            systemCounters.copyInto(this.systemCounters);
+            this.publisherCounters.clear();
+            publisherCounters.forEach(publisher -> this.publisherCounters.add(publisher.copy()));
+            this.subscriberCounters.clear();
+            subscriberCounters.forEach(subscriber -> this.subscriberCounters.add(subscriber.copy()));
+        }
+    }
+}
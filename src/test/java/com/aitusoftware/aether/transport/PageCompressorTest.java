@@ -0,0 +1,132 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.transport;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableArrayBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.aitusoftware.aether.AllocationAssertions.assertNoAllocation;
+import static com.google.common.truth.Truth.assertThat;
+
+class PageCompressorTest
+{
+    private static final int SESSION_COUNT = 100;
+    private static final int MAX_PAGE_LENGTH = 1408;
+
+    private final PageCompressor compressor = new PageCompressor();
+    private final PageCompressor decompressor = new PageCompressor();
+    private final SnapshotSerialiser serialiser = new SnapshotSerialiser(1, ChannelEncoding.ASCII, MAX_PAGE_LENGTH);
+    private final SnapshotDeserialiser deserialiser = new SnapshotDeserialiser();
+    private final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+
+    @Test
+    void shouldDecodeCompressedSnapshotPages()
+    {
+        final List<PublisherCounterSet> publishers = new ArrayList<>();
+        final List<SubscriberCounterSet> subscribers = new ArrayList<>();
+        for (int i = 0; i < SESSION_COUNT; i++)
+        {
+            final PublisherCounterSet publisher = new PublisherCounterSet();
+            publisher.reset("aeron:udp?endpoint=host-" + (i % 8) + ".example.com:20123", i, 10);
+            publisher.senderPosition(i * 4096L);
+            publishers.add(publisher);
+            final SubscriberCounterSet subscriber = new SubscriberCounterSet();
+            subscriber.reset("aeron:udp?endpoint=host-" + (i % 8) + ".example.com:20123", i, 10);
+            subscriber.receiverPosition(i * 4096L);
+            subscribers.add(subscriber);
+        }
+        serialiser.serialiseSnapshot("label", 17L, publishers, subscribers, new SystemCounters(), buffer);
+
+        final List<PublisherCounterSet> received = new ArrayList<>();
+        int pageOffset = 0;
+        int rawLength = 0;
+        int compressedLength = 0;
+        for (int page = 0; page < serialiser.pageCount(); page++)
+        {
+            final int pageLength = serialiser.pageLimit(page) - pageOffset;
+            final int length = compressor.compress(buffer, pageOffset, pageLength);
+            assertThat(PageCompressor.isCompressed(compressor.buffer(), 0)).isTrue();
+            assertThat(decompressor.decompress(compressor.buffer(), 0, length)).isEqualTo(pageLength);
+            deserialiser.deserialiseSnapshot(decompressor.buffer(), 0,
+                (label, timestamp, publisherCounters, subscriberCounters, systemCounters) ->
+                publisherCounters.forEach(publisher -> received.add(publisher.copy())));
+            rawLength += pageLength;
+            compressedLength += length;
+            pageOffset += pageLength;
+        }
+
+        assertThat(compressedLength).isLessThan(rawLength);
+        assertThat(received).hasSize(SESSION_COUNT);
+        final PublisherCounterSet last = received.stream()
+            .filter(publisher -> publisher.sessionId() == SESSION_COUNT - 1).findFirst().orElse(null);
+        assertThat(last.senderPosition()).isEqualTo((SESSION_COUNT - 1) * 4096L);
+    }
+
+    @Test
+    void shouldRestoreRepetitiveAndIncompressibleBodies()
+    {
+        final Random random = new Random(42);
+        final byte[] incompressible = new byte[4000];
+        random.nextBytes(incompressible);
+        assertRoundTrip(incompressible);
+
+        final byte[] repetitive = new byte[4000];
+        for (int i = 0; i < repetitive.length; i++)
+        {
+            repetitive[i] = (byte)(i % 3);
+        }
+        assertRoundTrip(repetitive);
+
+        assertRoundTrip(new byte[Versions.PAGE_BODY_OFFSET + 3]);
+    }
+
+    @Test
+    void shouldNotAllocateWhenCompressingAndDecompressingPages()
+    {
+        final byte[] body = new byte[MAX_PAGE_LENGTH];
+        for (int i = 0; i < body.length; i++)
+        {
+            body[i] = (byte)(i % 61);
+        }
+        buffer.putBytes(0, body);
+        assertNoAllocation(
+            () -> decompressor.decompress(compressor.buffer(), 0, compressor.compress(buffer, 0, body.length)), 5);
+    }
+
+    private void assertRoundTrip(final byte[] page)
+    {
+        // pages are never compressed twice, and decompression clears the flag
+        page[Versions.PAGE_FLAGS_OFFSET] &= ~Versions.COMPRESSED_PAGE_FLAG;
+        buffer.putBytes(0, page);
+        final int length = compressor.compress(buffer, 0, page.length);
+        assertThat(decompressor.decompress(compressor.buffer(), 0, length)).isEqualTo(page.length);
+
+        final DirectBuffer decompressed = decompressor.buffer();
+        final byte[] restored = new byte[page.length];
+        decompressed.getBytes(0, restored);
+        assertThat(restored).isEqualTo(page);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.transport;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.ManyToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBufferDescriptor;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.agrona.concurrent.status.CountersManager;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class RingBufferSnapshotHandOffTest
+{
+    private static final int SNAPSHOTS_PER_THREAD = 10_000;
+    private static final long TIMESTAMP = 1234567890333L;
+    private final RingBuffer ringBuffer = new ManyToOneRingBuffer(
+        new UnsafeBuffer(ByteBuffer.allocateDirect(64 * 1024 + RingBufferDescriptor.TRAILER_LENGTH)));
+    private final OrderingListener listener = new OrderingListener();
+    private final RingBufferSnapshotSubscriber subscriber = new RingBufferSnapshotSubscriber(ringBuffer, listener);
+
+    @Test
+    void shouldMergeSnapshotsFromMultipleThreads() throws Exception
+    {
+        final CountDownLatch complete = new CountDownLatch(2);
+        final Thread[] threads = {
+            new Thread(() -> publish("label-0", complete)),
+            new Thread(() -> publish("label-1", complete))
+        };
+        for (final Thread thread : threads)
+        {
+            thread.start();
+        }
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (listener.received < 2 * SNAPSHOTS_PER_THREAD && System.nanoTime() < deadline)
+        {
+            if (subscriber.doWork() == 0)
+            {
+                Thread.yield();
+            }
+        }
+        assertThat(complete.await(1, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(listener.received).isEqualTo(2 * SNAPSHOTS_PER_THREAD);
+        assertThat(listener.outOfOrder).isEqualTo(0);
+        assertThat(listener.lastTimestampByLabel.get("label-0")).isEqualTo(TIMESTAMP + SNAPSHOTS_PER_THREAD - 1);
+        assertThat(listener.lastTimestampByLabel.get("label-1")).isEqualTo(TIMESTAMP + SNAPSHOTS_PER_THREAD - 1);
+    }
+
+    @Test
+    void shouldDropSnapshotsWhenBufferIsFull()
+    {
+        final CountersManager countersManager = new CountersManager(
+            new UnsafeBuffer(new byte[64 * 1024]), new UnsafeBuffer(new byte[16 * 1024]));
+        final AtomicCounter droppedSnapshotsCounter = countersManager.newCounter(
+            "hand-off-dropped", RingBufferSnapshotPublisher.DROPPED_SNAPSHOTS_COUNTER_TYPE_ID);
+        final RingBufferSnapshotPublisher publisher =
+            new RingBufferSnapshotPublisher(ringBuffer, droppedSnapshotsCounter);
+        final PublisherCounterSet publisherCounterSet = publisher("chan-1", 0);
+        final List<PublisherCounterSet> publishers = Collections.singletonList(publisherCounterSet);
+        int published = 0;
+        while (publisher.droppedSnapshots() == 0)
+        {
+            publisherCounterSet.publisherPosition(published);
+            publisher.onSnapshot("label-0", TIMESTAMP + published, publishers,
+                Collections.emptyList(), new SystemCounters());
+            published++;
+        }
+        while (subscriber.doWork() != 0)
+        {
+            // drain
+        }
+
+        assertThat(listener.received).isEqualTo(published - 1);
+        assertThat(listener.outOfOrder).isEqualTo(0);
+        assertThat(droppedSnapshotsCounter.get()).isEqualTo(1L);
+    }
+
+    private void publish(final String label, final CountDownLatch complete)
+    {
+        final RingBufferSnapshotPublisher publisher = new RingBufferSnapshotPublisher(ringBuffer);
+        final SystemCounters systemCounters = new SystemCounters();
+        final PublisherCounterSet publisherCounterSet = publisher("chan-1", 0);
+        final List<PublisherCounterSet> publishers = Collections.singletonList(publisherCounterSet);
+        for (int i = 0; i < SNAPSHOTS_PER_THREAD; i++)
+        {
+            publisherCounterSet.publisherPosition(i);
+            final long droppedSnapshots = publisher.droppedSnapshots();
+            publisher.onSnapshot(label, TIMESTAMP + i, publishers, Collections.emptyList(), systemCounters);
+            if (publisher.droppedSnapshots() != droppedSnapshots)
+            {
+                Thread.yield();
+                i--;
+            }
+        }
+        complete.countDown();
+    }
+
+    private static PublisherCounterSet publisher(final String channel, final long position)
+    {
+        final PublisherCounterSet publisherCounterSet = new PublisherCounterSet();
+        publisherCounterSet.reset(channel, 2, 7);
+        publisherCounterSet.publisherPosition(position);
+        return publisherCounterSet;
+    }
+
+    private static final class OrderingListener implements CounterSnapshotListener
+    {
+        private final Map<String, Long> lastTimestampByLabel = new HashMap<>();
+        private int received;
+        private int outOfOrder;
+
+        @Override
+        public void onSnapshot(
+            final String label,
+            final long timestamp,
+            final List<PublisherCounterSet> publisherCounters,
+            final List<SubscriberCounterSet> subscriberCounters,
+            final SystemCounters systemCounters)
+        {
+            final Long previous = lastTimestampByLabel.put(label, timestamp);
+            if ((previous != null && previous >= timestamp) ||
+                publisherCounters.get(0).publisherPosition() != timestamp - TIMESTAMP)
+            {
+                outOfOrder++;
+            }
+            received++;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.transport;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import org.agrona.concurrent.Agent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class SnapshotFanOutTest
+{
+    private static final int QUEUE_LENGTH = 64 * 1024;
+    private static final long TIMESTAMP = 1234567890333L;
+    private final PublisherCounterSet publisherCounterSet = new PublisherCounterSet();
+    private final List<PublisherCounterSet> publishers = Collections.singletonList(publisherCounterSet);
+    private final RecordingListener slowListener = new RecordingListener();
+    private final RecordingListener fastListener = new RecordingListener();
+    private SnapshotFanOut fanOut;
+
+    @AfterEach
+    void tearDown()
+    {
+        fanOut.close();
+    }
+
+    @Test
+    void shouldDropSnapshotsForFullQueueWithoutAffectingOtherListeners() throws Exception
+    {
+        fanOut = new SnapshotFanOut(new SnapshotFanOut.Context()
+            .listener(slowListener, SnapshotFanOut.OverflowPolicy.DROP)
+            .listener(fastListener, SnapshotFanOut.OverflowPolicy.DROP)
+            .queueLength(QUEUE_LENGTH));
+        final Agent fastAgent = fanOut.listenerAgents().get(1);
+        int published = 0;
+        while (fanOut.droppedSnapshots(0) < 10)
+        {
+            publish(published++);
+            fastAgent.doWork();
+        }
+        assertThat(fanOut.queueDepth(0)).isGreaterThan(0);
+        drain(0);
+
+        assertThat(fastListener.received).isEqualTo(published);
+        assertThat(fastListener.lastTimestamp).isEqualTo(TIMESTAMP + published - 1);
+        assertThat(fanOut.droppedSnapshots(1)).isEqualTo(0);
+        assertThat(slowListener.received).isEqualTo(published - 10);
+        assertThat(slowListener.outOfOrder).isEqualTo(0);
+        assertThat(fanOut.queueDepth(0)).isEqualTo(0);
+    }
+
+    @Test
+    void shouldDeliverLatestSnapshotWhenConflating() throws Exception
+    {
+        fanOut = new SnapshotFanOut(new SnapshotFanOut.Context()
+            .listener(slowListener, SnapshotFanOut.OverflowPolicy.CONFLATE)
+            .queueLength(QUEUE_LENGTH));
+        int published = 0;
+        while (fanOut.droppedSnapshots(0) < 5)
+        {
+            publish(published++);
+        }
+        assertThat(fanOut.doWork()).isEqualTo(0);
+
+        drain(0);
+        final int queued = slowListener.received;
+        assertThat(fanOut.doWork()).isEqualTo(1);
+        drain(0);
+
+        assertThat(slowListener.received).isEqualTo(queued + 1);
+        assertThat(slowListener.lastTimestamp).isEqualTo(TIMESTAMP + published - 1);
+        assertThat(slowListener.outOfOrder).isEqualTo(0);
+        assertThat(queued + 1 + fanOut.droppedSnapshots(0)).isEqualTo(published);
+    }
+
+    @Test
+    void shouldHoldLatestSnapshotOfEachLabelWhenConflating() throws Exception
+    {
+        fanOut = new SnapshotFanOut(new SnapshotFanOut.Context()
+            .listener(slowListener, SnapshotFanOut.OverflowPolicy.CONFLATE)
+            .queueLength(QUEUE_LENGTH));
+        int published = 0;
+        while (fanOut.droppedSnapshots(0) < 6)
+        {
+            publish("label-0", published++);
+            publish("label-1", published++);
+        }
+
+        drain(0);
+        assertThat(fanOut.doWork()).isEqualTo(2);
+        drain(0);
+
+        assertThat(slowListener.lastTimestampByLabel.get("label-0")).isEqualTo(TIMESTAMP + published - 2);
+        assertThat(slowListener.lastTimestampByLabel.get("label-1")).isEqualTo(TIMESTAMP + published - 1);
+    }
+
+    @Test
+    void shouldWaitForSpaceWhenBlocking() throws Exception
+    {
+        fanOut = new SnapshotFanOut(new SnapshotFanOut.Context()
+            .listener(slowListener, SnapshotFanOut.OverflowPolicy.BLOCK)
+            .queueLength(QUEUE_LENGTH));
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final Thread consumer = new Thread(() ->
+        {
+            while (running.get())
+            {
+                if (fanOut.invokeListeners() == 0)
+                {
+                    Thread.yield();
+                }
+            }
+        });
+        consumer.start();
+        final int snapshotCount = 20_000;
+        for (int i = 0; i < snapshotCount; i++)
+        {
+            publish(i);
+        }
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (slowListener.received < snapshotCount && System.nanoTime() < deadline)
+        {
+            Thread.yield();
+        }
+        running.set(false);
+        consumer.join();
+
+        assertThat(fanOut.droppedSnapshots(0)).isEqualTo(0);
+        assertThat(slowListener.received).isEqualTo(snapshotCount);
+        assertThat(slowListener.outOfOrder).isEqualTo(0);
+    }
+
+    private void publish(final int sequence)
+    {
+        publish("label-0", sequence);
+    }
+
+    private void publish(final String label, final int sequence)
+    {
+        publisherCounterSet.reset("chan-1", 2, 7);
+        publisherCounterSet.publisherPosition(sequence);
+        fanOut.onSnapshot(label, TIMESTAMP + sequence, publishers,
+            Collections.emptyList(), new SystemCounters());
+    }
+
+    private void drain(final int listenerIndex) throws Exception
+    {
+        final Agent agent = fanOut.listenerAgents().get(listenerIndex);
+        while (fanOut.queueDepth(listenerIndex) != 0)
+        {
+            agent.doWork();
+        }
+    }
+
+    private static final class RecordingListener implements CounterSnapshotListener
+    {
+        private final Map<String, Long> lastTimestampByLabel = new HashMap<>();
+        private volatile int received;
+        private long lastTimestamp;
+        private int outOfOrder;
+
+        @Override
+        public void onSnapshot(
+            final String label,
+            final long timestamp,
+            final List<PublisherCounterSet> publisherCounters,
+            final List<SubscriberCounterSet> subscriberCounters,
+            final SystemCounters systemCounters)
+        {
+            if (timestamp <= lastTimestamp || publisherCounters.get(0).publisherPosition() != timestamp - TIMESTAMP)
+            {
+                outOfOrder++;
+            }
+            lastTimestamp = timestamp;
+            lastTimestampByLabel.put(label, timestamp);
+            received++;
+        }
+    }
+}
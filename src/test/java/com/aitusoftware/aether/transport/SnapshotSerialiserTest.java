@@ -18,6 +18,7 @@
 package com.aitusoftware.aether.transport;
 
 import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.event.SnapshotSequenceListener;
 import com.aitusoftware.aether.model.SystemCounters;
 import com.aitusoftware.aether.model.PublisherCounterSet;
 import com.aitusoftware.aether.model.SubscriberCounterSet;
@@ -25,16 +26,20 @@ import org.agrona.ExpandableArrayBuffer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import static com.aitusoftware.aether.AllocationAssertions.assertNoAllocation;
 import static com.google.common.truth.Truth.assertThat;
 
 class SnapshotSerialiserTest
 {
     private static final String LABEL = "label-0";
     private static final long TIMESTAMP = 1234567890333L;
+    private static final int MAX_PAGE_LENGTH = 1024;
+    private static final int SESSION_COUNT = 200;
     private final SnapshotSerialiser serialiser = new SnapshotSerialiser();
     private final SnapshotDeserialiser deserialiser = new SnapshotDeserialiser();
     private final SystemCounters systemCounters = new SystemCounters();
@@ -59,12 +64,417 @@ class SnapshotSerialiserTest
         deserialiser.deserialiseSnapshot(buffer, 0, new SnapshotAssertion());
     }
 
+    @Test
+    void shouldApplyDeltaFrames()
+    {
+        final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+        final List<PublisherCounterSet> publishers = publishers();
+        final List<SubscriberCounterSet> subscribers = subscribers();
+        subscribers.get(0).subscriberPosition(17L, 4096L);
+        final int keyFrameLength = serialiser.serialiseSnapshot(LABEL, TIMESTAMP, publishers, subscribers,
+            systemCounters, buffer);
+        deserialiser.deserialiseSnapshot(buffer, 0, new SnapshotAssertion());
+
+        final int unchangedLength = serialiser.serialiseSnapshot(LABEL, TIMESTAMP + 1, publishers, subscribers,
+            systemCounters, buffer);
+        final CapturingListener listener = new CapturingListener();
+        deserialiser.deserialiseSnapshot(buffer, 0, listener);
+        assertThat(unchangedLength).isLessThan(keyFrameLength);
+        assertThat(listener.timestamp).isEqualTo(TIMESTAMP + 1);
+        assertThat(listener.publisherCounters).hasSize(2);
+
+        publishers.get(0).senderPosition(1234L + 512L);
+        subscribers.get(0).subscriberPosition(17L, 4096L + 64L);
+        subscribers.get(0).subscriberPosition(18L, 1024L);
+        systemCounters.bytesSent(11);
+        serialiser.serialiseSnapshot(LABEL, TIMESTAMP + 2, publishers, subscribers, systemCounters, buffer);
+        assertThat(deserialiser.deserialiseSnapshot(buffer, 0, listener)).isTrue();
+
+        assertThat(listener.timestamp).isEqualTo(TIMESTAMP + 2);
+        assertThat(listener.systemCounters.bytesSent()).isEqualTo(11L);
+        assertThat(listener.systemCounters.clientTimeouts()).isEqualTo(6L);
+        assertThat(listener.publisher("chan-1").senderPosition()).isEqualTo(1234L + 512L);
+        assertThat(listener.publisher("chan-2").publisherLimit()).isEqualTo(1234L);
+        final SubscriberCounterSet subscriber = listener.subscriberCounters.get(0);
+        assertThat(subscriber.receiverHighWaterMark()).isEqualTo(1234L);
+        assertThat(subscriber.subscriberCount()).isEqualTo(2);
+        assertThat(subscriber.subscriberPositions().get(17L)).isEqualTo(4096L + 64L);
+        assertThat(subscriber.subscriberPositions().get(18L)).isEqualTo(1024L);
+    }
+
+    @Test
+    void shouldRemoveSessionsMissingFromDeltaFrame()
+    {
+        final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+        final List<PublisherCounterSet> publishers = publishers();
+        serialiser.serialiseSnapshot(LABEL, TIMESTAMP, publishers, subscribers(), systemCounters, buffer);
+        deserialiser.deserialiseSnapshot(buffer, 0, new SnapshotAssertion());
+
+        serialiser.serialiseSnapshot(LABEL, TIMESTAMP + 1, publishers.subList(1, 2), Collections.emptyList(),
+            systemCounters, buffer);
+        final CapturingListener listener = new CapturingListener();
+        deserialiser.deserialiseSnapshot(buffer, 0, listener);
+
+        assertThat(listener.publisherCounters).hasSize(1);
+        assertThat(listener.publisher("chan-2").publisherLimit()).isEqualTo(1234L);
+        assertThat(listener.subscriberCounters).isEmpty();
+    }
+
+    @Test
+    void shouldWaitForKeyFrameWhenJoiningLate()
+    {
+        final SnapshotSerialiser keyFrameEveryThirdSnapshot = new SnapshotSerialiser(3);
+        final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+        final List<PublisherCounterSet> publishers = publishers();
+        keyFrameEveryThirdSnapshot.serialiseSnapshot(
+            LABEL, TIMESTAMP, publishers, subscribers(), systemCounters, buffer);
+
+        final CapturingListener listener = new CapturingListener();
+        publishers.get(1).publisherLimit(2048L);
+        keyFrameEveryThirdSnapshot.serialiseSnapshot(
+            LABEL, TIMESTAMP + 1, publishers, subscribers(), systemCounters, buffer);
+        assertThat(deserialiser.deserialiseSnapshot(buffer, 0, listener)).isFalse();
+        keyFrameEveryThirdSnapshot.serialiseSnapshot(
+            LABEL, TIMESTAMP + 2, publishers, subscribers(), systemCounters, buffer);
+        assertThat(deserialiser.deserialiseSnapshot(buffer, 0, listener)).isFalse();
+
+        keyFrameEveryThirdSnapshot.serialiseSnapshot(
+            LABEL, TIMESTAMP + 3, publishers, subscribers(), systemCounters, buffer);
+        assertThat(deserialiser.deserialiseSnapshot(buffer, 0, listener)).isTrue();
+        assertThat(listener.timestamp).isEqualTo(TIMESTAMP + 3);
+        assertThat(listener.publisher("chan-2").publisherLimit()).isEqualTo(2048L);
+        assertThat(listener.publisher("chan-1").senderPosition()).isEqualTo(1234L);
+    }
+
+    @Test
+    void shouldEncodeKeyFramesForAllLabelsAfterForcingKeyFrames()
+    {
+        final SnapshotSerialiser keyFrameEveryTenthSnapshot = new SnapshotSerialiser(10);
+        final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+        final List<PublisherCounterSet> publishers = publishers();
+        keyFrameEveryTenthSnapshot.serialiseSnapshot(
+            LABEL, TIMESTAMP, publishers, subscribers(), systemCounters, buffer);
+        keyFrameEveryTenthSnapshot.serialiseSnapshot(
+            "label-1", TIMESTAMP, publishers, subscribers(), systemCounters, buffer);
+
+        keyFrameEveryTenthSnapshot.forceKeyFrames();
+
+        final CapturingListener listener = new CapturingListener();
+        keyFrameEveryTenthSnapshot.serialiseSnapshot(
+            LABEL, TIMESTAMP + 1, publishers, subscribers(), systemCounters, buffer);
+        assertThat(deserialiser.deserialiseSnapshot(buffer, 0, listener)).isTrue();
+        keyFrameEveryTenthSnapshot.serialiseSnapshot(
+            "label-1", TIMESTAMP + 1, publishers, subscribers(), systemCounters, buffer);
+        assertThat(deserialiser.deserialiseSnapshot(buffer, 0, listener)).isTrue();
+        assertThat(listener.timestamp).isEqualTo(TIMESTAMP + 1);
+    }
+
+    @Test
+    void shouldEncodeChannelsAsAsciiBytes()
+    {
+        final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+        final int utf16Length = new SnapshotSerialiser(1, ChannelEncoding.UTF_16).serialiseSnapshot(
+            LABEL, TIMESTAMP, publishers(), subscribers(), systemCounters, buffer);
+        final int asciiLength = new SnapshotSerialiser(1, ChannelEncoding.ASCII).serialiseSnapshot(
+            LABEL, TIMESTAMP, publishers(), subscribers(), systemCounters, buffer);
+
+        assertThat(asciiLength).isLessThan(utf16Length);
+        deserialiser.deserialiseSnapshot(buffer, 0, new SnapshotAssertion());
+    }
+
+    @Test
+    void shouldRoundTripNonAsciiLabelsWithUtf16Encoding()
+    {
+        final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+        final String label = "\u00e9tiquette-\u03bb";
+        new SnapshotSerialiser(1, ChannelEncoding.UTF_16).serialiseSnapshot(
+            label, TIMESTAMP, publishers(), subscribers(), systemCounters, buffer);
+        final CapturingListener listener = new CapturingListener();
+
+        assertThat(deserialiser.deserialiseSnapshot(buffer, 0, listener)).isTrue();
+        assertThat(listener.label).isEqualTo(label);
+        assertThat(listener.publisher("chan-1").senderPosition()).isEqualTo(1234L);
+    }
+
+    @Test
+    void shouldFallBackToUtf16ForNonAsciiLabelsAndChannelsWithAsciiEncoding()
+    {
+        final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+        final String label = "\u00e9tiquette-\u03bb";
+        final List<PublisherCounterSet> publishers = publishers();
+        publishers.get(0).reset("chan-\u00e9", 2, 7);
+        publishers.get(0).senderPosition(1234L);
+        new SnapshotSerialiser(1, ChannelEncoding.ASCII).serialiseSnapshot(
+            label, TIMESTAMP, publishers, subscribers(), systemCounters, buffer);
+        final CapturingListener listener = new CapturingListener();
+
+        assertThat(deserialiser.deserialiseSnapshot(buffer, 0, listener)).isTrue();
+        assertThat(listener.label).isEqualTo(label);
+        assertThat(listener.publisher("chan-\u00e9").senderPosition()).isEqualTo(1234L);
+        assertThat(listener.publisher("chan-2").publisherLimit()).isEqualTo(1234L);
+    }
+
+    @Test
+    void shouldSplitLargeSnapshotsIntoPages()
+    {
+        final SnapshotSerialiser pagingSerialiser = new SnapshotSerialiser(1, ChannelEncoding.ASCII, MAX_PAGE_LENGTH);
+        final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+        final List<PublisherCounterSet> publishers = manyPublishers();
+        final List<SubscriberCounterSet> subscribers = manySubscribers();
+        pagingSerialiser.serialiseSnapshot(LABEL, TIMESTAMP, publishers, subscribers, systemCounters, buffer);
+
+        assertThat(pagingSerialiser.pageCount()).isGreaterThan(1);
+        final CapturingListener listener = new CapturingListener();
+        int pageOffset = 0;
+        for (int page = 0; page < pagingSerialiser.pageCount(); page++)
+        {
+            final int pageLimit = pagingSerialiser.pageLimit(page);
+            assertThat(pageLimit - pageOffset).isAtMost(MAX_PAGE_LENGTH);
+            final boolean lastPage = page == pagingSerialiser.pageCount() - 1;
+            assertThat(deserialiser.deserialiseSnapshot(buffer, pageOffset, listener)).isEqualTo(lastPage);
+            pageOffset = pageLimit;
+        }
+
+        assertThat(listener.timestamp).isEqualTo(TIMESTAMP);
+        assertThat(listener.systemCounters.clientTimeouts()).isEqualTo(6L);
+        assertThat(listener.publisherCounters).hasSize(SESSION_COUNT);
+        assertThat(listener.subscriberCounters).hasSize(SESSION_COUNT);
+        assertThat(listener.publisher("aeron:udp?endpoint=host-7:20123").senderPosition()).isEqualTo(7000L);
+    }
+
+    @Test
+    void shouldWaitForKeyFrameWhenPagesOfDeltaFrameAreLost()
+    {
+        final SnapshotSerialiser pagingSerialiser = new SnapshotSerialiser(3, ChannelEncoding.ASCII, MAX_PAGE_LENGTH);
+        final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+        final List<PublisherCounterSet> publishers = manyPublishers();
+        final List<SubscriberCounterSet> subscribers = manySubscribers();
+        final CapturingListener listener = new CapturingListener();
+        pagingSerialiser.serialiseSnapshot(LABEL, TIMESTAMP, publishers, subscribers, systemCounters, buffer);
+        assertThat(deserialisePages(pagingSerialiser, buffer, pagingSerialiser.pageCount(), listener)).isTrue();
+
+        advancePositions(publishers);
+        pagingSerialiser.serialiseSnapshot(LABEL, TIMESTAMP + 1, publishers, subscribers, systemCounters, buffer);
+        assertThat(pagingSerialiser.pageCount()).isGreaterThan(1);
+        assertThat(deserialisePages(pagingSerialiser, buffer, pagingSerialiser.pageCount() - 1, listener)).isFalse();
+
+        advancePositions(publishers);
+        pagingSerialiser.serialiseSnapshot(LABEL, TIMESTAMP + 2, publishers, subscribers, systemCounters, buffer);
+        assertThat(deserialisePages(pagingSerialiser, buffer, pagingSerialiser.pageCount(), listener)).isFalse();
+
+        advancePositions(publishers);
+        pagingSerialiser.serialiseSnapshot(LABEL, TIMESTAMP + 3, publishers, subscribers, systemCounters, buffer);
+        assertThat(deserialisePages(pagingSerialiser, buffer, pagingSerialiser.pageCount(), listener)).isTrue();
+        assertThat(listener.timestamp).isEqualTo(TIMESTAMP + 3);
+        assertThat(listener.publisherCounters).hasSize(SESSION_COUNT);
+        assertThat(listener.publisher("aeron:udp?endpoint=host-7:20123").senderPosition()).isEqualTo(7003L);
+    }
+
+    @Test
+    void shouldReportSnapshotsThatWereNotDelivered()
+    {
+        final CapturingSequenceListener sequenceListener = new CapturingSequenceListener();
+        final SnapshotDeserialiser trackingDeserialiser = new SnapshotDeserialiser(sequenceListener);
+        final SnapshotSerialiser deltaSerialiser = new SnapshotSerialiser(3);
+        final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+        final List<PublisherCounterSet> publishers = publishers();
+        final CapturingListener listener = new CapturingListener();
+
+        deltaSerialiser.serialiseSnapshot(LABEL, TIMESTAMP, publishers, subscribers(), systemCounters, buffer);
+        deltaSerialiser.serialiseSnapshot(LABEL, TIMESTAMP + 1, publishers, subscribers(), systemCounters, buffer);
+        assertThat(trackingDeserialiser.deserialiseSnapshot(buffer, 0, listener)).isFalse();
+        deltaSerialiser.serialiseSnapshot(LABEL, TIMESTAMP + 2, publishers, subscribers(), systemCounters, buffer);
+        deltaSerialiser.serialiseSnapshot(LABEL, TIMESTAMP + 3, publishers, subscribers(), systemCounters, buffer);
+        assertThat(trackingDeserialiser.deserialiseSnapshot(buffer, 0, listener)).isTrue();
+        assertThat(sequenceListener.missedCount).isEqualTo(0L);
+
+        deltaSerialiser.serialiseSnapshot(LABEL, TIMESTAMP + 4, publishers, subscribers(), systemCounters, buffer);
+        assertThat(trackingDeserialiser.deserialiseSnapshot(buffer, 0, listener)).isTrue();
+        assertThat(sequenceListener.missedCount).isEqualTo(0L);
+
+        deltaSerialiser.serialiseSnapshot(LABEL, TIMESTAMP + 5, publishers, subscribers(), systemCounters, buffer);
+        deltaSerialiser.serialiseSnapshot(LABEL, TIMESTAMP + 6, publishers, subscribers(), systemCounters, buffer);
+        deltaSerialiser.serialiseSnapshot(LABEL, TIMESTAMP + 7, publishers, subscribers(), systemCounters, buffer);
+        assertThat(trackingDeserialiser.deserialiseSnapshot(buffer, 0, listener)).isTrue();
+        assertThat(sequenceListener.label).isEqualTo(LABEL);
+        assertThat(sequenceListener.missedCount).isEqualTo(2L);
+        assertThat(sequenceListener.sequence).isEqualTo(8L);
+        assertThat(listener.timestamp).isEqualTo(TIMESTAMP + 7);
+        assertThat(sequenceListener.restartCount).isEqualTo(0);
+    }
+
+    @Test
+    void shouldReportSkippedSnapshotsAsMissed()
+    {
+        final CapturingSequenceListener sequenceListener = new CapturingSequenceListener();
+        final SnapshotDeserialiser trackingDeserialiser = new SnapshotDeserialiser(sequenceListener);
+        final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+        final CapturingListener listener = new CapturingListener();
+        serialiser.serialiseSnapshot(LABEL, TIMESTAMP, publishers(), subscribers(), systemCounters, buffer);
+        assertThat(trackingDeserialiser.deserialiseSnapshot(buffer, 0, listener)).isTrue();
+
+        serialiser.skipSnapshot(LABEL);
+        serialiser.serialiseSnapshot(LABEL, TIMESTAMP + 2, publishers(), subscribers(), systemCounters, buffer);
+        assertThat(trackingDeserialiser.deserialiseSnapshot(buffer, 0, listener)).isTrue();
+        assertThat(listener.timestamp).isEqualTo(TIMESTAMP + 2);
+        assertThat(sequenceListener.missedCount).isEqualTo(1L);
+        assertThat(sequenceListener.sequence).isEqualTo(3L);
+    }
+
+    @Test
+    void shouldReportFramesWhoseLastPageWasLost()
+    {
+        final CapturingSequenceListener sequenceListener = new CapturingSequenceListener();
+        final SnapshotDeserialiser trackingDeserialiser = new SnapshotDeserialiser(sequenceListener);
+        final SnapshotSerialiser pagingSerialiser = new SnapshotSerialiser(3, ChannelEncoding.ASCII, MAX_PAGE_LENGTH);
+        final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+        final List<PublisherCounterSet> publishers = manyPublishers();
+        final List<SubscriberCounterSet> subscribers = manySubscribers();
+        final CapturingListener listener = new CapturingListener();
+        pagingSerialiser.serialiseSnapshot(LABEL, TIMESTAMP, publishers, subscribers, systemCounters, buffer);
+        assertThat(deserialisePages(
+            trackingDeserialiser, pagingSerialiser, buffer, pagingSerialiser.pageCount(), listener)).isTrue();
+
+        advancePositions(publishers);
+        pagingSerialiser.serialiseSnapshot(LABEL, TIMESTAMP + 1, publishers, subscribers, systemCounters, buffer);
+        assertThat(deserialisePages(
+            trackingDeserialiser, pagingSerialiser, buffer, pagingSerialiser.pageCount() - 1, listener)).isFalse();
+
+        advancePositions(publishers);
+        pagingSerialiser.serialiseSnapshot(LABEL, TIMESTAMP + 2, publishers, subscribers, systemCounters, buffer);
+        assertThat(deserialisePages(
+            trackingDeserialiser, pagingSerialiser, buffer, pagingSerialiser.pageCount(), listener)).isFalse();
+
+        advancePositions(publishers);
+        pagingSerialiser.serialiseSnapshot(LABEL, TIMESTAMP + 3, publishers, subscribers, systemCounters, buffer);
+        assertThat(deserialisePages(
+            trackingDeserialiser, pagingSerialiser, buffer, pagingSerialiser.pageCount(), listener)).isTrue();
+        assertThat(sequenceListener.missedCount).isEqualTo(2L);
+        assertThat(sequenceListener.sequence).isEqualTo(4L);
+    }
+
+    @Test
+    void shouldWaitForKeyFrameWhenCollectorRestarts()
+    {
+        final CapturingSequenceListener sequenceListener = new CapturingSequenceListener();
+        final SnapshotDeserialiser trackingDeserialiser = new SnapshotDeserialiser(sequenceListener);
+        final SnapshotSerialiser firstCollector =
+            new SnapshotSerialiser(2, ChannelEncoding.ASCII, MAX_PAGE_LENGTH, 1000L);
+        final SnapshotSerialiser secondCollector =
+            new SnapshotSerialiser(2, ChannelEncoding.ASCII, MAX_PAGE_LENGTH, 2000L);
+        final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+        final CapturingListener listener = new CapturingListener();
+
+        firstCollector.serialiseSnapshot(LABEL, TIMESTAMP, publishers(), subscribers(), systemCounters, buffer);
+        assertThat(trackingDeserialiser.deserialiseSnapshot(buffer, 0, listener)).isTrue();
+        firstCollector.serialiseSnapshot(LABEL, TIMESTAMP + 1, publishers(), subscribers(), systemCounters, buffer);
+        assertThat(trackingDeserialiser.deserialiseSnapshot(buffer, 0, listener)).isTrue();
+
+        secondCollector.serialiseSnapshot(LABEL, TIMESTAMP + 2, publishers(), subscribers(), systemCounters, buffer);
+        secondCollector.serialiseSnapshot(LABEL, TIMESTAMP + 3, publishers(), subscribers(), systemCounters, buffer);
+        assertThat(trackingDeserialiser.deserialiseSnapshot(buffer, 0, listener)).isFalse();
+        assertThat(sequenceListener.restartCount).isEqualTo(1);
+        assertThat(sequenceListener.previousStartEpochMs).isEqualTo(1000L);
+        assertThat(sequenceListener.startEpochMs).isEqualTo(2000L);
+
+        secondCollector.serialiseSnapshot(LABEL, TIMESTAMP + 4, publishers(), subscribers(), systemCounters, buffer);
+        assertThat(trackingDeserialiser.deserialiseSnapshot(buffer, 0, listener)).isTrue();
+        assertThat(listener.timestamp).isEqualTo(TIMESTAMP + 4);
+        assertThat(sequenceListener.missedCount).isEqualTo(2L);
+        assertThat(sequenceListener.sequence).isEqualTo(3L);
+        assertThat(sequenceListener.restartCount).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotAllocateWhenDecodingSnapshotsOfKnownSessions()
+    {
+        final List<PublisherCounterSet> publishers = publishers();
+        final List<SubscriberCounterSet> subscribers = subscribers();
+        subscribers.get(0).subscriberPosition(17L, 4096L);
+        final ExpandableArrayBuffer keyFrame = new ExpandableArrayBuffer();
+        final ExpandableArrayBuffer deltaFrame = new ExpandableArrayBuffer();
+        serialiser.serialiseSnapshot(LABEL, TIMESTAMP, publishers, subscribers, systemCounters, keyFrame);
+        publishers.get(0).senderPosition(1234L + 512L);
+        subscribers.get(0).subscriberPosition(17L, 4096L + 64L);
+        systemCounters.bytesSent(11);
+        serialiser.serialiseSnapshot(LABEL, TIMESTAMP + 1, publishers, subscribers, systemCounters, deltaFrame);
+
+        final long[] snapshotCount = new long[1];
+        final CounterSnapshotListener listener =
+            (label, timestamp, publisherCounters, subscriberCounters, systemCounters) -> snapshotCount[0]++;
+        final long iterations = assertNoAllocation(() ->
+        {
+            deserialiser.deserialiseSnapshot(keyFrame, 0, listener);
+            deserialiser.deserialiseSnapshot(deltaFrame, 0, listener);
+        }, 5);
+
+        assertThat(snapshotCount[0]).isEqualTo(iterations * 2);
+    }
+
+    private boolean deserialisePages(
+        final SnapshotSerialiser pagingSerialiser,
+        final ExpandableArrayBuffer buffer,
+        final int pageCount,
+        final CounterSnapshotListener listener)
+    {
+        return deserialisePages(deserialiser, pagingSerialiser, buffer, pageCount, listener);
+    }
+
+    private static boolean deserialisePages(
+        final SnapshotDeserialiser deserialiser,
+        final SnapshotSerialiser pagingSerialiser,
+        final ExpandableArrayBuffer buffer,
+        final int pageCount,
+        final CounterSnapshotListener listener)
+    {
+        boolean delivered = false;
+        int pageOffset = 0;
+        for (int page = 0; page < pageCount; page++)
+        {
+            delivered = deserialiser.deserialiseSnapshot(buffer, pageOffset, listener);
+            pageOffset = pagingSerialiser.pageLimit(page);
+        }
+        return delivered;
+    }
+
+    private static void advancePositions(final List<PublisherCounterSet> publishers)
+    {
+        publishers.forEach(publisher -> publisher.senderPosition(publisher.senderPosition() + 1));
+    }
+
+    private static List<PublisherCounterSet> manyPublishers()
+    {
+        final List<PublisherCounterSet> publishers = new ArrayList<>();
+        for (int i = 0; i < SESSION_COUNT; i++)
+        {
+            final PublisherCounterSet publisher = new PublisherCounterSet();
+            publisher.reset("aeron:udp?endpoint=host-" + i + ":20123", i, 10);
+            publisher.senderPosition(i * 1000L);
+            publishers.add(publisher);
+        }
+        return publishers;
+    }
+
+    private static List<SubscriberCounterSet> manySubscribers()
+    {
+        final List<SubscriberCounterSet> subscribers = new ArrayList<>();
+        for (int i = 0; i < SESSION_COUNT; i++)
+        {
+            final SubscriberCounterSet subscriber = new SubscriberCounterSet();
+            subscriber.reset("aeron:udp?endpoint=host-" + i + ":20123", i, 10);
+            subscriber.receiverPosition(i * 1000L);
+            subscriber.subscriberPosition(i, i * 1000L);
+            subscribers.add(subscriber);
+        }
+        return subscribers;
+    }
+
     private List<SubscriberCounterSet> subscribers()
     {
         final SubscriberCounterSet s0 = new SubscriberCounterSet();
         s0.reset("chan-1", 2, 7);
         s0.receiverHighWaterMark(1234L);
-        return Collections.singletonList(s0);
+        return new ArrayList<>(Collections.singletonList(s0));
     }
 
     private List<PublisherCounterSet> publishers()
@@ -75,7 +485,7 @@ class SnapshotSerialiserTest
         final PublisherCounterSet p1 = new PublisherCounterSet();
         p1.reset("chan-2", 5, 11);
         p1.publisherLimit(1234L);
-        return Arrays.asList(p0, p1);
+        return new ArrayList<>(Arrays.asList(p0, p1));
     }
 
     private class SnapshotAssertion implements CounterSnapshotListener
@@ -107,4 +517,63 @@ class SnapshotSerialiserTest
             assertThat(systemCounters.clientTimeouts()).isEqualTo((6L));
         }
     }
-}
\ No newline at end of file
+
+    private static class CapturingListener implements CounterSnapshotListener
+    {
+        private final SystemCounters systemCounters = new SystemCounters();
+        private final List<PublisherCounterSet> publisherCounters = new ArrayList<>();
+        private final List<SubscriberCounterSet> subscriberCounters = new ArrayList<>();
+        private String label;
+        private long timestamp;
+
+        @Override
+        public void onSnapshot(
+            final String label,
+            final long timestamp,
+            final List<PublisherCounterSet> publisherCounters,
+            final List<SubscriberCounterSet> subscriberCounters,
+            final SystemCounters systemCounters)
+        {
+            this.label = label;
+            this.timestamp = timestamp;
+            systemCounters.copyInto(this.systemCounters);
+            this.publisherCounters.clear();
+            publisherCounters.forEach(publisher -> this.publisherCounters.add(publisher.copy()));
+            this.subscriberCounters.clear();
+            subscriberCounters.forEach(subscriber -> this.subscriberCounters.add(subscriber.copy()));
+        }
+
+        PublisherCounterSet publisher(final String channel)
+        {
+            return publisherCounters.stream()
+                .filter(publisher -> publisher.channel().toString().equals(channel)).findFirst().orElse(null);
+        }
+    }
+
+    private static class CapturingSequenceListener implements SnapshotSequenceListener
+    {
+        private String label;
+        private long missedCount;
+        private long sequence;
+        private int restartCount;
+        private long previousStartEpochMs;
+        private long startEpochMs;
+
+        @Override
+        public void onSnapshotsMissed(final String label, final long missedCount, final long sequence)
+        {
+            this.label = label;
+            this.missedCount = missedCount;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void onCollectorRestarted(final String label, final long previousStartEpochMs, final long startEpochMs)
+        {
+            this.label = label;
+            this.previousStartEpochMs = previousStartEpochMs;
+            this.startEpochMs = startEpochMs;
+            restartCount++;
+        }
+    }
+}